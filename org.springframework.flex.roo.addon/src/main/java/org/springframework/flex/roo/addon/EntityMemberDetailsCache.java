@@ -0,0 +1,69 @@
+/*
+ * Copyright 2002-2010 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.flex.roo.addon;
+
+import java.util.List;
+
+import org.springframework.roo.classpath.details.FieldMetadata;
+import org.springframework.roo.classpath.scanner.MemberDetails;
+import org.springframework.roo.model.JavaType;
+
+/**
+ * Shared cache of the scanned {@link MemberDetails} of Java entities, and of the bean properties derived from them, for
+ * use by the Flex metadata providers.
+ *
+ * <p>
+ * An entry is reused as long as the physical type details of the entity are the same instance that was scanned, and
+ * is discarded as soon as any metadata about the entity (such as one of its ITDs) changes. A single scaffold
+ * regeneration therefore scans each entity once.
+ *
+ * @author Jeremy Grelle
+ */
+public interface EntityMemberDetailsCache {
+
+    /**
+     * @param entityType the entity (required)
+     * @return the member details of the entity including those introduced by ITDs, or null if the entity's physical
+     *         type metadata is unavailable
+     */
+    MemberDetails getMemberDetails(JavaType entityType);
+
+    /**
+     * @param entityType the entity (required)
+     * @return the fields backing the entity's JavaBean accessor methods, in method order, or null if the entity's
+     *         physical type metadata is unavailable
+     */
+    List<FieldMetadata> getAccessorFields(JavaType entityType);
+
+    /**
+     * @param entityType the entity (required)
+     * @return the fields backing the entity's JavaBean mutator methods, in method order, or null if the entity's
+     *         physical type metadata is unavailable
+     */
+    List<FieldMetadata> getMutatorFields(JavaType entityType);
+
+    /**
+     * Discards anything cached for the given entity.
+     * 
+     * @param entityType the entity (required)
+     */
+    void evict(JavaType entityType);
+
+    /**
+     * @return the number of times an entity has been scanned because no current entry was cached
+     */
+    long getScanCount();
+}
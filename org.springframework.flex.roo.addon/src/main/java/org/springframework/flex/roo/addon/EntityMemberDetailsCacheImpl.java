@@ -0,0 +1,209 @@
+/*
+ * Copyright 2002-2010 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.flex.roo.addon;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.felix.scr.annotations.Component;
+import org.apache.felix.scr.annotations.Reference;
+import org.apache.felix.scr.annotations.Service;
+import org.osgi.service.component.ComponentContext;
+import org.springframework.roo.classpath.PhysicalTypeIdentifier;
+import org.springframework.roo.classpath.PhysicalTypeMetadata;
+import org.springframework.roo.classpath.details.BeanInfoUtils;
+import org.springframework.roo.classpath.details.ClassOrInterfaceTypeDetails;
+import org.springframework.roo.classpath.details.FieldMetadata;
+import org.springframework.roo.classpath.details.MemberFindingUtils;
+import org.springframework.roo.classpath.details.MethodMetadata;
+import org.springframework.roo.classpath.scanner.MemberDetails;
+import org.springframework.roo.classpath.scanner.MemberDetailsScanner;
+import org.springframework.roo.metadata.MetadataDependencyRegistry;
+import org.springframework.roo.metadata.MetadataIdentificationUtils;
+import org.springframework.roo.metadata.MetadataNotificationListener;
+import org.springframework.roo.metadata.MetadataService;
+import org.springframework.roo.model.JavaType;
+import org.springframework.roo.project.Path;
+import org.springframework.roo.support.util.Assert;
+
+/**
+ * Default implementation of {@link EntityMemberDetailsCache}.
+ *
+ * <p>
+ * Entries are keyed by the instance part of the entity's physical type identifier, which all metadata about the same
+ * type shares, so any notification about the entity evicts its entry. As the member details include the members of
+ * the entity's superclasses, any notification about one of its superclasses evicts the entry as well.
+ *
+ * @author Jeremy Grelle
+ */
+@Component(immediate = true)
+@Service
+public class EntityMemberDetailsCacheImpl implements EntityMemberDetailsCache, MetadataNotificationListener {
+
+    @Reference
+    private MetadataService metadataService;
+
+    @Reference
+    private MetadataDependencyRegistry metadataDependencyRegistry;
+
+    @Reference
+    private MemberDetailsScanner memberDetailsScanner;
+
+    private final Map<String, CacheEntry> entries = new HashMap<String, CacheEntry>();
+
+    private final AtomicLong scanCount = new AtomicLong();
+
+    protected void activate(ComponentContext context) {
+        this.metadataDependencyRegistry.addNotificationListener(this);
+    }
+
+    protected void deactivate(ComponentContext context) {
+        this.metadataDependencyRegistry.removeNotificationListener(this);
+        clear();
+    }
+
+    public MemberDetails getMemberDetails(JavaType entityType) {
+        CacheEntry entry = getEntry(entityType);
+        return entry == null ? null : entry.memberDetails;
+    }
+
+    public List<FieldMetadata> getAccessorFields(JavaType entityType) {
+        CacheEntry entry = getEntry(entityType);
+        return entry == null ? null : entry.accessorFields;
+    }
+
+    public List<FieldMetadata> getMutatorFields(JavaType entityType) {
+        CacheEntry entry = getEntry(entityType);
+        return entry == null ? null : entry.mutatorFields;
+    }
+
+    public void evict(JavaType entityType) {
+        Assert.notNull(entityType, "Entity type required");
+        synchronized (this.entries) {
+            this.entries.remove(getKey(entityType));
+        }
+    }
+
+    public long getScanCount() {
+        return this.scanCount.get();
+    }
+
+    public void notify(String upstreamDependency, String downstreamDependency) {
+        if (!MetadataIdentificationUtils.isIdentifyingInstance(upstreamDependency)) {
+            return;
+        }
+        String instance = MetadataIdentificationUtils.getMetadataInstance(upstreamDependency);
+        synchronized (this.entries) {
+            this.entries.remove(instance);
+            for (Iterator<CacheEntry> iterator = this.entries.values().iterator(); iterator.hasNext();) {
+                if (iterator.next().supertypeKeys.contains(instance)) {
+                    iterator.remove();
+                }
+            }
+        }
+    }
+
+    void clear() {
+        synchronized (this.entries) {
+            this.entries.clear();
+        }
+    }
+
+    private CacheEntry getEntry(JavaType entityType) {
+        Assert.notNull(entityType, "Entity type required");
+        String physicalTypeIdentifier = PhysicalTypeIdentifier.createIdentifier(entityType, Path.SRC_MAIN_JAVA);
+        String key = getKey(entityType);
+
+        PhysicalTypeMetadata physicalTypeMetadata = (PhysicalTypeMetadata) this.metadataService.get(physicalTypeIdentifier);
+        if (physicalTypeMetadata == null || !(physicalTypeMetadata.getMemberHoldingTypeDetails() instanceof ClassOrInterfaceTypeDetails)) {
+            synchronized (this.entries) {
+                this.entries.remove(key);
+            }
+            return null;
+        }
+        ClassOrInterfaceTypeDetails details = (ClassOrInterfaceTypeDetails) physicalTypeMetadata.getMemberHoldingTypeDetails();
+
+        synchronized (this.entries) {
+            CacheEntry entry = this.entries.get(key);
+            // The details are re-created whenever the source of the type changes, so they identify its version
+            if (entry != null && entry.details == details) {
+                return entry;
+            }
+        }
+
+        this.scanCount.incrementAndGet();
+        MemberDetails memberDetails = this.memberDetailsScanner.getMemberDetails(getClass().getName(), details);
+        CacheEntry entry = new CacheEntry(details, memberDetails);
+        synchronized (this.entries) {
+            this.entries.put(key, entry);
+        }
+        return entry;
+    }
+
+    private String getKey(JavaType entityType) {
+        return MetadataIdentificationUtils.getMetadataInstance(PhysicalTypeIdentifier.createIdentifier(entityType, Path.SRC_MAIN_JAVA));
+    }
+
+    private static final class CacheEntry {
+
+        private final ClassOrInterfaceTypeDetails details;
+
+        private final MemberDetails memberDetails;
+
+        private final List<FieldMetadata> accessorFields;
+
+        private final List<FieldMetadata> mutatorFields;
+
+        // the keys of the superclasses whose members are included in the member details
+        private final Set<String> supertypeKeys = new HashSet<String>();
+
+        private CacheEntry(ClassOrInterfaceTypeDetails details, MemberDetails memberDetails) {
+            this.details = details;
+            this.memberDetails = memberDetails;
+            for (ClassOrInterfaceTypeDetails superclass = details.getSuperclass(); superclass != null; superclass = superclass.getSuperclass()) {
+                this.supertypeKeys.add(MetadataIdentificationUtils.getMetadataInstance(superclass.getDeclaredByMetadataId()));
+            }
+            List<FieldMetadata> accessorFields = new ArrayList<FieldMetadata>();
+            List<FieldMetadata> mutatorFields = new ArrayList<FieldMetadata>();
+            for (MethodMetadata method : MemberFindingUtils.getMethods(memberDetails)) {
+                boolean accessor = BeanInfoUtils.isAccessorMethod(method);
+                boolean mutator = BeanInfoUtils.isMutatorMethod(method);
+                if (!accessor && !mutator) {
+                    continue;
+                }
+                // Properties without a backing field, such as derived getters, are not mirrored
+                FieldMetadata field = BeanInfoUtils.getFieldForPropertyName(memberDetails, BeanInfoUtils.getPropertyNameForJavaBeanMethod(method));
+                if (field == null) {
+                    continue;
+                }
+                if (accessor) {
+                    accessorFields.add(field);
+                } else {
+                    mutatorFields.add(field);
+                }
+            }
+            this.accessorFields = Collections.unmodifiableList(accessorFields);
+            this.mutatorFields = Collections.unmodifiableList(mutatorFields);
+        }
+    }
+}
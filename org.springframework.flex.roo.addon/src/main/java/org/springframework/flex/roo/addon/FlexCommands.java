@@ -16,11 +16,13 @@
 
 package org.springframework.flex.roo.addon;
 
+import java.util.List;
 import java.util.logging.Logger;
 
 import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.Reference;
 import org.apache.felix.scr.annotations.Service;
+import org.springframework.flex.roo.addon.ui.FlexUIScaffolder;
 import org.springframework.roo.metadata.MetadataService;
 import org.springframework.roo.model.JavaPackage;
 import org.springframework.roo.model.JavaType;
@@ -49,6 +51,9 @@ public class FlexCommands implements CommandMarker {
     @Reference
     private MetadataService metadataService;
 
+    @Reference
+    private FlexUIScaffolder uiScaffolder;
+
     @CliAvailabilityIndicator( { "flex setup" })
     public boolean isFlexAvailable() {
         return this.operations.isFlexAvailable();
@@ -67,8 +72,9 @@ public class FlexCommands implements CommandMarker {
     @CliCommand(value = "flex remoting scaffold", help = "Create a new scaffold Service (ie with full CRUD operations) exposed as a Flex Remoting Destination")
     public void newRemotingDestination(
         @CliOption(key = { "name", "" }, mandatory = true, help = "The path and name of the service object to be created") JavaType service,
-        @CliOption(key = "entity", mandatory = false, optionContext = "update,project", unspecifiedDefaultValue = "*", help = "The name of the entity object which the service exposes to the flex client") JavaType entity) {
-        this.operations.createRemotingDestination(service, entity);
+        @CliOption(key = "entity", mandatory = false, optionContext = "update,project", unspecifiedDefaultValue = "*", help = "The name of the entity object which the service exposes to the flex client") JavaType entity,
+        @CliOption(key = "externalizable", mandatory = false, specifiedDefaultValue = "true", unspecifiedDefaultValue = "false", help = "Whether the entity should be serialized as an externalizable, without property names") boolean externalizable) {
+        this.operations.createRemotingDestination(service, entity, externalizable);
     }
 
     @CliCommand(value = "flex remoting all", help = "Scaffold a Service for all entities without an existing Remoting Destination")
@@ -79,7 +85,18 @@ public class FlexCommands implements CommandMarker {
         if (!javaPackage.getFullyQualifiedPackageName().startsWith(projectMetadata.getTopLevelPackage().getFullyQualifiedPackageName())) {
             logger.warning("Your service was created outside of the project's top level package and is therefore not included in the preconfigured component scanning. Please adjust your component scanning manually in applicationContext.xml");
         }
-        this.operations.generateAll(javaPackage);
+        StageTimings timings = new StageTimings();
+        List<JavaType> services;
+        int scaffolded;
+        // Render the views of all new destinations together, rather than one at a time as their metadata appears
+        this.uiScaffolder.beginBulkScaffold();
+        try {
+            services = this.operations.generateAll(javaPackage, timings);
+            scaffolded = this.uiScaffolder.scaffoldAll(services, timings);
+        } finally {
+            this.uiScaffolder.endBulkScaffold();
+        }
+        logger.info("Created " + services.size() + " remoting destination(s) and scaffolded " + scaffolded + " in " + timings);
     }
 
 }
\ No newline at end of file
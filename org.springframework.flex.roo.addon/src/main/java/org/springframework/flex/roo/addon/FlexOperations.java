@@ -16,6 +16,8 @@
 
 package org.springframework.flex.roo.addon;
 
+import java.util.List;
+
 import org.springframework.roo.model.JavaPackage;
 import org.springframework.roo.model.JavaType;
 
@@ -26,9 +28,23 @@ import org.springframework.roo.model.JavaType;
  */
 public interface FlexOperations {
 
-    void generateAll(JavaPackage javaPackage);
-
-    void createRemotingDestination(JavaType service, JavaType entity);
+    /**
+     * Creates a remoting destination for every entity that is not yet exposed by one.
+     *
+     * @param javaPackage the package in which to create the destinations (required)
+     * @param timings records the time taken by each stage (required)
+     * @return the created destinations (never null)
+     */
+    List<JavaType> generateAll(JavaPackage javaPackage, StageTimings timings);
+
+    /**
+     * Creates a remoting destination exposing the given entity.
+     *
+     * @param service the destination to create (required)
+     * @param entity the entity to expose (required)
+     * @param externalizable whether the entity and its ActionScript mirror should be serialized as externalizables
+     */
+    void createRemotingDestination(JavaType service, JavaType entity, boolean externalizable);
 
     void installFlex();
 
@@ -35,6 +35,7 @@ import org.osgi.service.component.ComponentContext;
 import org.springframework.flex.roo.addon.as.model.ActionScriptMappingUtils;
 import org.springframework.flex.roo.addon.as.model.ActionScriptType;
 import org.springframework.flex.roo.addon.entity.ActionScriptEntityMetadata;
+import org.springframework.flex.roo.addon.entity.MirrorGenerationService;
 import org.springframework.flex.roo.addon.mojos.FlexPath;
 import org.springframework.flex.roo.addon.mojos.FlexPathResolver;
 import org.springframework.roo.addon.entity.EntityMetadata;
@@ -49,6 +50,7 @@ import org.springframework.roo.classpath.details.ClassOrInterfaceTypeDetailsBuil
 import org.springframework.roo.classpath.details.annotations.AnnotationAttributeValue;
 import org.springframework.roo.classpath.details.annotations.AnnotationMetadata;
 import org.springframework.roo.classpath.details.annotations.AnnotationMetadataBuilder;
+import org.springframework.roo.classpath.details.annotations.BooleanAttributeValue;
 import org.springframework.roo.classpath.details.annotations.ClassAttributeValue;
 import org.springframework.roo.metadata.MetadataDependencyRegistry;
 import org.springframework.roo.metadata.MetadataService;
@@ -111,6 +113,12 @@ public class FlexOperationsImpl implements FlexOperations {
     @Reference 
     private TypeManagementService typeManagementService;
 
+    @Reference
+    private EntityMemberDetailsCache memberDetailsCache;
+
+    @Reference
+    private MirrorGenerationService mirrorGenerationService;
+
     private ComponentContext context;
 
     private StringTemplateGroup templateGroup;
@@ -173,10 +181,16 @@ public class FlexOperationsImpl implements FlexOperations {
         }
     }
 
-    public void generateAll(JavaPackage javaPackage) {
+    public List<JavaType> generateAll(JavaPackage javaPackage, StageTimings timings) {
+        Assert.notNull(javaPackage, "Java package required");
+        Assert.notNull(timings, "Timings required");
+
+        // Resolve all of the entity and member metadata up front, so that later stages only hit the caches
+        long stageStart = System.nanoTime();
         Set<ClassOrInterfaceTypeDetails> cids = typeLocationService.findClassesOrInterfaceDetailsWithAnnotation(new JavaType(
             RooEntity.class.getName()));
 
+        List<JavaType> entities = new ArrayList<JavaType>();
         for (ClassOrInterfaceTypeDetails cid : cids) {
 
             if (Modifier.isAbstract(cid.getModifier())) {
@@ -200,13 +214,37 @@ public class FlexOperationsImpl implements FlexOperations {
                 continue;
             }
 
-            // to get here, there is no listening service, so add one
+            this.memberDetailsCache.getMemberDetails(javaType);
+            entities.add(javaType);
+        }
+        timings.record("resolve entities", stageStart);
+
+        // to get here, there is no listening service, so add one
+        stageStart = System.nanoTime();
+        List<JavaType> services = new ArrayList<JavaType>(entities.size());
+        for (JavaType javaType : entities) {
             JavaType service = new JavaType(javaPackage.getFullyQualifiedPackageName() + "." + javaType.getSimpleTypeName() + "Service");
-            createRemotingDestination(service, javaType);
+            createRemotingService(service, javaType, false);
+            services.add(service);
         }
+        timings.record("create services", stageStart);
+
+        // The mirrors of all of the entities are planned together, so that shared related types are generated once
+        stageStart = System.nanoTime();
+        generateActionScriptEntities(entities);
+        timings.record("generate ActionScript entities", stageStart);
+
+        return services;
+    }
+
+    public void createRemotingDestination(JavaType service, JavaType entity, boolean externalizable) {
+        createRemotingService(service, entity, externalizable);
+        List<JavaType> entities = new ArrayList<JavaType>();
+        entities.add(entity);
+        generateActionScriptEntities(entities);
     }
 
-    public void createRemotingDestination(JavaType service, JavaType entity) {
+    private void createRemotingService(JavaType service, JavaType entity, boolean externalizable) {
         Assert.notNull(service, "Remoting Destination Java Type required");
         Assert.notNull(entity, "Entity Java Type required");
 
@@ -215,6 +253,9 @@ public class FlexOperationsImpl implements FlexOperations {
         // create annotation @RooFlexScaffold
         List<AnnotationAttributeValue<?>> rooFlexScaffoldAttributes = new ArrayList<AnnotationAttributeValue<?>>();
         rooFlexScaffoldAttributes.add(new ClassAttributeValue(new JavaSymbolName("entity"), entity));
+        if (externalizable) {
+            rooFlexScaffoldAttributes.add(new BooleanAttributeValue(new JavaSymbolName("externalizable"), true));
+        }
         AnnotationMetadata atRooFlexScaffold = new AnnotationMetadataBuilder(new JavaType(RooFlexScaffold.class.getName()), rooFlexScaffoldAttributes).build();
 
         // create annotation @RemotingDestination
@@ -236,10 +277,20 @@ public class FlexOperationsImpl implements FlexOperations {
 
         this.typeManagementService.generateClassFile(details);
 
-        ActionScriptType asType = ActionScriptMappingUtils.toActionScriptType(entity);
+        // The corresponding ActionScript entity is generated once the command has created all of its services
+        this.mirrorGenerationService.queueMirror(entity);
+    }
 
-        // Trigger creation of corresponding ActionScript entities
-        this.metadataService.get(ActionScriptEntityMetadata.createTypeIdentifier(asType, FlexPath.SRC_MAIN_FLEX));
+    /**
+     * Generates the queued ActionScript entities on this thread, then looks up their metadata, which finds every
+     * mirror already in place.
+     */
+    private void generateActionScriptEntities(List<JavaType> entities) {
+        this.mirrorGenerationService.generateQueuedMirrors();
+        for (JavaType entity : entities) {
+            ActionScriptType asType = ActionScriptMappingUtils.toActionScriptType(entity);
+            this.metadataService.get(ActionScriptEntityMetadata.createTypeIdentifier(asType, FlexPath.SRC_MAIN_FLEX));
+        }
     }
 
     private void createServicesConfig() {
@@ -32,6 +32,12 @@ public class FlexScaffoldAnnotationValues extends AbstractAnnotationValues {
     @AutoPopulate
     JavaType entity = null;
 
+    @AutoPopulate
+    boolean externalizable = false;
+
+    @AutoPopulate
+    String keysetField = "";
+
     public FlexScaffoldAnnotationValues(PhysicalTypeMetadata governorPhysicalTypeMetadata) {
         super(governorPhysicalTypeMetadata, new JavaType(RooFlexScaffold.class.getName()));
         AutoPopulationUtils.populate(this, this.annotationMetadata);
@@ -40,4 +46,12 @@ public class FlexScaffoldAnnotationValues extends AbstractAnnotationValues {
     public JavaType getEntity() {
         return this.entity;
     }
+
+    public boolean isExternalizable() {
+        return this.externalizable;
+    }
+
+    public String getKeysetField() {
+        return this.keysetField;
+    }
 }
@@ -17,25 +17,44 @@
 package org.springframework.flex.roo.addon;
 
 import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
+import org.springframework.flex.roo.addon.as.model.ActionScriptMappingUtils;
 import org.springframework.roo.addon.entity.EntityMetadata;
 import org.springframework.roo.addon.web.mvc.controller.details.FinderMetadataDetails;
 import org.springframework.roo.classpath.PhysicalTypeIdentifierNamingUtils;
 import org.springframework.roo.classpath.PhysicalTypeMetadata;
+import org.springframework.roo.classpath.details.FieldMetadata;
+import org.springframework.roo.classpath.details.MemberFindingUtils;
 import org.springframework.roo.classpath.details.MethodMetadata;
 import org.springframework.roo.classpath.details.MethodMetadataBuilder;
 import org.springframework.roo.classpath.details.annotations.AnnotatedJavaType;
+import org.springframework.roo.classpath.details.annotations.AnnotationAttributeValue;
+import org.springframework.roo.classpath.details.annotations.AnnotationMetadataBuilder;
 import org.springframework.roo.classpath.itd.AbstractItdTypeDetailsProvidingMetadataItem;
 import org.springframework.roo.classpath.itd.InvocableMemberBodyBuilder;
 import org.springframework.roo.classpath.itd.ItdSourceFileComposer;
+import org.springframework.roo.classpath.scanner.MemberDetails;
 import org.springframework.roo.metadata.MetadataIdentificationUtils;
 import org.springframework.roo.model.DataType;
+import org.springframework.roo.model.ImportRegistrationResolver;
 import org.springframework.roo.model.JavaSymbolName;
 import org.springframework.roo.model.JavaType;
 import org.springframework.roo.project.Path;
+import org.springframework.roo.support.logging.HandlerUtils;
 import org.springframework.roo.support.util.Assert;
 import org.springframework.roo.support.util.StringUtils;
 
@@ -50,19 +69,94 @@ public class FlexScaffoldMetadata extends AbstractItdTypeDetailsProvidingMetadat
 
     private static final String PROVIDES_TYPE = MetadataIdentificationUtils.create(PROVIDES_TYPE_STRING);
 
+    /**
+     * Number of entities returned by {@code listPage} when the client does not ask for a page size
+     */
+    public static final int DEFAULT_PAGE_SIZE = 25;
+
+    /**
+     * Upper bound on the number of entities returned by a single {@code listPage} call, whatever the client asks for
+     */
+    public static final int MAX_PAGE_SIZE = 500;
+
+    /**
+     * Keys of the page object returned by {@code listPage}, which reaches the Flex client as an untyped Object
+     */
+    public static final String PAGE_ITEMS = "items";
+
+    public static final String PAGE_TOTAL_COUNT = "totalCount";
+
+    public static final String PAGE_INDEX = "page";
+
+    public static final String PAGE_SIZE = "size";
+
+    /**
+     * Keys of the cursor returned by {@code listAfter}, to be passed back as its {@code afterKey} and {@code afterId}
+     * to fetch the following page; absent once the last page has been reached
+     */
+    public static final String PAGE_NEXT_KEY = "nextKey";
+
+    public static final String PAGE_NEXT_ID = "nextId";
+
+    /**
+     * Keys and operators of the filters accepted by {@code listFiltered}, each of which reaches the service as a Map:
+     * {@code eq} matches {@code value} exactly, {@code like} matches a String {@code value} ignoring case with
+     * {@code *} as the only wildcard, and {@code range} matches from {@code value} to {@code to}, either of which may be
+     * left out
+     */
+    public static final String FILTER_PROPERTY = "property";
+
+    public static final String FILTER_OPERATOR = "operator";
+
+    public static final String FILTER_VALUE = "value";
+
+    public static final String FILTER_TO = "to";
+
+    public static final String FILTER_EQUALS = "eq";
+
+    public static final String FILTER_LIKE = "like";
+
+    public static final String FILTER_RANGE = "range";
+
+    /**
+     * Number of entities written by the batch methods between flushes of the persistence context, which lets a JPA
+     * provider configured for JDBC batching send them in batches of that size, and keeps the context from growing
+     * with the size of the request
+     */
+    public static final int BATCH_SIZE = 50;
+
+    private static final Logger logger = HandlerUtils.getLogger(FlexScaffoldMetadata.class);
+
+    private static final JavaType TRANSIENT = new JavaType("javax.persistence.Transient");
+
+    private static final JavaType TRANSACTIONAL = new JavaType("org.springframework.transaction.annotation.Transactional");
+
+    private static final Pattern FINDER_SELECT = Pattern.compile("\\s*SELECT\\s+(\\w+)\\s+FROM\\s+", Pattern.CASE_INSENSITIVE);
+
+    private static final Pattern FINDER_ORDER_BY = Pattern.compile("\\s+ORDER\\s+BY\\s+", Pattern.CASE_INSENSITIVE);
+
+    // types whose values can be compared by the criteria API and read through a get accessor, and so can be used as keys
+    private static final Set<String> KEYSET_TYPES = new HashSet<String>(Arrays.asList(String.class.getName(), Byte.class.getName(),
+        Short.class.getName(), Integer.class.getName(), Long.class.getName(), Float.class.getName(), Double.class.getName(),
+        Character.class.getName(), BigDecimal.class.getName(), BigInteger.class.getName(), Date.class.getName(), Calendar.class.getName()));
+
     private EntityMetadata entityMetadata;
     
     private JavaType entity;
 
     private String entityReference;
 
+    private List<String> queryableProperties = Collections.emptyList();
+
     public FlexScaffoldMetadata(String identifier, JavaType aspectName, PhysicalTypeMetadata governorPhysicalTypeMetadata, FlexScaffoldAnnotationValues annotationValues,
-        EntityMetadata entityMetadata, Set<FinderMetadataDetails> dynamicFinderMethods) {
+        EntityMetadata entityMetadata, MemberDetails entityMemberDetails, Set<FinderMetadataDetails> dynamicFinderMethods,
+        Map<JavaSymbolName, String> finderQueries) {
 
         super(identifier, aspectName, governorPhysicalTypeMetadata);
 
         Assert.isTrue(isValid(identifier), "Metadata identification string '" + identifier + "' does not appear to be a valid");
         Assert.notNull(entityMetadata, "Entity metadata required");
+        Assert.notNull(entityMemberDetails, "Entity member details required");
 
         if (!isValid()) {
             return;
@@ -71,13 +165,37 @@ public class FlexScaffoldMetadata extends AbstractItdTypeDetailsProvidingMetadat
         this.entityMetadata = entityMetadata;
         this.entity = annotationValues.getEntity();
         this.entityReference = StringUtils.uncapitalize(this.entity.getSimpleTypeName());
+        this.queryableProperties = findQueryableProperties(entityMemberDetails);
 
         this.builder.addMethod(getCreateMethod());
         this.builder.addMethod(getShowMethod());
         this.builder.addMethod(getListMethod());
         this.builder.addMethod(getListPagedMethod());
+        this.builder.addMethod(getListPageMethod());
+        this.builder.addMethod(getListFilteredMethod());
+        this.builder.addMethod(getToPredicateMethod());
+        this.builder.addMethod(getCheckPropertyMethod(this.queryableProperties));
+        this.builder.addMethod(getConvertFilterValueMethod());
+        this.builder.addMethod(getListAfterMethod(getKeysetField(annotationValues.getKeysetField(), this.entity, MemberFindingUtils.getFields(entityMemberDetails),
+            entityMetadata.getIdentifierField())));
         this.builder.addMethod(getUpdateMethod());
         this.builder.addMethod(getRemoveMethod());
+        this.builder.addMethod(getCreateAllMethod());
+        this.builder.addMethod(getUpdateAllMethod());
+        this.builder.addMethod(getRemoveAllMethod());
+
+        if (dynamicFinderMethods != null) {
+            for (FinderMetadataDetails finder : dynamicFinderMethods) {
+                MethodMetadata finderMethod = finder.getFinderMethodMetadata();
+                String countQuery = getCountQuery(finderQueries.get(finderMethod.getMethodName()));
+                if (countQuery == null || hasCollectionParameter(finderMethod)) {
+                    // Finders taking collections assemble their query at runtime, so there is no fixed query to count with
+                    continue;
+                }
+                this.builder.addMethod(getFinderCountMethod(finderMethod, countQuery));
+                this.builder.addMethod(getFinderPageMethod(finderMethod));
+            }
+        }
 
         this.itdTypeDetails = this.builder.build();
 
@@ -108,6 +226,13 @@ public class FlexScaffoldMetadata extends AbstractItdTypeDetailsProvidingMetadat
         return this.entityReference;
     }
 
+    /**
+     * @return the properties of the entity that clients may sort or filter by, in name order
+     */
+    public List<String> getQueryableProperties() {
+        return this.queryableProperties;
+    }
+
     public static final Path getPath(String metadataIdentificationString) {
         return PhysicalTypeIdentifierNamingUtils.getPath(PROVIDES_TYPE_STRING, metadataIdentificationString);
     }
@@ -206,6 +331,540 @@ public class FlexScaffoldMetadata extends AbstractItdTypeDetailsProvidingMetadat
         return new MethodMetadataBuilder(getId(), Modifier.PUBLIC, methodName, returnType, paramTypes, paramNames, bodyBuilder).build();
     }
 
+    private MethodMetadata getListPageMethod() {
+        JavaSymbolName methodName = new JavaSymbolName("listPage");
+
+        MethodMetadata method = methodExists(methodName);
+        if (method != null) {
+            return method;
+        }
+
+        List<AnnotatedJavaType> paramTypes = new ArrayList<AnnotatedJavaType>();
+        paramTypes.add(new AnnotatedJavaType(new JavaType("Integer"), null));
+        paramTypes.add(new AnnotatedJavaType(new JavaType("Integer"), null));
+        paramTypes.add(new AnnotatedJavaType(JavaType.STRING_OBJECT, null));
+
+        List<JavaSymbolName> paramNames = new ArrayList<JavaSymbolName>();
+        paramNames.add(new JavaSymbolName("page"));
+        paramNames.add(new JavaSymbolName("size"));
+        paramNames.add(new JavaSymbolName("sort"));
+
+        String entityName = this.entity.getNameIncludingTypeParameters(false, this.builder.getImportRegistrationResolver());
+
+        InvocableMemberBodyBuilder bodyBuilder = new InvocableMemberBodyBuilder();
+        bodyBuilder.appendFormalLine("if (sort != null && sort.trim().length() > 0) {");
+        bodyBuilder.indent();
+        bodyBuilder.appendFormalLine("return listFiltered(null, sort, page, size);");
+        bodyBuilder.indentRemove();
+        bodyBuilder.appendFormalLine("}");
+        appendPageSize(bodyBuilder);
+        bodyBuilder.appendFormalLine("int pageNo = page == null || page.intValue() < 1 ? 1 : page.intValue();");
+        bodyBuilder.appendFormalLine(getItemsTypeName() + " items = " + entityName + "." + this.entityMetadata.getFindEntriesMethod().getMethodName()
+            + "((pageNo - 1) * sizeNo, sizeNo);");
+        appendNewPage(bodyBuilder);
+        bodyBuilder.appendFormalLine("result.put(\"" + PAGE_TOTAL_COUNT + "\", Long.valueOf(" + entityName + "."
+            + this.entityMetadata.getCountMethod().getMethodName() + "()));");
+        bodyBuilder.appendFormalLine("result.put(\"" + PAGE_INDEX + "\", Integer.valueOf(pageNo));");
+        bodyBuilder.appendFormalLine("return result;");
+
+        return new MethodMetadataBuilder(getId(), Modifier.PUBLIC, methodName, getPageType(), paramTypes, paramNames, bodyBuilder).build();
+    }
+
+    private MethodMetadata getListFilteredMethod() {
+        JavaSymbolName methodName = new JavaSymbolName("listFiltered");
+
+        MethodMetadata method = methodExists(methodName);
+        if (method != null) {
+            return method;
+        }
+
+        List<AnnotatedJavaType> paramTypes = new ArrayList<AnnotatedJavaType>();
+        paramTypes.add(new AnnotatedJavaType(getFiltersType(), null));
+        paramTypes.add(new AnnotatedJavaType(JavaType.STRING_OBJECT, null));
+        paramTypes.add(new AnnotatedJavaType(new JavaType("Integer"), null));
+        paramTypes.add(new AnnotatedJavaType(new JavaType("Integer"), null));
+
+        List<JavaSymbolName> paramNames = new ArrayList<JavaSymbolName>();
+        paramNames.add(new JavaSymbolName("filters"));
+        paramNames.add(new JavaSymbolName("sort"));
+        paramNames.add(new JavaSymbolName("page"));
+        paramNames.add(new JavaSymbolName("size"));
+
+        ImportRegistrationResolver resolver = this.builder.getImportRegistrationResolver();
+        String entityName = this.entity.getNameIncludingTypeParameters(false, resolver);
+        List<JavaType> countTypeParams = new ArrayList<JavaType>();
+        countTypeParams.add(JavaType.LONG_OBJECT);
+        List<JavaType> entityTypeParams = new ArrayList<JavaType>();
+        entityTypeParams.add(this.entity);
+        String orderType = new JavaType("javax.persistence.criteria.Order").getNameIncludingTypeParameters(false, resolver);
+        String identifierName = this.entityMetadata.getIdentifierField().getFieldName().getSymbolName();
+
+        InvocableMemberBodyBuilder bodyBuilder = new InvocableMemberBodyBuilder();
+        appendPageSize(bodyBuilder);
+        bodyBuilder.appendFormalLine("int pageNo = page == null || page.intValue() < 1 ? 1 : page.intValue();");
+        appendCriteriaQuery(bodyBuilder);
+        bodyBuilder.appendFormalLine("query.where(toPredicate(criteriaBuilder, root, filters));");
+        bodyBuilder.appendFormalLine("if (sort != null && sort.trim().length() > 0) {");
+        bodyBuilder.indent();
+        bodyBuilder.appendFormalLine("String[] sortSpec = sort.trim().split(\"\\\\s+\");");
+        bodyBuilder.appendFormalLine("String sortProperty = checkProperty(sortSpec[0]);");
+        bodyBuilder.appendFormalLine(orderType + " sortOrder = sortSpec.length > 1 && \"desc\".equalsIgnoreCase(sortSpec[1])"
+            + " ? criteriaBuilder.desc(root.get(sortProperty)) : criteriaBuilder.asc(root.get(sortProperty));");
+        // Entities sharing a sort value are ordered by identifier, so that they neither repeat nor go missing across pages
+        bodyBuilder.appendFormalLine("if (sortProperty.equals(\"" + identifierName + "\")) {");
+        bodyBuilder.indent();
+        bodyBuilder.appendFormalLine("query.orderBy(sortOrder);");
+        bodyBuilder.indentRemove();
+        bodyBuilder.appendFormalLine("} else {");
+        bodyBuilder.indent();
+        bodyBuilder.appendFormalLine("query.orderBy(sortOrder, criteriaBuilder.asc(root.get(\"" + identifierName + "\")));");
+        bodyBuilder.indentRemove();
+        bodyBuilder.appendFormalLine("}");
+        bodyBuilder.indentRemove();
+        bodyBuilder.appendFormalLine("} else {");
+        bodyBuilder.indent();
+        bodyBuilder.appendFormalLine("query.orderBy(criteriaBuilder.asc(root.get(\"" + identifierName + "\")));");
+        bodyBuilder.indentRemove();
+        bodyBuilder.appendFormalLine("}");
+        bodyBuilder.appendFormalLine(getItemsTypeName() + " items = " + getEntityManagerExpression()
+            + ".createQuery(query).setFirstResult((pageNo - 1) * sizeNo).setMaxResults(sizeNo).getResultList();");
+        bodyBuilder.appendFormalLine(new JavaType("javax.persistence.criteria.CriteriaQuery", 0, DataType.TYPE, null, countTypeParams)
+            .getNameIncludingTypeParameters(false, resolver) + " countQuery = criteriaBuilder.createQuery(Long.class);");
+        bodyBuilder.appendFormalLine(new JavaType("javax.persistence.criteria.Root", 0, DataType.TYPE, null, entityTypeParams).getNameIncludingTypeParameters(
+            false, resolver) + " countRoot = countQuery.from(" + entityName + ".class);");
+        bodyBuilder.appendFormalLine("countQuery.select(criteriaBuilder.count(countRoot));");
+        bodyBuilder.appendFormalLine("countQuery.where(toPredicate(criteriaBuilder, countRoot, filters));");
+        appendNewPage(bodyBuilder);
+        bodyBuilder.appendFormalLine("result.put(\"" + PAGE_TOTAL_COUNT + "\", " + getEntityManagerExpression()
+            + ".createQuery(countQuery).getSingleResult());");
+        bodyBuilder.appendFormalLine("result.put(\"" + PAGE_INDEX + "\", Integer.valueOf(pageNo));");
+        bodyBuilder.appendFormalLine("return result;");
+
+        return new MethodMetadataBuilder(getId(), Modifier.PUBLIC, methodName, getPageType(), paramTypes, paramNames, bodyBuilder).build();
+    }
+
+    private MethodMetadata getToPredicateMethod() {
+        JavaSymbolName methodName = new JavaSymbolName("toPredicate");
+
+        MethodMetadata method = methodExists(methodName);
+        if (method != null) {
+            return method;
+        }
+
+        ImportRegistrationResolver resolver = this.builder.getImportRegistrationResolver();
+        JavaType predicateType = new JavaType("javax.persistence.criteria.Predicate");
+        String predicateTypeName = predicateType.getNameIncludingTypeParameters(false, resolver);
+        List<JavaType> entityTypeParams = new ArrayList<JavaType>();
+        entityTypeParams.add(this.entity);
+        List<JavaType> predicateTypeParams = new ArrayList<JavaType>();
+        predicateTypeParams.add(predicateType);
+        List<JavaType> filterTypeParams = new ArrayList<JavaType>();
+        filterTypeParams.add(JavaType.STRING_OBJECT);
+        filterTypeParams.add(new JavaType("java.lang.Object"));
+        List<JavaType> objectTypeParams = new ArrayList<JavaType>();
+        objectTypeParams.add(new JavaType("java.lang.Object"));
+        List<JavaType> comparableTypeParams = new ArrayList<JavaType>();
+        comparableTypeParams.add(new JavaType("java.lang.Comparable"));
+
+        List<AnnotatedJavaType> paramTypes = new ArrayList<AnnotatedJavaType>();
+        paramTypes.add(new AnnotatedJavaType(new JavaType("javax.persistence.criteria.CriteriaBuilder"), null));
+        paramTypes.add(new AnnotatedJavaType(new JavaType("javax.persistence.criteria.Root", 0, DataType.TYPE, null, entityTypeParams), null));
+        paramTypes.add(new AnnotatedJavaType(getFiltersType(), null));
+
+        List<JavaSymbolName> paramNames = new ArrayList<JavaSymbolName>();
+        paramNames.add(new JavaSymbolName("criteriaBuilder"));
+        paramNames.add(new JavaSymbolName("root"));
+        paramNames.add(new JavaSymbolName("filters"));
+
+        String pathType = new JavaType("javax.persistence.criteria.Path", 0, DataType.TYPE, null, objectTypeParams).getNameIncludingTypeParameters(false,
+            resolver);
+        String comparablePathType = new JavaType("javax.persistence.criteria.Path", 0, DataType.TYPE, null, comparableTypeParams)
+            .getNameIncludingTypeParameters(false, resolver);
+
+        InvocableMemberBodyBuilder bodyBuilder = new InvocableMemberBodyBuilder();
+        String predicateListType = new JavaType("java.util.List", 0, DataType.TYPE, null, predicateTypeParams).getNameIncludingTypeParameters(false,
+            resolver);
+        String predicateListImplType = new JavaType("java.util.ArrayList", 0, DataType.TYPE, null, predicateTypeParams).getNameIncludingTypeParameters(
+            false, resolver);
+        String filterType = new JavaType("java.util.Map", 0, DataType.TYPE, null, filterTypeParams).getNameIncludingTypeParameters(false, resolver);
+        bodyBuilder.appendFormalLine(predicateListType + " predicates = new " + predicateListImplType + "();");
+        bodyBuilder.appendFormalLine("if (filters != null) {");
+        bodyBuilder.indent();
+        bodyBuilder.appendFormalLine("for (" + filterType + " filter : filters) {");
+        bodyBuilder.indent();
+        bodyBuilder.appendFormalLine("String property = checkProperty((String) filter.get(\"" + FILTER_PROPERTY + "\"));");
+        bodyBuilder.appendFormalLine("Object operator = filter.get(\"" + FILTER_OPERATOR + "\");");
+        bodyBuilder.appendFormalLine(pathType + " path = root.get(property);");
+        bodyBuilder.appendFormalLine("Object value = convertFilterValue(filter.get(\"" + FILTER_VALUE + "\"), path.getJavaType());");
+        bodyBuilder.appendFormalLine("if (\"" + FILTER_EQUALS + "\".equals(operator)) {");
+        bodyBuilder.indent();
+        bodyBuilder.appendFormalLine("predicates.add(value == null ? criteriaBuilder.isNull(path) : criteriaBuilder.equal(path, value));");
+        bodyBuilder.indentRemove();
+        // A pattern can only be matched against a String property, so like on any other is rejected as unsupported
+        bodyBuilder.appendFormalLine("} else if (\"" + FILTER_LIKE + "\".equals(operator) && path.getJavaType() == String.class && value instanceof String) {");
+        bodyBuilder.indent();
+        // Only * is a wildcard, so any % or _ in the value is escaped to match literally
+        bodyBuilder.appendFormalLine("String pattern = ((String) value).toLowerCase().replace(\"\\\\\", \"\\\\\\\\\").replace(\"%\", \"\\\\%\")"
+            + ".replace(\"_\", \"\\\\_\").replace('*', '%');");
+        bodyBuilder.appendFormalLine("predicates.add(criteriaBuilder.like(criteriaBuilder.lower(root.<String>get(property)), pattern, '\\\\'));");
+        bodyBuilder.indentRemove();
+        bodyBuilder.appendFormalLine("} else if (\"" + FILTER_RANGE + "\".equals(operator)) {");
+        bodyBuilder.indent();
+        bodyBuilder.appendFormalLine(comparablePathType + " comparablePath = root.get(property);");
+        bodyBuilder.appendFormalLine("Object to = convertFilterValue(filter.get(\"" + FILTER_TO + "\"), path.getJavaType());");
+        bodyBuilder.appendFormalLine("if (value != null) {");
+        bodyBuilder.indent();
+        bodyBuilder.appendFormalLine("predicates.add(criteriaBuilder.greaterThanOrEqualTo(comparablePath, (Comparable) value));");
+        bodyBuilder.indentRemove();
+        bodyBuilder.appendFormalLine("}");
+        bodyBuilder.appendFormalLine("if (to != null) {");
+        bodyBuilder.indent();
+        bodyBuilder.appendFormalLine("predicates.add(criteriaBuilder.lessThanOrEqualTo(comparablePath, (Comparable) to));");
+        bodyBuilder.indentRemove();
+        bodyBuilder.appendFormalLine("}");
+        bodyBuilder.indentRemove();
+        bodyBuilder.appendFormalLine("} else {");
+        bodyBuilder.indent();
+        bodyBuilder.appendFormalLine("throw new IllegalArgumentException(\"Unsupported filter '\" + operator + \"' on property '\" + property + \"'\");");
+        bodyBuilder.indentRemove();
+        bodyBuilder.appendFormalLine("}");
+        bodyBuilder.indentRemove();
+        bodyBuilder.appendFormalLine("}");
+        bodyBuilder.indentRemove();
+        bodyBuilder.appendFormalLine("}");
+        bodyBuilder.appendFormalLine("return criteriaBuilder.and(predicates.toArray(new " + predicateTypeName + "[predicates.size()]));");
+
+        return new MethodMetadataBuilder(getId(), Modifier.PRIVATE, methodName, predicateType, paramTypes, paramNames, bodyBuilder).build();
+    }
+
+    private MethodMetadata getCheckPropertyMethod(List<String> queryableProperties) {
+        JavaSymbolName methodName = new JavaSymbolName("checkProperty");
+
+        MethodMetadata method = methodExists(methodName);
+        if (method != null) {
+            return method;
+        }
+
+        List<AnnotatedJavaType> paramTypes = new ArrayList<AnnotatedJavaType>();
+        paramTypes.add(new AnnotatedJavaType(JavaType.STRING_OBJECT, null));
+
+        List<JavaSymbolName> paramNames = new ArrayList<JavaSymbolName>();
+        paramNames.add(new JavaSymbolName("property"));
+
+        StringBuilder properties = new StringBuilder();
+        for (String property : queryableProperties) {
+            properties.append(properties.length() == 0 ? "" : ", ").append("\"").append(property).append("\"");
+        }
+
+        // Only the properties mirrored to the Flex client may be sorted or filtered on, so that clients cannot reach
+        // into associations or properties that are never sent to them
+        InvocableMemberBodyBuilder bodyBuilder = new InvocableMemberBodyBuilder();
+        String arraysType = new JavaType("java.util.Arrays").getNameIncludingTypeParameters(false, this.builder.getImportRegistrationResolver());
+        bodyBuilder.appendFormalLine("if (!" + arraysType + ".asList(new String[] { " + properties + " }).contains(property)) {");
+        bodyBuilder.indent();
+        bodyBuilder.appendFormalLine("throw new IllegalArgumentException(\"Unable to sort or filter " + this.entity.getSimpleTypeName()
+            + " by '\" + property + \"'\");");
+        bodyBuilder.indentRemove();
+        bodyBuilder.appendFormalLine("}");
+        bodyBuilder.appendFormalLine("return property;");
+
+        return new MethodMetadataBuilder(getId(), Modifier.PRIVATE, methodName, JavaType.STRING_OBJECT, paramTypes, paramNames, bodyBuilder).build();
+    }
+
+    private MethodMetadata getConvertFilterValueMethod() {
+        JavaSymbolName methodName = new JavaSymbolName("convertFilterValue");
+
+        MethodMetadata method = methodExists(methodName);
+        if (method != null) {
+            return method;
+        }
+
+        ImportRegistrationResolver resolver = this.builder.getImportRegistrationResolver();
+        List<AnnotatedJavaType> paramTypes = new ArrayList<AnnotatedJavaType>();
+        paramTypes.add(new AnnotatedJavaType(new JavaType("java.lang.Object"), null));
+        paramTypes.add(new AnnotatedJavaType(new JavaType("java.lang.Class"), null));
+
+        List<JavaSymbolName> paramNames = new ArrayList<JavaSymbolName>();
+        paramNames.add(new JavaSymbolName("value"));
+        paramNames.add(new JavaSymbolName("type"));
+
+        String calendarType = new JavaType("java.util.Calendar").getNameIncludingTypeParameters(false, resolver);
+        String dateType = new JavaType("java.util.Date").getNameIncludingTypeParameters(false, resolver);
+        String bigDecimalType = new JavaType("java.math.BigDecimal").getNameIncludingTypeParameters(false, resolver);
+        String bigIntegerType = new JavaType("java.math.BigInteger").getNameIncludingTypeParameters(false, resolver);
+
+        // AMF sends every ActionScript Number as a Double and every Date as a java.util.Date, so filter values are
+        // converted to the property's type before being compared with it
+        InvocableMemberBodyBuilder bodyBuilder = new InvocableMemberBodyBuilder();
+        bodyBuilder.appendFormalLine("if (value == null || type.isInstance(value)) {");
+        bodyBuilder.indent();
+        bodyBuilder.appendFormalLine("return value;");
+        bodyBuilder.indentRemove();
+        bodyBuilder.appendFormalLine("}");
+        bodyBuilder.appendFormalLine("if (value instanceof Number) {");
+        bodyBuilder.indent();
+        bodyBuilder.appendFormalLine("Number number = (Number) value;");
+        bodyBuilder.appendFormalLine("if (type == Long.class || type == long.class) return Long.valueOf(number.longValue());");
+        bodyBuilder.appendFormalLine("if (type == Integer.class || type == int.class) return Integer.valueOf(number.intValue());");
+        bodyBuilder.appendFormalLine("if (type == Short.class || type == short.class) return Short.valueOf(number.shortValue());");
+        bodyBuilder.appendFormalLine("if (type == Byte.class || type == byte.class) return Byte.valueOf(number.byteValue());");
+        bodyBuilder.appendFormalLine("if (type == Double.class || type == double.class) return Double.valueOf(number.doubleValue());");
+        bodyBuilder.appendFormalLine("if (type == Float.class || type == float.class) return Float.valueOf(number.floatValue());");
+        bodyBuilder.appendFormalLine("if (type == " + bigDecimalType + ".class) return new " + bigDecimalType + "(number.toString());");
+        bodyBuilder.appendFormalLine("if (type == " + bigIntegerType + ".class) return " + bigIntegerType + ".valueOf(number.longValue());");
+        bodyBuilder.indentRemove();
+        bodyBuilder.appendFormalLine("}");
+        bodyBuilder.appendFormalLine("if (value instanceof " + dateType + " && type == " + calendarType + ".class) {");
+        bodyBuilder.indent();
+        bodyBuilder.appendFormalLine(calendarType + " calendar = " + calendarType + ".getInstance();");
+        bodyBuilder.appendFormalLine("calendar.setTime((" + dateType + ") value);");
+        bodyBuilder.appendFormalLine("return calendar;");
+        bodyBuilder.indentRemove();
+        bodyBuilder.appendFormalLine("}");
+        bodyBuilder.appendFormalLine("return value;");
+
+        return new MethodMetadataBuilder(getId(), Modifier.PRIVATE, methodName, new JavaType("java.lang.Object"), paramTypes, paramNames, bodyBuilder).build();
+    }
+
+    private List<String> findQueryableProperties(MemberDetails entityMemberDetails) {
+        List<String> properties = new ArrayList<String>();
+        for (FieldMetadata field : MemberFindingUtils.getFields(entityMemberDetails)) {
+            JavaType fieldType = field.getFieldType();
+            if (Modifier.isStatic(field.getModifier()) || Modifier.isTransient(field.getModifier()) || ActionScriptMappingUtils.isTransient(field)
+                || MemberFindingUtils.getAnnotationOfType(field.getAnnotations(), TRANSIENT) != null) {
+                continue;
+            }
+            // Only simple values can be compared; associations, collections and embedded types are left out
+            if (fieldType.isCommonCollectionType() || fieldType.isArray()
+                || !(fieldType.isPrimitive() || fieldType.getFullyQualifiedTypeName().startsWith("java."))) {
+                continue;
+            }
+            properties.add(field.getFieldName().getSymbolName());
+        }
+        Collections.sort(properties);
+        return properties;
+    }
+
+    private MethodMetadata getListAfterMethod(FieldMetadata keysetField) {
+        JavaSymbolName methodName = new JavaSymbolName("listAfter");
+
+        MethodMetadata method = methodExists(methodName);
+        if (method != null) {
+            return method;
+        }
+
+        FieldMetadata identifierField = this.entityMetadata.getIdentifierField();
+        boolean tieBreak = isTieBreakRequired(keysetField, identifierField);
+
+        JavaType keyType = getObjectType(keysetField.getFieldType());
+        JavaType identifierType = getObjectType(identifierField.getFieldType());
+        ImportRegistrationResolver resolver = this.builder.getImportRegistrationResolver();
+
+        List<AnnotatedJavaType> paramTypes = new ArrayList<AnnotatedJavaType>();
+        List<JavaSymbolName> paramNames = new ArrayList<JavaSymbolName>();
+        paramTypes.add(new AnnotatedJavaType(keyType, null));
+        paramNames.add(new JavaSymbolName("afterKey"));
+        if (tieBreak) {
+            paramTypes.add(new AnnotatedJavaType(identifierType, null));
+            paramNames.add(new JavaSymbolName("afterId"));
+        }
+        paramTypes.add(new AnnotatedJavaType(new JavaType("Integer"), null));
+        paramNames.add(new JavaSymbolName("size"));
+
+        InvocableMemberBodyBuilder bodyBuilder = new InvocableMemberBodyBuilder();
+        appendPageSize(bodyBuilder);
+        appendCriteriaQuery(bodyBuilder);
+        appendKeysetRestriction(bodyBuilder, keysetField, identifierField, resolver);
+        bodyBuilder.appendFormalLine(getItemsTypeName() + " items = " + getEntityManagerExpression()
+            + ".createQuery(query).setMaxResults(sizeNo).getResultList();");
+        appendNewPage(bodyBuilder);
+        // A short page is the last one, so the client is handed no cursor to ask for another
+        bodyBuilder.appendFormalLine("if (items.size() == sizeNo) {");
+        bodyBuilder.indent();
+        bodyBuilder.appendFormalLine(this.entity.getNameIncludingTypeParameters(false, resolver) + " last = items.get(sizeNo - 1);");
+        bodyBuilder.appendFormalLine("result.put(\"" + PAGE_NEXT_KEY + "\", last.get" + keysetField.getFieldName().getSymbolNameCapitalisedFirstLetter()
+            + "());");
+        if (tieBreak) {
+            bodyBuilder.appendFormalLine("result.put(\"" + PAGE_NEXT_ID + "\", last.get" + identifierField.getFieldName().getSymbolNameCapitalisedFirstLetter()
+                + "());");
+        }
+        bodyBuilder.indentRemove();
+        bodyBuilder.appendFormalLine("}");
+        bodyBuilder.appendFormalLine("return result;");
+
+        return new MethodMetadataBuilder(getId(), Modifier.PUBLIC, methodName, getPageType(), paramTypes, paramNames, bodyBuilder).build();
+    }
+
+    private MethodMetadata getFinderPageMethod(MethodMetadata finderMethod) {
+        JavaSymbolName methodName = finderMethod.getMethodName();
+
+        MethodMetadata method = methodExists(methodName);
+        if (method != null) {
+            return method;
+        }
+
+        List<AnnotatedJavaType> paramTypes = new ArrayList<AnnotatedJavaType>(finderMethod.getParameterTypes());
+        paramTypes.add(new AnnotatedJavaType(new JavaType("Integer"), null));
+        paramTypes.add(new AnnotatedJavaType(new JavaType("Integer"), null));
+
+        List<JavaSymbolName> paramNames = new ArrayList<JavaSymbolName>(finderMethod.getParameterNames());
+        paramNames.add(new JavaSymbolName("page"));
+        paramNames.add(new JavaSymbolName("size"));
+
+        String finderArguments = StringUtils.collectionToCommaDelimitedString(finderMethod.getParameterNames());
+
+        InvocableMemberBodyBuilder bodyBuilder = new InvocableMemberBodyBuilder();
+        appendPageSize(bodyBuilder);
+        bodyBuilder.appendFormalLine("int pageNo = page == null || page.intValue() < 1 ? 1 : page.intValue();");
+        bodyBuilder.appendFormalLine(getItemsTypeName() + " items = "
+            + this.entity.getNameIncludingTypeParameters(false, this.builder.getImportRegistrationResolver()) + "." + methodName + "("
+            + finderArguments + ").setFirstResult((pageNo - 1) * sizeNo).setMaxResults(sizeNo).getResultList();");
+        appendNewPage(bodyBuilder);
+        bodyBuilder.appendFormalLine("result.put(\"" + PAGE_TOTAL_COUNT + "\", Long.valueOf(" + getFinderCountMethodName(finderMethod) + "(" + finderArguments
+            + ")));");
+        bodyBuilder.appendFormalLine("result.put(\"" + PAGE_INDEX + "\", Integer.valueOf(pageNo));");
+        bodyBuilder.appendFormalLine("return result;");
+
+        return new MethodMetadataBuilder(getId(), Modifier.PUBLIC, methodName, getPageType(), paramTypes, paramNames, bodyBuilder).build();
+    }
+
+    private MethodMetadata getFinderCountMethod(MethodMetadata finderMethod, String countQuery) {
+        JavaSymbolName methodName = getFinderCountMethodName(finderMethod);
+
+        MethodMetadata method = methodExists(methodName);
+        if (method != null) {
+            return method;
+        }
+
+        ImportRegistrationResolver resolver = this.builder.getImportRegistrationResolver();
+        List<JavaType> countTypeParams = new ArrayList<JavaType>();
+        countTypeParams.add(JavaType.LONG_OBJECT);
+        String countQueryType = new JavaType("javax.persistence.TypedQuery", 0, DataType.TYPE, null, countTypeParams).getNameIncludingTypeParameters(false,
+            resolver);
+        String parameterType = new JavaType("javax.persistence.Parameter", 0, DataType.TYPE, null, null).getNameIncludingTypeParameters(false, resolver);
+
+        InvocableMemberBodyBuilder bodyBuilder = new InvocableMemberBodyBuilder();
+        bodyBuilder.appendFormalLine(countQueryType + " query = " + getEntityManagerExpression() + ".createQuery(\""
+            + countQuery.replace("\\", "\\\\").replace("\"", "\\\"") + "\", Long.class);");
+        // The finder validates and prepares its arguments (wildcards for LIKE, for instance), so its parameters are
+        // copied over rather than bound again here
+        bodyBuilder.appendFormalLine(finderMethod.getReturnType().getNameIncludingTypeParameters(false, resolver) + " finder = "
+            + this.entity.getNameIncludingTypeParameters(false, resolver) + "." + finderMethod.getMethodName() + "("
+            + StringUtils.collectionToCommaDelimitedString(finderMethod.getParameterNames()) + ");");
+        bodyBuilder.appendFormalLine("for (" + parameterType + "<?> parameter : finder.getParameters()) {");
+        bodyBuilder.indent();
+        bodyBuilder.appendFormalLine("query.setParameter(parameter.getName(), finder.getParameterValue(parameter.getName()));");
+        bodyBuilder.indentRemove();
+        bodyBuilder.appendFormalLine("}");
+        bodyBuilder.appendFormalLine("return query.getSingleResult().longValue();");
+
+        return new MethodMetadataBuilder(getId(), Modifier.PUBLIC, methodName, JavaType.LONG_PRIMITIVE, finderMethod.getParameterTypes(),
+            finderMethod.getParameterNames(), bodyBuilder).build();
+    }
+
+    private JavaSymbolName getFinderCountMethodName(MethodMetadata finderMethod) {
+        String finderName = finderMethod.getMethodName().getSymbolName();
+        return new JavaSymbolName("count" + (finderName.startsWith("find") ? finderName.substring("find".length()) : StringUtils.capitalize(finderName)));
+    }
+
+    private boolean hasCollectionParameter(MethodMetadata finderMethod) {
+        for (AnnotatedJavaType paramType : finderMethod.getParameterTypes()) {
+            if (paramType.getJavaType().isCommonCollectionType()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Derives the query counting the results of a dynamic finder from the finder's own query.
+     * 
+     * @param finderQuery the JPA query of the finder, as generated by Roo
+     * @return the count query, or null if the finder query does not have the expected shape
+     */
+    static String getCountQuery(String finderQuery) {
+        if (!StringUtils.hasText(finderQuery)) {
+            return null;
+        }
+        Matcher select = FINDER_SELECT.matcher(finderQuery);
+        if (!select.lookingAt()) {
+            return null;
+        }
+        String countQuery = "SELECT COUNT(" + select.group(1) + ") FROM " + finderQuery.substring(select.end());
+        Matcher orderBy = FINDER_ORDER_BY.matcher(countQuery);
+        if (orderBy.find()) {
+            countQuery = countQuery.substring(0, orderBy.start());
+        }
+        return countQuery.trim();
+    }
+
+    private JavaType getFiltersType() {
+        List<JavaType> filterTypeParams = new ArrayList<JavaType>();
+        filterTypeParams.add(JavaType.STRING_OBJECT);
+        filterTypeParams.add(new JavaType("java.lang.Object"));
+        List<JavaType> typeParams = new ArrayList<JavaType>();
+        typeParams.add(new JavaType("java.util.Map", 0, DataType.TYPE, null, filterTypeParams));
+        return new JavaType("java.util.List", 0, DataType.TYPE, null, typeParams);
+    }
+
+    private JavaType getPageType() {
+        List<JavaType> typeParams = new ArrayList<JavaType>();
+        typeParams.add(JavaType.STRING_OBJECT);
+        typeParams.add(new JavaType("java.lang.Object"));
+        return new JavaType("java.util.Map", 0, DataType.TYPE, null, typeParams);
+    }
+
+    private String getItemsTypeName() {
+        List<JavaType> typeParams = new ArrayList<JavaType>();
+        typeParams.add(this.entity);
+        return new JavaType("java.util.List", 0, DataType.TYPE, null, typeParams).getNameIncludingTypeParameters(false,
+            this.builder.getImportRegistrationResolver());
+    }
+
+    private String getEntityManagerExpression() {
+        return this.entity.getNameIncludingTypeParameters(false, this.builder.getImportRegistrationResolver()) + "."
+            + this.entityMetadata.getEntityManagerMethod().getMethodName() + "()";
+    }
+
+    private static JavaType getObjectType(JavaType type) {
+        if (type.isPrimitive()) {
+            return new JavaType(type.getFullyQualifiedTypeName());
+        }
+        return type;
+    }
+
+    private void appendPageSize(InvocableMemberBodyBuilder bodyBuilder) {
+        bodyBuilder.appendFormalLine("int sizeNo = size == null || size.intValue() < 1 ? " + DEFAULT_PAGE_SIZE + " : Math.min(size.intValue(), "
+            + MAX_PAGE_SIZE + ");");
+    }
+
+    private void appendCriteriaQuery(InvocableMemberBodyBuilder bodyBuilder) {
+        ImportRegistrationResolver resolver = this.builder.getImportRegistrationResolver();
+        String entityName = this.entity.getNameIncludingTypeParameters(false, resolver);
+        List<JavaType> typeParams = new ArrayList<JavaType>();
+        typeParams.add(this.entity);
+
+        bodyBuilder.appendFormalLine(new JavaType("javax.persistence.criteria.CriteriaBuilder").getNameIncludingTypeParameters(false, resolver)
+            + " criteriaBuilder = " + getEntityManagerExpression() + ".getCriteriaBuilder();");
+        bodyBuilder.appendFormalLine(new JavaType("javax.persistence.criteria.CriteriaQuery", 0, DataType.TYPE, null, typeParams).getNameIncludingTypeParameters(
+            false, resolver) + " query = criteriaBuilder.createQuery(" + entityName + ".class);");
+        bodyBuilder.appendFormalLine(new JavaType("javax.persistence.criteria.Root", 0, DataType.TYPE, null, typeParams).getNameIncludingTypeParameters(false,
+            resolver) + " root = query.from(" + entityName + ".class);");
+        bodyBuilder.appendFormalLine("query.select(root);");
+    }
+
+    private void appendNewPage(InvocableMemberBodyBuilder bodyBuilder) {
+        ImportRegistrationResolver resolver = this.builder.getImportRegistrationResolver();
+        List<JavaType> typeParams = new ArrayList<JavaType>();
+        typeParams.add(JavaType.STRING_OBJECT);
+        typeParams.add(new JavaType("java.lang.Object"));
+
+        bodyBuilder.appendFormalLine(getPageType().getNameIncludingTypeParameters(false, resolver) + " result = new "
+            + new JavaType("java.util.LinkedHashMap", 0, DataType.TYPE, null, typeParams).getNameIncludingTypeParameters(false, resolver) + "();");
+        bodyBuilder.appendFormalLine("result.put(\"" + PAGE_ITEMS + "\", items);");
+        bodyBuilder.appendFormalLine("result.put(\"" + PAGE_SIZE + "\", Integer.valueOf(sizeNo));");
+    }
+
     private MethodMetadata getShowMethod() {
         JavaSymbolName methodName = new JavaSymbolName("show");
 
@@ -278,6 +937,232 @@ public class FlexScaffoldMetadata extends AbstractItdTypeDetailsProvidingMetadat
         return new MethodMetadataBuilder(getId(), Modifier.PUBLIC, methodName, this.entity, paramTypes, paramNames, bodyBuilder).build();
     }
 
+    /**
+     * Selects the field that {@code listAfter} pages by.
+     * 
+     * @param keysetFieldName the configured keyset field, if any
+     * @param entity the entity being paged
+     * @param fields the fields of the entity
+     * @param identifierField the identifier of the entity
+     * @return the configured keyset field, or the identifier if none is configured or the configured field cannot be
+     * used as a key
+     */
+    static FieldMetadata getKeysetField(String keysetFieldName, JavaType entity, List<FieldMetadata> fields, FieldMetadata identifierField) {
+        if (!StringUtils.hasText(keysetFieldName)) {
+            return identifierField;
+        }
+        JavaSymbolName fieldName = new JavaSymbolName(keysetFieldName);
+        for (FieldMetadata field : fields) {
+            if (field.getFieldName().equals(fieldName)) {
+                if (isKeysetType(field.getFieldType())) {
+                    return field;
+                }
+                logger.warning("Keyset field '" + fieldName + "' of " + entity.getFullyQualifiedTypeName()
+                    + " is not of a simple comparable type; paging by the identifier instead");
+                return identifierField;
+            }
+        }
+        logger.warning("Keyset field '" + fieldName + "' is not a field of " + entity.getFullyQualifiedTypeName()
+            + "; paging by the identifier instead");
+        return identifierField;
+    }
+
+    /**
+     * Appends the restriction and ordering of {@code listAfter} to the criteria query over {@code root}, so that it
+     * returns the entities following the {@code afterKey} and, unless paging by the identifier, {@code afterId}
+     * parameters.
+     * 
+     * @param bodyBuilder the body of {@code listAfter}, which has declared the query
+     * @param keysetField the field paged by
+     * @param identifierField the identifier of the entity
+     * @param resolver the resolver of the types named in the body
+     */
+    static void appendKeysetRestriction(InvocableMemberBodyBuilder bodyBuilder, FieldMetadata keysetField, FieldMetadata identifierField,
+        ImportRegistrationResolver resolver) {
+        String keyPath = "root.<" + getObjectType(keysetField.getFieldType()).getNameIncludingTypeParameters(false, resolver) + ">get(\""
+            + keysetField.getFieldName().getSymbolName() + "\")";
+        String identifierPath = "root.<" + getObjectType(identifierField.getFieldType()).getNameIncludingTypeParameters(false, resolver) + ">get(\""
+            + identifierField.getFieldName().getSymbolName() + "\")";
+
+        if (isTieBreakRequired(keysetField, identifierField)) {
+            bodyBuilder.appendFormalLine("if (afterKey != null && afterId != null) {");
+            bodyBuilder.indent();
+            bodyBuilder.appendFormalLine("query.where(criteriaBuilder.or(criteriaBuilder.greaterThan(" + keyPath + ", afterKey),");
+            bodyBuilder.appendFormalLine("    criteriaBuilder.and(criteriaBuilder.equal(" + keyPath + ", afterKey), criteriaBuilder.greaterThan(" + identifierPath
+                + ", afterId))));");
+            bodyBuilder.indentRemove();
+            bodyBuilder.appendFormalLine("} else if (afterKey != null) {");
+            bodyBuilder.indent();
+            // Without an identifier the page starts at the first entity with the key, rather than skipping all of them
+            bodyBuilder.appendFormalLine("query.where(criteriaBuilder.greaterThanOrEqualTo(" + keyPath + ", afterKey));");
+            bodyBuilder.indentRemove();
+            bodyBuilder.appendFormalLine("}");
+            bodyBuilder.appendFormalLine("query.orderBy(criteriaBuilder.asc(" + keyPath + "), criteriaBuilder.asc(" + identifierPath + "));");
+        } else {
+            bodyBuilder.appendFormalLine("if (afterKey != null) {");
+            bodyBuilder.indent();
+            bodyBuilder.appendFormalLine("query.where(criteriaBuilder.greaterThan(" + keyPath + ", afterKey));");
+            bodyBuilder.indentRemove();
+            bodyBuilder.appendFormalLine("}");
+            bodyBuilder.appendFormalLine("query.orderBy(criteriaBuilder.asc(" + keyPath + "));");
+        }
+    }
+
+    /**
+     * Keys other than the identifier are compared with the identifier as a tie-breaker, so that a page boundary never
+     * falls between two entities sharing the same key value.
+     */
+    private static boolean isTieBreakRequired(FieldMetadata keysetField, FieldMetadata identifierField) {
+        return !keysetField.getFieldName().equals(identifierField.getFieldName());
+    }
+
+    static boolean isKeysetType(JavaType fieldType) {
+        if (fieldType.getArray() > 0 || (fieldType.getParameters() != null && !fieldType.getParameters().isEmpty())) {
+            return false;
+        }
+        return KEYSET_TYPES.contains(getObjectType(fieldType).getFullyQualifiedTypeName());
+    }
+
+    private MethodMetadata getCreateAllMethod() {
+        JavaSymbolName methodName = new JavaSymbolName("createAll");
+
+        MethodMetadata method = methodExists(methodName);
+        if (method != null) {
+            return method;
+        }
+
+        InvocableMemberBodyBuilder bodyBuilder = new InvocableMemberBodyBuilder();
+        appendBatchLoopStart(bodyBuilder);
+        bodyBuilder.appendFormalLine(this.entityReference + "." + this.entityMetadata.getPersistMethod().getMethodName() + "();");
+        bodyBuilder.appendFormalLine("results.add(" + this.entityReference + ");");
+        appendBatchLoopEnd(bodyBuilder);
+
+        return getBatchMethod(methodName, bodyBuilder);
+    }
+
+    private MethodMetadata getUpdateAllMethod() {
+        JavaSymbolName methodName = new JavaSymbolName("updateAll");
+
+        MethodMetadata method = methodExists(methodName);
+        if (method != null) {
+            return method;
+        }
+
+        InvocableMemberBodyBuilder bodyBuilder = new InvocableMemberBodyBuilder();
+        appendBatchLoopStart(bodyBuilder);
+        bodyBuilder.appendFormalLine("results.add(" + this.entityReference + "." + this.entityMetadata.getMergeMethod().getMethodName() + "());");
+        appendBatchLoopEnd(bodyBuilder);
+
+        return getBatchMethod(methodName, bodyBuilder);
+    }
+
+    private MethodMetadata getRemoveAllMethod() {
+        JavaSymbolName methodName = new JavaSymbolName("removeAll");
+
+        MethodMetadata method = methodExists(methodName);
+        if (method != null) {
+            return method;
+        }
+
+        FieldMetadata identifierField = this.entityMetadata.getIdentifierField();
+        JavaType identifierType = getObjectType(identifierField.getFieldType());
+        String identifierName = identifierField.getFieldName().getSymbolName();
+        // AMF delivers ActionScript Numbers as Doubles whatever the identifier type, so the list is taken untyped and
+        // each element converted before the lookup
+        List<JavaType> identifierTypeParams = new ArrayList<JavaType>();
+        identifierTypeParams.add(new JavaType("java.lang.Object"));
+        List<JavaType> resultTypeParams = new ArrayList<JavaType>();
+        resultTypeParams.add(JavaType.BOOLEAN_OBJECT);
+        ImportRegistrationResolver resolver = this.builder.getImportRegistrationResolver();
+        String identifierTypeName = identifierType.getNameIncludingTypeParameters(false, resolver);
+
+        // Identifiers that no longer match an entity are reported back rather than failing the whole batch, as they
+        // are most likely entities another client has removed already
+        InvocableMemberBodyBuilder bodyBuilder = new InvocableMemberBodyBuilder();
+        bodyBuilder.appendFormalLine("if (" + identifierName + "s == null) throw new IllegalArgumentException(\"A list of identifiers is required\");");
+        bodyBuilder.appendFormalLine(new JavaType("java.util.List", 0, DataType.TYPE, null, resultTypeParams).getNameIncludingTypeParameters(false, resolver)
+            + " results = new " + new JavaType("java.util.ArrayList", 0, DataType.TYPE, null, resultTypeParams).getNameIncludingTypeParameters(false, resolver)
+            + "(" + identifierName + "s.size());");
+        bodyBuilder.appendFormalLine("for (Object " + identifierName + "Value : " + identifierName + "s) {");
+        bodyBuilder.indent();
+        bodyBuilder.appendFormalLine(identifierTypeName + " " + identifierName + " = (" + identifierTypeName + ") convertFilterValue(" + identifierName
+            + "Value, " + identifierTypeName + ".class);");
+        bodyBuilder.appendFormalLine(this.entity.getNameIncludingTypeParameters(false, resolver) + " " + this.entityReference + " = " + identifierName
+            + " == null ? null : " + this.entity.getNameIncludingTypeParameters(false, resolver) + "." + this.entityMetadata.getFindMethod().getMethodName()
+            + "(" + identifierName + ");");
+        bodyBuilder.appendFormalLine("if (" + this.entityReference + " != null) " + this.entityReference + "."
+            + this.entityMetadata.getRemoveMethod().getMethodName() + "();");
+        bodyBuilder.appendFormalLine("results.add(Boolean.valueOf(" + this.entityReference + " != null));");
+        appendBatchLoopEnd(bodyBuilder);
+
+        List<AnnotatedJavaType> paramTypes = new ArrayList<AnnotatedJavaType>();
+        paramTypes.add(new AnnotatedJavaType(new JavaType("java.util.List", 0, DataType.TYPE, null, identifierTypeParams), null));
+
+        List<JavaSymbolName> paramNames = new ArrayList<JavaSymbolName>();
+        paramNames.add(new JavaSymbolName(identifierName + "s"));
+
+        MethodMetadataBuilder methodBuilder = new MethodMetadataBuilder(getId(), Modifier.PUBLIC, methodName, new JavaType("java.util.List", 0,
+            DataType.TYPE, null, resultTypeParams), paramTypes, paramNames, bodyBuilder);
+        methodBuilder.addAnnotation(new AnnotationMetadataBuilder(TRANSACTIONAL, new ArrayList<AnnotationAttributeValue<?>>()));
+        return methodBuilder.build();
+    }
+
+    private MethodMetadata getBatchMethod(JavaSymbolName methodName, InvocableMemberBodyBuilder bodyBuilder) {
+        List<AnnotatedJavaType> paramTypes = new ArrayList<AnnotatedJavaType>();
+        paramTypes.add(new AnnotatedJavaType(getEntitiesType(), null));
+
+        List<JavaSymbolName> paramNames = new ArrayList<JavaSymbolName>();
+        paramNames.add(new JavaSymbolName(getEntitiesReference()));
+
+        // Batch methods run in a single transaction, so that a failing item rolls back the whole request and the
+        // client never has to work out which of its items were written
+        MethodMetadataBuilder methodBuilder = new MethodMetadataBuilder(getId(), Modifier.PUBLIC, methodName, getEntitiesType(), paramTypes, paramNames,
+            bodyBuilder);
+        methodBuilder.addAnnotation(new AnnotationMetadataBuilder(TRANSACTIONAL, new ArrayList<AnnotationAttributeValue<?>>()));
+        return methodBuilder.build();
+    }
+
+    private void appendBatchLoopStart(InvocableMemberBodyBuilder bodyBuilder) {
+        ImportRegistrationResolver resolver = this.builder.getImportRegistrationResolver();
+        String entitiesReference = getEntitiesReference();
+        List<JavaType> typeParams = new ArrayList<JavaType>();
+        typeParams.add(this.entity);
+
+        bodyBuilder.appendFormalLine("if (" + entitiesReference + " == null) throw new IllegalArgumentException(\"A list of " + entitiesReference
+            + " is required\");");
+        bodyBuilder.appendFormalLine(getItemsTypeName() + " results = new "
+            + new JavaType("java.util.ArrayList", 0, DataType.TYPE, null, typeParams).getNameIncludingTypeParameters(false, resolver) + "("
+            + entitiesReference + ".size());");
+        bodyBuilder.appendFormalLine("for (" + this.entity.getNameIncludingTypeParameters(false, resolver) + " " + this.entityReference + " : "
+            + entitiesReference + ") {");
+        bodyBuilder.indent();
+        bodyBuilder.appendFormalLine("if (" + this.entityReference + " == null) throw new IllegalArgumentException(\"A " + this.entityReference
+            + " is required\");");
+    }
+
+    private void appendBatchLoopEnd(InvocableMemberBodyBuilder bodyBuilder) {
+        bodyBuilder.appendFormalLine("if (results.size() % " + BATCH_SIZE + " == 0) {");
+        bodyBuilder.indent();
+        bodyBuilder.appendFormalLine(getEntityManagerExpression() + ".flush();");
+        bodyBuilder.appendFormalLine(getEntityManagerExpression() + ".clear();");
+        bodyBuilder.indentRemove();
+        bodyBuilder.appendFormalLine("}");
+        bodyBuilder.indentRemove();
+        bodyBuilder.appendFormalLine("}");
+        bodyBuilder.appendFormalLine("return results;");
+    }
+
+    private JavaType getEntitiesType() {
+        List<JavaType> typeParams = new ArrayList<JavaType>();
+        typeParams.add(this.entity);
+        return new JavaType("java.util.List", 0, DataType.TYPE, null, typeParams);
+    }
+
+    private String getEntitiesReference() {
+        String entitiesReference = StringUtils.uncapitalize(this.entityMetadata.getPlural());
+        return entitiesReference.equals(this.entityReference) ? entitiesReference + "List" : entitiesReference;
+    }
+
     private MethodMetadata methodExists(JavaSymbolName methodName) {
         // We have no access to method parameter information, so we scan by name alone and treat any match as
         // authoritative
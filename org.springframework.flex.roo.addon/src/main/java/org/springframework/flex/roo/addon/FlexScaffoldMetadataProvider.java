@@ -16,19 +16,27 @@
 
 package org.springframework.flex.roo.addon;
 
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
 import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.Reference;
 import org.apache.felix.scr.annotations.Service;
 import org.osgi.service.component.ComponentContext;
+import org.springframework.flex.roo.addon.entity.ExternalizableEntityMetadata;
 import org.springframework.roo.addon.entity.EntityMetadata;
+import org.springframework.roo.addon.finder.DynamicFinderServices;
+import org.springframework.roo.addon.finder.QueryHolder;
+import org.springframework.roo.addon.web.mvc.controller.details.FinderMetadataDetails;
 import org.springframework.roo.addon.web.mvc.controller.details.WebMetadataService;
 import org.springframework.roo.classpath.PhysicalTypeIdentifier;
 import org.springframework.roo.classpath.PhysicalTypeMetadata;
-import org.springframework.roo.classpath.details.ClassOrInterfaceTypeDetails;
 import org.springframework.roo.classpath.itd.AbstractItdMetadataProvider;
 import org.springframework.roo.classpath.itd.ItdTypeDetailsProvidingMetadataItem;
 import org.springframework.roo.classpath.scanner.MemberDetails;
 import org.springframework.roo.metadata.MetadataProvider;
+import org.springframework.roo.model.JavaSymbolName;
 import org.springframework.roo.model.JavaType;
 import org.springframework.roo.project.Path;
 import org.springframework.roo.support.util.Assert;
@@ -44,6 +52,10 @@ public class FlexScaffoldMetadataProvider extends AbstractItdMetadataProvider {
 
     @Reference private WebMetadataService webMetadataService;
 
+    @Reference private EntityMemberDetailsCache memberDetailsCache;
+
+    @Reference private DynamicFinderServices dynamicFinderServices;
+
     protected void activate(ComponentContext context) {
         this.metadataDependencyRegistry.registerDependency(PhysicalTypeIdentifier.getMetadataIdentiferType(), getProvidesType());
         addMetadataTrigger(new JavaType(RooFlexScaffold.class.getName()));
@@ -86,14 +98,43 @@ public class FlexScaffoldMetadataProvider extends AbstractItdMetadataProvider {
 
         // We need to be informed if our dependent metadata changes
         this.metadataDependencyRegistry.registerDependency(entityMetadataKey, metadataIdentificationString);
+
+        // The entity's serialization is generated on behalf of its destinations, which it looks up as its upstream
+        // dependencies, so it has to be produced again whenever a destination might have opted in or out
+        String externalizableMetadataKey = ExternalizableEntityMetadata.createIdentifier(entityType, path);
+        this.metadataDependencyRegistry.registerDependency(metadataIdentificationString, externalizableMetadataKey);
+        this.metadataService.evictAndGet(externalizableMetadataKey);
         
-        PhysicalTypeMetadata entityPhysicalTypeMetadata = (PhysicalTypeMetadata) metadataService.get(PhysicalTypeIdentifier.createIdentifier(entityType, path));
-        Assert.notNull(entityPhysicalTypeMetadata, "Unable to obtain physical type metdata for type " + entityType.getFullyQualifiedTypeName());
-        ClassOrInterfaceTypeDetails entityClassOrInterfaceDetails = (ClassOrInterfaceTypeDetails) entityPhysicalTypeMetadata.getMemberHoldingTypeDetails();
-        MemberDetails entityMemberDetails = memberDetailsScanner.getMemberDetails(getClass().getName(), entityClassOrInterfaceDetails);
+        // Shared with the UI and ActionScript providers, so that each entity is only scanned once per change
+        MemberDetails entityMemberDetails = this.memberDetailsCache.getMemberDetails(entityType);
+        Assert.notNull(entityMemberDetails, "Unable to obtain physical type metdata for type " + entityType.getFullyQualifiedTypeName());
+
+        Set<FinderMetadataDetails> dynamicFinderMethods = this.webMetadataService.getDynamicFinderMethodsAndFields(entityType, entityMemberDetails,
+            metadataIdentificationString);
 
         return new FlexScaffoldMetadata(metadataIdentificationString, aspectName, governorPhysicalTypeMetadata, annotationValues, entityMetadata,
-            webMetadataService.getDynamicFinderMethodsAndFields(entityType, entityMemberDetails, metadataIdentificationString));
+            entityMemberDetails, dynamicFinderMethods, getFinderQueries(entityMetadata, entityMemberDetails, dynamicFinderMethods));
+    }
+
+    /**
+     * The JPA queries behind the entity's dynamic finders, keyed by finder name, from which the paged finder methods
+     * derive their count queries
+     */
+    private Map<JavaSymbolName, String> getFinderQueries(EntityMetadata entityMetadata, MemberDetails entityMemberDetails,
+        Set<FinderMetadataDetails> dynamicFinderMethods) {
+        Map<JavaSymbolName, String> finderQueries = new HashMap<JavaSymbolName, String>();
+        if (dynamicFinderMethods == null) {
+            return finderQueries;
+        }
+        for (FinderMetadataDetails finder : dynamicFinderMethods) {
+            JavaSymbolName finderName = finder.getFinderMethodMetadata().getMethodName();
+            QueryHolder queryHolder = this.dynamicFinderServices.getQueryHolder(entityMemberDetails, finderName, entityMetadata.getPlural(),
+                entityMetadata.getEntityName());
+            if (queryHolder != null) {
+                finderQueries.put(finderName, queryHolder.getJpaQuery());
+            }
+        }
+        return finderQueries;
     }
 
     public String getItdUniquenessFilenameSuffix() {
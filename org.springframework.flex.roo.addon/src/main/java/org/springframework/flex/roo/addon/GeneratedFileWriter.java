@@ -0,0 +1,99 @@
+/*
+ * Copyright 2002-2010 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.flex.roo.addon;
+
+import java.io.InputStream;
+
+/**
+ * Writes the text files generated by the Flex add-on, optionally staging them in memory so that all of the files
+ * touched while reacting to a single change are written together.
+ *
+ * <p>
+ * Batches may be nested. Files written while a batch is active are only written to disk once the outermost batch is
+ * committed, and files whose contents would not change are never written at all. Reads made through this writer see
+ * staged contents.
+ *
+ * @author Jeremy Grelle
+ */
+public interface GeneratedFileWriter {
+
+    /**
+     * Starts a batch, or joins the batch that is already active.
+     */
+    void beginBatch();
+
+    /**
+     * Ends the current batch. If it is the outermost batch, all staged files are written to disk in a single pass,
+     * unless any batch was rolled back.
+     */
+    void commitBatch();
+
+    /**
+     * Ends the current batch and causes the outermost batch to discard all staged files.
+     */
+    void rollbackBatch();
+
+    boolean isBatchActive();
+
+    /**
+     * Creates or updates a text file. Changes are staged if a batch is active, and written immediately otherwise.
+     * 
+     * @param fileIdentifier the canonical path of the file (required)
+     * @param contents the new contents of the file (required)
+     */
+    void writeTextFile(String fileIdentifier, String contents);
+
+    /**
+     * Creates or updates a text file, optionally writing it immediately even if a batch is active (for example, a new
+     * file that must be readable straight away). Any contents already staged for the file are replaced.
+     * 
+     * @param fileIdentifier the canonical path of the file (required)
+     * @param contents the new contents of the file (required)
+     * @param immediate whether to bypass any active batch
+     */
+    void writeTextFile(String fileIdentifier, String contents, boolean immediate);
+
+    /**
+     * Records the current contents of a file that the add-on has written by other means, such as through Roo's Java
+     * type details, so that {@link #isUnchangedSinceWritten(String)} recognizes it.
+     * 
+     * @param fileIdentifier the canonical path of the file (required)
+     */
+    void recordWrite(String fileIdentifier);
+
+    /**
+     * Indicates whether a file still holds exactly the contents last written by the add-on, meaning that a change
+     * notification for it is an echo of the add-on's own write.
+     * 
+     * @param fileIdentifier the canonical path of the file (required)
+     * @return true if the contents on disk match the last recorded write
+     */
+    boolean isUnchangedSinceWritten(String fileIdentifier);
+
+    /**
+     * @param fileIdentifier the canonical path of the file (required)
+     * @return true if the file exists on disk or has been staged in the current batch
+     */
+    boolean exists(String fileIdentifier);
+
+    /**
+     * @param fileIdentifier the canonical path of the file (required)
+     * @return the staged contents of the file if there are any, and its contents on disk otherwise
+     */
+    InputStream getInputStream(String fileIdentifier);
+
+}
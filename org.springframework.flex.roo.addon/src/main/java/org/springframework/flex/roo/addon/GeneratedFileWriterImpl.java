@@ -0,0 +1,206 @@
+/*
+ * Copyright 2002-2010 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.flex.roo.addon;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.apache.felix.scr.annotations.Component;
+import org.apache.felix.scr.annotations.Reference;
+import org.apache.felix.scr.annotations.Service;
+import org.springframework.roo.process.manager.FileManager;
+import org.springframework.roo.support.logging.HandlerUtils;
+import org.springframework.roo.support.util.Assert;
+import org.springframework.roo.support.util.FileCopyUtils;
+
+/**
+ * Default implementation of {@link GeneratedFileWriter}, writing through the Roo {@link FileManager}.
+ *
+ * @author Jeremy Grelle
+ */
+@Component
+@Service
+public class GeneratedFileWriterImpl implements GeneratedFileWriter {
+
+    private static final Logger logger = HandlerUtils.getLogger(GeneratedFileWriterImpl.class);
+
+    private static final String FINGERPRINT_ALGORITHM = "MD5";
+
+    @Reference
+    private FileManager fileManager;
+
+    private final Map<String, String> stagedFiles = new LinkedHashMap<String, String>();
+
+    // canonical path -> fingerprint of the contents last written by the add-on
+    private final Map<String, String> writtenFingerprints = new HashMap<String, String>();
+
+    private int depth = 0;
+
+    private boolean rollbackOnly = false;
+
+    public synchronized void beginBatch() {
+        this.depth++;
+    }
+
+    public synchronized void commitBatch() {
+        Assert.isTrue(this.depth > 0, "No batch is active");
+        if (--this.depth == 0) {
+            if (this.rollbackOnly) {
+                discard();
+            } else {
+                flush();
+            }
+        }
+    }
+
+    public synchronized void rollbackBatch() {
+        Assert.isTrue(this.depth > 0, "No batch is active");
+        this.rollbackOnly = true;
+        if (--this.depth == 0) {
+            discard();
+        }
+    }
+
+    public synchronized boolean isBatchActive() {
+        return this.depth > 0;
+    }
+
+    public void writeTextFile(String fileIdentifier, String contents) {
+        writeTextFile(fileIdentifier, contents, false);
+    }
+
+    public synchronized void writeTextFile(String fileIdentifier, String contents, boolean immediate) {
+        Assert.hasText(fileIdentifier, "File identifier required");
+        Assert.notNull(contents, "Contents required");
+        if (this.depth > 0 && !immediate) {
+            this.stagedFiles.put(fileIdentifier, contents);
+        } else {
+            this.stagedFiles.remove(fileIdentifier);
+            write(fileIdentifier, contents);
+        }
+    }
+
+    public synchronized void recordWrite(String fileIdentifier) {
+        Assert.hasText(fileIdentifier, "File identifier required");
+        String fingerprint = readFingerprint(fileIdentifier);
+        if (fingerprint == null) {
+            this.writtenFingerprints.remove(fileIdentifier);
+        } else {
+            this.writtenFingerprints.put(fileIdentifier, fingerprint);
+        }
+    }
+
+    public synchronized boolean isUnchangedSinceWritten(String fileIdentifier) {
+        String written = this.writtenFingerprints.get(fileIdentifier);
+        return written != null && written.equals(readFingerprint(fileIdentifier));
+    }
+
+    public synchronized boolean exists(String fileIdentifier) {
+        return this.stagedFiles.containsKey(fileIdentifier) || this.fileManager.exists(fileIdentifier);
+    }
+
+    public synchronized InputStream getInputStream(String fileIdentifier) {
+        String staged = this.stagedFiles.get(fileIdentifier);
+        if (staged != null) {
+            return new ByteArrayInputStream(staged.getBytes());
+        }
+        return this.fileManager.getInputStream(fileIdentifier);
+    }
+
+    private void flush() {
+        int written = 0;
+        try {
+            for (Map.Entry<String, String> entry : this.stagedFiles.entrySet()) {
+                if (write(entry.getKey(), entry.getValue())) {
+                    written++;
+                }
+            }
+            if (logger.isLoggable(Level.FINE)) {
+                logger.fine("Wrote " + written + " of " + this.stagedFiles.size() + " staged files");
+            }
+        } finally {
+            this.stagedFiles.clear();
+        }
+    }
+
+    private boolean write(String fileIdentifier, String contents) {
+        boolean changed = !isUnchanged(fileIdentifier, contents);
+        if (changed) {
+            this.fileManager.createOrUpdateTextFileIfRequired(fileIdentifier, contents, true);
+        }
+        this.writtenFingerprints.put(fileIdentifier, fingerprint(contents.getBytes()));
+        return changed;
+    }
+
+    private void discard() {
+        if (logger.isLoggable(Level.FINE)) {
+            logger.fine("Discarded " + this.stagedFiles.size() + " staged files");
+        }
+        this.stagedFiles.clear();
+        this.rollbackOnly = false;
+    }
+
+    private String readFingerprint(String fileIdentifier) {
+        if (!this.fileManager.exists(fileIdentifier)) {
+            return null;
+        }
+        try {
+            return fingerprint(FileCopyUtils.copyToByteArray(this.fileManager.getInputStream(fileIdentifier)));
+        } catch (IOException ioe) {
+            return null;
+        }
+    }
+
+    private static String fingerprint(byte[] contents) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance(FINGERPRINT_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Could not obtain a " + FINGERPRINT_ALGORITHM + " message digest", e);
+        }
+        byte[] bytes = digest.digest(contents);
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            String hex = Integer.toHexString(b & 0xff);
+            if (hex.length() == 1) {
+                sb.append('0');
+            }
+            sb.append(hex);
+        }
+        return sb.toString();
+    }
+
+    private boolean isUnchanged(String fileIdentifier, String contents) {
+        if (!this.fileManager.exists(fileIdentifier)) {
+            return false;
+        }
+        try {
+            return contents.equals(FileCopyUtils.copyToString(new InputStreamReader(this.fileManager.getInputStream(fileIdentifier))));
+        } catch (IOException ioe) {
+            return false;
+        }
+    }
+}
@@ -31,4 +31,18 @@ import java.lang.annotation.Target;
 public @interface RooFlexScaffold {
 
     Class<?> entity();
+
+    /**
+     * @return whether the entity and its ActionScript mirror should serialize their properties themselves, in a fixed
+     * order and without the property names, rather than being serialized by reflection; always the case for an
+     * entity with a {@link RooFlexTransient} property
+     */
+    boolean externalizable() default false;
+
+    /**
+     * @return the entity field that the generated {@code listAfter} method pages by, which should be indexed and
+     * non-null, and be a String, number, character or date; defaults to the entity's identifier, which is also used
+     * if the field is not found or not of one of those types
+     */
+    String keysetField() default "";
 }
@@ -0,0 +1,35 @@
+/*
+ * Copyright 2002-2010 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.flex.roo.addon;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Indicates an entity property that should not be exchanged with Flex clients. The corresponding field of the
+ * ActionScript mirror is marked <code>[Transient]</code>, and vice versa, and the property is left out of externalized
+ * entities and scaffolded views. As reflective serialization would still send the property, an entity with a transient
+ * property is always externalized, as if scaffolded with {@link RooFlexScaffold#externalizable()}.
+ *
+ * @author Jeremy Grelle
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.FIELD)
+public @interface RooFlexTransient {
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2002-2010 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.flex.roo.addon;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.roo.support.util.Assert;
+
+/**
+ * Records how long each stage of a multi-stage operation took, for reporting in the shell.
+ *
+ * <p>
+ * Stages are reported in the order they were first recorded. Recording the same stage again adds to its time.
+ *
+ * @author Jeremy Grelle
+ */
+public class StageTimings {
+
+    private final long startNanos = System.nanoTime();
+
+    private final Map<String, Long> stageNanos = new LinkedHashMap<String, Long>();
+
+    /**
+     * Records the time elapsed since the given start time against the given stage.
+     *
+     * @param stage the name of the stage (required)
+     * @param stageStartNanos the {@link System#nanoTime()} at which the stage started
+     */
+    public synchronized void record(String stage, long stageStartNanos) {
+        Assert.hasText(stage, "Stage name required");
+        long elapsed = System.nanoTime() - stageStartNanos;
+        Long previous = this.stageNanos.get(stage);
+        this.stageNanos.put(stage, previous == null ? elapsed : previous + elapsed);
+    }
+
+    /**
+     * @param stage the name of the stage
+     * @return the time recorded against the stage in milliseconds, or zero if it was never recorded
+     */
+    public synchronized long getStageMillis(String stage) {
+        Long nanos = this.stageNanos.get(stage);
+        return nanos == null ? 0 : TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    /**
+     * @return the time elapsed since these timings were created in milliseconds
+     */
+    public long getTotalMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - this.startNanos);
+    }
+
+    @Override
+    public synchronized String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(getTotalMillis()).append(" ms");
+        if (!this.stageNanos.isEmpty()) {
+            sb.append(" (");
+            boolean first = true;
+            for (Map.Entry<String, Long> entry : this.stageNanos.entrySet()) {
+                if (!first) {
+                    sb.append(", ");
+                }
+                sb.append(entry.getKey()).append(": ").append(TimeUnit.NANOSECONDS.toMillis(entry.getValue())).append(" ms");
+                first = false;
+            }
+            sb.append(")");
+        }
+        return sb.toString();
+    }
+}
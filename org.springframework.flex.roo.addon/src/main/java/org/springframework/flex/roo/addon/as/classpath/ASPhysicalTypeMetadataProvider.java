@@ -51,4 +51,22 @@ public interface ASPhysicalTypeMetadataProvider extends MetadataProvider {
      * @return the string (in {@link ASPhysicalTypeIdentifier} format) if found, or null if not found
      */
     String findIdentifier(ActionScriptType actionScriptType);
+
+    /**
+     * Locates the ActionScript type declared with a <code>[RemoteClass(alias="...")]</code> meta tag for the given
+     * alias, regardless of its package or source path. Only types that have been parsed are known; a type's alias is
+     * recorded whenever its metadata is obtained, and forgotten when its file is deleted.
+     * 
+     * @param alias the remote class alias, usually the fully qualified name of a Java type (required)
+     * @return the string (in {@link ASPhysicalTypeIdentifier} format) if found, or null if not found
+     */
+    String findRemoteClassIdentifier(String alias);
+
+    /**
+     * Indicates whether the file monitor has finished its initial scan of every Flex source path, from which point
+     * every ActionScript type on disk has been reported and is known to {@link #findIdentifier(ActionScriptType)}.
+     * 
+     * @return true once the initial scan of the Flex source paths has finished
+     */
+    boolean isSourceScanComplete();
 }
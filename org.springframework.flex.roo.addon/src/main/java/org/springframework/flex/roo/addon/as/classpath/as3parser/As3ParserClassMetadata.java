@@ -16,14 +16,17 @@
 
 package org.springframework.flex.roo.addon.as.classpath.as3parser;
 
+import java.io.File;
 import java.io.FileReader;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import org.springframework.flex.roo.addon.GeneratedFileWriter;
 import org.springframework.flex.roo.addon.as.classpath.ASPhysicalTypeDetails;
 import org.springframework.flex.roo.addon.as.classpath.ASPhysicalTypeIdentifier;
 import org.springframework.flex.roo.addon.as.classpath.ASPhysicalTypeMetadata;
 import org.springframework.flex.roo.addon.as.classpath.ASPhysicalTypeMetadataProvider;
+import org.springframework.flex.roo.addon.as.model.ActionScriptType;
 import org.springframework.roo.metadata.AbstractMetadataItem;
 import org.springframework.roo.metadata.MetadataService;
 import org.springframework.roo.process.manager.ActiveProcessManager;
@@ -53,6 +56,27 @@ public class As3ParserClassMetadata extends AbstractMetadataItem implements ASPh
 
     public As3ParserClassMetadata(FileManager fileManager, String fileIdentifier, String metadataIdentificationString,
         MetadataService metadataService, ASPhysicalTypeMetadataProvider asPhysicalTypeMetadataProvider) {
+        this(fileManager, fileIdentifier, metadataIdentificationString, metadataService, asPhysicalTypeMetadataProvider, null, null);
+    }
+
+    /**
+     * Creates metadata for the given file, using the type index and parse cache (either of which may be null) to avoid
+     * re-parsing files whose contents have not changed.
+     */
+    public As3ParserClassMetadata(FileManager fileManager, String fileIdentifier, String metadataIdentificationString,
+        MetadataService metadataService, ASPhysicalTypeMetadataProvider asPhysicalTypeMetadataProvider, CompilationUnitCache parseCache,
+        TypeDetailsIndex typeIndex) {
+        this(fileManager, fileIdentifier, metadataIdentificationString, metadataService, asPhysicalTypeMetadataProvider, parseCache, typeIndex,
+            null);
+    }
+
+    /**
+     * Creates metadata for the given file whose changes, once committed, are written through the given
+     * {@link GeneratedFileWriter} (which may be null to write directly through the {@link FileManager}).
+     */
+    public As3ParserClassMetadata(FileManager fileManager, String fileIdentifier, String metadataIdentificationString,
+        MetadataService metadataService, ASPhysicalTypeMetadataProvider asPhysicalTypeMetadataProvider, CompilationUnitCache parseCache,
+        TypeDetailsIndex typeIndex, GeneratedFileWriter generatedFileWriter) {
         super(metadataIdentificationString);
         Assert.isTrue(ASPhysicalTypeIdentifier.isValid(metadataIdentificationString), "Metadata identification string '"
             + metadataIdentificationString + "' does not appear to be a valid actionscript type identifier");
@@ -65,12 +89,35 @@ public class As3ParserClassMetadata extends AbstractMetadataItem implements ASPh
 
         try {
             Assert.isTrue(fileManager.exists(fileIdentifier), "Path '" + fileIdentifier + "' must exist");
-            FileReader asFileReader = new FileReader(fileManager.readFile(fileIdentifier).getFile());
-            ASCompilationUnit compilationUnit = asFactory.newParser().parse(asFileReader);
+            File asFile = fileManager.readFile(fileIdentifier).getFile();
+            ActionScriptType actionScriptType = ASPhysicalTypeIdentifier.getActionScriptType(metadataIdentificationString);
+
+            TypeDetailsIndex.IndexedType indexedType = typeIndex != null ? typeIndex.get(fileIdentifier, asFile) : null;
+            if (indexedType != null && metadataIdentificationString.equals(indexedType.getDeclaredByMetadataId())) {
+                As3ParserMutableClassOrInterfaceTypeDetails details = new As3ParserMutableClassOrInterfaceTypeDetails(indexedType, fileManager,
+                    metadataIdentificationString, fileIdentifier, actionScriptType, metadataService, asPhysicalTypeMetadataProvider);
+                details.setGeneratedFileWriter(generatedFileWriter);
+                this.physicalTypeDetails = details;
+                if (logger.isLoggable(Level.FINEST)) {
+                    logger.finest("Loaded '" + metadataIdentificationString + "' from the type index");
+                }
+                return;
+            }
 
-            this.physicalTypeDetails = new As3ParserMutableClassOrInterfaceTypeDetails(compilationUnit, fileManager, metadataIdentificationString,
-                fileIdentifier, ASPhysicalTypeIdentifier.getActionScriptType(metadataIdentificationString), metadataService,
-                asPhysicalTypeMetadataProvider);
+            ASCompilationUnit compilationUnit;
+            if (parseCache != null) {
+                compilationUnit = parseCache.getCompilationUnit(fileIdentifier, asFile);
+            } else {
+                compilationUnit = asFactory.newParser().parse(new FileReader(asFile));
+            }
+
+            As3ParserMutableClassOrInterfaceTypeDetails details = new As3ParserMutableClassOrInterfaceTypeDetails(compilationUnit, fileManager,
+                metadataIdentificationString, fileIdentifier, actionScriptType, metadataService, asPhysicalTypeMetadataProvider, parseCache);
+            details.setGeneratedFileWriter(generatedFileWriter);
+            this.physicalTypeDetails = details;
+            if (typeIndex != null) {
+                typeIndex.put(fileIdentifier, asFile, details);
+            }
 
             if (logger.isLoggable(Level.FINEST)) {
                 logger.finest("Parsed '" + metadataIdentificationString + "'");
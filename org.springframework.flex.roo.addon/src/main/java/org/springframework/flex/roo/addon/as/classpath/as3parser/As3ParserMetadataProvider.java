@@ -17,17 +17,34 @@
 package org.springframework.flex.roo.addon.as.classpath.as3parser;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.Reference;
 import org.apache.felix.scr.annotations.Service;
 import org.osgi.service.component.ComponentContext;
+import org.springframework.flex.roo.addon.GeneratedFileWriter;
 import org.springframework.flex.roo.addon.as.classpath.ASMutablePhysicalTypeMetadataProvider;
 import org.springframework.flex.roo.addon.as.classpath.ASPhysicalTypeCategory;
 import org.springframework.flex.roo.addon.as.classpath.ASPhysicalTypeDetails;
 import org.springframework.flex.roo.addon.as.classpath.ASPhysicalTypeIdentifier;
 import org.springframework.flex.roo.addon.as.classpath.ASPhysicalTypeMetadata;
 import org.springframework.flex.roo.addon.as.classpath.details.ASClassOrInterfaceTypeDetails;
+import org.springframework.flex.roo.addon.as.classpath.details.ASMemberFindingUtils;
 import org.springframework.flex.roo.addon.as.model.ActionScriptType;
 import org.springframework.flex.roo.addon.mojos.FlexPathResolver;
 import org.springframework.roo.file.monitor.event.FileDetails;
@@ -39,7 +56,10 @@ import org.springframework.roo.metadata.MetadataItem;
 import org.springframework.roo.metadata.MetadataService;
 import org.springframework.roo.process.manager.FileManager;
 import org.springframework.roo.project.Path;
+import org.springframework.roo.project.ProjectMetadata;
+import org.springframework.roo.support.logging.HandlerUtils;
 import org.springframework.roo.support.util.Assert;
+import org.springframework.roo.support.util.StringUtils;
 
 /**
  * Parser-based {@link MetadataProvider} for ActionScript source files.
@@ -50,6 +70,42 @@ import org.springframework.roo.support.util.Assert;
 @Service
 public class As3ParserMetadataProvider implements ASMutablePhysicalTypeMetadataProvider, FileEventListener {
 
+    private static final Logger logger = HandlerUtils.getLogger(As3ParserMetadataProvider.class);
+
+    /** Framework property overriding the window, in milliseconds, within which repeated file events are coalesced */
+    public static final String FILE_EVENT_WINDOW_PROPERTY = "flex.roo.fileEventWindow";
+
+    private static final String TYPE_INDEX_LOCATION = "target/roo-flex/as-type-index.bin";
+
+    private final CompilationUnitCache parseCache = new CompilationUnitCache();
+
+    private TypeDetailsIndex typeIndex;
+
+    private FileEventCoalescer eventCoalescer = new FileEventCoalescer();
+
+    // fully qualified type name -> metadata identifier, for every source file seen so far
+    private final Map<String, String> typeIdentifiers = new ConcurrentHashMap<String, String>();
+
+    // RemoteClass alias -> metadata identifier of the ActionScript type declaring it
+    private final Map<String, String> remoteClassIdentifiers = new HashMap<String, String>();
+
+    // metadata identifier -> the RemoteClass alias it declares
+    private final Map<String, String> remoteClassAliases = new HashMap<String, String>();
+
+    // superclass type name -> metadata identifiers of the parsed subclasses waiting for it to appear
+    private final Map<String, Set<String>> pendingSubclasses = new HashMap<String, Set<String>>();
+
+    // metadata identifier of a waiting subclass -> the superclass type name it is waiting for
+    private final Map<String, String> pendingSuperclasses = new HashMap<String, String>();
+
+    // source paths whose files have already been parsed in bulk
+    private final Set<Path> preparsedSourcePaths = new HashSet<Path>();
+
+    // source paths whose initial scan by the file monitor has finished
+    private final Set<Path> scannedSourcePaths = new HashSet<Path>();
+
+    private volatile boolean sourceScanComplete = false;
+
     @Reference
     private FileManager fileManager;
 
@@ -59,11 +115,31 @@ public class As3ParserMetadataProvider implements ASMutablePhysicalTypeMetadataP
     @Reference
     private MetadataDependencyRegistry metadataDependencyRegistry;
 
+    @Reference
+    private GeneratedFileWriter generatedFileWriter;
+
     @Reference
     private FlexPathResolver pathResolver; // TODO - Is this the correct way to get the FlexPathResolver, or should we
                                            // look it up the way JavaParserMetadataProvider does
 
     protected void activate(ComponentContext context) {
+        String window = context.getBundleContext().getProperty(FILE_EVENT_WINDOW_PROPERTY);
+        if (StringUtils.hasText(window)) {
+            try {
+                this.eventCoalescer = new FileEventCoalescer(Long.parseLong(window.trim()));
+            } catch (IllegalArgumentException e) {
+                // Not a number, or negative
+                logger.warning("Ignoring invalid " + FILE_EVENT_WINDOW_PROPERTY + " '" + window + "'; using the default of "
+                    + FileEventCoalescer.DEFAULT_WINDOW_MILLIS + " ms");
+            }
+        }
+    }
+
+    protected void deactivate(ComponentContext context) {
+        if (this.typeIndex != null) {
+            this.typeIndex.save();
+        }
+        this.parseCache.clear();
     }
 
     public void createPhysicalType(ASPhysicalTypeMetadata toCreate) {
@@ -73,35 +149,65 @@ public class As3ParserMetadataProvider implements ASMutablePhysicalTypeMetadataP
         Assert.isInstanceOf(ASClassOrInterfaceTypeDetails.class, physicalTypeDetails, "This implementation can only create class or interface types");
         ASClassOrInterfaceTypeDetails cit = (ASClassOrInterfaceTypeDetails) physicalTypeDetails;
         String fileIdentifier = toCreate.getPhysicalLocationCanonicalPath();
-        As3ParserMutableClassOrInterfaceTypeDetails.createType(this.fileManager, cit, fileIdentifier);
+        if (this.generatedFileWriter != null) {
+            // New types are written straight away, as they are usually parsed again within the same batch
+            this.generatedFileWriter.writeTextFile(fileIdentifier, As3ParserMutableClassOrInterfaceTypeDetails.getOutput(cit), true);
+        } else {
+            As3ParserMutableClassOrInterfaceTypeDetails.createType(this.fileManager, cit, fileIdentifier);
+        }
+        this.typeIdentifiers.put(cit.getName().getFullyQualifiedTypeName(), toCreate.getId());
+        indexRemoteClass(toCreate.getId(), ASMemberFindingUtils.getRemoteClassAlias(cit));
+    }
+
+    public String findRemoteClassIdentifier(String alias) {
+        Assert.hasText(alias, "Remote class alias required");
+        synchronized (this.remoteClassIdentifiers) {
+            return this.remoteClassIdentifiers.get(alias);
+        }
     }
 
     public String findIdentifier(ActionScriptType actionScriptType) {
         Assert.notNull(actionScriptType, "ActionScript type to locate is required");
+        String id = this.typeIdentifiers.get(actionScriptType.getFullyQualifiedTypeName());
+        if (id != null || this.sourceScanComplete) {
+            // Once the initial scan has finished, every type on disk has been reported by the file monitor, and types
+            // created since are registered by createPhysicalType, so a miss does not need to be checked on disk
+            return id;
+        }
+        // Not reported by the file monitor yet, so fall back to looking on disk
         for (Path sourcePath : this.pathResolver.getFlexSourcePaths()) {
             String relativePath = actionScriptType.getFullyQualifiedTypeName().replace('.', File.separatorChar) + ".as";
             String fileIdentifier = this.pathResolver.getIdentifier(sourcePath, relativePath);
             if (this.fileManager.exists(fileIdentifier)) {
                 // found the file, so use this one
-                return ASPhysicalTypeIdentifier.createIdentifier(actionScriptType, sourcePath);
+                id = ASPhysicalTypeIdentifier.createIdentifier(actionScriptType, sourcePath);
+                this.typeIdentifiers.put(actionScriptType.getFullyQualifiedTypeName(), id);
+                return id;
             }
         }
         return null;
     }
 
+    public boolean isSourceScanComplete() {
+        return this.sourceScanComplete;
+    }
+
     public MetadataItem get(String metadataIdentificationString) {
         Assert.isTrue(ASPhysicalTypeIdentifier.isValid(metadataIdentificationString), "Metadata identification string '"
             + metadataIdentificationString + "' is not valid for this metadata provider");
         String fileIdentifier = obtainPathToIdentifier(metadataIdentificationString);
         this.metadataDependencyRegistry.deregisterDependencies(metadataIdentificationString);
+        removePendingSubclass(metadataIdentificationString);
         if (!this.fileManager.exists(fileIdentifier)) {
             // Couldn't find the file, so return null to distinguish from a file that was found but could not be parsed
+            indexRemoteClass(metadataIdentificationString, null);
             return null;
         }
         As3ParserClassMetadata result = new As3ParserClassMetadata(this.fileManager, fileIdentifier, metadataIdentificationString,
-            this.metadataService, this);
+            this.metadataService, this, this.parseCache, getTypeIndex(), this.generatedFileWriter);
         if (result.getPhysicalTypeDetails() != null && result.getPhysicalTypeDetails() instanceof ASClassOrInterfaceTypeDetails) {
             ASClassOrInterfaceTypeDetails details = (ASClassOrInterfaceTypeDetails) result.getPhysicalTypeDetails();
+            indexRemoteClass(result.getId(), ASMemberFindingUtils.getRemoteClassAlias(details));
             if (details.getPhysicalTypeCategory() == ASPhysicalTypeCategory.CLASS && details.getExtendsTypes().size() == 1) {
                 // This is a class, and it extends another class
 
@@ -115,14 +221,12 @@ public class As3ParserMetadataProvider implements ASMutablePhysicalTypeMetadataP
                     this.metadataDependencyRegistry.registerDependency(superclassId, result.getId());
                 } else {
                     // We have a dependency on the superclass, but no metadata is available
-                    // We're left with no choice but to register for every physical type change, in the hope we discover
-                    // our parent someday (sad, isn't it? :-) )
-                    for (Path sourcePath : this.pathResolver.getSourcePaths()) {
-                        String possibleSuperclass = ASPhysicalTypeIdentifier.createIdentifier(details.getExtendsTypes().get(0), sourcePath);
-                        this.metadataDependencyRegistry.registerDependency(possibleSuperclass, result.getId());
-                    }
+                    // Remember that we're waiting for it, so we can be notified once it appears in a source path
+                    addPendingSubclass(details.getExtendsTypes().get(0).getFullyQualifiedTypeName(), result.getId());
                 }
             }
+        } else {
+            indexRemoteClass(result.getId(), null);
         }
         return result;
     }
@@ -134,38 +238,74 @@ public class As3ParserMetadataProvider implements ASMutablePhysicalTypeMetadataP
     public void onFileEvent(FileEvent fileEvent) {
         String fileIdentifier = fileEvent.getFileDetails().getCanonicalPath();
 
+        if (fileEvent.getOperation() == FileOperation.MONITORING_FINISH) {
+            recordScannedSourcePaths(fileIdentifier);
+            if (this.typeIndex != null) {
+                this.typeIndex.save();
+            }
+            if (logger.isLoggable(Level.FINE)) {
+                logger.fine("ActionScript parse cache " + this.parseCache + ", " + this.eventCoalescer.getSuppressedCount()
+                    + " repeated file events suppressed");
+            }
+        }
+
         if (fileIdentifier.endsWith(".as") && fileEvent.getOperation() != FileOperation.MONITORING_FINISH) {
             // file is of interest
 
-            // figure out the ActionScriptType this should be
-            Path sourcePath = null;
-            for (Path path : this.pathResolver.getFlexSourcePaths()) {
-                if (new FileDetails(new File(this.pathResolver.getRoot(path)), null).isParentOf(fileIdentifier)) {
-                    sourcePath = path;
-                    break;
-                }
-            }
-            if (sourcePath == null) {
+            // figure out the PhysicalTypeIdentifier
+            String id = getIdentifierForFile(fileIdentifier);
+            if (id == null) {
                 // the .as file is not under a source path, so ignore it
                 return;
             }
-            // determine the ActionScriptType for this file
-            String relativePath = this.pathResolver.getRelativeSegment(fileIdentifier);
-            Assert.hasText(relativePath, "Could not determine compilation unit name for file '" + fileIdentifier + "'");
-            Assert.isTrue(relativePath.startsWith(File.separator), "Relative path unexpectedly dropped the '" + File.separator
-                + "' prefix (received '" + relativePath + "' from '" + fileIdentifier + "'");
-            relativePath = relativePath.substring(1);
-            Assert.isTrue(relativePath.endsWith(".as"), "The relative path unexpectedly dropped the .as extension for file '" + fileIdentifier + "'");
-            relativePath = relativePath.substring(0, relativePath.lastIndexOf(".as"));
+            if (!this.eventCoalescer.shouldDeliver(id, fileEvent.getOperation(), new File(fileIdentifier))) {
+                // the file is unchanged since this type was last reported moments ago
+                return;
+            }
+            String typeName = ASPhysicalTypeIdentifier.getActionScriptType(id).getFullyQualifiedTypeName();
+
+            // keep the type name index current
+            if (fileEvent.getOperation() == FileOperation.DELETED) {
+                this.typeIdentifiers.remove(typeName);
+                removePendingSubclass(id);
+                indexRemoteClass(id, null);
+            } else {
+                this.typeIdentifiers.put(typeName, id);
+            }
+            if (fileEvent.getOperation() == FileOperation.RENAMED && fileEvent.getPreviousName() != null) {
+                String previousId = getIdentifierForFile(fileEvent.getPreviousName());
+                if (previousId != null && !previousId.equals(id)) {
+                    this.typeIdentifiers.remove(ASPhysicalTypeIdentifier.getActionScriptType(previousId).getFullyQualifiedTypeName());
+                    indexRemoteClass(previousId, null);
+                }
+            }
 
-            ActionScriptType actionScriptType = new ActionScriptType(relativePath.replace(File.separatorChar, '.'));
+            if (fileEvent.getOperation() == FileOperation.MONITORING_START) {
+                // The first file reported by the initial scan of a source path, so parse the whole path at once
+                preparseSourcePath(ASPhysicalTypeIdentifier.getPath(id));
+            }
 
-            // figure out the PhysicalTypeIdentifier
-            String id = ASPhysicalTypeIdentifier.createIdentifier(actionScriptType, sourcePath);
+            // The file may have changed on disk, so make sure the next parse at least verifies its contents
+            if (fileEvent.getOperation() == FileOperation.DELETED || fileEvent.getOperation() == FileOperation.RENAMED) {
+                this.parseCache.evict(fileIdentifier);
+                TypeDetailsIndex index = getTypeIndex();
+                if (index != null) {
+                    // Prune the entry so that it is not saved, and returned again, for a file that no longer exists
+                    index.remove(fileIdentifier);
+                    if (fileEvent.getPreviousName() != null) {
+                        index.remove(fileEvent.getPreviousName());
+                    }
+                }
+            } else {
+                this.parseCache.invalidate(fileIdentifier);
+            }
 
             // Now we've worked out the id, we can publish the event in case others were interested
             this.metadataService.evict(id);
             this.metadataDependencyRegistry.notifyDownstream(id);
+            if (fileEvent.getOperation() != FileOperation.DELETED) {
+                notifyPendingSubclasses(typeName);
+            }
         }
 
     }
@@ -180,6 +320,199 @@ public class As3ParserMetadataProvider implements ASMutablePhysicalTypeMetadataP
      * pathResolver; }
      */
 
+    /**
+     * Records the Flex source paths covered by a monitored directory whose initial scan has finished, and whether that
+     * completes the scan of every Flex source path.
+     *
+     * @param directoryIdentifier the canonical path of the monitored directory
+     */
+    private void recordScannedSourcePaths(String directoryIdentifier) {
+        FileDetails directory = new FileDetails(new File(directoryIdentifier), null);
+        for (Path path : this.pathResolver.getFlexSourcePaths()) {
+            String root = this.pathResolver.getRoot(path);
+            if (directoryIdentifier.equals(root) || directory.isParentOf(root)) {
+                this.scannedSourcePaths.add(path);
+            }
+        }
+        this.sourceScanComplete = this.scannedSourcePaths.containsAll(this.pathResolver.getFlexSourcePaths());
+    }
+
+    /**
+     * Determines the physical type identifier for the given .as file.
+     *
+     * @param fileIdentifier the canonical path of the file
+     * @return the identifier, or null if the file is not under a Flex source path
+     */
+    private String getIdentifierForFile(String fileIdentifier) {
+        // figure out the ActionScriptType this should be
+        Path sourcePath = null;
+        for (Path path : this.pathResolver.getFlexSourcePaths()) {
+            if (new FileDetails(new File(this.pathResolver.getRoot(path)), null).isParentOf(fileIdentifier)) {
+                sourcePath = path;
+                break;
+            }
+        }
+        if (sourcePath == null) {
+            return null;
+        }
+        // determine the ActionScriptType for this file
+        String relativePath = this.pathResolver.getRelativeSegment(fileIdentifier);
+        Assert.hasText(relativePath, "Could not determine compilation unit name for file '" + fileIdentifier + "'");
+        Assert.isTrue(relativePath.startsWith(File.separator), "Relative path unexpectedly dropped the '" + File.separator
+            + "' prefix (received '" + relativePath + "' from '" + fileIdentifier + "'");
+        relativePath = relativePath.substring(1);
+        Assert.isTrue(relativePath.endsWith(".as"), "The relative path unexpectedly dropped the .as extension for file '" + fileIdentifier + "'");
+        relativePath = relativePath.substring(0, relativePath.lastIndexOf(".as"));
+
+        ActionScriptType actionScriptType = new ActionScriptType(relativePath.replace(File.separatorChar, '.'));
+        return ASPhysicalTypeIdentifier.createIdentifier(actionScriptType, sourcePath);
+    }
+
+    /**
+     * Parses every source file under the given source path into the parse cache, using one thread per available
+     * processor. This is done once, when the initial scan reports the first file of the path, so that the
+     * {@link #get(String)} calls triggered by the rest of the scan find their compilation units already cached. Only
+     * the parsing is done in parallel; the metadata itself is still built on the calling thread.
+     */
+    private void preparseSourcePath(Path sourcePath) {
+        if (!this.preparsedSourcePaths.add(sourcePath)) {
+            return;
+        }
+        List<String> toParse = new ArrayList<String>();
+        collectSourceFiles(new File(this.pathResolver.getRoot(sourcePath)), toParse);
+        if (toParse.size() > this.parseCache.getMaxEntries()) {
+            // Parsing beyond the capacity of the cache would only evict the units parsed first
+            toParse = toParse.subList(0, this.parseCache.getMaxEntries());
+        }
+        int threads = Math.min(Runtime.getRuntime().availableProcessors(), toParse.size());
+        if (threads < 2) {
+            return;
+        }
+
+        final TypeDetailsIndex index = getTypeIndex();
+        long start = System.currentTimeMillis();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Object>> results = new ArrayList<Future<Object>>();
+            for (final String fileIdentifier : toParse) {
+                results.add(executor.submit(new Callable<Object>() {
+
+                    public Object call() throws Exception {
+                        File file = new File(fileIdentifier);
+                        if (index == null || index.get(fileIdentifier, file) == null) {
+                            As3ParserMetadataProvider.this.parseCache.getCompilationUnit(fileIdentifier, file);
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Object> result : results) {
+                try {
+                    result.get();
+                } catch (ExecutionException e) {
+                    // The file will simply be parsed again (and the failure reported) when its metadata is requested
+                    if (logger.isLoggable(Level.FINEST)) {
+                        logger.log(Level.FINEST, "Unable to pre-parse ActionScript source", e.getCause());
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdown();
+        }
+        if (logger.isLoggable(Level.FINE)) {
+            logger.fine("Parsed " + toParse.size() + " ActionScript sources on " + threads + " threads in " + (System.currentTimeMillis() - start)
+                + "ms");
+        }
+    }
+
+    private void collectSourceFiles(File directory, List<String> fileIdentifiers) {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (file.isDirectory()) {
+                collectSourceFiles(file, fileIdentifiers);
+            } else if (file.getName().endsWith(".as")) {
+                fileIdentifiers.add(FileDetails.getCanonicalPath(file));
+            }
+        }
+    }
+
+    /**
+     * Records the RemoteClass alias declared by the given type, replacing any alias it declared before.
+     * 
+     * @param id the metadata identifier of the type
+     * @param alias the alias it now declares, or null if it is no longer a remote class
+     */
+    private void indexRemoteClass(String id, String alias) {
+        synchronized (this.remoteClassIdentifiers) {
+            String previousAlias = alias == null ? this.remoteClassAliases.remove(id) : this.remoteClassAliases.put(id, alias);
+            if (previousAlias != null && !previousAlias.equals(alias) && id.equals(this.remoteClassIdentifiers.get(previousAlias))) {
+                this.remoteClassIdentifiers.remove(previousAlias);
+            }
+            if (alias != null) {
+                this.remoteClassIdentifiers.put(alias, id);
+            }
+        }
+    }
+
+    private void addPendingSubclass(String superclassName, String subclassId) {
+        Set<String> subclassIds = this.pendingSubclasses.get(superclassName);
+        if (subclassIds == null) {
+            subclassIds = new LinkedHashSet<String>();
+            this.pendingSubclasses.put(superclassName, subclassIds);
+        }
+        subclassIds.add(subclassId);
+        this.pendingSuperclasses.put(subclassId, superclassName);
+    }
+
+    private void removePendingSubclass(String subclassId) {
+        String superclassName = this.pendingSuperclasses.remove(subclassId);
+        if (superclassName != null) {
+            Set<String> subclassIds = this.pendingSubclasses.get(superclassName);
+            subclassIds.remove(subclassId);
+            if (subclassIds.isEmpty()) {
+                this.pendingSubclasses.remove(superclassName);
+            }
+        }
+    }
+
+    /**
+     * Notifies the subclasses that were parsed before the given superclass was available, so they can be parsed again
+     * now that it is. Each waiting subclass is only notified once.
+     */
+    private void notifyPendingSubclasses(String superclassName) {
+        Set<String> subclassIds = this.pendingSubclasses.remove(superclassName);
+        if (subclassIds == null) {
+            return;
+        }
+        for (String subclassId : subclassIds) {
+            this.pendingSuperclasses.remove(subclassId);
+        }
+        for (String subclassId : subclassIds) {
+            this.metadataService.evict(subclassId);
+            this.metadataDependencyRegistry.notifyDownstream(subclassId);
+        }
+    }
+
+    /**
+     * Lazily creates the type index once project metadata is available, as its location is relative to the project
+     * root.
+     */
+    private TypeDetailsIndex getTypeIndex() {
+        if (this.typeIndex == null) {
+            ProjectMetadata projectMetadata = (ProjectMetadata) this.metadataService.get(ProjectMetadata.getProjectIdentifier());
+            if (projectMetadata == null) {
+                return null;
+            }
+            this.typeIndex = new TypeDetailsIndex(new File(projectMetadata.getPathResolver().getIdentifier(Path.ROOT, TYPE_INDEX_LOCATION)));
+        }
+        return this.typeIndex;
+    }
+
     private String obtainPathToIdentifier(String physicalTypeIdentifier) {
         Assert.isTrue(ASPhysicalTypeIdentifier.isValid(physicalTypeIdentifier), "Metadata identification string '" + physicalTypeIdentifier
             + "' is not valid for this metadata provider");
@@ -16,14 +16,16 @@
 
 package org.springframework.flex.roo.addon.as.classpath.as3parser;
 
+import java.io.File;
+import java.io.FileReader;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
-import java.io.Reader;
-import java.io.StringReader;
 import java.io.StringWriter;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 
+import org.springframework.flex.roo.addon.GeneratedFileWriter;
 import org.springframework.flex.roo.addon.as.classpath.ASPhysicalTypeCategory;
 import org.springframework.flex.roo.addon.as.classpath.ASPhysicalTypeMetadata;
 import org.springframework.flex.roo.addon.as.classpath.ASPhysicalTypeMetadataProvider;
@@ -34,6 +36,7 @@ import org.springframework.flex.roo.addon.as.classpath.as3parser.details.As3Pars
 import org.springframework.flex.roo.addon.as.classpath.details.ASClassOrInterfaceTypeDetails;
 import org.springframework.flex.roo.addon.as.classpath.details.ASConstructorMetadata;
 import org.springframework.flex.roo.addon.as.classpath.details.ASFieldMetadata;
+import org.springframework.flex.roo.addon.as.classpath.details.ASMemberFindingUtils;
 import org.springframework.flex.roo.addon.as.classpath.details.ASMethodMetadata;
 import org.springframework.flex.roo.addon.as.classpath.details.ASMutableClassOrInterfaceTypeDetails;
 import org.springframework.flex.roo.addon.as.classpath.details.metatag.ASMetaTagMetadata;
@@ -90,18 +93,46 @@ public class As3ParserMutableClassOrInterfaceTypeDetails implements ASMutableCla
 
     private final List<ASMetaTagMetadata> typeMetaTags = new ArrayList<ASMetaTagMetadata>();
 
+    // the constructor, methods and fields are only wrapped when first requested
+    private boolean membersResolved = false;
+
+    // the index entry waiting for the members to be resolved, so that it can copy them
+    private TypeDetailsIndex.IndexedType indexedType;
+
     // internal use
-    private final ASCompilationUnit compilationUnit;
+    private ASCompilationUnit compilationUnit;
+
+    private List<String> indexedImports;
 
     private final ActionScriptPackage compilationUnitPackage;
 
+    private CompilationUnitCache parseCache;
+
     public ASType clazz;
 
     public boolean isDirty = false;
 
-    @SuppressWarnings("unchecked")
+    private boolean inUnitOfWork = false;
+
+    // the compilation unit holds changes that were rolled back, and must be parsed again before the next modification
+    private boolean discarded = false;
+
+    private GeneratedFileWriter generatedFileWriter;
+
     public As3ParserMutableClassOrInterfaceTypeDetails(ASCompilationUnit compilationUnit, FileManager fileManager, String declaredByMetadataId,
         String fileIdentifier, ActionScriptType typeName, MetadataService metadataService, ASPhysicalTypeMetadataProvider physicalTypeMetadataProvider) {
+        this(compilationUnit, fileManager, declaredByMetadataId, fileIdentifier, typeName, metadataService, physicalTypeMetadataProvider, null);
+    }
+
+    /**
+     * Creates details for a compilation unit that may be shared through the given {@link CompilationUnitCache}. The
+     * shared compilation unit is never modified; the source file is parsed again into a private compilation unit, and
+     * the shared one evicted from the cache, before the first modification is applied.
+     */
+    @SuppressWarnings("unchecked")
+    public As3ParserMutableClassOrInterfaceTypeDetails(ASCompilationUnit compilationUnit, FileManager fileManager, String declaredByMetadataId,
+        String fileIdentifier, ActionScriptType typeName, MetadataService metadataService, ASPhysicalTypeMetadataProvider physicalTypeMetadataProvider,
+        CompilationUnitCache parseCache) {
         Assert.notNull(compilationUnit, "Compilation unit required");
         Assert.notNull(fileManager, "File manager requried");
         Assert.notNull(declaredByMetadataId, "Declared by metadata ID required");
@@ -119,6 +150,8 @@ public class As3ParserMutableClassOrInterfaceTypeDetails implements ASMutableCla
 
         this.compilationUnit = compilationUnit;
 
+        this.parseCache = parseCache;
+
         this.compilationUnitPackage = typeName.getPackage();
 
         Assert.notNull(compilationUnit.getType(), "No types in compilation unit, so unable to continue parsing");
@@ -149,15 +182,7 @@ public class As3ParserMutableClassOrInterfaceTypeDetails implements ASMutableCla
             if (StringUtils.hasLength(classDef.getSuperclass())) {
                 ActionScriptType superType = As3ParserUtils.getActionScriptType(this.compilationUnitPackage, getImports(), classDef.getSuperclass());
                 this.extendsTypes.add(superType);
-                String superclassId = physicalTypeMetadataProvider.findIdentifier(superType);
-                ASPhysicalTypeMetadata superPtm = null;
-                if (superclassId != null) {
-                    superPtm = (ASPhysicalTypeMetadata) metadataService.get(superclassId);
-                }
-                if (superPtm != null && superPtm.getPhysicalTypeDetails() != null
-                    && superPtm.getPhysicalTypeDetails() instanceof ASClassOrInterfaceTypeDetails) {
-                    this.superclass = (ASClassOrInterfaceTypeDetails) superPtm.getPhysicalTypeDetails();
-                }
+                resolveSuperclass(superType, metadataService, physicalTypeMetadataProvider);
             }
             if (!CollectionUtils.isEmpty(classDef.getImplementedInterfaces())) {
                 List<String> interfaces = classDef.getImplementedInterfaces();
@@ -183,26 +208,47 @@ public class As3ParserMutableClassOrInterfaceTypeDetails implements ASMutableCla
             }
         }
 
-        for (ASMethod method : (List<ASMethod>) this.clazz.getMethods()) {
-            if (method.getName().equals(this.name.getSimpleTypeName())) {
-                Assert.isNull(this.declaredConstructor, "ActionScript classes may only have one constructor method.");
-                this.declaredConstructor = new As3ParserConstructorMetadata(declaredByMetadataId, method, this);
-            } else {
-                this.declaredMethods.add(new As3ParserMethodMetadata(declaredByMetadataId, method, this));
-            }
-        }
+    }
 
-        if (this.physicalTypeCategory == ASPhysicalTypeCategory.CLASS) {
-            ASClassType clazzType = (ASClassType) this.clazz;
+    /**
+     * Creates details from a previously indexed snapshot of the source file. The compilation unit is only parsed if
+     * the details are subsequently modified.
+     */
+    public As3ParserMutableClassOrInterfaceTypeDetails(TypeDetailsIndex.IndexedType indexedType, FileManager fileManager, String declaredByMetadataId,
+        String fileIdentifier, ActionScriptType typeName, MetadataService metadataService, ASPhysicalTypeMetadataProvider physicalTypeMetadataProvider) {
+        Assert.notNull(indexedType, "Indexed type required");
+        Assert.notNull(fileManager, "File manager requried");
+        Assert.notNull(declaredByMetadataId, "Declared by metadata ID required");
+        Assert.notNull(fileIdentifier, "File identifier (canonical path) required");
+        Assert.notNull(typeName, "Name required");
+        Assert.notNull(metadataService, "Metadata service required");
+        Assert.notNull(physicalTypeMetadataProvider, "Physical type metadata provider required");
+        Assert.isTrue(declaredByMetadataId.equals(indexedType.getDeclaredByMetadataId()), "Indexed type was declared by '"
+            + indexedType.getDeclaredByMetadataId() + "' rather than '" + declaredByMetadataId + "'");
 
-            for (ASField field : (List<ASField>) clazzType.getFields()) {
-                this.declaredFields.add(new As3ParserFieldMetadata(declaredByMetadataId, field, this));
-            }
-        }
+        this.name = typeName;
+        this.declaredByMetadataId = declaredByMetadataId;
+        this.fileManager = fileManager;
+        this.fileIdentifier = fileIdentifier;
+        this.compilationUnitPackage = typeName.getPackage();
 
+        this.physicalTypeCategory = indexedType.getPhysicalTypeCategory();
+        this.indexedImports = indexedType.getImports();
+        this.extendsTypes.addAll(indexedType.getExtendsTypes());
+        this.implementsTypes.addAll(indexedType.getImplementsTypes());
+        this.typeMetaTags.addAll(indexedType.getTypeMetaTags());
+        this.declaredConstructor = indexedType.getDeclaredConstructor();
+        this.declaredMethods.addAll(indexedType.getDeclaredMethods());
+        this.declaredFields.addAll(indexedType.getDeclaredFields());
+        this.membersResolved = true;
+
+        if (this.physicalTypeCategory == ASPhysicalTypeCategory.CLASS && this.extendsTypes.size() == 1) {
+            resolveSuperclass(this.extendsTypes.get(0), metadataService, physicalTypeMetadataProvider);
+        }
     }
 
     public void addField(ASFieldMetadata fieldMetadata, boolean flush) {
+        prepareForModification();
         Assert.isInstanceOf(ASClassType.class, this.clazz, "Cannot add a field to an interface");
         As3ParserFieldMetadata.addField(this, ((ASClassType) this.clazz), fieldMetadata, flush);
         if (!flush) {
@@ -211,13 +257,57 @@ public class As3ParserMutableClassOrInterfaceTypeDetails implements ASMutableCla
     }
 
     public void addMethod(ASMethodMetadata methodMetadata, boolean flush) {
+        prepareForModification();
         As3ParserMethodMetadata.addMethod(this, this.clazz, methodMetadata, flush);
         if (!flush) {
             this.isDirty = true;
         }
     }
 
+    public void removeMethod(ActionScriptSymbolName methodName, boolean flush) {
+        prepareForModification();
+        As3ParserMethodMetadata.removeMethod(this, this.clazz, methodName, flush);
+        if (!flush) {
+            this.isDirty = true;
+        }
+    }
+
+    public void addImplementsType(ActionScriptType implementsType, boolean flush) {
+        prepareForModification();
+        Assert.isInstanceOf(ASClassType.class, this.clazz, "Only a class can implement an interface");
+        Assert.isTrue(!this.implementsTypes.contains(implementsType), "Class already implements " + implementsType.getFullyQualifiedTypeName());
+        As3ParserUtils.importTypeIfRequired(this, implementsType);
+        ((ASClassType) this.clazz).addImplementedInterface(implementsType.getSimpleTypeName());
+        this.implementsTypes.add(implementsType);
+        if (flush) {
+            flush();
+        } else {
+            this.isDirty = true;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public void removeImplementsType(ActionScriptType implementsType, boolean flush) {
+        prepareForModification();
+        Assert.isInstanceOf(ASClassType.class, this.clazz, "Only a class can implement an interface");
+        Assert.isTrue(this.implementsTypes.contains(implementsType), "Class does not implement " + implementsType.getFullyQualifiedTypeName());
+        ASClassType classType = (ASClassType) this.clazz;
+        // The interface may be declared by its simple or its fully qualified name
+        for (String interfaceName : new ArrayList<String>((List<String>) classType.getImplementedInterfaces())) {
+            if (implementsType.equals(As3ParserUtils.getActionScriptType(this.compilationUnitPackage, getImports(), interfaceName))) {
+                classType.removeImplementedInterface(interfaceName);
+            }
+        }
+        this.implementsTypes.remove(implementsType);
+        if (flush) {
+            flush();
+        } else {
+            this.isDirty = true;
+        }
+    }
+
     public void addTypeMetaTag(ASMetaTagMetadata metaTag, boolean flush) {
+        prepareForModification();
         As3ParserMetaTagMetadata.addMetaTagToElement(this, metaTag, this.clazz, flush);
         if (!flush) {
             this.isDirty = true;
@@ -225,6 +315,7 @@ public class As3ParserMutableClassOrInterfaceTypeDetails implements ASMutableCla
     }
 
     public void updateField(ASFieldMetadata fieldMetadata, boolean flush) {
+        prepareForModification();
         Assert.isInstanceOf(ASClassType.class, this.clazz, "Cannot update a field on an interface");
         Assert.isTrue(getDeclaredFields().contains(fieldMetadata), "Field does not exist.");
         As3ParserFieldMetadata.updateField(this, ((ASClassType) this.clazz), fieldMetadata, flush);
@@ -238,17 +329,28 @@ public class As3ParserMutableClassOrInterfaceTypeDetails implements ASMutableCla
     }
 
     public ASConstructorMetadata getDeclaredConstructor() {
+        resolveMembers();
         return this.declaredConstructor;
     }
 
     public List<ASFieldMetadata> getDeclaredFields() {
+        resolveMembers();
         return this.declaredFields;
     }
 
     public List<ASMethodMetadata> getDeclaredMethods() {
+        resolveMembers();
         return this.declaredMethods;
     }
 
+    public Map<ActionScriptSymbolName, ASFieldMetadata> getDeclaredFieldsByName() {
+        return ASMemberFindingUtils.getFieldsByName(getDeclaredFields());
+    }
+
+    public Map<ActionScriptSymbolName, List<ASMethodMetadata>> getDeclaredMethodsByName() {
+        return ASMemberFindingUtils.getMethodsByName(getDeclaredMethods());
+    }
+
     public List<ActionScriptType> getExtendsTypes() {
         return this.extendsTypes;
     }
@@ -262,6 +364,7 @@ public class As3ParserMutableClassOrInterfaceTypeDetails implements ASMutableCla
     }
 
     public void removeField(ActionScriptSymbolName fieldName, boolean flush) {
+        prepareForModification();
         Assert.isInstanceOf(ASClassType.class, this.clazz, "Cannot remove a field from an interface");
         As3ParserFieldMetadata.removeField(this, ((ASClassType) this.clazz), fieldName, flush);
         if (!flush) {
@@ -270,6 +373,7 @@ public class As3ParserMutableClassOrInterfaceTypeDetails implements ASMutableCla
     }
 
     public void removeTypeMetaTag(String name, boolean flush) {
+        prepareForModification();
         As3ParserMetaTagMetadata.removeMetatagFromElement(this, this.clazz, name, flush);
         if (!flush) {
             this.isDirty = true;
@@ -281,6 +385,48 @@ public class As3ParserMutableClassOrInterfaceTypeDetails implements ASMutableCla
     }
 
     public void flush() {
+        if (this.inUnitOfWork) {
+            // Defer the write until the unit of work is committed
+            this.isDirty = true;
+            return;
+        }
+        writeCompilationUnit();
+    }
+
+    public void beginUnitOfWork() {
+        this.inUnitOfWork = true;
+    }
+
+    /**
+     * Routes writes through the given {@link GeneratedFileWriter} so that they take part in any active batch. If null,
+     * writes go directly through the {@link FileManager}.
+     */
+    void setGeneratedFileWriter(GeneratedFileWriter generatedFileWriter) {
+        this.generatedFileWriter = generatedFileWriter;
+    }
+
+    /**
+     * Gives the members to the given index entry once they are resolved, or straight away if they already are.
+     */
+    void setIndexedType(TypeDetailsIndex.IndexedType indexedType) {
+        if (this.membersResolved) {
+            indexedType.snapshotMembers();
+        } else {
+            this.indexedType = indexedType;
+        }
+    }
+
+    /**
+     * Serializes the compilation unit and writes it to disk, unless the result is identical to the current contents of
+     * the file.
+     *
+     * @return true if the file was written
+     */
+    boolean writeCompilationUnit() {
+        if (this.compilationUnit == null) {
+            // Created from the type index and never modified, so there is nothing to write
+            return false;
+        }
         ActionScriptFactory factory = new ActionScriptFactory();
         StringWriter writer = new StringWriter();
         try {
@@ -289,13 +435,37 @@ public class As3ParserMutableClassOrInterfaceTypeDetails implements ASMutableCla
             // TODO Auto-generated catch block
             e.printStackTrace();
         }
-        Reader compilationUnitReader = new StringReader(writer.toString());
+        if (this.generatedFileWriter != null) {
+            // The writer drops the write if the contents are unchanged once its batch is committed
+            this.generatedFileWriter.writeTextFile(this.fileIdentifier, writer.toString());
+            return true;
+        }
+        byte[] contents = writer.toString().getBytes();
+        if (isUnchanged(contents)) {
+            return false;
+        }
         MutableFile mutableFile = this.fileManager.updateFile(this.fileIdentifier);
         try {
-            FileCopyUtils.copy(compilationUnitReader, new OutputStreamWriter(mutableFile.getOutputStream()));
+            FileCopyUtils.copy(contents, mutableFile.getOutputStream());
         } catch (IOException ioe) {
             throw new IllegalStateException("Could not update '" + this.fileIdentifier + "'", ioe);
         }
+        return true;
+    }
+
+    private boolean isUnchanged(byte[] contents) {
+        if (!this.fileManager.exists(this.fileIdentifier)) {
+            return false;
+        }
+        File file = this.fileManager.readFile(this.fileIdentifier).getFile();
+        if (file.length() != contents.length) {
+            return false;
+        }
+        try {
+            return Arrays.equals(contents, FileCopyUtils.copyToByteArray(file));
+        } catch (IOException ioe) {
+            return false;
+        }
     }
 
     public ActionScriptPackage getCompilationUnitPackage() {
@@ -304,10 +474,14 @@ public class As3ParserMutableClassOrInterfaceTypeDetails implements ASMutableCla
 
     @SuppressWarnings("unchecked")
     public List<String> getImports() {
+        if (this.compilationUnit == null) {
+            return new ArrayList<String>(this.indexedImports);
+        }
         return this.compilationUnit.getPackage().findImports();
     }
 
     public void addImport(String fullyQualifiedTypeName) {
+        prepareForModification();
         this.compilationUnit.getPackage().addImport(fullyQualifiedTypeName);
     }
 
@@ -315,6 +489,84 @@ public class As3ParserMutableClassOrInterfaceTypeDetails implements ASMutableCla
         return this.physicalTypeCategory;
     }
 
+    /**
+     * Wraps the constructor, methods and fields of the compilation unit, which most callers never look at.
+     */
+    @SuppressWarnings("unchecked")
+    private void resolveMembers() {
+        if (this.membersResolved) {
+            return;
+        }
+        this.membersResolved = true;
+
+        for (ASMethod method : (List<ASMethod>) this.clazz.getMethods()) {
+            if (method.getName().equals(this.name.getSimpleTypeName())) {
+                Assert.isNull(this.declaredConstructor, "ActionScript classes may only have one constructor method.");
+                this.declaredConstructor = new As3ParserConstructorMetadata(this.declaredByMetadataId, method, this);
+            } else {
+                this.declaredMethods.add(new As3ParserMethodMetadata(this.declaredByMetadataId, method, this));
+            }
+        }
+
+        if (this.physicalTypeCategory == ASPhysicalTypeCategory.CLASS) {
+            ASClassType clazzType = (ASClassType) this.clazz;
+
+            for (ASField field : (List<ASField>) clazzType.getFields()) {
+                this.declaredFields.add(new As3ParserFieldMetadata(this.declaredByMetadataId, field, this));
+            }
+        }
+
+        if (this.indexedType != null) {
+            TypeDetailsIndex.IndexedType pending = this.indexedType;
+            this.indexedType = null;
+            pending.snapshotMembers();
+        }
+    }
+
+    private void resolveSuperclass(ActionScriptType superType, MetadataService metadataService,
+        ASPhysicalTypeMetadataProvider physicalTypeMetadataProvider) {
+        String superclassId = physicalTypeMetadataProvider.findIdentifier(superType);
+        ASPhysicalTypeMetadata superPtm = null;
+        if (superclassId != null) {
+            superPtm = (ASPhysicalTypeMetadata) metadataService.get(superclassId);
+        }
+        if (superPtm != null && superPtm.getPhysicalTypeDetails() != null
+            && superPtm.getPhysicalTypeDetails() instanceof ASClassOrInterfaceTypeDetails) {
+            this.superclass = (ASClassOrInterfaceTypeDetails) superPtm.getPhysicalTypeDetails();
+        }
+    }
+
+    /**
+     * Ensures this instance holds a private compilation unit that can safely be modified, parsing the source file if
+     * the details were created from the type index, or if the compilation unit is shared through the parse cache and
+     * may still be held by other details created from it.
+     */
+    private void prepareForModification() {
+        // Capture the members as they were before the modification, as eagerly created details would have
+        resolveMembers();
+        if (this.compilationUnit == null || this.parseCache != null || this.discarded) {
+            parsePrivateCompilationUnit();
+        }
+        if (this.parseCache != null) {
+            this.parseCache.evict(this.fileIdentifier);
+            this.parseCache = null;
+        }
+    }
+
+    private void parsePrivateCompilationUnit() {
+        ASCompilationUnit privateUnit;
+        try {
+            privateUnit = new ActionScriptFactory().newParser().parse(new FileReader(this.fileManager.readFile(this.fileIdentifier).getFile()));
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not parse '" + this.fileIdentifier + "'", e);
+        }
+        Assert.notNull(privateUnit.getType(), "No types in compilation unit '" + this.fileIdentifier + "'");
+        this.compilationUnit = privateUnit;
+        this.clazz = privateUnit.getType();
+        this.indexedImports = null;
+        this.discarded = false;
+    }
+
     public static final void createType(FileManager fileManager, final ASClassOrInterfaceTypeDetails cit, String fileIdentifier) {
         Assert.notNull(fileManager, "File manager required");
         Assert.notNull(cit, "Class or interface type details required");
@@ -417,7 +669,7 @@ public class As3ParserMutableClassOrInterfaceTypeDetails implements ASMutableCla
     }
 
     public void updateField(ASFieldMetadata fieldMetadata) {
-        addField(fieldMetadata, true);
+        updateField(fieldMetadata, true);
     }
 
     public void removeField(ActionScriptSymbolName fieldName) {
@@ -429,9 +681,40 @@ public class As3ParserMutableClassOrInterfaceTypeDetails implements ASMutableCla
     }
 
     public void commit() {
-        if (this.isDirty) {
-            flush();
-            this.isDirty = false;
+        try {
+            if (this.isDirty) {
+                writeCompilationUnit();
+                this.isDirty = false;
+            }
+        } finally {
+            this.inUnitOfWork = false;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public void rollback() {
+        this.inUnitOfWork = false;
+        if (!this.isDirty) {
+            return;
+        }
+        this.isDirty = false;
+        this.discarded = true;
+        try {
+            // The file still holds its contents from before the unit of work, so parse it again
+            parsePrivateCompilationUnit();
+        } catch (RuntimeException e) {
+            // Leave the compilation unit to be parsed again before the next modification
+            return;
+        }
+        this.implementsTypes.clear();
+        if (this.clazz instanceof ASClassType && !CollectionUtils.isEmpty(((ASClassType) this.clazz).getImplementedInterfaces())) {
+            for (String interfaceName : (List<String>) ((ASClassType) this.clazz).getImplementedInterfaces()) {
+                this.implementsTypes.add(As3ParserUtils.getActionScriptType(this.compilationUnitPackage, getImports(), interfaceName));
+            }
         }
+        this.declaredConstructor = null;
+        this.declaredFields.clear();
+        this.declaredMethods.clear();
+        this.membersResolved = false;
     }
 }
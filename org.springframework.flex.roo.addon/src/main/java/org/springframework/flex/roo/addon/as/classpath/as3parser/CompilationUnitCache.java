@@ -0,0 +1,223 @@
+/*
+ * Copyright 2002-2010 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.flex.roo.addon.as.classpath.as3parser;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.roo.support.style.ToStringCreator;
+import org.springframework.roo.support.util.Assert;
+import org.springframework.roo.support.util.FileCopyUtils;
+
+import uk.co.badgersinfoil.metaas.ActionScriptFactory;
+import uk.co.badgersinfoil.metaas.dom.ASCompilationUnit;
+
+/**
+ * Bounded cache of parsed ActionScript compilation units.
+ *
+ * <p>
+ * Entries are keyed by the canonical path of the source file. A cached compilation unit is reused as long as the size
+ * and last modified time of the file are unchanged. If either differs, the file contents are hashed and the entry is
+ * still reused if the hash matches, so that touching a file without changing it does not force a re-parse.
+ *
+ * <p>
+ * Compilation units handed out by this cache are shared, so callers that intend to modify one must {@link #evict}
+ * it first.
+ *
+ * @author Jeremy Grelle
+ */
+public class CompilationUnitCache {
+
+    public static final int DEFAULT_MAX_ENTRIES = 1000;
+
+    private static final String HASH_ALGORITHM = "MD5";
+
+    private static final ActionScriptFactory asFactory = new ActionScriptFactory();
+
+    private final int maxEntries;
+
+    private final Map<String, CacheEntry> entries;
+
+    private final AtomicLong hitCount = new AtomicLong();
+
+    private final AtomicLong missCount = new AtomicLong();
+
+    public CompilationUnitCache() {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+
+    @SuppressWarnings("serial")
+    public CompilationUnitCache(final int maxEntries) {
+        Assert.isTrue(maxEntries > 0, "Maximum number of entries must be greater than zero");
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<String, CacheEntry>(16, 0.75f, true) {
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Returns the compilation unit for the given file, parsing it only if it is not already cached or its contents have
+     * changed since it was cached.
+     *
+     * @param fileIdentifier the canonical path of the file (required)
+     * @param file the file to parse (required)
+     * @return the parsed compilation unit (never null)
+     * @throws IOException if the file could not be read
+     */
+    public ASCompilationUnit getCompilationUnit(String fileIdentifier, File file) throws IOException {
+        Assert.hasText(fileIdentifier, "File identifier required");
+        Assert.notNull(file, "File required");
+
+        long size = file.length();
+        long lastModified = file.lastModified();
+
+        CacheEntry entry;
+        synchronized (this.entries) {
+            entry = this.entries.get(fileIdentifier);
+        }
+
+        if (entry != null && entry.size == size && entry.lastModified == lastModified) {
+            this.hitCount.incrementAndGet();
+            return entry.compilationUnit;
+        }
+
+        byte[] contents = FileCopyUtils.copyToByteArray(file);
+        String hash = hash(contents);
+
+        if (entry != null && entry.hash.equals(hash)) {
+            synchronized (this.entries) {
+                this.entries.put(fileIdentifier, new CacheEntry(entry.compilationUnit, hash, contents.length, lastModified));
+            }
+            this.hitCount.incrementAndGet();
+            return entry.compilationUnit;
+        }
+
+        this.missCount.incrementAndGet();
+        ASCompilationUnit compilationUnit = asFactory.newParser().parse(new InputStreamReader(new ByteArrayInputStream(contents)));
+        synchronized (this.entries) {
+            this.entries.put(fileIdentifier, new CacheEntry(compilationUnit, hash, contents.length, lastModified));
+        }
+        return compilationUnit;
+    }
+
+    /**
+     * Forces the next lookup of the given file to verify its content hash, without discarding the parsed compilation
+     * unit.
+     *
+     * @param fileIdentifier the canonical path of the file
+     */
+    public void invalidate(String fileIdentifier) {
+        synchronized (this.entries) {
+            CacheEntry entry = this.entries.get(fileIdentifier);
+            if (entry != null) {
+                this.entries.put(fileIdentifier, new CacheEntry(entry.compilationUnit, entry.hash, -1, -1));
+            }
+        }
+    }
+
+    /**
+     * Discards any cached compilation unit for the given file.
+     *
+     * @param fileIdentifier the canonical path of the file
+     */
+    public void evict(String fileIdentifier) {
+        synchronized (this.entries) {
+            this.entries.remove(fileIdentifier);
+        }
+    }
+
+    public void clear() {
+        synchronized (this.entries) {
+            this.entries.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (this.entries) {
+            return this.entries.size();
+        }
+    }
+
+    public int getMaxEntries() {
+        return this.maxEntries;
+    }
+
+    public long getHitCount() {
+        return this.hitCount.get();
+    }
+
+    public long getMissCount() {
+        return this.missCount.get();
+    }
+
+    @Override
+    public String toString() {
+        ToStringCreator tsc = new ToStringCreator(this);
+        tsc.append("size", size());
+        tsc.append("hits", getHitCount());
+        tsc.append("misses", getMissCount());
+        return tsc.toString();
+    }
+
+    static String hash(byte[] contents) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance(HASH_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Could not obtain a " + HASH_ALGORITHM + " message digest", e);
+        }
+        byte[] bytes = digest.digest(contents);
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            String hex = Integer.toHexString(b & 0xff);
+            if (hex.length() == 1) {
+                sb.append('0');
+            }
+            sb.append(hex);
+        }
+        return sb.toString();
+    }
+
+    private static final class CacheEntry {
+
+        private final ASCompilationUnit compilationUnit;
+
+        private final String hash;
+
+        private final long size;
+
+        private final long lastModified;
+
+        private CacheEntry(ASCompilationUnit compilationUnit, String hash, long size, long lastModified) {
+            this.compilationUnit = compilationUnit;
+            this.hash = hash;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+    }
+}
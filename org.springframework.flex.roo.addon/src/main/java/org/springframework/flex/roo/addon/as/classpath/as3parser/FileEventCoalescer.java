@@ -0,0 +1,114 @@
+/*
+ * Copyright 2002-2010 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.flex.roo.addon.as.classpath.as3parser;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.roo.file.monitor.event.FileOperation;
+import org.springframework.roo.support.util.Assert;
+import org.springframework.roo.support.util.FileCopyUtils;
+
+/**
+ * Suppresses repeated file events for the same ActionScript type.
+ *
+ * <p>
+ * The same source file is frequently reported several times in quick succession, for example by overlapping monitoring
+ * requests or by the bursts of events produced by an IDE save or a branch switch. An event is suppressed if the type
+ * was already delivered within the configured window and the contents of its file are unchanged since then, so that
+ * each distinct change is still delivered exactly once. The contents are compared by hash rather than by last modified
+ * time, which many file systems only record to the second, so that an edit leaving the size unchanged is never
+ * mistaken for a repeat. Deletions and renames are always delivered.
+ *
+ * @author Jeremy Grelle
+ */
+public class FileEventCoalescer {
+
+    public static final long DEFAULT_WINDOW_MILLIS = 1000;
+
+    private final long windowMillis;
+
+    private final Map<String, Delivery> deliveries = new HashMap<String, Delivery>();
+
+    private long suppressedCount = 0;
+
+    public FileEventCoalescer() {
+        this(DEFAULT_WINDOW_MILLIS);
+    }
+
+    public FileEventCoalescer(long windowMillis) {
+        Assert.isTrue(windowMillis >= 0, "Window must not be negative");
+        this.windowMillis = windowMillis;
+    }
+
+    /**
+     * Determines whether an event should be delivered, recording it if so.
+     *
+     * @param id the physical type identifier the event relates to (required)
+     * @param operation the file operation (required)
+     * @param file the file the event relates to (required)
+     * @return true if the event should be delivered, false if it repeats one delivered within the window
+     */
+    public synchronized boolean shouldDeliver(String id, FileOperation operation, File file) {
+        Assert.hasText(id, "Physical type identifier required");
+        Assert.notNull(operation, "File operation required");
+        Assert.notNull(file, "File required");
+
+        long now = System.currentTimeMillis();
+        if (operation == FileOperation.DELETED || operation == FileOperation.RENAMED || !file.exists()) {
+            this.deliveries.remove(id);
+            return true;
+        }
+        String hash;
+        try {
+            hash = CompilationUnitCache.hash(FileCopyUtils.copyToByteArray(file));
+        } catch (IOException e) {
+            // Unreadable, perhaps still being written, so deliver it and let the parser report any problem
+            this.deliveries.remove(id);
+            return true;
+        }
+        Delivery last = this.deliveries.get(id);
+        if (last != null && now - last.time <= this.windowMillis && last.hash.equals(hash)) {
+            this.suppressedCount++;
+            return false;
+        }
+        this.deliveries.put(id, new Delivery(now, hash));
+        return true;
+    }
+
+    public long getWindowMillis() {
+        return this.windowMillis;
+    }
+
+    public synchronized long getSuppressedCount() {
+        return this.suppressedCount;
+    }
+
+    private static final class Delivery {
+
+        private final long time;
+
+        private final String hash;
+
+        private Delivery(long time, String hash) {
+            this.time = time;
+            this.hash = hash;
+        }
+    }
+}
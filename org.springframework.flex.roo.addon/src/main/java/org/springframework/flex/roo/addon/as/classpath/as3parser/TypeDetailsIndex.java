@@ -0,0 +1,571 @@
+/*
+ * Copyright 2002-2010 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.flex.roo.addon.as.classpath.as3parser;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.springframework.flex.roo.addon.as.classpath.ASPhysicalTypeCategory;
+import org.springframework.flex.roo.addon.as.classpath.details.ASConstructorMetadata;
+import org.springframework.flex.roo.addon.as.classpath.details.ASFieldMetadata;
+import org.springframework.flex.roo.addon.as.classpath.details.ASInvocableMemberMetadata;
+import org.springframework.flex.roo.addon.as.classpath.details.ASMethodMetadata;
+import org.springframework.flex.roo.addon.as.classpath.details.DefaultASConstructorMetadata;
+import org.springframework.flex.roo.addon.as.classpath.details.DefaultASFieldMetadata;
+import org.springframework.flex.roo.addon.as.classpath.details.DefaultASMethodMetadata;
+import org.springframework.flex.roo.addon.as.classpath.details.metatag.ASMetaTagMetadata;
+import org.springframework.flex.roo.addon.as.classpath.details.metatag.BooleanAttributeValue;
+import org.springframework.flex.roo.addon.as.classpath.details.metatag.DefaultASMetaTagMetadata;
+import org.springframework.flex.roo.addon.as.classpath.details.metatag.IntegerAttributeValue;
+import org.springframework.flex.roo.addon.as.classpath.details.metatag.MetaTagAttributeValue;
+import org.springframework.flex.roo.addon.as.classpath.details.metatag.StringAttributeValue;
+import org.springframework.flex.roo.addon.as.model.ASDataType;
+import org.springframework.flex.roo.addon.as.model.ASTypeVisibility;
+import org.springframework.flex.roo.addon.as.model.ActionScriptSymbolName;
+import org.springframework.flex.roo.addon.as.model.ActionScriptType;
+import org.springframework.roo.support.logging.HandlerUtils;
+import org.springframework.roo.support.util.Assert;
+import org.springframework.roo.support.util.FileCopyUtils;
+
+/**
+ * Persistent index of the type details extracted from ActionScript source files.
+ *
+ * <p>
+ * The index is stored as a single versioned binary file so that it can be loaded with one sequential read when the
+ * shell starts. Each entry is keyed by the canonical path of its source file and records the size, last modified time
+ * and content hash of the file it was extracted from; an entry is only returned while the file still has the same
+ * contents. An index file that cannot be read, or that was written by a different version, is discarded.
+ *
+ * @author Jeremy Grelle
+ */
+public class TypeDetailsIndex {
+
+    private static final Logger logger = HandlerUtils.getLogger(TypeDetailsIndex.class);
+
+    private static final int MAGIC = 0x41534458;
+
+    private static final int VERSION = 1;
+
+    private static final byte BOOLEAN_ATTRIBUTE = 0;
+
+    private static final byte INTEGER_ATTRIBUTE = 1;
+
+    private static final byte STRING_ATTRIBUTE = 2;
+
+    private final File indexFile;
+
+    private final Map<String, IndexedType> entries = new HashMap<String, IndexedType>();
+
+    private boolean loaded = false;
+
+    private boolean dirty = false;
+
+    public TypeDetailsIndex(File indexFile) {
+        Assert.notNull(indexFile, "Index file required");
+        this.indexFile = indexFile;
+    }
+
+    public File getIndexFile() {
+        return this.indexFile;
+    }
+
+    /**
+     * Returns the indexed details for the given file, provided its contents have not changed since they were indexed.
+     *
+     * @param fileIdentifier the canonical path of the file (required)
+     * @param file the source file (required)
+     * @return the indexed details, or null if the file is not indexed or has changed
+     * @throws IOException if the file could not be read
+     */
+    public synchronized IndexedType get(String fileIdentifier, File file) throws IOException {
+        Assert.hasText(fileIdentifier, "File identifier required");
+        Assert.notNull(file, "File required");
+        ensureLoaded();
+        IndexedType entry = this.entries.get(fileIdentifier);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.size != file.length() || entry.lastModified != file.lastModified()) {
+            String hash = CompilationUnitCache.hash(FileCopyUtils.copyToByteArray(file));
+            if (!entry.hash.equals(hash)) {
+                this.entries.remove(fileIdentifier);
+                this.dirty = true;
+                return null;
+            }
+            entry.size = file.length();
+            entry.lastModified = file.lastModified();
+            this.dirty = true;
+        }
+        // An entry recorded from details whose members are still unresolved is not complete yet; those details are
+        // most likely still in use, and their compilation unit still cached
+        return entry.isComplete() ? entry : null;
+    }
+
+    /**
+     * Records the details extracted from the given file, replacing any existing entry. Only the type header is copied
+     * before this method returns; the constructor, methods and fields are copied when the details first resolve them,
+     * which happens before any modification, or at the latest when the index is saved.
+     *
+     * @param fileIdentifier the canonical path of the file (required)
+     * @param file the source file the details were extracted from (required)
+     * @param details the extracted details (required)
+     * @throws IOException if the file could not be read
+     */
+    public synchronized void put(String fileIdentifier, File file, As3ParserMutableClassOrInterfaceTypeDetails details) throws IOException {
+        Assert.hasText(fileIdentifier, "File identifier required");
+        Assert.notNull(file, "File required");
+        Assert.notNull(details, "Type details required");
+        ensureLoaded();
+        IndexedType entry = new IndexedType(details.getDeclaredByMetadataId(), details.getPhysicalTypeCategory());
+        entry.size = file.length();
+        entry.lastModified = file.lastModified();
+        entry.hash = CompilationUnitCache.hash(FileCopyUtils.copyToByteArray(file));
+        entry.copyHeader(details);
+        details.setIndexedType(entry);
+        this.entries.put(fileIdentifier, entry);
+        this.dirty = true;
+    }
+
+    /**
+     * Removes the entry for the given file, such as when the file has been deleted.
+     *
+     * @param fileIdentifier the canonical path of the file
+     */
+    public synchronized void remove(String fileIdentifier) {
+        ensureLoaded();
+        if (this.entries.remove(fileIdentifier) != null) {
+            this.dirty = true;
+        }
+    }
+
+    public synchronized int size() {
+        ensureLoaded();
+        return this.entries.size();
+    }
+
+    /**
+     * Writes the index to disk if it has changed since it was loaded or last saved. Entries for files that no longer
+     * exist, for example because they were deleted while the shell was not running, are discarded first.
+     */
+    public synchronized void save() {
+        ensureLoaded();
+        for (Iterator<Map.Entry<String, IndexedType>> iterator = this.entries.entrySet().iterator(); iterator.hasNext();) {
+            Map.Entry<String, IndexedType> entry = iterator.next();
+            if (!new File(entry.getKey()).exists()) {
+                iterator.remove();
+                this.dirty = true;
+            } else {
+                entry.getValue().snapshotMembers();
+            }
+        }
+        if (!this.dirty) {
+            return;
+        }
+        File parent = this.indexFile.getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            logger.warning("Unable to create directory '" + parent + "' for the ActionScript type index");
+            return;
+        }
+        File tempFile = new File(this.indexFile.getPath() + ".tmp");
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(this.entries.size());
+            for (Map.Entry<String, IndexedType> entry : this.entries.entrySet()) {
+                writeString(out, entry.getKey());
+                writeEntry(out, entry.getValue());
+            }
+            out.close();
+            out = null;
+            if (this.indexFile.exists() && !this.indexFile.delete()) {
+                throw new IOException("Unable to replace '" + this.indexFile + "'");
+            }
+            if (!tempFile.renameTo(this.indexFile)) {
+                throw new IOException("Unable to rename '" + tempFile + "' to '" + this.indexFile + "'");
+            }
+            this.dirty = false;
+        } catch (IOException e) {
+            logger.warning("Unable to save ActionScript type index '" + this.indexFile + "': " + e.getMessage());
+        } finally {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException ignored) {
+                }
+            }
+            tempFile.delete();
+        }
+    }
+
+    private void ensureLoaded() {
+        if (this.loaded) {
+            return;
+        }
+        this.loaded = true;
+        if (!this.indexFile.isFile()) {
+            return;
+        }
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(this.indexFile)));
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                if (logger.isLoggable(Level.FINE)) {
+                    logger.fine("Discarding ActionScript type index '" + this.indexFile + "' written by a different version");
+                }
+                this.dirty = true;
+                return;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String fileIdentifier = readString(in);
+                this.entries.put(fileIdentifier, readEntry(in));
+            }
+            if (logger.isLoggable(Level.FINE)) {
+                logger.fine("Loaded " + count + " entries from ActionScript type index '" + this.indexFile + "'");
+            }
+        } catch (Exception e) {
+            logger.warning("Discarding unreadable ActionScript type index '" + this.indexFile + "': " + e.getMessage());
+            this.entries.clear();
+            this.dirty = true;
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    private void writeEntry(DataOutputStream out, IndexedType entry) throws IOException {
+        writeString(out, entry.declaredByMetadataId);
+        out.writeLong(entry.size);
+        out.writeLong(entry.lastModified);
+        writeString(out, entry.hash);
+        out.writeByte(entry.physicalTypeCategory.ordinal());
+        out.writeInt(entry.imports.size());
+        for (String importName : entry.imports) {
+            writeString(out, importName);
+        }
+        writeTypes(out, entry.extendsTypes);
+        writeTypes(out, entry.implementsTypes);
+        writeMetaTags(out, entry.typeMetaTags);
+        out.writeBoolean(entry.declaredConstructor != null);
+        if (entry.declaredConstructor != null) {
+            writeInvocableMember(out, entry.declaredConstructor);
+        }
+        out.writeInt(entry.declaredMethods.size());
+        for (ASMethodMetadata method : entry.declaredMethods) {
+            writeString(out, method.getMethodName().getSymbolName());
+            writeType(out, method.getReturnType());
+            writeInvocableMember(out, method);
+        }
+        out.writeInt(entry.declaredFields.size());
+        for (ASFieldMetadata field : entry.declaredFields) {
+            writeString(out, field.getFieldName().getSymbolName());
+            writeType(out, field.getFieldType());
+            out.writeByte(field.getVisibility().ordinal());
+            writeNullableString(out, field.getFieldInitializer());
+            writeMetaTags(out, field.getMetaTags());
+        }
+    }
+
+    private IndexedType readEntry(DataInputStream in) throws IOException {
+        String declaredByMetadataId = readString(in);
+        long size = in.readLong();
+        long lastModified = in.readLong();
+        String hash = readString(in);
+        IndexedType entry = new IndexedType(declaredByMetadataId, ASPhysicalTypeCategory.values()[in.readByte()]);
+        entry.size = size;
+        entry.lastModified = lastModified;
+        entry.hash = hash;
+        int importCount = in.readInt();
+        for (int i = 0; i < importCount; i++) {
+            entry.imports.add(readString(in));
+        }
+        entry.extendsTypes.addAll(readTypes(in));
+        entry.implementsTypes.addAll(readTypes(in));
+        entry.typeMetaTags.addAll(readMetaTags(in));
+        if (in.readBoolean()) {
+            ASTypeVisibility visibility = ASTypeVisibility.values()[in.readByte()];
+            String body = readString(in);
+            List<ASMetaTagMetadata> metaTags = readMetaTags(in);
+            List<ActionScriptSymbolName> paramNames = readSymbolNames(in);
+            List<ActionScriptType> paramTypes = readTypes(in);
+            entry.declaredConstructor = new DefaultASConstructorMetadata(declaredByMetadataId, body, metaTags, paramTypes, paramNames, visibility);
+        }
+        int methodCount = in.readInt();
+        for (int i = 0; i < methodCount; i++) {
+            ActionScriptSymbolName methodName = new ActionScriptSymbolName(readString(in));
+            ActionScriptType returnType = readType(in);
+            ASTypeVisibility visibility = ASTypeVisibility.values()[in.readByte()];
+            String body = readString(in);
+            List<ASMetaTagMetadata> metaTags = readMetaTags(in);
+            List<ActionScriptSymbolName> paramNames = readSymbolNames(in);
+            List<ActionScriptType> paramTypes = readTypes(in);
+            entry.declaredMethods.add(new DefaultASMethodMetadata(declaredByMetadataId, methodName, returnType, visibility, body, metaTags,
+                paramTypes, paramNames));
+        }
+        int fieldCount = in.readInt();
+        for (int i = 0; i < fieldCount; i++) {
+            ActionScriptSymbolName fieldName = new ActionScriptSymbolName(readString(in));
+            ActionScriptType fieldType = readType(in);
+            ASTypeVisibility visibility = ASTypeVisibility.values()[in.readByte()];
+            String initializer = readNullableString(in);
+            List<ASMetaTagMetadata> metaTags = readMetaTags(in);
+            entry.declaredFields.add(new DefaultASFieldMetadata(declaredByMetadataId, fieldType, fieldName, visibility, initializer, metaTags));
+        }
+        return entry;
+    }
+
+    private void writeInvocableMember(DataOutputStream out, ASInvocableMemberMetadata member) throws IOException {
+        out.writeByte(member.getVisibility().ordinal());
+        writeString(out, member.getBody() != null ? member.getBody() : "");
+        writeMetaTags(out, member.getMetaTags());
+        out.writeInt(member.getParameterNames().size());
+        for (ActionScriptSymbolName paramName : member.getParameterNames()) {
+            writeString(out, paramName.getSymbolName());
+        }
+        writeTypes(out, member.getParameterTypes());
+    }
+
+    private List<ActionScriptSymbolName> readSymbolNames(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        List<ActionScriptSymbolName> names = new ArrayList<ActionScriptSymbolName>(count);
+        for (int i = 0; i < count; i++) {
+            names.add(new ActionScriptSymbolName(readString(in)));
+        }
+        return names;
+    }
+
+    private void writeMetaTags(DataOutputStream out, List<ASMetaTagMetadata> metaTags) throws IOException {
+        out.writeInt(metaTags.size());
+        for (ASMetaTagMetadata metaTag : metaTags) {
+            writeString(out, metaTag.getName());
+            List<ActionScriptSymbolName> attributeNames = metaTag.getAttributeNames();
+            out.writeInt(attributeNames.size());
+            for (ActionScriptSymbolName attributeName : attributeNames) {
+                MetaTagAttributeValue<?> value = metaTag.getAttribute(attributeName);
+                writeString(out, attributeName.getSymbolName());
+                if (value instanceof BooleanAttributeValue) {
+                    out.writeByte(BOOLEAN_ATTRIBUTE);
+                    out.writeBoolean(((BooleanAttributeValue) value).getValue());
+                } else if (value instanceof IntegerAttributeValue) {
+                    out.writeByte(INTEGER_ATTRIBUTE);
+                    out.writeInt(((IntegerAttributeValue) value).getValue());
+                } else {
+                    out.writeByte(STRING_ATTRIBUTE);
+                    writeNullableString(out, value.getValue() != null ? value.getValue().toString() : null);
+                }
+            }
+        }
+    }
+
+    private List<ASMetaTagMetadata> readMetaTags(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        List<ASMetaTagMetadata> metaTags = new ArrayList<ASMetaTagMetadata>(count);
+        for (int i = 0; i < count; i++) {
+            String name = readString(in);
+            int attributeCount = in.readInt();
+            List<MetaTagAttributeValue<?>> attributes = new ArrayList<MetaTagAttributeValue<?>>(attributeCount);
+            for (int j = 0; j < attributeCount; j++) {
+                ActionScriptSymbolName attributeName = new ActionScriptSymbolName(readString(in));
+                byte kind = in.readByte();
+                if (kind == BOOLEAN_ATTRIBUTE) {
+                    attributes.add(new BooleanAttributeValue(attributeName, in.readBoolean()));
+                } else if (kind == INTEGER_ATTRIBUTE) {
+                    attributes.add(new IntegerAttributeValue(attributeName, in.readInt()));
+                } else if (kind == STRING_ATTRIBUTE) {
+                    attributes.add(new StringAttributeValue(attributeName, readNullableString(in)));
+                } else {
+                    throw new IOException("Unknown meta tag attribute kind " + kind);
+                }
+            }
+            metaTags.add(new DefaultASMetaTagMetadata(name, attributes));
+        }
+        return metaTags;
+    }
+
+    private void writeTypes(DataOutputStream out, List<ActionScriptType> types) throws IOException {
+        out.writeInt(types.size());
+        for (ActionScriptType type : types) {
+            writeType(out, type);
+        }
+    }
+
+    private List<ActionScriptType> readTypes(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        List<ActionScriptType> types = new ArrayList<ActionScriptType>(count);
+        for (int i = 0; i < count; i++) {
+            types.add(readType(in));
+        }
+        return types;
+    }
+
+    private void writeType(DataOutputStream out, ActionScriptType type) throws IOException {
+        writeString(out, type.getFullyQualifiedTypeName());
+        out.writeInt(type.getArray());
+        out.writeByte(type.getDataType().ordinal());
+    }
+
+    private ActionScriptType readType(DataInputStream in) throws IOException {
+        String fullyQualifiedTypeName = readString(in);
+        int array = in.readInt();
+        ASDataType dataType = ASDataType.values()[in.readByte()];
+        return new ActionScriptType(fullyQualifiedTypeName, array, dataType);
+    }
+
+    private void writeNullableString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            writeString(out, value);
+        }
+    }
+
+    private String readNullableString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? readString(in) : null;
+    }
+
+    private void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes("UTF-8");
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, "UTF-8");
+    }
+
+    /**
+     * The details of a single indexed type, as extracted from its source file.
+     */
+    public static final class IndexedType {
+
+        private final String declaredByMetadataId;
+
+        private final ASPhysicalTypeCategory physicalTypeCategory;
+
+        private final List<String> imports = new ArrayList<String>();
+
+        private final List<ActionScriptType> extendsTypes = new ArrayList<ActionScriptType>();
+
+        private final List<ActionScriptType> implementsTypes = new ArrayList<ActionScriptType>();
+
+        private final List<ASMetaTagMetadata> typeMetaTags = new ArrayList<ASMetaTagMetadata>();
+
+        private ASConstructorMetadata declaredConstructor;
+
+        private final List<ASMethodMetadata> declaredMethods = new ArrayList<ASMethodMetadata>();
+
+        private final List<ASFieldMetadata> declaredFields = new ArrayList<ASFieldMetadata>();
+
+        private long size;
+
+        private long lastModified;
+
+        private String hash;
+
+        // the details the entry was recorded from, until their members have been copied
+        private As3ParserMutableClassOrInterfaceTypeDetails unresolvedDetails;
+
+        private IndexedType(String declaredByMetadataId, ASPhysicalTypeCategory physicalTypeCategory) {
+            this.declaredByMetadataId = declaredByMetadataId;
+            this.physicalTypeCategory = physicalTypeCategory;
+        }
+
+        public String getDeclaredByMetadataId() {
+            return this.declaredByMetadataId;
+        }
+
+        private void copyHeader(As3ParserMutableClassOrInterfaceTypeDetails details) {
+            this.imports.addAll(details.getImports());
+            this.extendsTypes.addAll(details.getExtendsTypes());
+            this.implementsTypes.addAll(details.getImplementsTypes());
+            this.typeMetaTags.addAll(details.getTypeMetaTags());
+            this.unresolvedDetails = details;
+        }
+
+        /**
+         * Copies the constructor, methods and fields of the details this entry was recorded from, resolving them if
+         * they have not been resolved yet. Does nothing once they have been copied.
+         */
+        synchronized void snapshotMembers() {
+            As3ParserMutableClassOrInterfaceTypeDetails details = this.unresolvedDetails;
+            if (details == null) {
+                return;
+            }
+            // Cleared first, as resolving the members calls back into this method
+            this.unresolvedDetails = null;
+            this.declaredConstructor = details.getDeclaredConstructor();
+            this.declaredMethods.addAll(details.getDeclaredMethods());
+            this.declaredFields.addAll(details.getDeclaredFields());
+        }
+
+        private synchronized boolean isComplete() {
+            return this.unresolvedDetails == null;
+        }
+
+        public ASPhysicalTypeCategory getPhysicalTypeCategory() {
+            return this.physicalTypeCategory;
+        }
+
+        public List<String> getImports() {
+            return this.imports;
+        }
+
+        public List<ActionScriptType> getExtendsTypes() {
+            return this.extendsTypes;
+        }
+
+        public List<ActionScriptType> getImplementsTypes() {
+            return this.implementsTypes;
+        }
+
+        public List<ASMetaTagMetadata> getTypeMetaTags() {
+            return this.typeMetaTags;
+        }
+
+        public ASConstructorMetadata getDeclaredConstructor() {
+            return this.declaredConstructor;
+        }
+
+        public List<ASMethodMetadata> getDeclaredMethods() {
+            return this.declaredMethods;
+        }
+
+        public List<ASFieldMetadata> getDeclaredFields() {
+            return this.declaredFields;
+        }
+    }
+}
@@ -16,6 +16,7 @@
 
 package org.springframework.flex.roo.addon.as.classpath.as3parser.details;
 
+import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -29,8 +30,11 @@ import org.springframework.flex.roo.addon.as.model.ASTypeVisibility;
 import org.springframework.flex.roo.addon.as.model.ActionScriptSymbolName;
 import org.springframework.flex.roo.addon.as.model.ActionScriptType;
 import org.springframework.roo.support.util.Assert;
+import org.springframework.roo.support.util.StringUtils;
 
+import uk.co.badgersinfoil.metaas.ActionScriptFactory;
 import uk.co.badgersinfoil.metaas.dom.ASArg;
+import uk.co.badgersinfoil.metaas.dom.ASCompilationUnit;
 import uk.co.badgersinfoil.metaas.dom.ASMetaTag;
 import uk.co.badgersinfoil.metaas.dom.ASMethod;
 import uk.co.badgersinfoil.metaas.dom.ASType;
@@ -150,9 +154,41 @@ public class As3ParserMethodMetadata implements ASMethodMetadata {
             method.addParam(argName.getSymbolName(), argType.getSimpleTypeName());
         }
 
+        // Add Statements
+        if (StringUtils.hasText(declaredMethod.getBody())) {
+            for (Statement statement : parseStatements(declaredMethod.getBody())) {
+                method.addStmt(statement.toString());
+            }
+        }
+
         if (permitFlush) {
             compilationUnitServices.flush();
         }
     }
 
+    /**
+     * Splits a method body into its top-level statements. The parser only accepts a single complete statement at a
+     * time, so the body is parsed as the body of a placeholder method rather than split by line.
+     */
+    @SuppressWarnings("unchecked")
+    private static List<Statement> parseStatements(String body) {
+        String source = "package {\nclass StatementParser {\nfunction parse():void {\n" + body + "\n}\n}\n}";
+        ASCompilationUnit compilationUnit = new ActionScriptFactory().newParser().parse(new StringReader(source));
+        return compilationUnit.getType().getMethod("parse").getStatementList();
+    }
+
+    public static void removeMethod(CompilationUnitServices compilationUnitServices, ASType type, ActionScriptSymbolName methodName,
+        boolean permitFlush) {
+        Assert.notNull(compilationUnitServices, "Compilation unit services required");
+        Assert.notNull(type, "Type required");
+        Assert.notNull(methodName, "Method name required");
+
+        Assert.notNull(type.getMethod(methodName.getSymbolName()), "Could not locate method '" + methodName + "' to delete");
+
+        type.removeMethod(methodName.getSymbolName());
+
+        if (permitFlush) {
+            compilationUnitServices.flush();
+        }
+    }
 }
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2002-2010 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.flex.roo.addon.as.classpath.details;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.flex.roo.addon.as.classpath.details.metatag.ASMetaTagMetadata;
+import org.springframework.flex.roo.addon.as.classpath.details.metatag.MetaTagAttributeValue;
+import org.springframework.flex.roo.addon.as.classpath.details.metatag.StringAttributeValue;
+import org.springframework.flex.roo.addon.as.model.ActionScriptSymbolName;
+import org.springframework.roo.support.util.Assert;
+import org.springframework.roo.support.util.StringUtils;
+
+/**
+ * Utility methods for looking up the members and meta tags of an ActionScript type by name.
+ *
+ * @author Jeremy Grelle
+ */
+public abstract class ASMemberFindingUtils {
+
+    private static final String REMOTE_CLASS_TAG = "RemoteClass";
+
+    private static final ActionScriptSymbolName ALIAS_ATTR = new ActionScriptSymbolName("alias");
+
+    /**
+     * Indexes the given fields by name, preserving their declaration order.
+     * 
+     * @param fields to index (required)
+     * @return an unmodifiable map of field name to field (never null)
+     */
+    public static Map<ActionScriptSymbolName, ASFieldMetadata> getFieldsByName(List<? extends ASFieldMetadata> fields) {
+        Assert.notNull(fields, "Fields required");
+        Map<ActionScriptSymbolName, ASFieldMetadata> fieldsByName = new LinkedHashMap<ActionScriptSymbolName, ASFieldMetadata>();
+        for (ASFieldMetadata field : fields) {
+            fieldsByName.put(field.getFieldName(), field);
+        }
+        return Collections.unmodifiableMap(fieldsByName);
+    }
+
+    /**
+     * Indexes the given methods by name, preserving their declaration order. A name may map to more than one method,
+     * as is the case for a getter and setter pair.
+     * 
+     * @param methods to index (required)
+     * @return an unmodifiable map of method name to the methods with that name (never null)
+     */
+    public static Map<ActionScriptSymbolName, List<ASMethodMetadata>> getMethodsByName(List<? extends ASMethodMetadata> methods) {
+        Assert.notNull(methods, "Methods required");
+        Map<ActionScriptSymbolName, List<ASMethodMetadata>> methodsByName = new LinkedHashMap<ActionScriptSymbolName, List<ASMethodMetadata>>();
+        for (ASMethodMetadata method : methods) {
+            List<ASMethodMetadata> named = methodsByName.get(method.getMethodName());
+            if (named == null) {
+                named = new ArrayList<ASMethodMetadata>(1);
+                methodsByName.put(method.getMethodName(), named);
+            }
+            named.add(method);
+        }
+        return Collections.unmodifiableMap(methodsByName);
+    }
+
+    /**
+     * Locates the first type-level meta tag with the given name.
+     * 
+     * @param details of the type to search (required)
+     * @param name of the meta tag (required)
+     * @return the meta tag, or null if the type has no such meta tag
+     */
+    public static ASMetaTagMetadata getTypeMetaTag(ASMemberHoldingTypeDetails details, String name) {
+        Assert.notNull(details, "Type details required");
+        Assert.hasText(name, "Meta tag name required");
+        for (ASMetaTagMetadata metaTag : details.getTypeMetaTags()) {
+            if (name.equals(metaTag.getName())) {
+                return metaTag;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Obtains the alias of the [RemoteClass] meta tag of a type, which is the fully qualified name of the Java type it
+     * mirrors.
+     * 
+     * @param details of the type to search (required)
+     * @return the alias, or null if the type is not a remote class
+     */
+    public static String getRemoteClassAlias(ASMemberHoldingTypeDetails details) {
+        ASMetaTagMetadata remoteClass = getTypeMetaTag(details, REMOTE_CLASS_TAG);
+        if (remoteClass == null) {
+            return null;
+        }
+        MetaTagAttributeValue<?> alias = remoteClass.getAttribute(ALIAS_ATTR);
+        if (alias instanceof StringAttributeValue && StringUtils.hasText(((StringAttributeValue) alias).getValue())) {
+            return ((StringAttributeValue) alias).getValue();
+        }
+        return null;
+    }
+}
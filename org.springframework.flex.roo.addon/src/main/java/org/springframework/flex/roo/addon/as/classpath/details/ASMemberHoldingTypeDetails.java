@@ -17,9 +17,11 @@
 package org.springframework.flex.roo.addon.as.classpath.details;
 
 import java.util.List;
+import java.util.Map;
 
 import org.springframework.flex.roo.addon.as.classpath.ASPhysicalTypeDetails;
 import org.springframework.flex.roo.addon.as.classpath.details.metatag.ASMetaTagMetadata;
+import org.springframework.flex.roo.addon.as.model.ActionScriptSymbolName;
 import org.springframework.flex.roo.addon.as.model.ActionScriptType;
 
 /**
@@ -35,6 +37,16 @@ public interface ASMemberHoldingTypeDetails extends ASPhysicalTypeDetails {
 
     List<ASFieldMetadata> getDeclaredFields();
 
+    /**
+     * @return the declared fields keyed by name, in declaration order (never null)
+     */
+    Map<ActionScriptSymbolName, ASFieldMetadata> getDeclaredFieldsByName();
+
+    /**
+     * @return the declared methods keyed by name, in declaration order (never null)
+     */
+    Map<ActionScriptSymbolName, List<ASMethodMetadata>> getDeclaredMethodsByName();
+
     List<ASMetaTagMetadata> getTypeMetaTags();
 
     List<ActionScriptType> getExtendsTypes();
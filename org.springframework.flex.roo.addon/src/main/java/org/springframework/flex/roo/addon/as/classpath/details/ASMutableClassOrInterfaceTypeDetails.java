@@ -18,6 +18,7 @@ package org.springframework.flex.roo.addon.as.classpath.details;
 
 import org.springframework.flex.roo.addon.as.classpath.details.metatag.ASMetaTagMetadata;
 import org.springframework.flex.roo.addon.as.model.ActionScriptSymbolName;
+import org.springframework.flex.roo.addon.as.model.ActionScriptType;
 
 /**
  * Details about the different members in a class or interface.
@@ -66,6 +67,30 @@ public interface ASMutableClassOrInterfaceTypeDetails extends ASClassOrInterface
      */
     void addMethod(ASMethodMetadata methodMetadata, boolean flush);
 
+    /**
+     * Removes an existing method. A method with the specified name must already exist.
+     * 
+     * @param methodName to remove (required)
+     * @param flush changes to disk immediately
+     */
+    void removeMethod(ActionScriptSymbolName methodName, boolean flush);
+
+    /**
+     * Adds an interface to those implemented by the class. The class must not already implement the interface.
+     * 
+     * @param implementsType the interface to implement (required)
+     * @param flush changes to disk immediately
+     */
+    void addImplementsType(ActionScriptType implementsType, boolean flush);
+
+    /**
+     * Removes an interface from those implemented by the class. The class must already implement the interface.
+     * 
+     * @param implementsType the interface to remove (required)
+     * @param flush changes to disk immediately
+     */
+    void removeImplementsType(ActionScriptType implementsType, boolean flush);
+
     /**
      * Adds a new type-level meta tag. There must not already be an equivalent meta tag of this defined on the type.
      * 
@@ -112,10 +137,24 @@ public interface ASMutableClassOrInterfaceTypeDetails extends ASClassOrInterface
     void addMethod(ASMethodMetadata methodMetadata);
 
     /**
-     * Commit changes to disk
+     * Starts a unit of work. Until {@link #commit()} is called, changes are held in memory even if they were requested
+     * to be written to disk immediately.
+     */
+    void beginUnitOfWork();
+
+    /**
+     * Commit changes to disk, ending any unit of work. The file is written at most once, and not at all if its
+     * contents would be unchanged.
      */
     void commit();
 
+    /**
+     * Discards the changes held in memory by the unit of work, ending it, so that the file keeps the contents it had
+     * before the unit of work began. Never fails, so that it can safely be called while another exception is being
+     * handled.
+     */
+    void rollback();
+
     void updateField(ASFieldMetadata fieldMetadata, boolean flush);
 
     void updateField(ASFieldMetadata fieldMetadata);
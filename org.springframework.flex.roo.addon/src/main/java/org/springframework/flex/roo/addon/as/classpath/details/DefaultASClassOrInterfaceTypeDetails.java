@@ -18,9 +18,11 @@ package org.springframework.flex.roo.addon.as.classpath.details;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 import org.springframework.flex.roo.addon.as.classpath.ASPhysicalTypeCategory;
 import org.springframework.flex.roo.addon.as.classpath.details.metatag.ASMetaTagMetadata;
+import org.springframework.flex.roo.addon.as.model.ActionScriptSymbolName;
 import org.springframework.flex.roo.addon.as.model.ActionScriptType;
 import org.springframework.roo.support.util.Assert;
 
@@ -121,6 +123,14 @@ public class DefaultASClassOrInterfaceTypeDetails implements ASClassOrInterfaceT
         return this.declaredMethods;
     }
 
+    public Map<ActionScriptSymbolName, ASFieldMetadata> getDeclaredFieldsByName() {
+        return ASMemberFindingUtils.getFieldsByName(this.declaredFields);
+    }
+
+    public Map<ActionScriptSymbolName, List<ASMethodMetadata>> getDeclaredMethodsByName() {
+        return ASMemberFindingUtils.getMethodsByName(this.declaredMethods);
+    }
+
     public ASClassOrInterfaceTypeDetails getSuperClass() {
         return this.superClass;
     }
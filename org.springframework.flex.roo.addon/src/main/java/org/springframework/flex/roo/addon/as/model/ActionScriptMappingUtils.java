@@ -17,20 +17,20 @@
 package org.springframework.flex.roo.addon.as.model;
 
 import java.lang.reflect.Modifier;
-import java.math.BigDecimal;
-import java.math.BigInteger;
-import java.util.Calendar;
-import java.util.Date;
-import java.util.HashMap;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 
+import org.springframework.flex.roo.addon.RooFlexTransient;
 import org.springframework.flex.roo.addon.as.classpath.details.ASFieldMetadata;
 import org.springframework.flex.roo.addon.as.classpath.details.DefaultASFieldMetadata;
+import org.springframework.flex.roo.addon.as.classpath.details.metatag.ASMetaTagMetadata;
+import org.springframework.flex.roo.addon.as.classpath.details.metatag.DefaultASMetaTagMetadata;
 import org.springframework.roo.classpath.details.FieldMetadata;
 import org.springframework.roo.classpath.details.FieldMetadataBuilder;
+import org.springframework.roo.classpath.details.MemberFindingUtils;
+import org.springframework.roo.classpath.details.annotations.AnnotationAttributeValue;
 import org.springframework.roo.classpath.details.annotations.AnnotationMetadata;
-import org.springframework.roo.model.DataType;
+import org.springframework.roo.classpath.details.annotations.AnnotationMetadataBuilder;
 import org.springframework.roo.model.JavaPackage;
 import org.springframework.roo.model.JavaSymbolName;
 import org.springframework.roo.model.JavaType;
@@ -42,46 +42,23 @@ import org.springframework.roo.model.JavaType;
  */
 public abstract class ActionScriptMappingUtils {
 
-    private static final Map<JavaType, ActionScriptType> javaToAmfTypeMap = new HashMap<JavaType, ActionScriptType>();
-
-    private static final Map<ActionScriptType, JavaType> amfToJavaTypeMap = new HashMap<ActionScriptType, JavaType>();
-
-    static {
-        javaToAmfTypeMap.put(new JavaType(Enum.class.getName()), ActionScriptType.STRING_TYPE);
-        javaToAmfTypeMap.put(JavaType.STRING_OBJECT, ActionScriptType.STRING_TYPE);
-        javaToAmfTypeMap.put(JavaType.BOOLEAN_OBJECT, ActionScriptType.BOOLEAN_TYPE);
-        javaToAmfTypeMap.put(JavaType.BOOLEAN_PRIMITIVE, ActionScriptType.BOOLEAN_TYPE);
-        javaToAmfTypeMap.put(JavaType.INT_OBJECT, ActionScriptType.INT_TYPE);
-        javaToAmfTypeMap.put(JavaType.INT_PRIMITIVE, ActionScriptType.INT_TYPE);
-        javaToAmfTypeMap.put(JavaType.SHORT_OBJECT, ActionScriptType.INT_TYPE);
-        javaToAmfTypeMap.put(JavaType.SHORT_PRIMITIVE, ActionScriptType.INT_TYPE);
-        javaToAmfTypeMap.put(JavaType.BYTE_OBJECT, ActionScriptType.INT_TYPE);
-        javaToAmfTypeMap.put(new JavaType(Byte.class.getName(), 1, DataType.PRIMITIVE, null, null), ActionScriptType.INT_TYPE);
-        javaToAmfTypeMap.put(new JavaType(Byte.class.getName(), 1, DataType.TYPE, null, null), new ActionScriptType("flash.utils.ByteArray"));
-        javaToAmfTypeMap.put(JavaType.DOUBLE_OBJECT, ActionScriptType.NUMBER_TYPE);
-        javaToAmfTypeMap.put(JavaType.DOUBLE_PRIMITIVE, ActionScriptType.NUMBER_TYPE);
-        javaToAmfTypeMap.put(JavaType.LONG_OBJECT, ActionScriptType.NUMBER_TYPE);
-        javaToAmfTypeMap.put(JavaType.LONG_PRIMITIVE, ActionScriptType.NUMBER_TYPE);
-        javaToAmfTypeMap.put(JavaType.FLOAT_OBJECT, ActionScriptType.NUMBER_TYPE);
-        javaToAmfTypeMap.put(JavaType.FLOAT_PRIMITIVE, ActionScriptType.NUMBER_TYPE);
-        javaToAmfTypeMap.put(JavaType.CHAR_OBJECT, ActionScriptType.STRING_TYPE);
-        javaToAmfTypeMap.put(JavaType.CHAR_PRIMITIVE, ActionScriptType.STRING_TYPE);
-        javaToAmfTypeMap.put(new JavaType(Character.class.getName(), 1, DataType.TYPE, null, null), ActionScriptType.STRING_TYPE);
-        javaToAmfTypeMap.put(new JavaType(Character.class.getName(), 1, DataType.PRIMITIVE, null, null), ActionScriptType.STRING_TYPE);
-        javaToAmfTypeMap.put(new JavaType(BigInteger.class.getName(), 0, DataType.TYPE, null, null), ActionScriptType.STRING_TYPE);
-        javaToAmfTypeMap.put(new JavaType(BigDecimal.class.getName(), 0, DataType.TYPE, null, null), ActionScriptType.STRING_TYPE);
-        javaToAmfTypeMap.put(new JavaType(Calendar.class.getName(), 0, DataType.TYPE, null, null), ActionScriptType.DATE_TYPE);
-        javaToAmfTypeMap.put(new JavaType(Date.class.getName(), 0, DataType.TYPE, null, null), ActionScriptType.DATE_TYPE);
-
-        amfToJavaTypeMap.put(ActionScriptType.STRING_TYPE, JavaType.STRING_OBJECT);
-        amfToJavaTypeMap.put(ActionScriptType.BOOLEAN_TYPE, JavaType.BOOLEAN_OBJECT);
-        amfToJavaTypeMap.put(ActionScriptType.INT_TYPE, JavaType.INT_OBJECT);
-        amfToJavaTypeMap.put(ActionScriptType.NUMBER_TYPE, JavaType.DOUBLE_OBJECT);
-        amfToJavaTypeMap.put(ActionScriptType.DATE_TYPE, new JavaType(Date.class.getName(), 0, DataType.TYPE, null, null));
-        amfToJavaTypeMap.put(new ActionScriptType("flash.utils.ByteArray"), new JavaType(Byte.class.getName(), 1, DataType.TYPE, null, null));
-        amfToJavaTypeMap.put(new ActionScriptType("mx.collections.ArrayCollection"), new JavaType(List.class.getName(), 0, DataType.TYPE, null, null));
-        amfToJavaTypeMap.put(ActionScriptType.ARRAY_TYPE, new JavaType(List.class.getName(), 0, DataType.TYPE, null, null));
-        amfToJavaTypeMap.put(ActionScriptType.OBJECT_TYPE, new JavaType(Map.class.getName(), 0, DataType.TYPE, null, null));
+    public static final String TRANSIENT_TAG = "Transient";
+
+    private static final JavaType ROO_FLEX_TRANSIENT = new JavaType(RooFlexTransient.class.getName());
+
+    private static volatile ActionScriptTypeMappingRegistry registry = new DefaultActionScriptTypeMappingRegistry();
+
+    /**
+     * Sets the registry used to map between Java and ActionScript types, reverting to the built-in mappings if null.
+     *
+     * @param mappingRegistry the registry to use
+     */
+    public static void setRegistry(ActionScriptTypeMappingRegistry mappingRegistry) {
+        registry = (mappingRegistry != null ? mappingRegistry : new DefaultActionScriptTypeMappingRegistry());
+    }
+
+    public static ActionScriptTypeMappingRegistry getRegistry() {
+        return registry;
     }
 
     public static ActionScriptType toActionScriptType(FieldMetadata javaField) {
@@ -103,31 +80,11 @@ public abstract class ActionScriptMappingUtils {
     }
     
     public static ActionScriptType toActionScriptType(JavaType javaType) {
-        if (javaToAmfTypeMap.containsKey(javaType)) {
-            return javaToAmfTypeMap.get(javaType);
-        }
-
-        if (javaType.isCommonCollectionType()) {
-            if (javaType.getSimpleTypeName().endsWith("Map")) {
-                if (javaType.isArray()) {
-                    return ActionScriptType.ARRAY_TYPE;
-                } else {
-                    return ActionScriptType.OBJECT_TYPE;
-                }
-            } else {
-                return new ActionScriptType("mx.collections.ArrayCollection");
-            }
-        }
-
-        return new ActionScriptType(javaType.getFullyQualifiedTypeName(), (javaType.isArray() ? 1 : 0), ASDataType.TYPE);
+        return registry.toActionScriptType(javaType);
     }
 
     public static JavaType toJavaType(ActionScriptType asType) {
-        if (amfToJavaTypeMap.containsKey(asType)) {
-            return amfToJavaTypeMap.get(asType);
-        }
-
-        return new JavaType(asType.getFullyQualifiedTypeName());
+        return registry.toJavaType(asType);
     }
 
     public static ActionScriptSymbolName toActionScriptSymbolName(JavaSymbolName name) {
@@ -175,14 +132,42 @@ public abstract class ActionScriptMappingUtils {
     }
 
     public static ASFieldMetadata toASFieldMetadata(String asEntityId, FieldMetadata javaField, boolean makePublic) {
+        List<ASMetaTagMetadata> metaTags = null;
+        if (isTransient(javaField)) {
+            metaTags = new ArrayList<ASMetaTagMetadata>();
+            metaTags.add(new DefaultASMetaTagMetadata(TRANSIENT_TAG, null));
+        }
         return new DefaultASFieldMetadata(asEntityId, toActionScriptType(javaField),
             toActionScriptSymbolName(javaField.getFieldName()), (makePublic ? ASTypeVisibility.PUBLIC : toASTypeVisibility(javaField.getModifier())),
-            null, null);
+            null, metaTags);
     }
 
     public static FieldMetadata toFieldMetadata(String javaEntityId, ASFieldMetadata asField, boolean makePrivate) {
-        return new FieldMetadataBuilder(javaEntityId, (makePrivate ? Modifier.PRIVATE : toJavaModifier(asField.getVisibility())),
-            toJavaSymbolName(asField.getFieldName()), toJavaType(asField.getFieldType()), null).build();
+        List<AnnotationMetadataBuilder> annotations = new ArrayList<AnnotationMetadataBuilder>();
+        if (isTransient(asField)) {
+            annotations.add(new AnnotationMetadataBuilder(ROO_FLEX_TRANSIENT, new ArrayList<AnnotationAttributeValue<?>>()));
+        }
+        return new FieldMetadataBuilder(javaEntityId, (makePrivate ? Modifier.PRIVATE : toJavaModifier(asField.getVisibility())), annotations,
+            toJavaSymbolName(asField.getFieldName()), toJavaType(asField.getFieldType())).build();
+    }
+
+    /**
+     * @return true if the Java property is not exchanged with Flex clients
+     */
+    public static boolean isTransient(FieldMetadata javaField) {
+        return MemberFindingUtils.getAnnotationOfType(javaField.getAnnotations(), ROO_FLEX_TRANSIENT) != null;
+    }
+
+    /**
+     * @return true if the ActionScript property is not exchanged with the server
+     */
+    public static boolean isTransient(ASFieldMetadata asField) {
+        for (ASMetaTagMetadata metaTag : asField.getMetaTags()) {
+            if (TRANSIENT_TAG.equals(metaTag.getName())) {
+                return true;
+            }
+        }
+        return false;
     }
 
     public static boolean isMappableType(ActionScriptType fieldType) {
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2002-2010 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.flex.roo.addon.as.model;
+
+import org.springframework.roo.model.JavaType;
+
+/**
+ * Registry of the mappings between Java types and the ActionScript types they are exchanged as over AMF.
+ *
+ * <p>
+ * Results are cached, so repeated lookups of the same type return the same instance.
+ *
+ * @author Jeremy Grelle
+ */
+public interface ActionScriptTypeMappingRegistry {
+
+    /**
+     * @param javaType the Java type (required)
+     * @return the ActionScript type that the Java type is exchanged as (never null)
+     */
+    ActionScriptType toActionScriptType(JavaType javaType);
+
+    /**
+     * @param asType the ActionScript type (required)
+     * @return the Java type that the ActionScript type is exchanged as (never null)
+     */
+    JavaType toJavaType(ActionScriptType asType);
+
+    /**
+     * Maps the given Java type to the given ActionScript type, replacing any existing mapping of the Java type. The
+     * reverse mapping is only added if the ActionScript type is not mapped already.
+     *
+     * @param javaType the Java type (required)
+     * @param asType the ActionScript type (required)
+     */
+    void registerMapping(JavaType javaType, ActionScriptType asType);
+}
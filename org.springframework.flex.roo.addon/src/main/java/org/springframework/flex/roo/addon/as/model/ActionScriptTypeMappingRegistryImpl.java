@@ -0,0 +1,183 @@
+/*
+ * Copyright 2002-2010 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.flex.roo.addon.as.model;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+import org.apache.felix.scr.annotations.Component;
+import org.apache.felix.scr.annotations.Reference;
+import org.apache.felix.scr.annotations.Service;
+import org.osgi.service.component.ComponentContext;
+import org.springframework.roo.classpath.PhysicalTypeCategory;
+import org.springframework.roo.classpath.PhysicalTypeIdentifier;
+import org.springframework.roo.classpath.PhysicalTypeMetadata;
+import org.springframework.roo.classpath.details.ClassOrInterfaceTypeDetails;
+import org.springframework.roo.file.monitor.event.FileEvent;
+import org.springframework.roo.file.monitor.event.FileEventListener;
+import org.springframework.roo.file.monitor.event.FileOperation;
+import org.springframework.roo.metadata.MetadataDependencyRegistry;
+import org.springframework.roo.metadata.MetadataNotificationListener;
+import org.springframework.roo.metadata.MetadataService;
+import org.springframework.roo.model.JavaType;
+import org.springframework.roo.process.manager.FileManager;
+import org.springframework.roo.project.Path;
+import org.springframework.roo.project.ProjectMetadata;
+import org.springframework.roo.support.logging.HandlerUtils;
+
+/**
+ * {@link ActionScriptTypeMappingRegistry} service that adds project-specific mappings to the built-in ones.
+ *
+ * <p>
+ * Enums with source in the project are mapped to <code>String</code>. Additional mappings can be declared in a
+ * {@value #OVERRIDES_FILE_NAME} file in the root of the project, with entries of the form
+ * <code>java.type.Name=actionscript.type.Name</code>, which is reloaded whenever it changes. While active, this
+ * registry is also used by {@link ActionScriptMappingUtils}.
+ *
+ * @author Jeremy Grelle
+ */
+@Component(immediate = true)
+@Service
+public class ActionScriptTypeMappingRegistryImpl extends DefaultActionScriptTypeMappingRegistry implements MetadataNotificationListener,
+    FileEventListener {
+
+    public static final String OVERRIDES_FILE_NAME = "flex-type-mappings.properties";
+
+    private static final Logger logger = HandlerUtils.getLogger(ActionScriptTypeMappingRegistryImpl.class);
+
+    @Reference
+    private MetadataService metadataService;
+
+    @Reference
+    private MetadataDependencyRegistry metadataDependencyRegistry;
+
+    @Reference
+    private FileManager fileManager;
+
+    private volatile boolean overridesLoaded = false;
+
+    protected void activate(ComponentContext context) {
+        this.metadataDependencyRegistry.addNotificationListener(this);
+        ActionScriptMappingUtils.setRegistry(this);
+    }
+
+    protected void deactivate(ComponentContext context) {
+        ActionScriptMappingUtils.setRegistry(null);
+        this.metadataDependencyRegistry.removeNotificationListener(this);
+    }
+
+    @Override
+    public ActionScriptType toActionScriptType(JavaType javaType) {
+        loadOverridesIfNecessary();
+        return super.toActionScriptType(javaType);
+    }
+
+    @Override
+    public JavaType toJavaType(ActionScriptType asType) {
+        loadOverridesIfNecessary();
+        return super.toJavaType(asType);
+    }
+
+    public void notify(String upstreamDependency, String downstreamDependency) {
+        // The type may have become, or stopped being, an enum
+        if (PhysicalTypeIdentifier.isValid(upstreamDependency)) {
+            evict(PhysicalTypeIdentifier.getJavaType(upstreamDependency));
+        }
+    }
+
+    public void onFileEvent(FileEvent fileEvent) {
+        if (fileEvent.getOperation() != FileOperation.MONITORING_FINISH
+            && fileEvent.getFileDetails().getCanonicalPath().endsWith(File.separator + OVERRIDES_FILE_NAME)) {
+            this.overridesLoaded = false;
+        }
+    }
+
+    @Override
+    protected boolean isEnumeration(JavaType javaType) {
+        if (javaType.getFullyQualifiedTypeName().startsWith("java.")) {
+            return false;
+        }
+        PhysicalTypeMetadata metadata = (PhysicalTypeMetadata) this.metadataService.get(PhysicalTypeIdentifier.createIdentifier(javaType,
+            Path.SRC_MAIN_JAVA));
+        if (metadata == null || !(metadata.getMemberHoldingTypeDetails() instanceof ClassOrInterfaceTypeDetails)) {
+            return false;
+        }
+        return ((ClassOrInterfaceTypeDetails) metadata.getMemberHoldingTypeDetails()).getPhysicalTypeCategory() == PhysicalTypeCategory.ENUMERATION;
+    }
+
+    private void loadOverridesIfNecessary() {
+        if (this.overridesLoaded) {
+            return;
+        }
+
+        // Read the overrides before locking, as the metadata service may be in use by a thread waiting on this registry
+        ProjectMetadata projectMetadata = (ProjectMetadata) this.metadataService.get(ProjectMetadata.getProjectIdentifier());
+        if (projectMetadata == null) {
+            // Try again once the project is available
+            return;
+        }
+        Map<JavaType, ActionScriptType> overrides = readOverrides(projectMetadata.getPathResolver().getIdentifier(Path.ROOT, OVERRIDES_FILE_NAME));
+
+        synchronized (this) {
+            if (this.overridesLoaded) {
+                return;
+            }
+            reset();
+            for (Map.Entry<JavaType, ActionScriptType> override : overrides.entrySet()) {
+                registerMapping(override.getKey(), override.getValue());
+            }
+            this.overridesLoaded = true;
+        }
+    }
+
+    private Map<JavaType, ActionScriptType> readOverrides(String overridesFile) {
+        Map<JavaType, ActionScriptType> overrides = new LinkedHashMap<JavaType, ActionScriptType>();
+        if (!this.fileManager.exists(overridesFile)) {
+            return overrides;
+        }
+
+        Properties properties = new Properties();
+        InputStream inputStream = this.fileManager.getInputStream(overridesFile);
+        try {
+            properties.load(inputStream);
+        } catch (IOException e) {
+            logger.warning("Unable to read ActionScript type mappings from '" + overridesFile + "': " + e.getMessage());
+            return overrides;
+        } finally {
+            try {
+                inputStream.close();
+            } catch (IOException ignored) {
+            }
+        }
+
+        for (Object key : properties.keySet()) {
+            String javaTypeName = ((String) key).trim();
+            String asTypeName = properties.getProperty((String) key).trim();
+            try {
+                overrides.put(new JavaType(javaTypeName), new ActionScriptType(asTypeName));
+            } catch (IllegalArgumentException e) {
+                logger.warning("Ignoring invalid ActionScript type mapping '" + javaTypeName + "=" + asTypeName + "': " + e.getMessage());
+            }
+        }
+        return overrides;
+    }
+}
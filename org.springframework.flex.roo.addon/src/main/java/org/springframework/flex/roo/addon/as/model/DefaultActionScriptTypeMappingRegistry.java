@@ -0,0 +1,208 @@
+/*
+ * Copyright 2002-2010 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.flex.roo.addon.as.model;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.springframework.roo.model.DataType;
+import org.springframework.roo.model.JavaType;
+import org.springframework.roo.support.util.Assert;
+
+/**
+ * {@link ActionScriptTypeMappingRegistry} holding the mappings performed by BlazeDS out of the box.
+ *
+ * <p>
+ * Java types are mapped to the most compact AMF representation that preserves their values: narrow integers to
+ * <code>int</code>, <code>long</code> and floating point types to <code>Number</code>, byte arrays to
+ * <code>ByteArray</code>, and arbitrary precision numbers to <code>String</code>.
+ *
+ * @author Jeremy Grelle
+ */
+public class DefaultActionScriptTypeMappingRegistry implements ActionScriptTypeMappingRegistry {
+
+    public static final ActionScriptType BYTE_ARRAY_TYPE = new ActionScriptType("flash.utils.ByteArray");
+
+    public static final ActionScriptType ARRAY_COLLECTION_TYPE = new ActionScriptType("mx.collections.ArrayCollection");
+
+    private final Map<JavaType, ActionScriptType> javaToAmfTypeMap = new ConcurrentHashMap<JavaType, ActionScriptType>();
+
+    private final Map<ActionScriptType, JavaType> amfToJavaTypeMap = new ConcurrentHashMap<ActionScriptType, JavaType>();
+
+    private final ConcurrentMap<JavaType, ActionScriptType> asTypeCache = new ConcurrentHashMap<JavaType, ActionScriptType>();
+
+    private final ConcurrentMap<ActionScriptType, JavaType> javaTypeCache = new ConcurrentHashMap<ActionScriptType, JavaType>();
+
+    public DefaultActionScriptTypeMappingRegistry() {
+        registerBuiltInMappings();
+    }
+
+    public ActionScriptType toActionScriptType(JavaType javaType) {
+        Assert.notNull(javaType, "Java type required");
+        ActionScriptType asType = this.asTypeCache.get(javaType);
+        if (asType == null) {
+            asType = resolveActionScriptType(javaType);
+            ActionScriptType existing = this.asTypeCache.putIfAbsent(javaType, asType);
+            if (existing != null) {
+                asType = existing;
+            }
+        }
+        return asType;
+    }
+
+    public JavaType toJavaType(ActionScriptType asType) {
+        Assert.notNull(asType, "ActionScript type required");
+        JavaType javaType = this.javaTypeCache.get(asType);
+        if (javaType == null) {
+            javaType = resolveJavaType(asType);
+            JavaType existing = this.javaTypeCache.putIfAbsent(asType, javaType);
+            if (existing != null) {
+                javaType = existing;
+            }
+        }
+        return javaType;
+    }
+
+    public synchronized void registerMapping(JavaType javaType, ActionScriptType asType) {
+        Assert.notNull(javaType, "Java type required");
+        Assert.notNull(asType, "ActionScript type required");
+        this.javaToAmfTypeMap.put(javaType, asType);
+        if (!this.amfToJavaTypeMap.containsKey(asType)) {
+            this.amfToJavaTypeMap.put(asType, javaType);
+        }
+        clearCache();
+    }
+
+    /**
+     * Discards all registered mappings other than the built-in ones.
+     */
+    public synchronized void reset() {
+        this.javaToAmfTypeMap.clear();
+        this.amfToJavaTypeMap.clear();
+        registerBuiltInMappings();
+        clearCache();
+    }
+
+    /**
+     * Discards all cached lookup results.
+     */
+    public void clearCache() {
+        this.asTypeCache.clear();
+        this.javaTypeCache.clear();
+    }
+
+    /**
+     * Discards the cached lookup result for the given Java type.
+     *
+     * @param javaType the Java type
+     */
+    protected void evict(JavaType javaType) {
+        this.asTypeCache.remove(javaType);
+    }
+
+    /**
+     * Determines whether the given type is an enum, which BlazeDS exchanges as its name. Only types with source in the
+     * project can be recognized, so this implementation returns false.
+     *
+     * @param javaType the Java type
+     * @return true if the type is known to be an enum
+     */
+    protected boolean isEnumeration(JavaType javaType) {
+        return false;
+    }
+
+    private ActionScriptType resolveActionScriptType(JavaType javaType) {
+        ActionScriptType asType = this.javaToAmfTypeMap.get(javaType);
+        if (asType != null) {
+            return asType;
+        }
+
+        if (javaType.isCommonCollectionType()) {
+            if (javaType.getSimpleTypeName().endsWith("Map")) {
+                if (javaType.isArray()) {
+                    return ActionScriptType.ARRAY_TYPE;
+                } else {
+                    return ActionScriptType.OBJECT_TYPE;
+                }
+            } else {
+                return ARRAY_COLLECTION_TYPE;
+            }
+        }
+
+        if (!javaType.isArray() && isEnumeration(javaType)) {
+            return ActionScriptType.STRING_TYPE;
+        }
+
+        return new ActionScriptType(javaType.getFullyQualifiedTypeName(), (javaType.isArray() ? 1 : 0), ASDataType.TYPE);
+    }
+
+    private JavaType resolveJavaType(ActionScriptType asType) {
+        JavaType javaType = this.amfToJavaTypeMap.get(asType);
+        if (javaType != null) {
+            return javaType;
+        }
+
+        return new JavaType(asType.getFullyQualifiedTypeName());
+    }
+
+    private void registerBuiltInMappings() {
+        this.javaToAmfTypeMap.put(new JavaType(Enum.class.getName()), ActionScriptType.STRING_TYPE);
+        this.javaToAmfTypeMap.put(JavaType.STRING_OBJECT, ActionScriptType.STRING_TYPE);
+        this.javaToAmfTypeMap.put(JavaType.BOOLEAN_OBJECT, ActionScriptType.BOOLEAN_TYPE);
+        this.javaToAmfTypeMap.put(JavaType.BOOLEAN_PRIMITIVE, ActionScriptType.BOOLEAN_TYPE);
+        this.javaToAmfTypeMap.put(JavaType.INT_OBJECT, ActionScriptType.INT_TYPE);
+        this.javaToAmfTypeMap.put(JavaType.INT_PRIMITIVE, ActionScriptType.INT_TYPE);
+        this.javaToAmfTypeMap.put(JavaType.SHORT_OBJECT, ActionScriptType.INT_TYPE);
+        this.javaToAmfTypeMap.put(JavaType.SHORT_PRIMITIVE, ActionScriptType.INT_TYPE);
+        this.javaToAmfTypeMap.put(JavaType.BYTE_OBJECT, ActionScriptType.INT_TYPE);
+        this.javaToAmfTypeMap.put(new JavaType(Byte.class.getName(), 0, DataType.PRIMITIVE, null, null), ActionScriptType.INT_TYPE);
+        this.javaToAmfTypeMap.put(new JavaType(Byte.class.getName(), 1, DataType.PRIMITIVE, null, null), BYTE_ARRAY_TYPE);
+        this.javaToAmfTypeMap.put(new JavaType(Byte.class.getName(), 1, DataType.TYPE, null, null), BYTE_ARRAY_TYPE);
+        this.javaToAmfTypeMap.put(JavaType.DOUBLE_OBJECT, ActionScriptType.NUMBER_TYPE);
+        this.javaToAmfTypeMap.put(JavaType.DOUBLE_PRIMITIVE, ActionScriptType.NUMBER_TYPE);
+        // int is only 32 bits wide, so longs have to be sent as Numbers
+        this.javaToAmfTypeMap.put(JavaType.LONG_OBJECT, ActionScriptType.NUMBER_TYPE);
+        this.javaToAmfTypeMap.put(JavaType.LONG_PRIMITIVE, ActionScriptType.NUMBER_TYPE);
+        this.javaToAmfTypeMap.put(JavaType.FLOAT_OBJECT, ActionScriptType.NUMBER_TYPE);
+        this.javaToAmfTypeMap.put(JavaType.FLOAT_PRIMITIVE, ActionScriptType.NUMBER_TYPE);
+        this.javaToAmfTypeMap.put(JavaType.CHAR_OBJECT, ActionScriptType.STRING_TYPE);
+        this.javaToAmfTypeMap.put(JavaType.CHAR_PRIMITIVE, ActionScriptType.STRING_TYPE);
+        this.javaToAmfTypeMap.put(new JavaType(Character.class.getName(), 1, DataType.TYPE, null, null), ActionScriptType.STRING_TYPE);
+        this.javaToAmfTypeMap.put(new JavaType(Character.class.getName(), 1, DataType.PRIMITIVE, null, null), ActionScriptType.STRING_TYPE);
+        // Sent as Strings so that no precision is lost
+        this.javaToAmfTypeMap.put(new JavaType(BigInteger.class.getName(), 0, DataType.TYPE, null, null), ActionScriptType.STRING_TYPE);
+        this.javaToAmfTypeMap.put(new JavaType(BigDecimal.class.getName(), 0, DataType.TYPE, null, null), ActionScriptType.STRING_TYPE);
+        this.javaToAmfTypeMap.put(new JavaType(Calendar.class.getName(), 0, DataType.TYPE, null, null), ActionScriptType.DATE_TYPE);
+        this.javaToAmfTypeMap.put(new JavaType(Date.class.getName(), 0, DataType.TYPE, null, null), ActionScriptType.DATE_TYPE);
+
+        this.amfToJavaTypeMap.put(ActionScriptType.STRING_TYPE, JavaType.STRING_OBJECT);
+        this.amfToJavaTypeMap.put(ActionScriptType.BOOLEAN_TYPE, JavaType.BOOLEAN_OBJECT);
+        this.amfToJavaTypeMap.put(ActionScriptType.INT_TYPE, JavaType.INT_OBJECT);
+        this.amfToJavaTypeMap.put(ActionScriptType.NUMBER_TYPE, JavaType.DOUBLE_OBJECT);
+        this.amfToJavaTypeMap.put(ActionScriptType.DATE_TYPE, new JavaType(Date.class.getName(), 0, DataType.TYPE, null, null));
+        this.amfToJavaTypeMap.put(BYTE_ARRAY_TYPE, new JavaType(Byte.class.getName(), 1, DataType.PRIMITIVE, null, null));
+        this.amfToJavaTypeMap.put(ARRAY_COLLECTION_TYPE, new JavaType(List.class.getName(), 0, DataType.TYPE, null, null));
+        this.amfToJavaTypeMap.put(ActionScriptType.ARRAY_TYPE, new JavaType(List.class.getName(), 0, DataType.TYPE, null, null));
+        this.amfToJavaTypeMap.put(ActionScriptType.OBJECT_TYPE, new JavaType(Map.class.getName(), 0, DataType.TYPE, null, null));
+    }
+}
@@ -18,27 +18,41 @@ package org.springframework.flex.roo.addon.entity;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.Reference;
 import org.apache.felix.scr.annotations.Service;
 import org.osgi.service.component.ComponentContext;
+import org.springframework.flex.roo.addon.EntityMemberDetailsCache;
+import org.springframework.flex.roo.addon.GeneratedFileWriter;
 import org.springframework.flex.roo.addon.as.classpath.ASMutablePhysicalTypeMetadataProvider;
 import org.springframework.flex.roo.addon.as.classpath.ASPhysicalTypeCategory;
 import org.springframework.flex.roo.addon.as.classpath.ASPhysicalTypeIdentifier;
 import org.springframework.flex.roo.addon.as.classpath.ASPhysicalTypeMetadata;
 import org.springframework.flex.roo.addon.as.classpath.details.ASClassOrInterfaceTypeDetails;
 import org.springframework.flex.roo.addon.as.classpath.details.ASFieldMetadata;
+import org.springframework.flex.roo.addon.as.classpath.details.ASMemberFindingUtils;
+import org.springframework.flex.roo.addon.as.classpath.details.ASMethodMetadata;
 import org.springframework.flex.roo.addon.as.classpath.details.ASMutableClassOrInterfaceTypeDetails;
 import org.springframework.flex.roo.addon.as.classpath.details.DefaultASClassOrInterfaceTypeDetails;
+import org.springframework.flex.roo.addon.as.classpath.details.DefaultASMethodMetadata;
 import org.springframework.flex.roo.addon.as.classpath.details.DefaultASPhysicalTypeMetadata;
 import org.springframework.flex.roo.addon.as.classpath.details.metatag.ASMetaTagMetadata;
 import org.springframework.flex.roo.addon.as.classpath.details.metatag.DefaultASMetaTagMetadata;
 import org.springframework.flex.roo.addon.as.classpath.details.metatag.MetaTagAttributeValue;
 import org.springframework.flex.roo.addon.as.classpath.details.metatag.StringAttributeValue;
+import org.springframework.flex.roo.addon.as.model.ASTypeVisibility;
 import org.springframework.flex.roo.addon.as.model.ActionScriptMappingUtils;
 import org.springframework.flex.roo.addon.as.model.ActionScriptSymbolName;
 import org.springframework.flex.roo.addon.as.model.ActionScriptType;
@@ -47,13 +61,11 @@ import org.springframework.flex.roo.addon.mojos.FlexPathResolver;
 import org.springframework.roo.classpath.PhysicalTypeIdentifier;
 import org.springframework.roo.classpath.PhysicalTypeMetadata;
 import org.springframework.roo.classpath.details.BeanInfoUtils;
-import org.springframework.roo.classpath.details.ClassOrInterfaceTypeDetails;
 import org.springframework.roo.classpath.details.FieldMetadata;
 import org.springframework.roo.classpath.details.MemberFindingUtils;
 import org.springframework.roo.classpath.details.MethodMetadata;
 import org.springframework.roo.classpath.details.MutableClassOrInterfaceTypeDetails;
 import org.springframework.roo.classpath.scanner.MemberDetails;
-import org.springframework.roo.classpath.scanner.MemberDetailsScanner;
 import org.springframework.roo.metadata.MetadataDependencyRegistry;
 import org.springframework.roo.metadata.MetadataIdentificationUtils;
 import org.springframework.roo.metadata.MetadataItem;
@@ -63,6 +75,7 @@ import org.springframework.roo.metadata.MetadataService;
 import org.springframework.roo.model.JavaSymbolName;
 import org.springframework.roo.model.JavaType;
 import org.springframework.roo.project.Path;
+import org.springframework.roo.support.logging.HandlerUtils;
 import org.springframework.roo.support.util.Assert;
 import org.springframework.roo.support.util.CollectionUtils;
 import org.springframework.roo.support.util.StringUtils;
@@ -74,7 +87,7 @@ import org.springframework.roo.support.util.StringUtils;
  */
 @Component(immediate = true)
 @Service
-public class ActionScriptEntityMetadataProvider implements MetadataProvider, MetadataNotificationListener {
+public class ActionScriptEntityMetadataProvider implements MetadataProvider, MetadataNotificationListener, MirrorGenerationService {
 
     /**
      * TODO - If the entity implements an interface, should we generate the interface as well? Currently they are
@@ -84,6 +97,8 @@ public class ActionScriptEntityMetadataProvider implements MetadataProvider, Met
      * corresponding ActionScript class if necessary
      */
 
+    private static final Logger logger = HandlerUtils.getLogger(ActionScriptEntityMetadataProvider.class);
+
     private static final String REMOTE_CLASS_TAG = "RemoteClass";
 
     private static final String ALIAS_ATTR = "alias";
@@ -100,17 +115,31 @@ public class ActionScriptEntityMetadataProvider implements MetadataProvider, Met
     @Reference
     private ASMutablePhysicalTypeMetadataProvider asPhysicalTypeProvider;
     
-    @Reference 
-    protected MemberDetailsScanner memberDetailsScanner;
+    @Reference
+    private EntityMemberDetailsCache memberDetailsCache;
+
+    @Reference
+    private GeneratedFileWriter generatedFileWriter;
+
+    private final AtomicLong suppressedEchoCount = new AtomicLong();
+
+    private final AtomicLong generatedMirrorCount = new AtomicLong();
+
+    private final AtomicLong skippedMirrorCount = new AtomicLong();
+
+    // metadata identifier of the mirror -> the mapping of the entity queued to be generated at the end of the command
+    private final Map<String, TypeMapping> queuedMirrors = new LinkedHashMap<String, TypeMapping>();
 
     protected void activate(ComponentContext context) {
         this.metadataDependencyRegistry.registerDependency(PhysicalTypeIdentifier.getMetadataIdentiferType(), getProvidesType());
         this.metadataDependencyRegistry.registerDependency(ASPhysicalTypeIdentifier.getMetadataIdentiferType(), getProvidesType());
+        this.metadataDependencyRegistry.registerDependency(ExternalizableEntityMetadata.getMetadataIdentiferType(), getProvidesType());
     }
 
     protected void deactivate(ComponentContext context) {
         this.metadataDependencyRegistry.deregisterDependency(PhysicalTypeIdentifier.getMetadataIdentiferType(), getProvidesType());
         this.metadataDependencyRegistry.deregisterDependency(ASPhysicalTypeIdentifier.getMetadataIdentiferType(), getProvidesType());
+        this.metadataDependencyRegistry.deregisterDependency(ExternalizableEntityMetadata.getMetadataIdentiferType(), getProvidesType());
     }
 
     public MetadataItem get(String metadataId) {
@@ -119,9 +148,15 @@ public class ActionScriptEntityMetadataProvider implements MetadataProvider, Met
 
         // TODO - Validate that the Java type exists and is a class
 
+        // A mirror may live in any package or source path, as long as it declares the Java type as its alias
+        String asEntityId = this.asPhysicalTypeProvider.findRemoteClassIdentifier(javaType.getFullyQualifiedTypeName());
+        if (StringUtils.hasText(asEntityId)) {
+            return new ActionScriptEntityMetadata(metadataId, ASPhysicalTypeIdentifier.getActionScriptType(asEntityId), javaType);
+        }
+
         ActionScriptType asType = ActionScriptMappingUtils.toActionScriptType(javaType);
 
-        String asEntityId = this.asPhysicalTypeProvider.findIdentifier(asType);
+        asEntityId = this.asPhysicalTypeProvider.findIdentifier(asType);
         if (StringUtils.hasText(asEntityId)) {
             // TODO - If we add Roo-specific meta-tag, we could add it and then trigger off of it in the notification
             // Already exists, so return
@@ -136,6 +171,18 @@ public class ActionScriptEntityMetadataProvider implements MetadataProvider, Met
         return asEntityMetadata;
     }
     
+    /**
+     * Determines whether the given Java type has an ActionScript mirror, either declaring it as its RemoteClass alias
+     * or, as the alias is only indexed once the mirror has been parsed, in its conventional location. Neither check
+     * reads the disk once the initial scan has finished.
+     */
+    private boolean hasMirror(JavaType javaType) {
+        if (this.asPhysicalTypeProvider.findRemoteClassIdentifier(javaType.getFullyQualifiedTypeName()) != null) {
+            return true;
+        }
+        return this.asPhysicalTypeProvider.findIdentifier(ActionScriptMappingUtils.toActionScriptType(javaType)) != null;
+    }
+
     public String getProvidesType() {
         return ActionScriptEntityMetadata.getMetadataIdentiferType();
     }
@@ -143,53 +190,175 @@ public class ActionScriptEntityMetadataProvider implements MetadataProvider, Met
     public void notify(String upstreamDependency, String downstreamDependency) {
         if (MetadataIdentificationUtils.getMetadataClass(upstreamDependency).equals(
             MetadataIdentificationUtils.getMetadataClass(PhysicalTypeIdentifier.getMetadataIdentiferType()))) {
-            processJavaTypeChanged(upstreamDependency);
-        } else if (MetadataIdentificationUtils.getMetadataClass(upstreamDependency).equals(
-            MetadataIdentificationUtils.getMetadataClass(ASPhysicalTypeIdentifier.getMetadataIdentiferType()))) {
-            processActionScriptTypeChanged(upstreamDependency);
+            // Most Java types (services, controllers, ...) have no ActionScript mirror, so drop them as cheaply as
+            // possible, but only once every ActionScript type on disk has been reported, as a mirror reported later
+            // would otherwise miss the changes made to its Java type while the shell was not running
+            if (this.asPhysicalTypeProvider.isSourceScanComplete() && !hasMirror(PhysicalTypeIdentifier.getJavaType(upstreamDependency))) {
+                return;
+            }
+        }
+
+        // Stage the mirrored files so that each is written at most once, together with any other generated files
+        this.generatedFileWriter.beginBatch();
+        boolean completed = false;
+        try {
+            if (MetadataIdentificationUtils.getMetadataClass(upstreamDependency).equals(
+                MetadataIdentificationUtils.getMetadataClass(PhysicalTypeIdentifier.getMetadataIdentiferType()))) {
+                processJavaTypeChanged(upstreamDependency, true);
+            } else if (MetadataIdentificationUtils.getMetadataClass(upstreamDependency).equals(
+                MetadataIdentificationUtils.getMetadataClass(ASPhysicalTypeIdentifier.getMetadataIdentiferType()))) {
+                processActionScriptTypeChanged(upstreamDependency);
+            } else if (ExternalizableEntityMetadata.isValid(upstreamDependency)) {
+                // The entity was opted in to or out of externalization, or its externalized properties changed. Only the
+                // ITD changes in that case, so the Java source may well be unchanged since the add-on last wrote it.
+                processJavaTypeChanged(PhysicalTypeIdentifier.createIdentifier(ExternalizableEntityMetadata.getJavaType(upstreamDependency),
+                    ExternalizableEntityMetadata.getPath(upstreamDependency)), false);
+            }
+            completed = true;
+        } finally {
+            if (completed) {
+                this.generatedFileWriter.commitBatch();
+            } else {
+                this.generatedFileWriter.rollbackBatch();
+            }
         }
     }
 
-    private void createActionScriptMirrorClass(String asEntityId, ActionScriptType asType, JavaType javaType) {
-        Queue<TypeMapping> relatedTypes = new LinkedList<TypeMapping>();
+    public void queueMirror(JavaType javaType) {
+        Assert.notNull(javaType, "Java type required");
+        ActionScriptType asType = ActionScriptMappingUtils.toActionScriptType(javaType);
+        String asEntityId = ASPhysicalTypeIdentifier.createIdentifier(asType, FlexPath.SRC_MAIN_FLEX);
+        synchronized (this.queuedMirrors) {
+            if (!this.queuedMirrors.containsKey(asEntityId)) {
+                this.queuedMirrors.put(asEntityId, new TypeMapping(asEntityId, asType, javaType));
+            }
+        }
+    }
 
-        List<MetaTagAttributeValue<?>> attributes = new ArrayList<MetaTagAttributeValue<?>>();
-        attributes.add(new StringAttributeValue(new ActionScriptSymbolName(ALIAS_ATTR), javaType.getFullyQualifiedTypeName()));
-        ASMetaTagMetadata remoteClassTag = new DefaultASMetaTagMetadata(REMOTE_CLASS_TAG, attributes);
-        List<ASMetaTagMetadata> typeMetaTags = new ArrayList<ASMetaTagMetadata>();
-        typeMetaTags.add(remoteClassTag);
+    public int generateQueuedMirrors() {
+        List<TypeMapping> mappings;
+        synchronized (this.queuedMirrors) {
+            mappings = new ArrayList<TypeMapping>(this.queuedMirrors.values());
+            this.queuedMirrors.clear();
+        }
+        MirrorGenerationPlan plan = new MirrorGenerationPlan();
+        for (TypeMapping mapping : mappings) {
+            if (mirrorExists(mapping)) {
+                plan.skipType(mapping.getMetadataId());
+            } else {
+                plan.addType(mapping);
+            }
+        }
+        if (plan.getPlannedCount() == 0) {
+            this.skippedMirrorCount.addAndGet(plan.getSkippedCount());
+            return 0;
+        }
+        generateMirrors(plan);
+        return plan.getPlannedCount();
+    }
 
-        // TODO - for now we will only handle classes...interfaces could come later but would add complexity (i.e., need
-        // to find all implementations and mirror those as well)
+    private void createActionScriptMirrorClass(String asEntityId, ActionScriptType asType, JavaType javaType) {
+        MirrorGenerationPlan plan = new MirrorGenerationPlan();
+        plan.addType(new TypeMapping(asEntityId, asType, javaType));
+        generateMirrors(plan);
+    }
 
-        List<ASFieldMetadata> declaredFields = new ArrayList<ASFieldMetadata>();
-        MemberDetails memberDetails = getMemberDetails(javaType);
-        for (MethodMetadata method : MemberFindingUtils.getMethods(memberDetails)) {
-            if (BeanInfoUtils.isAccessorMethod(method)) {
-                JavaSymbolName propertyName = BeanInfoUtils.getPropertyNameForJavaBeanMethod(method);
-                FieldMetadata javaField = BeanInfoUtils.getFieldForPropertyName(memberDetails, propertyName);
-    
+    /**
+     * Walks the associations of the planned types until every related type is either planned or known to exist
+     * already, then generates each planned mirror exactly once.
+     */
+    private void generateMirrors(MirrorGenerationPlan plan) {
+        Map<String, List<ASFieldMetadata>> fieldsByType = new HashMap<String, List<ASFieldMetadata>>();
+
+        Queue<TypeMapping> unvisited = new LinkedList<TypeMapping>(plan.getTypes());
+        while (!unvisited.isEmpty()) {
+            TypeMapping mapping = unvisited.poll();
+            List<ASFieldMetadata> declaredFields = new ArrayList<ASFieldMetadata>();
+            for (FieldMetadata javaField : getAccessorFields(mapping.getJavaType())) {
                 // TODO - We don't add any meta-tags and we set the field to public - any other choice?
-                ASFieldMetadata asField = ActionScriptMappingUtils.toASFieldMetadata(asEntityId, javaField, true);
-                relatedTypes.addAll(findRequiredMappings(javaField, asField));
+                ASFieldMetadata asField = ActionScriptMappingUtils.toASFieldMetadata(mapping.getMetadataId(), javaField, true);
+                for (TypeMapping relatedType : findRequiredMappings(javaField, asField)) {
+                    if (planRelatedType(plan, mapping.getMetadataId(), relatedType)) {
+                        unvisited.add(relatedType);
+                    }
+                }
                 declaredFields.add(asField);
             }
+            fieldsByType.put(mapping.getMetadataId(), declaredFields);
         }
 
-        ASClassOrInterfaceTypeDetails asDetails = new DefaultASClassOrInterfaceTypeDetails(asEntityId, asType, ASPhysicalTypeCategory.CLASS,
-            declaredFields, null, null, null, null, null, typeMetaTags);
-        // new DefaultASClassOrInterfaceTypeDetails(declaredByMetadataId, name, physicalTypeCategory, declaredFields,
-        // declaredConstructor, declaredMethods, superClass, extendsTypes, implementsTypes, typeMetaTags);
-        ASPhysicalTypeMetadata asMetadata = new DefaultASPhysicalTypeMetadata(asEntityId, getPhysicalLocationCanonicalPath(asEntityId), asDetails);
-        this.asPhysicalTypeProvider.createPhysicalType(asMetadata);
+        for (TypeMapping mapping : plan.getOrderedTypes()) {
+            List<MetaTagAttributeValue<?>> attributes = new ArrayList<MetaTagAttributeValue<?>>();
+            attributes.add(new StringAttributeValue(new ActionScriptSymbolName(ALIAS_ATTR), mapping.getJavaType().getFullyQualifiedTypeName()));
+            ASMetaTagMetadata remoteClassTag = new DefaultASMetaTagMetadata(REMOTE_CLASS_TAG, attributes);
+            List<ASMetaTagMetadata> typeMetaTags = new ArrayList<ASMetaTagMetadata>();
+            typeMetaTags.add(remoteClassTag);
+
+            // TODO - for now we will only handle classes...interfaces could come later but would add complexity (i.e.,
+            // need to find all implementations and mirror those as well)
+
+            String asEntityId = mapping.getMetadataId();
+            List<ASMethodMetadata> declaredMethods = null;
+            List<ActionScriptType> implementsTypes = null;
+            List<FieldMetadata> externalizedFields = getExternalizedFields(mapping.getJavaType());
+            if (externalizedFields != null) {
+                declaredMethods = getExternalizableMethods(asEntityId, externalizedFields);
+                implementsTypes = new ArrayList<ActionScriptType>();
+                implementsTypes.add(ExternalizableUtils.IEXTERNALIZABLE_TYPE);
+            }
+            ASClassOrInterfaceTypeDetails asDetails = new DefaultASClassOrInterfaceTypeDetails(asEntityId, mapping.getAsType(),
+                ASPhysicalTypeCategory.CLASS, fieldsByType.get(asEntityId), null, declaredMethods, null, null, implementsTypes, typeMetaTags);
+            // new DefaultASClassOrInterfaceTypeDetails(declaredByMetadataId, name, physicalTypeCategory, declaredFields,
+            // declaredConstructor, declaredMethods, superClass, extendsTypes, implementsTypes, typeMetaTags);
+            ASPhysicalTypeMetadata asMetadata = new DefaultASPhysicalTypeMetadata(asEntityId, getPhysicalLocationCanonicalPath(asEntityId), asDetails);
+            this.asPhysicalTypeProvider.createPhysicalType(asMetadata);
+        }
 
-        // Now trigger the creation of any related types
-        while (!relatedTypes.isEmpty()) {
-            TypeMapping mapping = relatedTypes.poll();
-            createActionScriptMirrorClass(mapping.getMetadataId(), mapping.getAsType(), mapping.getJavaType());
+        this.generatedMirrorCount.addAndGet(plan.getPlannedCount());
+        this.skippedMirrorCount.addAndGet(plan.getSkippedCount());
+        if (logger.isLoggable(Level.FINE)) {
+            logger.fine("Generated " + plan.getPlannedCount() + " ActionScript mirror(s), skipped " + plan.getSkippedCount() + " existing");
         }
     }
 
+    /**
+     * Adds a type referenced by the given type to the plan, unless it is already known to the plan or already has a
+     * mirror. The filesystem is therefore consulted at most once per related type.
+     *
+     * @return true if the related type was newly planned and still has to be visited
+     */
+    private boolean planRelatedType(MirrorGenerationPlan plan, String referencingId, TypeMapping relatedType) {
+        String relatedEntityId = relatedType.getMetadataId();
+        plan.addDependency(referencingId, relatedEntityId);
+        if (plan.isKnown(relatedEntityId)) {
+            return false;
+        }
+        if (mirrorExists(relatedType)) {
+            plan.skipType(relatedEntityId);
+            return false;
+        }
+        return plan.addType(relatedType);
+    }
+
+    private boolean mirrorExists(TypeMapping mapping) {
+        return this.asPhysicalTypeProvider.findRemoteClassIdentifier(mapping.getJavaType().getFullyQualifiedTypeName()) != null
+            || StringUtils.hasText(this.asPhysicalTypeProvider.findIdentifier(mapping.getAsType()));
+    }
+
+    /**
+     * @return the total number of ActionScript mirrors generated for related types and new entities
+     */
+    public long getGeneratedMirrorCount() {
+        return this.generatedMirrorCount.get();
+    }
+
+    /**
+     * @return the total number of related types whose ActionScript mirror already existed and so was not generated
+     */
+    public long getSkippedMirrorCount() {
+        return this.skippedMirrorCount.get();
+    }
+
     private MutableClassOrInterfaceTypeDetails getClassDetails(String metadataId) {
         PhysicalTypeMetadata metadata = (PhysicalTypeMetadata) this.metadataService.get(metadataId);
         if (metadata == null) {
@@ -219,21 +388,38 @@ public class ActionScriptEntityMetadataProvider implements MetadataProvider, Met
         return physicalLocationCanonicalPath;
     }
 
-    private void processActionScriptTypeChanged(String asEntityId) {
-        List<String> processedFields = new ArrayList<String>();
-
-        ActionScriptType asType = ASPhysicalTypeIdentifier.getActionScriptType(asEntityId);
+    private String getJavaPhysicalLocationCanonicalPath(String javaEntityId) {
+        PhysicalTypeMetadata metadata = (PhysicalTypeMetadata) this.metadataService.get(javaEntityId);
+        return metadata == null ? null : metadata.getPhysicalLocationCanonicalPath();
+    }
 
-        JavaType javaType = ActionScriptMappingUtils.toJavaType(asType);
-        String javaEntityId = PhysicalTypeIdentifier.createIdentifier(javaType, Path.SRC_MAIN_JAVA);
+    private boolean isEcho(String fileIdentifier) {
+        if (fileIdentifier == null || !this.generatedFileWriter.isUnchangedSinceWritten(fileIdentifier)) {
+            return false;
+        }
+        this.suppressedEchoCount.incrementAndGet();
+        if (logger.isLoggable(Level.FINEST)) {
+            logger.finest("Ignoring change to '" + fileIdentifier + "' written by the add-on itself");
+        }
+        return true;
+    }
 
-        MutableClassOrInterfaceTypeDetails javaTypeDetails = getClassDetails(javaEntityId);
+    /**
+     * @return the number of change notifications ignored because they were caused by this add-on's own writes
+     */
+    public long getSuppressedEchoCount() {
+        return this.suppressedEchoCount.get();
+    }
 
-        // Nothing to do if Java class doesn't exist
-        if (javaTypeDetails == null) {
+    private void processActionScriptTypeChanged(String asEntityId) {
+        // Nothing to do if the change is the result of mirroring the Java type
+        if (isEcho(getPhysicalLocationCanonicalPath(asEntityId))) {
             return;
         }
 
+        Set<String> processedFields = new HashSet<String>();
+        boolean javaTypeChanged = false;
+
         ASMutableClassOrInterfaceTypeDetails asTypeDetails = getASClassDetails(asEntityId);
 
         // AS class was probably deleted, so nothing to do.
@@ -241,8 +427,19 @@ public class ActionScriptEntityMetadataProvider implements MetadataProvider, Met
             return;
         }
 
-        // Verify that the ActionScript class is enabled for remoting
-        if (!isRemotingClass(javaType, asTypeDetails)) {
+        // Only ActionScript classes enabled for remoting mirror a Java type, which is identified by the alias
+        String alias = ASMemberFindingUtils.getRemoteClassAlias(asTypeDetails);
+        if (alias == null) {
+            return;
+        }
+
+        JavaType javaType = new JavaType(alias);
+        String javaEntityId = PhysicalTypeIdentifier.createIdentifier(javaType, Path.SRC_MAIN_JAVA);
+
+        MutableClassOrInterfaceTypeDetails javaTypeDetails = getClassDetails(javaEntityId);
+
+        // Nothing to do if Java class doesn't exist
+        if (javaTypeDetails == null) {
             return;
         }
 
@@ -251,8 +448,11 @@ public class ActionScriptEntityMetadataProvider implements MetadataProvider, Met
             javaFieldNames.add(javaField.getFieldName().getSymbolName());
         }
 
-        List<String> javaPropertyNames = new ArrayList<String>();
-        MemberDetails memberDetails = scanForMemberDetails(javaTypeDetails);
+        Set<String> javaPropertyNames = new HashSet<String>();
+        MemberDetails memberDetails = this.memberDetailsCache.getMemberDetails(javaType);
+        if (memberDetails == null) {
+            return;
+        }
         for (MethodMetadata method : MemberFindingUtils.getMethods(memberDetails)) {
             if (BeanInfoUtils.isAccessorMethod(method)) {
                 javaPropertyNames.add(StringUtils.uncapitalize(BeanInfoUtils.getPropertyNameForJavaBeanMethod(method).getSymbolName()));
@@ -271,6 +471,7 @@ public class ActionScriptEntityMetadataProvider implements MetadataProvider, Met
             String fieldName = asField.getFieldName().getSymbolName();
             if (!javaPropertyNames.contains(fieldName)) {
                 javaTypeDetails.addField(ActionScriptMappingUtils.toFieldMetadata(javaEntityId, asField, true));
+                javaTypeChanged = true;
             }
             processedFields.add(fieldName);
         }
@@ -285,19 +486,35 @@ public class ActionScriptEntityMetadataProvider implements MetadataProvider, Met
         for (String javaFieldName : javaFieldNames) {
             if (!processedFields.contains(javaFieldName)) {
                 javaTypeDetails.removeField(new JavaSymbolName(javaFieldName));
+                javaTypeChanged = true;
             }
         }
 
+        if (javaTypeChanged) {
+            // Remember what we wrote, so that the resulting notification for the Java type can be ignored
+            String javaLocation = getJavaPhysicalLocationCanonicalPath(javaEntityId);
+            if (javaLocation != null) {
+                this.generatedFileWriter.recordWrite(javaLocation);
+            }
+        }
     }
 
-    private void processJavaTypeChanged(String javaEntityId) {
-        Queue<TypeMapping> relatedTypes = new LinkedList<TypeMapping>();
-        List<ASFieldMetadata> processedProperties = new ArrayList<ASFieldMetadata>();
+    private void processJavaTypeChanged(String javaEntityId, boolean ignoreEcho) {
+        // Nothing to do if the change is the result of mirroring the ActionScript type
+        if (ignoreEcho && isEcho(getJavaPhysicalLocationCanonicalPath(javaEntityId))) {
+            return;
+        }
+
+        MirrorGenerationPlan plan = new MirrorGenerationPlan();
+        Set<ActionScriptSymbolName> processedProperties = new HashSet<ActionScriptSymbolName>();
 
         JavaType javaType = PhysicalTypeIdentifier.getJavaType(javaEntityId);
 
-        ActionScriptType asType = ActionScriptMappingUtils.toActionScriptType(javaType);
-        String asEntityId = ASPhysicalTypeIdentifier.createIdentifier(asType, FlexPath.SRC_MAIN_FLEX);
+        String asEntityId = this.asPhysicalTypeProvider.findRemoteClassIdentifier(javaType.getFullyQualifiedTypeName());
+        if (asEntityId == null) {
+            // Not indexed yet, so fall back to the conventional location of the mirror
+            asEntityId = ASPhysicalTypeIdentifier.createIdentifier(ActionScriptMappingUtils.toActionScriptType(javaType), FlexPath.SRC_MAIN_FLEX);
+        }
 
         ASMutableClassOrInterfaceTypeDetails asTypeDetails = getASClassDetails(asEntityId);
 
@@ -310,87 +527,155 @@ public class ActionScriptEntityMetadataProvider implements MetadataProvider, Met
             return;
         }
 
-        List<ASFieldMetadata> declaredFields = asTypeDetails.getDeclaredFields();
+        Map<ActionScriptSymbolName, ASFieldMetadata> declaredFields = asTypeDetails.getDeclaredFieldsByName();
 
-        MemberDetails memberDetails = getMemberDetails(javaType);
-        
-        if (memberDetails == null) {
-        	return;
+        List<FieldMetadata> mutatorFields = this.memberDetailsCache.getMutatorFields(javaType);
+        if (mutatorFields == null) {
+            return;
         }
-        
-        for (MethodMetadata method : MemberFindingUtils.getMethods(memberDetails)) {
-            if (BeanInfoUtils.isMutatorMethod(method)) {
-                JavaSymbolName propertyName = BeanInfoUtils.getPropertyNameForJavaBeanMethod(method);
-                FieldMetadata javaField = BeanInfoUtils.getFieldForPropertyName(memberDetails, propertyName);
-    
+
+        // Either every change is written or none is, so that a failure never leaves a half-mirrored type on disk
+        asTypeDetails.beginUnitOfWork();
+        boolean committed = false;
+        try {
+            for (FieldMetadata javaField : mutatorFields) {
                 // TODO - We don't add any meta-tags and we set the field to public - any other choice? Probaby not until
                 // we potentially add some sort of support for AS getters and setters
                 ASFieldMetadata asField = ActionScriptMappingUtils.toASFieldMetadata(asEntityId, javaField, true);
-    
-                int existingIndex = declaredFields.indexOf(asField);
-                if (existingIndex > -1) {
+
+                ASFieldMetadata existingField = declaredFields.get(asField.getFieldName());
+                if (existingField != null) {
                     // Field already exists...does it need to be updated? Should we even do this, or just assume if the
                     // type is different that the user changed it intentionally.
-                    ASFieldMetadata existingField = declaredFields.get(existingIndex);
-                    if (!existingField.getFieldType().equals(asField.getFieldType())) {
+                    if (ActionScriptMappingUtils.isTransient(existingField) != ActionScriptMappingUtils.isTransient(asField)) {
+                        // Updating a field only ever adds meta-tags, so replace it to add or remove [Transient]
+                        asTypeDetails.removeField(asField.getFieldName(), false);
+                        asTypeDetails.addField(asField, false);
+                    } else if (!existingField.getFieldType().equals(asField.getFieldType())) {
                         asTypeDetails.updateField(asField, false);
                     }
                 } else {
                     asTypeDetails.addField(asField, false);
                 }
-    
-                relatedTypes.addAll(findRequiredMappings(javaField, asField));
-    
-                processedProperties.add(asField);
+
+                for (TypeMapping relatedType : findRequiredMappings(javaField, asField)) {
+                    planRelatedType(plan, asEntityId, relatedType);
+                }
+
+                processedProperties.add(asField.getFieldName());
             }
-        }
 
-        // TODO - how should we handle fields that don't exist in the Java object? For now we will just remove...should
-        // add some way to turn this off later.
-        for (ASFieldMetadata asField : asTypeDetails.getDeclaredFields()) {
-            if (!processedProperties.contains(asField)) {
-                asTypeDetails.removeField(asField.getFieldName());
+            // TODO - how should we handle fields that don't exist in the Java object? For now we will just remove...should
+            // add some way to turn this off later.
+            for (ActionScriptSymbolName fieldName : declaredFields.keySet()) {
+                if (!processedProperties.contains(fieldName)) {
+                    asTypeDetails.removeField(fieldName, false);
+                }
             }
-        }
 
-        asTypeDetails.commit();
+            updateExternalizableMethods(asTypeDetails, asEntityId, javaType);
+            asTypeDetails.commit();
+            committed = true;
+        } finally {
+            if (!committed) {
+                asTypeDetails.rollback();
+            }
+        }
 
         // Now trigger the creation of any newly added related types
-        while (!relatedTypes.isEmpty()) {
-            TypeMapping mapping = relatedTypes.poll();
-            createActionScriptMirrorClass(mapping.getMetadataId(), mapping.getAsType(), mapping.getJavaType());
+        if (plan.getPlannedCount() > 0) {
+            generateMirrors(plan);
         }
     }
 
-    private boolean isRemotingClass(JavaType javaType, ASMutableClassOrInterfaceTypeDetails asTypeDetails) {
-        boolean isRemotingClass = false;
-        for (ASMetaTagMetadata metaTag : asTypeDetails.getTypeMetaTags()) {
-            if (metaTag.getName().equals(REMOTE_CLASS_TAG)) {
-                MetaTagAttributeValue<?> value = metaTag.getAttribute(new ActionScriptSymbolName(ALIAS_ATTR));
-                if (value != null && value instanceof StringAttributeValue) {
-                    if (javaType.getFullyQualifiedTypeName().equals(value.getValue())) {
-                        isRemotingClass = true;
-                        break;
-                    }
-                }
+    /**
+     * @return the fields externalized by the given entity, in serialization order, or null if it is not externalizable
+     */
+    private List<FieldMetadata> getExternalizedFields(JavaType javaType) {
+        ExternalizableEntityMetadata externalizableMetadata = (ExternalizableEntityMetadata) this.metadataService.get(ExternalizableEntityMetadata.createIdentifier(
+            javaType, Path.SRC_MAIN_JAVA));
+        if (externalizableMetadata == null || !externalizableMetadata.isValid()) {
+            return null;
+        }
+        return externalizableMetadata.getExternalizedFields();
+    }
+
+    private List<ASMethodMetadata> getExternalizableMethods(String asEntityId, List<FieldMetadata> externalizedFields) {
+        List<ASFieldMetadata> asFields = new ArrayList<ASFieldMetadata>();
+        for (FieldMetadata javaField : externalizedFields) {
+            asFields.add(ActionScriptMappingUtils.toASFieldMetadata(asEntityId, javaField, true));
+        }
+        List<ASMethodMetadata> methods = new ArrayList<ASMethodMetadata>();
+        methods.add(getExternalizableMethod(asEntityId, ExternalizableUtils.WRITE_EXTERNAL, ExternalizableUtils.DATA_OUTPUT_TYPE,
+            ExternalizableUtils.OUTPUT_PARAM, ExternalizableUtils.getActionScriptWriteBody(asFields)));
+        methods.add(getExternalizableMethod(asEntityId, ExternalizableUtils.READ_EXTERNAL, ExternalizableUtils.DATA_INPUT_TYPE,
+            ExternalizableUtils.INPUT_PARAM, ExternalizableUtils.getActionScriptReadBody(asFields)));
+        return methods;
+    }
+
+    private ASMethodMetadata getExternalizableMethod(String asEntityId, String name, ActionScriptType paramType, String paramName, String body) {
+        List<ActionScriptType> paramTypes = new ArrayList<ActionScriptType>();
+        paramTypes.add(paramType);
+        List<ActionScriptSymbolName> paramNames = new ArrayList<ActionScriptSymbolName>();
+        paramNames.add(new ActionScriptSymbolName(paramName));
+        return new DefaultASMethodMetadata(asEntityId, new ActionScriptSymbolName(name), ActionScriptType.VOID_TYPE, ASTypeVisibility.PUBLIC, body,
+            null, paramTypes, paramNames);
+    }
+
+    /**
+     * Regenerates the IExternalizable methods of an existing mirror, so that they keep reading and writing the same
+     * properties in the same order as the Java entity, or removes them once the entity is no longer externalizable.
+     */
+    private void updateExternalizableMethods(ASMutableClassOrInterfaceTypeDetails asTypeDetails, String asEntityId, JavaType javaType) {
+        List<FieldMetadata> externalizedFields = getExternalizedFields(javaType);
+        if (externalizedFields == null) {
+            removeExternalizableMethods(asTypeDetails);
+            return;
+        }
+        if (!asTypeDetails.getImplementsTypes().contains(ExternalizableUtils.IEXTERNALIZABLE_TYPE)) {
+            asTypeDetails.addImplementsType(ExternalizableUtils.IEXTERNALIZABLE_TYPE, false);
+        }
+        Map<ActionScriptSymbolName, List<ASMethodMetadata>> declaredMethods = asTypeDetails.getDeclaredMethodsByName();
+        for (ASMethodMetadata method : getExternalizableMethods(asEntityId, externalizedFields)) {
+            if (declaredMethods.containsKey(method.getMethodName())) {
+                asTypeDetails.removeMethod(method.getMethodName(), false);
+            }
+            asTypeDetails.addMethod(method, false);
+        }
+    }
+
+    private void removeExternalizableMethods(ASMutableClassOrInterfaceTypeDetails asTypeDetails) {
+        if (!asTypeDetails.getImplementsTypes().contains(ExternalizableUtils.IEXTERNALIZABLE_TYPE)) {
+            return;
+        }
+        Map<ActionScriptSymbolName, List<ASMethodMetadata>> declaredMethods = asTypeDetails.getDeclaredMethodsByName();
+        for (String methodName : new String[] { ExternalizableUtils.WRITE_EXTERNAL, ExternalizableUtils.READ_EXTERNAL }) {
+            if (declaredMethods.containsKey(new ActionScriptSymbolName(methodName))) {
+                asTypeDetails.removeMethod(new ActionScriptSymbolName(methodName), false);
             }
         }
-        return isRemotingClass;
+        asTypeDetails.removeImplementsType(ExternalizableUtils.IEXTERNALIZABLE_TYPE, false);
+    }
+
+    private boolean isRemotingClass(JavaType javaType, ASMutableClassOrInterfaceTypeDetails asTypeDetails) {
+        return javaType.getFullyQualifiedTypeName().equals(ASMemberFindingUtils.getRemoteClassAlias(asTypeDetails));
     }
 
     private List<TypeMapping> findRequiredMappings(FieldMetadata javaField, ASFieldMetadata asField) {
         List<TypeMapping> relatedTypes = new ArrayList<TypeMapping>();
+        if (ActionScriptMappingUtils.isTransient(javaField)) {
+            // Never sent, so the client has no use for a mirror of the related type
+            return relatedTypes;
+        }
         if (ActionScriptMappingUtils.isMappableType(asField.getFieldType())) {
-            if (!StringUtils.hasText(this.asPhysicalTypeProvider.findIdentifier(asField.getFieldType()))) {
-                String relatedEntityId = ASPhysicalTypeIdentifier.createIdentifier(asField.getFieldType(), FlexPath.SRC_MAIN_FLEX);
-                if (!asField.getDeclaredByMetadataId().equals(relatedEntityId)) {
-                    relatedTypes.add(new TypeMapping(relatedEntityId, asField.getFieldType(), javaField.getFieldType()));
-                }
+            String relatedEntityId = ASPhysicalTypeIdentifier.createIdentifier(asField.getFieldType(), FlexPath.SRC_MAIN_FLEX);
+            if (!asField.getDeclaredByMetadataId().equals(relatedEntityId)) {
+                relatedTypes.add(new TypeMapping(relatedEntityId, asField.getFieldType(), javaField.getFieldType()));
             }
         } else if (javaField.getFieldType().isCommonCollectionType() && !CollectionUtils.isEmpty(javaField.getFieldType().getParameters())) {
             for (JavaType javaParamType : javaField.getFieldType().getParameters()) {
                 ActionScriptType asParamType = ActionScriptMappingUtils.toActionScriptType(javaParamType);
-                if (!StringUtils.hasText(this.asPhysicalTypeProvider.findIdentifier(asField.getFieldType()))) {
+                if (ActionScriptMappingUtils.isMappableType(asParamType)) {
                     String relatedEntityId = ASPhysicalTypeIdentifier.createIdentifier(asParamType, FlexPath.SRC_MAIN_FLEX);
                     if (!asField.getDeclaredByMetadataId().equals(relatedEntityId)) {
                         relatedTypes.add(new TypeMapping(relatedEntityId, asParamType, javaParamType));
@@ -401,14 +686,9 @@ public class ActionScriptEntityMetadataProvider implements MetadataProvider, Met
         return relatedTypes;
     }
     
-    private MemberDetails getMemberDetails(JavaType entityType) {
-        PhysicalTypeMetadata entityPhysicalTypeMetadata = (PhysicalTypeMetadata) metadataService.get(PhysicalTypeIdentifier.createIdentifier(entityType, Path.SRC_MAIN_JAVA));
-        Assert.notNull(entityPhysicalTypeMetadata, "Unable to obtain physical type metdata for type " + entityType.getFullyQualifiedTypeName());
-        ClassOrInterfaceTypeDetails entityClassOrInterfaceDetails = (ClassOrInterfaceTypeDetails) entityPhysicalTypeMetadata.getMemberHoldingTypeDetails();
-        return scanForMemberDetails(entityClassOrInterfaceDetails);
-    }
-    
-    private MemberDetails scanForMemberDetails(ClassOrInterfaceTypeDetails entityClassOrInterfaceDetails) {
-        return memberDetailsScanner.getMemberDetails(getClass().getName(), entityClassOrInterfaceDetails);
+    private List<FieldMetadata> getAccessorFields(JavaType entityType) {
+        List<FieldMetadata> accessorFields = this.memberDetailsCache.getAccessorFields(entityType);
+        Assert.notNull(accessorFields, "Unable to obtain physical type metdata for type " + entityType.getFullyQualifiedTypeName());
+        return accessorFields;
     }
 }
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2002-2010 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.flex.roo.addon.entity;
+
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.springframework.roo.classpath.PhysicalTypeIdentifierNamingUtils;
+import org.springframework.roo.classpath.PhysicalTypeMetadata;
+import org.springframework.roo.classpath.details.FieldMetadata;
+import org.springframework.roo.classpath.details.MethodMetadata;
+import org.springframework.roo.classpath.details.MethodMetadataBuilder;
+import org.springframework.roo.classpath.details.annotations.AnnotatedJavaType;
+import org.springframework.roo.classpath.itd.AbstractItdTypeDetailsProvidingMetadataItem;
+import org.springframework.roo.classpath.itd.InvocableMemberBodyBuilder;
+import org.springframework.roo.classpath.itd.ItdSourceFileComposer;
+import org.springframework.roo.metadata.MetadataIdentificationUtils;
+import org.springframework.roo.model.JavaSymbolName;
+import org.springframework.roo.model.JavaType;
+import org.springframework.roo.project.Path;
+import org.springframework.roo.support.util.Assert;
+
+/**
+ * Metadata for an entity that is exchanged with Flex clients as an <code>Externalizable</code>, writing its properties
+ * in the same fixed order as its ActionScript mirror.
+ *
+ * @author Jeremy Grelle
+ */
+public class ExternalizableEntityMetadata extends AbstractItdTypeDetailsProvidingMetadataItem {
+
+    private static final String PROVIDES_TYPE_STRING = ExternalizableEntityMetadata.class.getName();
+
+    private static final String PROVIDES_TYPE = MetadataIdentificationUtils.create(PROVIDES_TYPE_STRING);
+
+    private List<FieldMetadata> externalizedFields;
+
+    public ExternalizableEntityMetadata(String identifier, JavaType aspectName, PhysicalTypeMetadata governorPhysicalTypeMetadata,
+        List<FieldMetadata> externalizedFields) {
+
+        super(identifier, aspectName, governorPhysicalTypeMetadata);
+
+        Assert.isTrue(isValid(identifier), "Metadata identification string '" + identifier + "' does not appear to be a valid");
+        Assert.notNull(externalizedFields, "Externalized fields required");
+
+        if (!isValid()) {
+            return;
+        }
+
+        this.externalizedFields = Collections.unmodifiableList(new ArrayList<FieldMetadata>(externalizedFields));
+
+        // Leave the serialization alone if the entity already takes care of it
+        if (!declaresMethod(ExternalizableUtils.WRITE_EXTERNAL) && !declaresMethod(ExternalizableUtils.READ_EXTERNAL)) {
+            if (!this.governorTypeDetails.getImplementsTypes().contains(ExternalizableUtils.EXTERNALIZABLE_TYPE)) {
+                this.builder.addImplementsType(ExternalizableUtils.EXTERNALIZABLE_TYPE);
+            }
+            this.builder.addMethod(getWriteExternalMethod());
+            this.builder.addMethod(getReadExternalMethod());
+        }
+
+        this.itdTypeDetails = this.builder.build();
+
+        new ItdSourceFileComposer(this.itdTypeDetails);
+    }
+
+    public static final String getMetadataIdentiferType() {
+        return PROVIDES_TYPE;
+    }
+
+    public static final String createIdentifier(JavaType javaType, Path path) {
+        return PhysicalTypeIdentifierNamingUtils.createIdentifier(PROVIDES_TYPE_STRING, javaType, path);
+    }
+
+    public static final JavaType getJavaType(String metadataIdentificationString) {
+        return PhysicalTypeIdentifierNamingUtils.getJavaType(PROVIDES_TYPE_STRING, metadataIdentificationString);
+    }
+
+    public static final Path getPath(String metadataIdentificationString) {
+        return PhysicalTypeIdentifierNamingUtils.getPath(PROVIDES_TYPE_STRING, metadataIdentificationString);
+    }
+
+    public static boolean isValid(String metadataIdentificationString) {
+        return PhysicalTypeIdentifierNamingUtils.isValid(PROVIDES_TYPE_STRING, metadataIdentificationString);
+    }
+
+    /**
+     * @return the fields written by the entity, in serialization order
+     */
+    public List<FieldMetadata> getExternalizedFields() {
+        return this.externalizedFields;
+    }
+
+    private MethodMetadata getWriteExternalMethod() {
+        InvocableMemberBodyBuilder bodyBuilder = new InvocableMemberBodyBuilder();
+        for (String statement : ExternalizableUtils.getJavaWriteStatements(this.externalizedFields)) {
+            bodyBuilder.appendFormalLine(statement);
+        }
+        return getExternalizableMethod(ExternalizableUtils.WRITE_EXTERNAL, ExternalizableUtils.OBJECT_OUTPUT_TYPE,
+            ExternalizableUtils.OUTPUT_PARAM, bodyBuilder, new JavaType("java.io.IOException"));
+    }
+
+    private MethodMetadata getReadExternalMethod() {
+        InvocableMemberBodyBuilder bodyBuilder = new InvocableMemberBodyBuilder();
+        for (String statement : ExternalizableUtils.getJavaReadStatements(this.externalizedFields, this.builder.getImportRegistrationResolver())) {
+            bodyBuilder.appendFormalLine(statement);
+        }
+        return getExternalizableMethod(ExternalizableUtils.READ_EXTERNAL, ExternalizableUtils.OBJECT_INPUT_TYPE,
+            ExternalizableUtils.INPUT_PARAM, bodyBuilder, new JavaType("java.io.IOException"), new JavaType("java.lang.ClassNotFoundException"));
+    }
+
+    private MethodMetadata getExternalizableMethod(String name, JavaType paramType, String paramName, InvocableMemberBodyBuilder bodyBuilder,
+        JavaType... throwsTypes) {
+        List<AnnotatedJavaType> paramTypes = new ArrayList<AnnotatedJavaType>();
+        paramTypes.add(new AnnotatedJavaType(paramType, null));
+
+        List<JavaSymbolName> paramNames = new ArrayList<JavaSymbolName>();
+        paramNames.add(new JavaSymbolName(paramName));
+
+        MethodMetadataBuilder methodBuilder = new MethodMetadataBuilder(getId(), Modifier.PUBLIC, new JavaSymbolName(name), JavaType.VOID_PRIMITIVE,
+            paramTypes, paramNames, bodyBuilder);
+        for (JavaType throwsType : throwsTypes) {
+            methodBuilder.addThrowsType(throwsType);
+        }
+        return methodBuilder.build();
+    }
+
+    private boolean declaresMethod(String methodName) {
+        for (MethodMetadata method : this.governorTypeDetails.getDeclaredMethods()) {
+            if (method.getMethodName().getSymbolName().equals(methodName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
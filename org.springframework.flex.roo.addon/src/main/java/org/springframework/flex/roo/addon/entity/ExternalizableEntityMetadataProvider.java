@@ -0,0 +1,126 @@
+/*
+ * Copyright 2002-2010 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.flex.roo.addon.entity;
+
+import java.util.List;
+
+import org.apache.felix.scr.annotations.Component;
+import org.apache.felix.scr.annotations.Reference;
+import org.apache.felix.scr.annotations.Service;
+import org.osgi.service.component.ComponentContext;
+import org.springframework.flex.roo.addon.EntityMemberDetailsCache;
+import org.springframework.flex.roo.addon.FlexScaffoldAnnotationValues;
+import org.springframework.flex.roo.addon.FlexScaffoldMetadata;
+import org.springframework.flex.roo.addon.RooFlexScaffold;
+import org.springframework.flex.roo.addon.RooFlexTransient;
+import org.springframework.roo.addon.entity.EntityMetadata;
+import org.springframework.roo.classpath.PhysicalTypeIdentifier;
+import org.springframework.roo.classpath.PhysicalTypeMetadata;
+import org.springframework.roo.classpath.details.FieldMetadata;
+import org.springframework.roo.classpath.itd.AbstractItdMetadataProvider;
+import org.springframework.roo.classpath.itd.ItdTypeDetailsProvidingMetadataItem;
+import org.springframework.roo.metadata.MetadataProvider;
+import org.springframework.roo.model.JavaType;
+import org.springframework.roo.project.Path;
+
+/**
+ * {@link MetadataProvider} for entities that are scaffolded with {@link RooFlexScaffold#externalizable()}, or that
+ * have a property marked {@link RooFlexTransient}.
+ *
+ * <p>
+ * The opt-in is declared on the remoting destination rather than on the entity, so this metadata is not triggered by
+ * an annotation. Instead each scaffolded destination registers itself as an upstream dependency of its entity's
+ * metadata, and the destinations are consulted whenever the metadata is produced. A transient property implies the
+ * opt-in, as reflective serialization would still send it to the client.
+ *
+ * @author Jeremy Grelle
+ */
+@Component(immediate = true)
+@Service
+public class ExternalizableEntityMetadataProvider extends AbstractItdMetadataProvider {
+
+    @Reference
+    private EntityMemberDetailsCache memberDetailsCache;
+
+    protected void activate(ComponentContext context) {
+        setIgnoreTriggerAnnotations(true);
+    }
+
+    @Override
+    protected String createLocalIdentifier(JavaType javaType, Path path) {
+        return ExternalizableEntityMetadata.createIdentifier(javaType, path);
+    }
+
+    @Override
+    protected String getGovernorPhysicalTypeIdentifier(String metadataIdentificationString) {
+        JavaType javaType = ExternalizableEntityMetadata.getJavaType(metadataIdentificationString);
+        Path path = ExternalizableEntityMetadata.getPath(metadataIdentificationString);
+        return PhysicalTypeIdentifier.createIdentifier(javaType, path);
+    }
+
+    @Override
+    protected ItdTypeDetailsProvidingMetadataItem getMetadata(String metadataIdentificationString, JavaType aspectName,
+        PhysicalTypeMetadata governorPhysicalTypeMetadata, String itdFilename) {
+
+        JavaType entityType = ExternalizableEntityMetadata.getJavaType(metadataIdentificationString);
+        Path path = ExternalizableEntityMetadata.getPath(metadataIdentificationString);
+
+        // We need to be informed if the entity's properties change, including those introduced by the entity ITD, as
+        // marking a property transient opts the entity in
+        this.metadataDependencyRegistry.registerDependency(governorPhysicalTypeMetadata.getId(), metadataIdentificationString);
+        this.metadataDependencyRegistry.registerDependency(EntityMetadata.createIdentifier(entityType, path), metadataIdentificationString);
+
+        List<FieldMetadata> accessorFields = this.memberDetailsCache.getAccessorFields(entityType);
+        List<FieldMetadata> mutatorFields = this.memberDetailsCache.getMutatorFields(entityType);
+        if (accessorFields == null || mutatorFields == null) {
+            return null;
+        }
+        if (!ExternalizableUtils.hasTransientFields(accessorFields) && !isExternalizedByDestination(metadataIdentificationString, entityType)) {
+            return null;
+        }
+
+        return new ExternalizableEntityMetadata(metadataIdentificationString, aspectName, governorPhysicalTypeMetadata,
+            ExternalizableUtils.getExternalizedFields(accessorFields, mutatorFields));
+    }
+
+    private boolean isExternalizedByDestination(String metadataIdentificationString, JavaType entityType) {
+        for (String upstream : this.metadataDependencyRegistry.getUpstream(metadataIdentificationString)) {
+            if (!FlexScaffoldMetadata.isValid(upstream)) {
+                continue;
+            }
+            // Read the annotation directly, as the destination's own metadata may be what is requesting this metadata
+            PhysicalTypeMetadata destinationMetadata = (PhysicalTypeMetadata) this.metadataService.get(PhysicalTypeIdentifier.createIdentifier(
+                FlexScaffoldMetadata.getJavaType(upstream), FlexScaffoldMetadata.getPath(upstream)));
+            if (destinationMetadata == null) {
+                continue;
+            }
+            FlexScaffoldAnnotationValues annotationValues = new FlexScaffoldAnnotationValues(destinationMetadata);
+            if (annotationValues.isAnnotationFound() && entityType.equals(annotationValues.getEntity()) && annotationValues.isExternalizable()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public String getItdUniquenessFilenameSuffix() {
+        return "Flex_Externalizable";
+    }
+
+    public String getProvidesType() {
+        return ExternalizableEntityMetadata.getMetadataIdentiferType();
+    }
+}
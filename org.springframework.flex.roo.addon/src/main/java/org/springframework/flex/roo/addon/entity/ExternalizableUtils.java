@@ -0,0 +1,291 @@
+/*
+ * Copyright 2002-2010 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.flex.roo.addon.entity;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import org.springframework.flex.roo.addon.as.classpath.details.ASFieldMetadata;
+import org.springframework.flex.roo.addon.as.model.ActionScriptMappingUtils;
+import org.springframework.flex.roo.addon.as.model.ActionScriptType;
+import org.springframework.roo.classpath.details.FieldMetadata;
+import org.springframework.roo.model.DataType;
+import org.springframework.roo.model.ImportRegistrationResolver;
+import org.springframework.roo.model.JavaSymbolName;
+import org.springframework.roo.model.JavaType;
+import org.springframework.roo.support.util.Assert;
+import org.springframework.roo.support.util.StringUtils;
+
+/**
+ * Utility class for generating the matching Java <code>Externalizable</code> and ActionScript
+ * <code>IExternalizable</code> implementations of an entity and its mirror.
+ *
+ * <p>
+ * Both sides write every externalized property with <code>writeObject</code> and read it back with
+ * <code>readObject</code>, in the order returned by {@link #getExternalizedFields(List, List)}. Properties that
+ * ActionScript represents differently (enums, characters and arbitrary precision numbers as <code>String</code>,
+ * calendars as <code>Date</code>, sets as <code>ArrayCollection</code>) are converted on the Java side.
+ *
+ * @author Jeremy Grelle
+ */
+public abstract class ExternalizableUtils {
+
+    public static final JavaType EXTERNALIZABLE_TYPE = new JavaType("java.io.Externalizable");
+
+    public static final JavaType OBJECT_OUTPUT_TYPE = new JavaType("java.io.ObjectOutput");
+
+    public static final JavaType OBJECT_INPUT_TYPE = new JavaType("java.io.ObjectInput");
+
+    public static final ActionScriptType IEXTERNALIZABLE_TYPE = new ActionScriptType("flash.utils.IExternalizable");
+
+    public static final ActionScriptType DATA_OUTPUT_TYPE = new ActionScriptType("flash.utils.IDataOutput");
+
+    public static final ActionScriptType DATA_INPUT_TYPE = new ActionScriptType("flash.utils.IDataInput");
+
+    public static final String WRITE_EXTERNAL = "writeExternal";
+
+    public static final String READ_EXTERNAL = "readExternal";
+
+    public static final String OUTPUT_PARAM = "output";
+
+    public static final String INPUT_PARAM = "input";
+
+    private static final String VALUE_VAR = "value";
+
+    private static final Map<String, String> numberValueMethods = new HashMap<String, String>();
+
+    static {
+        numberValueMethods.put(Byte.class.getName(), "byteValue");
+        numberValueMethods.put(Short.class.getName(), "shortValue");
+        numberValueMethods.put(Integer.class.getName(), "intValue");
+        numberValueMethods.put(Long.class.getName(), "longValue");
+        numberValueMethods.put(Float.class.getName(), "floatValue");
+        numberValueMethods.put(Double.class.getName(), "doubleValue");
+    }
+
+    /**
+     * Determines the properties that are externalized, which are those that can be both read and written and are not
+     * marked transient. As the accessors of the other properties are never called, lazily loaded values are left
+     * unloaded. The properties are ordered by name rather than by declaration, so that the order is stable regardless of how the entity's fields
+     * and ITDs are arranged, and can be derived again from the ActionScript mirror.
+     *
+     * @param accessorFields the fields backing a property accessor
+     * @param mutatorFields the fields backing a property mutator
+     * @return the externalized fields, in serialization order
+     */
+    public static List<FieldMetadata> getExternalizedFields(List<FieldMetadata> accessorFields, List<FieldMetadata> mutatorFields) {
+        Assert.notNull(accessorFields, "Accessor fields required");
+        Assert.notNull(mutatorFields, "Mutator fields required");
+        Set<JavaSymbolName> mutatorFieldNames = new HashSet<JavaSymbolName>();
+        for (FieldMetadata field : mutatorFields) {
+            mutatorFieldNames.add(field.getFieldName());
+        }
+        List<FieldMetadata> externalizedFields = new ArrayList<FieldMetadata>();
+        for (FieldMetadata field : accessorFields) {
+            if (mutatorFieldNames.contains(field.getFieldName()) && !ActionScriptMappingUtils.isTransient(field)) {
+                externalizedFields.add(field);
+            }
+        }
+        Collections.sort(externalizedFields, new Comparator<FieldMetadata>() {
+
+            public int compare(FieldMetadata field1, FieldMetadata field2) {
+                return field1.getFieldName().getSymbolName().compareTo(field2.getFieldName().getSymbolName());
+            }
+        });
+        return externalizedFields;
+    }
+
+    /**
+     * Determines whether any of the given properties is marked transient. Reflective serialization sends every
+     * readable property, so such an entity can only keep the property from the client by being externalized.
+     *
+     * @param accessorFields the fields backing a property accessor
+     * @return whether an entity with these properties must be externalized
+     */
+    public static boolean hasTransientFields(List<FieldMetadata> accessorFields) {
+        Assert.notNull(accessorFields, "Accessor fields required");
+        for (FieldMetadata field : accessorFields) {
+            if (ActionScriptMappingUtils.isTransient(field)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the statements of the Java <code>writeExternal</code> method, one per line
+     */
+    public static List<String> getJavaWriteStatements(List<FieldMetadata> fields) {
+        List<String> statements = new ArrayList<String>();
+        for (FieldMetadata field : fields) {
+            statements.add(OUTPUT_PARAM + ".writeObject(" + getJavaWriteExpression(field) + ");");
+        }
+        return statements;
+    }
+
+    /**
+     * @return the statements of the Java <code>readExternal</code> method, one per line
+     */
+    public static List<String> getJavaReadStatements(List<FieldMetadata> fields, ImportRegistrationResolver resolver) {
+        List<String> statements = new ArrayList<String>();
+        if (fields.isEmpty()) {
+            return statements;
+        }
+        statements.add("Object " + VALUE_VAR + ";");
+        for (FieldMetadata field : fields) {
+            statements.add(VALUE_VAR + " = " + INPUT_PARAM + ".readObject();");
+            statements.add(getJavaReadStatement(field, resolver));
+        }
+        return statements;
+    }
+
+    /**
+     * @return the body of the ActionScript <code>writeExternal</code> method, one statement per line
+     */
+    public static String getActionScriptWriteBody(List<ASFieldMetadata> fields) {
+        StringBuilder body = new StringBuilder();
+        for (ASFieldMetadata field : fields) {
+            body.append(OUTPUT_PARAM).append(".writeObject(").append(field.getFieldName().getSymbolName()).append(");\n");
+        }
+        return body.toString();
+    }
+
+    /**
+     * @return the body of the ActionScript <code>readExternal</code> method, one statement per line
+     */
+    public static String getActionScriptReadBody(List<ASFieldMetadata> fields) {
+        StringBuilder body = new StringBuilder();
+        for (ASFieldMetadata field : fields) {
+            body.append(field.getFieldName().getSymbolName()).append(" = ").append(INPUT_PARAM).append(".readObject() as ").append(
+                field.getFieldType().getSimpleTypeName()).append(";\n");
+        }
+        return body.toString();
+    }
+
+    private static String getJavaWriteExpression(FieldMetadata field) {
+        JavaType fieldType = field.getFieldType();
+        String getter = getAccessorName(field) + "()";
+        String typeName = fieldType.getFullyQualifiedTypeName();
+
+        if (fieldType.isPrimitive() && fieldType.isArray() && typeName.equals(Character.class.getName())) {
+            return getter + " == null ? null : new String(" + getter + ")";
+        }
+        if (fieldType.isArray()) {
+            return getter;
+        }
+        if (typeName.equals(Character.class.getName())) {
+            return fieldType.isPrimitive() ? "String.valueOf(" + getter + ")" : getter + " == null ? null : " + getter + ".toString()";
+        }
+        if (typeName.equals(BigDecimal.class.getName()) || typeName.equals(BigInteger.class.getName())) {
+            return getter + " == null ? null : " + getter + ".toString()";
+        }
+        if (typeName.equals(Calendar.class.getName())) {
+            return getter + " == null ? null : " + getter + ".getTime()";
+        }
+        if (isEnumeration(fieldType)) {
+            return getter + " == null ? null : " + getter + ".name()";
+        }
+        return getter;
+    }
+
+    private static String getJavaReadStatement(FieldMetadata field, ImportRegistrationResolver resolver) {
+        JavaType fieldType = field.getFieldType();
+        String setter = getMutatorName(field);
+        String typeName = fieldType.getFullyQualifiedTypeName();
+        String nullCheck = VALUE_VAR + " == null ? null : ";
+
+        if (fieldType.isPrimitive() && fieldType.isArray() && typeName.equals(Character.class.getName())) {
+            return setter + "(" + nullCheck + "((String) " + VALUE_VAR + ").toCharArray());";
+        }
+        if (fieldType.isArray()) {
+            return setter + "((" + fieldType.getNameIncludingTypeParameters(false, resolver) + ") " + VALUE_VAR + ");";
+        }
+        if (numberValueMethods.containsKey(typeName)) {
+            String numberValue = "((Number) " + VALUE_VAR + ")." + numberValueMethods.get(typeName) + "()";
+            if (fieldType.isPrimitive()) {
+                return setter + "(" + numberValue + ");";
+            }
+            return setter + "(" + nullCheck + fieldType.getSimpleTypeName() + ".valueOf(" + numberValue + "));";
+        }
+        if (typeName.equals(Boolean.class.getName()) && fieldType.isPrimitive()) {
+            return setter + "(((Boolean) " + VALUE_VAR + ").booleanValue());";
+        }
+        if (typeName.equals(Character.class.getName())) {
+            if (fieldType.isPrimitive()) {
+                return setter + "(((String) " + VALUE_VAR + ").charAt(0));";
+            }
+            return setter + "(" + nullCheck + "Character.valueOf(((String) " + VALUE_VAR + ").charAt(0)));";
+        }
+        if (typeName.equals(BigDecimal.class.getName()) || typeName.equals(BigInteger.class.getName())) {
+            return setter + "(" + nullCheck + "new " + fieldType.getNameIncludingTypeParameters(false, resolver) + "((String) " + VALUE_VAR
+                + "));";
+        }
+        if (typeName.equals(Calendar.class.getName())) {
+            String calendarVar = field.getFieldName().getSymbolName() + "Calendar";
+            String calendarType = fieldType.getNameIncludingTypeParameters(false, resolver);
+            return "if (" + VALUE_VAR + " == null) { " + setter + "(null); } else { " + calendarType + " " + calendarVar + " = " + calendarType
+                + ".getInstance(); " + calendarVar + ".setTime((" + new JavaType(Date.class.getName()).getNameIncludingTypeParameters(false, resolver)
+                + ") " + VALUE_VAR + "); " + setter + "(" + calendarVar + "); }";
+        }
+        if (isEnumeration(fieldType)) {
+            return setter + "(" + nullCheck + fieldType.getNameIncludingTypeParameters(false, resolver) + ".valueOf((String) " + VALUE_VAR + "));";
+        }
+        if (typeName.equals(Set.class.getName()) || typeName.equals(HashSet.class.getName())) {
+            return setter + "(" + nullCheck + copyCollection(HashSet.class, fieldType, resolver) + ");";
+        }
+        if (typeName.equals(SortedSet.class.getName()) || typeName.equals(TreeSet.class.getName())) {
+            return setter + "(" + nullCheck + copyCollection(TreeSet.class, fieldType, resolver) + ");";
+        }
+        return setter + "((" + fieldType.getNameIncludingTypeParameters(false, resolver) + ") " + VALUE_VAR + ");";
+    }
+
+    private static String copyCollection(Class<?> collectionClass, JavaType fieldType, ImportRegistrationResolver resolver) {
+        // ActionScript collections are read as lists, so they have to be copied into the declared type
+        JavaType copyType = new JavaType(collectionClass.getName(), 0, DataType.TYPE, null, fieldType.getParameters());
+        JavaType sourceType = new JavaType(Collection.class.getName(), 0, DataType.TYPE, null, fieldType.getParameters());
+        return "new " + copyType.getNameIncludingTypeParameters(false, resolver) + "((" + sourceType.getNameIncludingTypeParameters(false, resolver)
+            + ") " + VALUE_VAR + ")";
+    }
+
+    private static boolean isEnumeration(JavaType fieldType) {
+        // Of the types exchanged as Strings, only enums are left once the others are handled
+        return !fieldType.isPrimitive() && !fieldType.getFullyQualifiedTypeName().equals(String.class.getName())
+            && ActionScriptType.STRING_TYPE.equals(ActionScriptMappingUtils.toActionScriptType(fieldType));
+    }
+
+    private static String getAccessorName(FieldMetadata field) {
+        String prefix = JavaType.BOOLEAN_PRIMITIVE.equals(field.getFieldType()) ? "is" : "get";
+        return prefix + StringUtils.capitalize(field.getFieldName().getSymbolName());
+    }
+
+    private static String getMutatorName(FieldMetadata field) {
+        return "set" + StringUtils.capitalize(field.getFieldName().getSymbolName());
+    }
+}
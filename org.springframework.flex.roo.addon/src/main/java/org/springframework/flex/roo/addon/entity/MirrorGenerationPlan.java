@@ -0,0 +1,167 @@
+/*
+ * Copyright 2002-2010 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.flex.roo.addon.entity;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.roo.support.style.ToStringCreator;
+import org.springframework.roo.support.util.Assert;
+
+/**
+ * Graph of the ActionScript mirrors that need to be generated for a set of related Java types.
+ *
+ * <p>
+ * Each type is planned at most once, no matter how many associations lead to it, and types that already have a mirror
+ * are recorded as skipped rather than planned. {@link #getOrderedTypes()} returns the planned types with each type
+ * following the types it depends on. Dependency cycles, such as bidirectional associations, are broken at the point
+ * where the walk first revisits a type.
+ *
+ * @author Jeremy Grelle
+ */
+public class MirrorGenerationPlan {
+
+    private final Map<String, TypeMapping> plannedTypes = new LinkedHashMap<String, TypeMapping>();
+
+    private final Map<String, Set<String>> dependencies = new LinkedHashMap<String, Set<String>>();
+
+    private final Set<String> skippedTypes = new LinkedHashSet<String>();
+
+    /**
+     * Plans the generation of a mirror for the given type.
+     *
+     * @param mapping the type to generate a mirror for (required)
+     * @return true if the type was not yet known to this plan
+     */
+    public boolean addType(TypeMapping mapping) {
+        Assert.notNull(mapping, "Type mapping required");
+        if (isKnown(mapping.getMetadataId())) {
+            return false;
+        }
+        this.plannedTypes.put(mapping.getMetadataId(), mapping);
+        return true;
+    }
+
+    /**
+     * Records that the mirror identified by the given metadata ID already exists and will not be generated.
+     *
+     * @param metadataId the metadata ID of the existing mirror (required)
+     * @return true if the type was not yet known to this plan
+     */
+    public boolean skipType(String metadataId) {
+        Assert.hasText(metadataId, "Metadata ID required");
+        if (isKnown(metadataId)) {
+            return false;
+        }
+        this.skippedTypes.add(metadataId);
+        return true;
+    }
+
+    /**
+     * Records that the first type references the second, so that the second is generated first.
+     *
+     * @param metadataId the metadata ID of the referencing type (required)
+     * @param dependencyId the metadata ID of the referenced type (required)
+     */
+    public void addDependency(String metadataId, String dependencyId) {
+        Assert.hasText(metadataId, "Metadata ID required");
+        Assert.hasText(dependencyId, "Dependency metadata ID required");
+        Set<String> typeDependencies = this.dependencies.get(metadataId);
+        if (typeDependencies == null) {
+            typeDependencies = new LinkedHashSet<String>();
+            this.dependencies.put(metadataId, typeDependencies);
+        }
+        typeDependencies.add(dependencyId);
+    }
+
+    /**
+     * @param metadataId the metadata ID of the type
+     * @return true if the type has either been planned or skipped
+     */
+    public boolean isKnown(String metadataId) {
+        return this.plannedTypes.containsKey(metadataId) || this.skippedTypes.contains(metadataId);
+    }
+
+    /**
+     * @return the planned types in the order they were added (never null)
+     */
+    public List<TypeMapping> getTypes() {
+        return Collections.unmodifiableList(new ArrayList<TypeMapping>(this.plannedTypes.values()));
+    }
+
+    /**
+     * @return the planned types, each following the planned types it depends on (never null)
+     */
+    public List<TypeMapping> getOrderedTypes() {
+        List<TypeMapping> ordered = new ArrayList<TypeMapping>(this.plannedTypes.size());
+        Set<String> visited = new HashSet<String>();
+        // Iterative depth-first walk, so that long association chains can't exhaust the stack
+        LinkedList<String> path = new LinkedList<String>();
+        LinkedList<Iterator<String>> pending = new LinkedList<Iterator<String>>();
+        for (String root : this.plannedTypes.keySet()) {
+            if (!visited.add(root)) {
+                continue;
+            }
+            path.addFirst(root);
+            pending.addFirst(getDependencies(root).iterator());
+            while (!path.isEmpty()) {
+                Iterator<String> dependencyIterator = pending.getFirst();
+                if (dependencyIterator.hasNext()) {
+                    String dependencyId = dependencyIterator.next();
+                    if (this.plannedTypes.containsKey(dependencyId) && visited.add(dependencyId)) {
+                        path.addFirst(dependencyId);
+                        pending.addFirst(getDependencies(dependencyId).iterator());
+                    }
+                } else {
+                    pending.removeFirst();
+                    ordered.add(this.plannedTypes.get(path.removeFirst()));
+                }
+            }
+        }
+        return ordered;
+    }
+
+    public int getPlannedCount() {
+        return this.plannedTypes.size();
+    }
+
+    public int getSkippedCount() {
+        return this.skippedTypes.size();
+    }
+
+    @Override
+    public String toString() {
+        ToStringCreator tsc = new ToStringCreator(this);
+        tsc.append("planned", this.plannedTypes.keySet());
+        tsc.append("skipped", this.skippedTypes);
+        tsc.append("dependencies", this.dependencies);
+        return tsc.toString();
+    }
+
+    private Set<String> getDependencies(String metadataId) {
+        Set<String> typeDependencies = this.dependencies.get(metadataId);
+        return typeDependencies == null ? Collections.<String> emptySet() : typeDependencies;
+    }
+}
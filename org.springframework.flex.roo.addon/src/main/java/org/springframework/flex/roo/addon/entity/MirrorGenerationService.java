@@ -0,0 +1,47 @@
+/*
+ * Copyright 2002-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.flex.roo.addon.entity;
+
+import org.springframework.roo.model.JavaType;
+
+/**
+ * Defers the generation of ActionScript mirrors until the end of a shell command, so that the mirrors needed by all of
+ * the entities the command touches, and by their related types, are planned together and each generated once.
+ *
+ * <p>
+ * Mirrors are always generated on the calling thread, as the Roo services used to generate them are not designed for
+ * concurrent use.
+ *
+ * @author Jeremy Grelle
+ */
+public interface MirrorGenerationService {
+
+    /**
+     * Queues the ActionScript mirror of the given entity to be generated by the next call to
+     * {@link #generateQueuedMirrors()}. An entity that is already queued is not queued again.
+     *
+     * @param javaType the Java entity (required)
+     */
+    void queueMirror(JavaType javaType);
+
+    /**
+     * Generates the mirrors of every queued entity that does not have one yet, together with the mirrors of their
+     * related types, and empties the queue.
+     *
+     * @return the number of mirrors generated
+     */
+    int generateQueuedMirrors();
+}
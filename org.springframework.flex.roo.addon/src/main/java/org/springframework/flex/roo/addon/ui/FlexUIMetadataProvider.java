@@ -19,14 +19,18 @@ package org.springframework.flex.roo.addon.ui;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.IOException;
-import java.io.OutputStreamWriter;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.antlr.stringtemplate.StringTemplate;
 import org.antlr.stringtemplate.StringTemplateGroup;
@@ -34,8 +38,11 @@ import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.Reference;
 import org.apache.felix.scr.annotations.Service;
 import org.osgi.service.component.ComponentContext;
+import org.springframework.flex.roo.addon.EntityMemberDetailsCache;
 import org.springframework.flex.roo.addon.FlexOperations;
 import org.springframework.flex.roo.addon.FlexScaffoldMetadata;
+import org.springframework.flex.roo.addon.GeneratedFileWriter;
+import org.springframework.flex.roo.addon.StageTimings;
 import org.springframework.flex.roo.addon.as.classpath.ASMutablePhysicalTypeMetadataProvider;
 import org.springframework.flex.roo.addon.as.classpath.ASPhysicalTypeIdentifier;
 import org.springframework.flex.roo.addon.as.classpath.ASPhysicalTypeMetadata;
@@ -45,17 +52,10 @@ import org.springframework.flex.roo.addon.as.model.ActionScriptMappingUtils;
 import org.springframework.flex.roo.addon.as.model.ActionScriptType;
 import org.springframework.flex.roo.addon.mojos.FlexPath;
 import org.springframework.flex.roo.addon.mojos.FlexPathResolver;
-import org.springframework.roo.classpath.PhysicalTypeIdentifier;
-import org.springframework.roo.classpath.PhysicalTypeMetadata;
-import org.springframework.roo.classpath.details.BeanInfoUtils;
-import org.springframework.roo.classpath.details.ClassOrInterfaceTypeDetails;
 import org.springframework.roo.classpath.details.FieldMetadata;
 import org.springframework.roo.classpath.details.MemberFindingUtils;
-import org.springframework.roo.classpath.details.MethodMetadata;
 import org.springframework.roo.classpath.details.annotations.AnnotationAttributeValue;
 import org.springframework.roo.classpath.details.annotations.AnnotationMetadata;
-import org.springframework.roo.classpath.scanner.MemberDetails;
-import org.springframework.roo.classpath.scanner.MemberDetailsScanner;
 import org.springframework.roo.metadata.MetadataDependencyRegistry;
 import org.springframework.roo.metadata.MetadataIdentificationUtils;
 import org.springframework.roo.metadata.MetadataItem;
@@ -64,12 +64,9 @@ import org.springframework.roo.metadata.MetadataProvider;
 import org.springframework.roo.metadata.MetadataService;
 import org.springframework.roo.model.JavaSymbolName;
 import org.springframework.roo.model.JavaType;
-import org.springframework.roo.process.manager.FileManager;
-import org.springframework.roo.process.manager.MutableFile;
 import org.springframework.roo.project.Path;
 import org.springframework.roo.project.ProjectMetadata;
 import org.springframework.roo.support.util.Assert;
-import org.springframework.roo.support.util.FileCopyUtils;
 import org.springframework.roo.support.util.StringUtils;
 import org.springframework.roo.support.util.XmlUtils;
 import org.w3c.dom.Document;
@@ -82,7 +79,7 @@ import org.w3c.dom.Element;
  */
 @Component(immediate = true)
 @Service
-public class FlexUIMetadataProvider implements MetadataProvider, MetadataNotificationListener {
+public class FlexUIMetadataProvider implements MetadataProvider, MetadataNotificationListener, FlexUIScaffolder {
 
     @Reference
     private FlexPathResolver flexPathResolver;
@@ -90,9 +87,6 @@ public class FlexUIMetadataProvider implements MetadataProvider, MetadataNotific
     @Reference
     private MetadataDependencyRegistry metadataDependencyRegistry;
 
-    @Reference
-    private FileManager fileManager;
-
     @Reference
     private MetadataService metadataService;
 
@@ -103,10 +97,19 @@ public class FlexUIMetadataProvider implements MetadataProvider, MetadataNotific
     private FlexOperations flexOperations;
 
     @Reference
-    private MemberDetailsScanner memberDetailsScanner;
+    private EntityMemberDetailsCache memberDetailsCache;
+
+    @Reference
+    private GeneratedFileWriter generatedFileWriter;
 
     private StringTemplateGroup templateGroup;
 
+    // whether a bulk scaffold is in progress, during which per-entity scaffolding is deferred
+    private boolean bulkScaffolding = false;
+
+    // views requested through metadata notifications during a bulk scaffold
+    private final Set<String> deferredMetadataIds = new LinkedHashSet<String>();
+
     protected void activate(ComponentContext context) {
         this.metadataDependencyRegistry.registerDependency(FlexScaffoldMetadata.getMetadataIdentiferType(), getProvidesType());
         this.templateGroup = new StringTemplateGroup("flexUIMetadataTemplateGroup");
@@ -132,30 +135,156 @@ public class FlexUIMetadataProvider implements MetadataProvider, MetadataNotific
             return null;
         }
 
-        String presentationPackage = projectMetadata.getTopLevelPackage() + ".presentation";
-        String entityPresentationPackage = presentationPackage + "." + flexScaffoldMetadata.getEntityReference().toLowerCase();
-
-        // Install the root application MXML document if it doesn't already exist
-        String scaffoldAppFileId = this.flexPathResolver.getIdentifier(FlexPath.SRC_MAIN_FLEX, projectMetadata.getProjectName() + "_scaffold.mxml");
-        if (!this.fileManager.exists(scaffoldAppFileId)) {
-            this.flexOperations.createScaffoldApp();
+        if (this.bulkScaffolding) {
+            // The bulk scaffold writes these views together, or renders them once it has ended
+            this.deferredMetadataIds.add(metadataId);
+            return new FlexUIMetadata(metadataId);
         }
 
-        updateScaffoldIfNecessary(scaffoldAppFileId, flexScaffoldMetadata);
+        ScaffoldModel model = resolveScaffoldModel(projectMetadata, flexScaffoldMetadata);
+        writeScaffoldFiles(projectMetadata, Collections.singletonList(renderScaffold(model)));
 
-        String flexConfigFileId = this.flexPathResolver.getIdentifier(FlexPath.SRC_MAIN_FLEX, projectMetadata.getProjectName()
-            + "_scaffold-config.xml");
-        if (!this.fileManager.exists(flexConfigFileId)) {
-            this.flexOperations.createFlexCompilerConfig();
+        return new FlexUIMetadata(metadataId);
+    }
+
+    public void beginBulkScaffold() {
+        this.bulkScaffolding = true;
+    }
+
+    public void endBulkScaffold() {
+        this.bulkScaffolding = false;
+        List<String> deferred = new ArrayList<String>(this.deferredMetadataIds);
+        this.deferredMetadataIds.clear();
+        for (String metadataId : deferred) {
+            this.metadataService.evict(metadataId);
+            get(metadataId);
         }
+    }
+
+    public int scaffoldAll(List<JavaType> services, StageTimings timings) {
+        Assert.notNull(services, "Services required");
+        Assert.notNull(timings, "Timings required");
+        ProjectMetadata projectMetadata = (ProjectMetadata) this.metadataService.get(ProjectMetadata.getProjectIdentifier());
+        if (projectMetadata == null || !projectMetadata.isValid() || services.isEmpty()) {
+            return 0;
+        }
+
+        // Resolve all metadata up front, as the Roo services must only be used from this thread
+        long stageStart = System.nanoTime();
+        List<ScaffoldModel> models = new ArrayList<ScaffoldModel>();
+        for (JavaType service : services) {
+            String flexScaffoldMetadataKey = FlexScaffoldMetadata.createIdentifier(service, Path.SRC_MAIN_JAVA);
+            FlexScaffoldMetadata flexScaffoldMetadata = (FlexScaffoldMetadata) this.metadataService.get(flexScaffoldMetadataKey);
+            if (flexScaffoldMetadata != null && flexScaffoldMetadata.isValid()) {
+                models.add(resolveScaffoldModel(projectMetadata, flexScaffoldMetadata));
+                this.deferredMetadataIds.remove(FlexUIMetadata.createIdentifier(service, Path.SRC_MAIN_JAVA));
+            }
+        }
+        timings.record("resolve views", stageStart);
 
-        updateCompilerConfigIfNecessary(flexConfigFileId, entityPresentationPackage, flexScaffoldMetadata);
+        stageStart = System.nanoTime();
+        List<RenderedScaffold> scaffolds = renderScaffolds(models);
+        timings.record("render views", stageStart);
+
+        stageStart = System.nanoTime();
+        writeScaffoldFiles(projectMetadata, scaffolds);
+        timings.record("write views", stageStart);
+
+        return scaffolds.size();
+    }
+
+    private ScaffoldModel resolveScaffoldModel(ProjectMetadata projectMetadata, FlexScaffoldMetadata flexScaffoldMetadata) {
+        String presentationPackage = projectMetadata.getTopLevelPackage() + ".presentation";
+        String entityPresentationPackage = presentationPackage + "." + flexScaffoldMetadata.getEntityReference().toLowerCase();
 
         // Install the entity event class if it doesn't already exist
         ActionScriptType entityEventType = new ActionScriptType(entityPresentationPackage + "."
             + flexScaffoldMetadata.getEntity().getSimpleTypeName() + "Event");
-        if (!StringUtils.hasText(this.asPhysicalTypeProvider.findIdentifier(entityEventType))) {
-            createEntityEventType(entityEventType, flexScaffoldMetadata);
+        boolean createEntityEventType = !StringUtils.hasText(this.asPhysicalTypeProvider.findIdentifier(entityEventType));
+
+        // Map every type the templates need here, as the type mapping registry may consult the Roo services
+        ActionScriptType entityType = ActionScriptMappingUtils.toActionScriptType(flexScaffoldMetadata.getEntity());
+        List<FieldMetadata> formFields = getElegibleFormFields(projectMetadata, flexScaffoldMetadata);
+        Set<RelatedTypeWrapper> relatedTypes = findRelatedTypes(flexScaffoldMetadata, formFields);
+        return new ScaffoldModel(flexScaffoldMetadata, entityType, entityPresentationPackage, createEntityEventType ? entityEventType : null,
+            getElegibleListFields(projectMetadata, flexScaffoldMetadata), wrapFields(formFields), relatedTypes,
+            calculateLabelFields(relatedTypes));
+    }
+
+    /**
+     * Renders the views of each entity, in parallel if there is more than one. Rendering only involves the templates
+     * and the already resolved models, and must not use the Roo services or the type mapping registry.
+     */
+    private List<RenderedScaffold> renderScaffolds(List<ScaffoldModel> models) {
+        List<RenderedScaffold> scaffolds = new ArrayList<RenderedScaffold>(models.size());
+        if (models.size() <= 1) {
+            for (ScaffoldModel model : models) {
+                scaffolds.add(renderScaffold(model));
+            }
+            return scaffolds;
+        }
+
+        int threads = Math.min(models.size(), Runtime.getRuntime().availableProcessors());
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<RenderedScaffold>> futures = new ArrayList<Future<RenderedScaffold>>(models.size());
+            for (final ScaffoldModel model : models) {
+                futures.add(executor.submit(new Callable<RenderedScaffold>() {
+
+                    public RenderedScaffold call() {
+                        return renderScaffold(model);
+                    }
+                }));
+            }
+            for (Future<RenderedScaffold> future : futures) {
+                scaffolds.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while rendering Flex views", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Failed to render Flex views", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        return scaffolds;
+    }
+
+    private RenderedScaffold renderScaffold(ScaffoldModel model) {
+        String entityEventSource = null;
+        if (model.entityEventType != null) {
+            entityEventSource = renderEntityEventType(model);
+        }
+        return new RenderedScaffold(model, entityEventSource, renderListView(model), renderForm(model));
+    }
+
+    private void writeScaffoldFiles(ProjectMetadata projectMetadata, List<RenderedScaffold> scaffolds) {
+        // Stage all of the generated files so that they are written together once the scaffold is complete
+        this.generatedFileWriter.beginBatch();
+        boolean completed = false;
+        try {
+            for (RenderedScaffold scaffold : scaffolds) {
+                writeEntityFiles(scaffold);
+            }
+            writeSharedFiles(projectMetadata, scaffolds);
+            completed = true;
+        } finally {
+            if (completed) {
+                this.generatedFileWriter.commitBatch();
+            } else {
+                this.generatedFileWriter.rollbackBatch();
+            }
+        }
+    }
+
+    private void writeEntityFiles(RenderedScaffold scaffold) {
+        FlexScaffoldMetadata flexScaffoldMetadata = scaffold.model.flexScaffoldMetadata;
+        String entityPresentationPackage = scaffold.model.entityPresentationPackage;
+
+        if (scaffold.entityEventSource != null) {
+            String relativePath = scaffold.model.entityEventType.getFullyQualifiedTypeName().replace('.', File.separatorChar) + ".as";
+            String fileIdentifier = this.flexPathResolver.getIdentifier(FlexPath.SRC_MAIN_FLEX, relativePath);
+            this.generatedFileWriter.writeTextFile(fileIdentifier, scaffold.entityEventSource);
         }
 
         // Create or update the list view
@@ -163,89 +292,110 @@ public class FlexUIMetadataProvider implements MetadataProvider, MetadataNotific
             '.', File.separatorChar)
             + ".mxml";
         String listViewPath = this.flexPathResolver.getIdentifier(FlexPath.SRC_MAIN_FLEX, listViewRelativePath);
-        writeToDiskIfNecessary(listViewPath,
-            buildListViewDocument(flexScaffoldMetadata, getElegibleListFields(projectMetadata, flexScaffoldMetadata)));
+        writeToDiskIfNecessary(listViewPath, parseDocument(scaffold.listViewSource, "list view"));
 
         // Create or update the form view
         String formRelativePath = (entityPresentationPackage + "." + flexScaffoldMetadata.getEntity().getSimpleTypeName() + "Form").replace(
             '.', File.separatorChar)
             + ".mxml";
         String formPath = this.flexPathResolver.getIdentifier(FlexPath.SRC_MAIN_FLEX, formRelativePath);
-        writeToDiskIfNecessary(formPath, buildFormDocument(flexScaffoldMetadata, getElegibleFormFields(projectMetadata, flexScaffoldMetadata)));
-
-        return new FlexUIMetadata(metadataId);
+        writeToDiskIfNecessary(formPath, parseDocument(scaffold.formSource, "form"));
     }
 
-    private void updateScaffoldIfNecessary(String scaffoldAppFileId, FlexScaffoldMetadata flexScaffoldMetadata) {
-        MutableFile scaffoldMutableFile = null;
+    private void writeSharedFiles(ProjectMetadata projectMetadata, List<RenderedScaffold> scaffolds) {
+        if (scaffolds.isEmpty()) {
+            return;
+        }
 
+        // Install the root application MXML document if it doesn't already exist
+        String scaffoldAppFileId = this.flexPathResolver.getIdentifier(FlexPath.SRC_MAIN_FLEX, projectMetadata.getProjectName() + "_scaffold.mxml");
+        if (!this.generatedFileWriter.exists(scaffoldAppFileId)) {
+            this.flexOperations.createScaffoldApp();
+        }
+
+        List<String> entityNames = new ArrayList<String>();
+        for (RenderedScaffold scaffold : scaffolds) {
+            entityNames.add(scaffold.model.flexScaffoldMetadata.getEntity().getSimpleTypeName());
+        }
+        updateScaffoldIfNecessary(scaffoldAppFileId, entityNames);
+
+        String flexConfigFileId = this.flexPathResolver.getIdentifier(FlexPath.SRC_MAIN_FLEX, projectMetadata.getProjectName()
+            + "_scaffold-config.xml");
+        if (!this.generatedFileWriter.exists(flexConfigFileId)) {
+            this.flexOperations.createFlexCompilerConfig();
+        }
+
+        List<String> viewNames = new ArrayList<String>();
+        for (RenderedScaffold scaffold : scaffolds) {
+            viewNames.add(scaffold.model.entityPresentationPackage + "." + scaffold.model.flexScaffoldMetadata.getEntity().getSimpleTypeName()
+                + "View");
+        }
+        updateCompilerConfigIfNecessary(flexConfigFileId, viewNames);
+    }
+
+    private void updateScaffoldIfNecessary(String scaffoldAppFileId, List<String> entityNames) {
         Document scaffoldDoc;
         try {
-            scaffoldMutableFile = this.fileManager.updateFile(scaffoldAppFileId);
-            scaffoldDoc = XmlUtils.getDocumentBuilder().parse(scaffoldMutableFile.getInputStream());
+            scaffoldDoc = XmlUtils.getDocumentBuilder().parse(this.generatedFileWriter.getInputStream(scaffoldAppFileId));
         } catch (Exception e) {
             throw new IllegalStateException(e);
         }
 
-        String entityName = flexScaffoldMetadata.getEntity().getSimpleTypeName();
+        Element entitiesElement = XmlUtils.findFirstElement("/Application/Declarations/ArrayList[@id='entities']", scaffoldDoc.getDocumentElement());
+        Assert.notNull(entitiesElement, "Could not find the entities element in the main scaffold mxml.");
 
-        if (XmlUtils.findFirstElement("/Application/Declarations/ArrayList[@id='entities' and String='" + entityName + "']",
-            scaffoldDoc.getDocumentElement()) != null) {
-            return;
+        boolean changed = false;
+        for (String entityName : entityNames) {
+            if (XmlUtils.findFirstElement("/Application/Declarations/ArrayList[@id='entities' and String='" + entityName + "']",
+                scaffoldDoc.getDocumentElement()) != null) {
+                continue;
+            }
+            Element entityElement = scaffoldDoc.createElement("fx:String");
+            entityElement.setTextContent(entityName);
+            entitiesElement.appendChild(entityElement);
+            changed = true;
         }
 
-        Element entitiesElement = XmlUtils.findFirstElement("/Application/Declarations/ArrayList[@id='entities']", scaffoldDoc.getDocumentElement());
-        Assert.notNull(entitiesElement, "Could not find the entities element in the main scaffold mxml.");
-        Element entityElement = scaffoldDoc.createElement("fx:String");
-        entityElement.setTextContent(entityName);
-        entitiesElement.appendChild(entityElement);
+        if (!changed) {
+            return;
+        }
 
         // Build a string representation of the MXML and write it to disk
         ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
         XmlUtils.writeXml(XmlUtils.createIndentingTransformer(), byteArrayOutputStream, scaffoldDoc);
-        String mxmlContent = byteArrayOutputStream.toString();
-
-        try {
-            FileCopyUtils.copy(mxmlContent, new OutputStreamWriter(scaffoldMutableFile.getOutputStream()));
-        } catch (Exception e) {
-            throw new IllegalStateException(e);
-        }
+        this.generatedFileWriter.writeTextFile(scaffoldAppFileId, byteArrayOutputStream.toString());
     }
 
-    private void updateCompilerConfigIfNecessary(String flexConfigFileId, String entityPresentationPackage, FlexScaffoldMetadata flexScaffoldMetadata) {
-        MutableFile flexConfigMutableFile = null;
-
+    private void updateCompilerConfigIfNecessary(String flexConfigFileId, List<String> viewNames) {
         Document flexConfigDoc;
         try {
-            flexConfigMutableFile = this.fileManager.updateFile(flexConfigFileId);
-            flexConfigDoc = XmlUtils.getDocumentBuilder().parse(flexConfigMutableFile.getInputStream());
+            flexConfigDoc = XmlUtils.getDocumentBuilder().parse(this.generatedFileWriter.getInputStream(flexConfigFileId));
         } catch (Exception e) {
             throw new IllegalStateException(e);
         }
 
-        String viewName = entityPresentationPackage + "." + flexScaffoldMetadata.getEntity().getSimpleTypeName() + "View";
-
-        if (XmlUtils.findFirstElement("/flex-config/includes[symbol='" + viewName + "']", flexConfigDoc.getDocumentElement()) != null) {
-            return;
-        }
-
         Element includesElement = XmlUtils.findFirstElement("/flex-config/includes", flexConfigDoc.getDocumentElement());
         Assert.notNull(includesElement, "Could not find the includes element in the flex compiler config.");
 
-        Element entityElement = flexConfigDoc.createElement("symbol");
-        entityElement.setTextContent(viewName);
-        includesElement.appendChild(entityElement);
+        boolean changed = false;
+        for (String viewName : viewNames) {
+            if (XmlUtils.findFirstElement("/flex-config/includes[symbol='" + viewName + "']", flexConfigDoc.getDocumentElement()) != null) {
+                continue;
+            }
+            Element entityElement = flexConfigDoc.createElement("symbol");
+            entityElement.setTextContent(viewName);
+            includesElement.appendChild(entityElement);
+            changed = true;
+        }
+
+        if (!changed) {
+            return;
+        }
 
         // Build a string representation of the MXML and write it to disk
         ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
         XmlUtils.writeXml(XmlUtils.createIndentingTransformer(), byteArrayOutputStream, flexConfigDoc);
-        String mxmlContent = byteArrayOutputStream.toString();
-
-        try {
-            FileCopyUtils.copy(mxmlContent, new OutputStreamWriter(flexConfigMutableFile.getOutputStream()));
-        } catch (Exception e) {
-            throw new IllegalStateException(e);
-        }
+        this.generatedFileWriter.writeTextFile(flexConfigFileId, byteArrayOutputStream.toString());
     }
 
     public String getProvidesType() {
@@ -283,47 +433,55 @@ public class FlexUIMetadataProvider implements MetadataProvider, MetadataNotific
 
     }
 
-    private void createEntityEventType(ActionScriptType entityEventType, FlexScaffoldMetadata flexScaffoldMetadata) {
-        ActionScriptType entityType = ActionScriptMappingUtils.toActionScriptType(flexScaffoldMetadata.getEntity());
+    private String renderEntityEventType(ScaffoldModel model) {
         StringTemplate entityEventTemplate = this.templateGroup.getInstanceOf("org/springframework/flex/roo/addon/ui/entity_event");
-        entityEventTemplate.setAttribute("entityEventType", entityEventType);
-        entityEventTemplate.setAttribute("entityType", entityType);
-        entityEventTemplate.setAttribute("flexScaffoldMetadata", flexScaffoldMetadata);
-
-        String relativePath = entityEventType.getFullyQualifiedTypeName().replace('.', File.separatorChar) + ".as";
-        String fileIdentifier = this.flexPathResolver.getIdentifier(FlexPath.SRC_MAIN_FLEX, relativePath);
-        this.fileManager.createOrUpdateTextFileIfRequired(fileIdentifier, entityEventTemplate.toString(), true);
+        entityEventTemplate.setAttribute("entityEventType", model.entityEventType);
+        entityEventTemplate.setAttribute("entityType", model.entityType);
+        entityEventTemplate.setAttribute("flexScaffoldMetadata", model.flexScaffoldMetadata);
+        return entityEventTemplate.toString();
     }
 
-    private Document buildListViewDocument(FlexScaffoldMetadata flexScaffoldMetadata, List<FieldMetadata> elegibleFields) {
-        ActionScriptType entityType = ActionScriptMappingUtils.toActionScriptType(flexScaffoldMetadata.getEntity());
+    private String renderListView(ScaffoldModel model) {
         StringTemplate listViewTemplate = this.templateGroup.getInstanceOf("org/springframework/flex/roo/addon/ui/entity_list_view");
-        listViewTemplate.setAttribute("entityType", entityType);
-        listViewTemplate.setAttribute("flexScaffoldMetadata", flexScaffoldMetadata);
-        listViewTemplate.setAttribute("fields", elegibleFields);
+        listViewTemplate.setAttribute("entityType", model.entityType);
+        listViewTemplate.setAttribute("flexScaffoldMetadata", model.flexScaffoldMetadata);
+        listViewTemplate.setAttribute("fields", model.listFields);
+        listViewTemplate.setAttribute("sortableFields", getSortableFields(model.flexScaffoldMetadata, model.listFields));
+        // The multi-row actions copy every field the form edits, including relationships the grid does not show
+        listViewTemplate.setAttribute("formFields", model.formFields);
+        listViewTemplate.setAttribute("pageSize", FlexScaffoldMetadata.DEFAULT_PAGE_SIZE);
+        return listViewTemplate.toString();
+    }
 
-        try {
-            ByteArrayInputStream stream = new ByteArrayInputStream(listViewTemplate.toString().getBytes("UTF-8"));
-            return XmlUtils.getDocumentBuilder().parse(stream);
-        } catch (Exception e) {
-            throw new IllegalStateException("Failed to build list view document", e);
+    private String renderForm(ScaffoldModel model) {
+        StringTemplate listViewTemplate = this.templateGroup.getInstanceOf("org/springframework/flex/roo/addon/ui/entity_form");
+        listViewTemplate.setAttribute("entityType", model.entityType);
+        listViewTemplate.setAttribute("flexScaffoldMetadata", model.flexScaffoldMetadata);
+        listViewTemplate.setAttribute("fields", model.formFields);
+        listViewTemplate.setAttribute("relatedTypes", model.relatedTypes);
+        listViewTemplate.setAttribute("labelFields", model.labelFields);
+        listViewTemplate.setAttribute("maxPageSize", FlexScaffoldMetadata.MAX_PAGE_SIZE);
+        return listViewTemplate.toString();
+    }
+
+    /**
+     * @return whether each of the list fields can be sorted by the server, keyed by field name
+     */
+    protected static Map<String, Boolean> getSortableFields(FlexScaffoldMetadata flexScaffoldMetadata, List<FieldMetadata> listFields) {
+        Map<String, Boolean> sortableFields = new HashMap<String, Boolean>();
+        for (FieldMetadata field : listFields) {
+            String fieldName = field.getFieldName().getSymbolName();
+            sortableFields.put(fieldName, Boolean.valueOf(flexScaffoldMetadata.getQueryableProperties().contains(fieldName)));
         }
+        return sortableFields;
     }
 
-    private Document buildFormDocument(FlexScaffoldMetadata flexScaffoldMetadata, List<FieldMetadata> elegibleFields) {
-        ActionScriptType entityType = ActionScriptMappingUtils.toActionScriptType(flexScaffoldMetadata.getEntity());
-        StringTemplate listViewTemplate = this.templateGroup.getInstanceOf("org/springframework/flex/roo/addon/ui/entity_form");
-        listViewTemplate.setAttribute("entityType", entityType);
-        listViewTemplate.setAttribute("flexScaffoldMetadata", flexScaffoldMetadata);
-        listViewTemplate.setAttribute("fields", wrapFields(elegibleFields));
-        Set<RelatedTypeWrapper> relatedTypes = findRelatedTypes(flexScaffoldMetadata, elegibleFields);
-        listViewTemplate.setAttribute("relatedTypes", relatedTypes);
-        listViewTemplate.setAttribute("labelFields", calculateLabelFields(relatedTypes));
+    private Document parseDocument(String source, String description) {
         try {
-            ByteArrayInputStream stream = new ByteArrayInputStream(listViewTemplate.toString().getBytes("UTF-8"));
+            ByteArrayInputStream stream = new ByteArrayInputStream(source.getBytes("UTF-8"));
             return XmlUtils.getDocumentBuilder().parse(stream);
         } catch (Exception e) {
-            throw new IllegalStateException("Failed to build list view document", e);
+            throw new IllegalStateException("Failed to build " + description + " document", e);
         }
     }
 
@@ -364,17 +522,15 @@ public class FlexUIMetadataProvider implements MetadataProvider, MetadataNotific
     // if not careful
     private Set<RelatedTypeWrapper> findRelatedTypes(FlexScaffoldMetadata flexScaffoldMetadata, List<FieldMetadata> elegibleFields) {
         Set<RelatedTypeWrapper> relatedTypes = new LinkedHashSet<RelatedTypeWrapper>();
-        MemberDetails memberDetails = getMemberDetails(flexScaffoldMetadata.getEntity());
-        for (MethodMetadata method : MemberFindingUtils.getMethods(memberDetails)) {
-            if (BeanInfoUtils.isAccessorMethod(method)) {
-                JavaSymbolName propertyName = BeanInfoUtils.getPropertyNameForJavaBeanMethod(method);
-                FieldMetadata javaField = BeanInfoUtils.getFieldForPropertyName(memberDetails, propertyName);
-                if (null != MemberFindingUtils.getAnnotationOfType(javaField.getAnnotations(), new JavaType("javax.persistence.OneToOne"))
-                    || null != MemberFindingUtils.getAnnotationOfType(javaField.getAnnotations(), new JavaType("javax.persistence.ManyToOne"))) {
-                    ActionScriptType asType = ActionScriptMappingUtils.toActionScriptType(javaField.getFieldType());
-                    relatedTypes.add(new RelatedTypeWrapper(asType, elegibleFields, !asType.getFullyQualifiedTypeName().equals(
-                        flexScaffoldMetadata.getEntity().getFullyQualifiedTypeName())));
-                }
+        for (FieldMetadata javaField : getAccessorFields(flexScaffoldMetadata.getEntity())) {
+            if (ActionScriptMappingUtils.isTransient(javaField)) {
+                continue;
+            }
+            if (null != MemberFindingUtils.getAnnotationOfType(javaField.getAnnotations(), new JavaType("javax.persistence.OneToOne"))
+                || null != MemberFindingUtils.getAnnotationOfType(javaField.getAnnotations(), new JavaType("javax.persistence.ManyToOne"))) {
+                ActionScriptType asType = ActionScriptMappingUtils.toActionScriptType(javaField.getFieldType());
+                relatedTypes.add(new RelatedTypeWrapper(asType, elegibleFields, !asType.getFullyQualifiedTypeName().equals(
+                    flexScaffoldMetadata.getEntity().getFullyQualifiedTypeName())));
             }
         }
         return relatedTypes;
@@ -390,26 +546,25 @@ public class FlexUIMetadataProvider implements MetadataProvider, MetadataNotific
 
     private List<FieldMetadata> getElegibleListFields(ProjectMetadata projectMetadata, FlexScaffoldMetadata flexScaffoldMetadata) {
         List<FieldMetadata> eligibleFields = new ArrayList<FieldMetadata>();
-        MemberDetails memberDetails = getMemberDetails(flexScaffoldMetadata.getEntity());
-        for (MethodMetadata method : MemberFindingUtils.getMethods(memberDetails)) {
-            if (BeanInfoUtils.isAccessorMethod(method)) {
-                JavaSymbolName propertyName = BeanInfoUtils.getPropertyNameForJavaBeanMethod(method);
-                FieldMetadata javaField = BeanInfoUtils.getFieldForPropertyName(memberDetails, propertyName);
-                // TODO - For now we ignore relationships in the list view
-                if (!javaField.getFieldType().isCommonCollectionType()
-                    && !javaField.getFieldType().isArray()
-                    && !javaField.getFieldType().getPackage().getFullyQualifiedPackageName().startsWith(
-                        projectMetadata.getTopLevelPackage().getFullyQualifiedPackageName())) {
-                    // Never include id field
-                    if (MemberFindingUtils.getAnnotationOfType(javaField.getAnnotations(), new JavaType("javax.persistence.Id")) != null) {
-                        continue;
-                    }
-                    // Never include version field
-                    if (MemberFindingUtils.getAnnotationOfType(javaField.getAnnotations(), new JavaType("javax.persistence.Version")) != null) {
-                        continue;
-                    }
-                    eligibleFields.add(javaField);
+        for (FieldMetadata javaField : getAccessorFields(flexScaffoldMetadata.getEntity())) {
+            // TODO - For now we ignore relationships in the list view
+            if (!javaField.getFieldType().isCommonCollectionType()
+                && !javaField.getFieldType().isArray()
+                && !javaField.getFieldType().getPackage().getFullyQualifiedPackageName().startsWith(
+                    projectMetadata.getTopLevelPackage().getFullyQualifiedPackageName())) {
+                // Never include id field
+                if (MemberFindingUtils.getAnnotationOfType(javaField.getAnnotations(), new JavaType("javax.persistence.Id")) != null) {
+                    continue;
+                }
+                // Never include version field
+                if (MemberFindingUtils.getAnnotationOfType(javaField.getAnnotations(), new JavaType("javax.persistence.Version")) != null) {
+                    continue;
                 }
+                // Never include fields that are not sent to the client
+                if (ActionScriptMappingUtils.isTransient(javaField)) {
+                    continue;
+                }
+                eligibleFields.add(javaField);
             }
         }
         return eligibleFields;
@@ -417,23 +572,22 @@ public class FlexUIMetadataProvider implements MetadataProvider, MetadataNotific
 
     private List<FieldMetadata> getElegibleFormFields(ProjectMetadata projectMetadata, FlexScaffoldMetadata flexScaffoldMetadata) {
         List<FieldMetadata> eligibleFields = new ArrayList<FieldMetadata>();
-        MemberDetails memberDetails = getMemberDetails(flexScaffoldMetadata.getEntity());
-        for (MethodMetadata method : MemberFindingUtils.getMethods(memberDetails)) {
-            if (BeanInfoUtils.isAccessorMethod(method)) {
-                JavaSymbolName propertyName = BeanInfoUtils.getPropertyNameForJavaBeanMethod(method);
-                FieldMetadata javaField = BeanInfoUtils.getFieldForPropertyName(memberDetails, propertyName);
-                // TODO - For now we ignore relationships in the list view
-                if (!javaField.getFieldType().isCommonCollectionType() && !javaField.getFieldType().isArray()) {
-                    // Never include id field
-                    if (MemberFindingUtils.getAnnotationOfType(javaField.getAnnotations(), new JavaType("javax.persistence.Id")) != null) {
-                        continue;
-                    }
-                    // Never include version field
-                    if (MemberFindingUtils.getAnnotationOfType(javaField.getAnnotations(), new JavaType("javax.persistence.Version")) != null) {
-                        continue;
-                    }
-                    eligibleFields.add(javaField);
+        for (FieldMetadata javaField : getAccessorFields(flexScaffoldMetadata.getEntity())) {
+            // TODO - For now we ignore relationships in the list view
+            if (!javaField.getFieldType().isCommonCollectionType() && !javaField.getFieldType().isArray()) {
+                // Never include id field
+                if (MemberFindingUtils.getAnnotationOfType(javaField.getAnnotations(), new JavaType("javax.persistence.Id")) != null) {
+                    continue;
+                }
+                // Never include version field
+                if (MemberFindingUtils.getAnnotationOfType(javaField.getAnnotations(), new JavaType("javax.persistence.Version")) != null) {
+                    continue;
+                }
+                // Never include fields that are not sent to the client
+                if (ActionScriptMappingUtils.isTransient(javaField)) {
+                    continue;
                 }
+                eligibleFields.add(javaField);
             }
         }
         return eligibleFields;
@@ -444,12 +598,10 @@ public class FlexUIMetadataProvider implements MetadataProvider, MetadataNotific
 
         Document original = null;
 
-        // If mutableFile becomes non-null, it means we need to use it to write out the contents of jspContent to the
-        // file
-        MutableFile mutableFile = null;
-        if (this.fileManager.exists(mxmlFilename)) {
+        boolean write = false;
+        if (this.generatedFileWriter.exists(mxmlFilename)) {
             try {
-                original = XmlUtils.getDocumentBuilder().parse(this.fileManager.getInputStream(mxmlFilename));
+                original = XmlUtils.getDocumentBuilder().parse(this.generatedFileWriter.getInputStream(mxmlFilename));
             } catch (Exception e) {
                 new IllegalStateException("Could not parse file: " + mxmlFilename);
             }
@@ -457,43 +609,32 @@ public class FlexUIMetadataProvider implements MetadataProvider, MetadataNotific
             if (MxmlRoundTripUtils.compareDocuments(original, proposed)) { // TODO - need to actually implement the
                                                                            // comparison algorithm in a way that works
                                                                            // for MXML to allow non-destructive editing
-                mutableFile = this.fileManager.updateFile(mxmlFilename);
+                write = true;
             }
         } else {
             original = proposed;
-            mutableFile = this.fileManager.createFile(mxmlFilename);
-            Assert.notNull(mutableFile, "Could not create MXML file '" + mxmlFilename + "'");
+            write = true;
         }
 
-        try {
-            if (mutableFile != null) {
-                // Build a string representation of the MXML
-                ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-                XmlUtils.writeXml(XmlUtils.createIndentingTransformer(), byteArrayOutputStream, original);
-                String mxmlContent = byteArrayOutputStream.toString();
-
-                // We need to write the file out (it's a new file, or the existing file has different contents)
-                FileCopyUtils.copy(mxmlContent, new OutputStreamWriter(mutableFile.getOutputStream()));
-                // Return and indicate we wrote out the file
-                return true;
-            }
-        } catch (IOException ioe) {
-            throw new IllegalStateException("Could not output '" + mutableFile.getCanonicalPath() + "'", ioe);
+        if (write) {
+            // Build a string representation of the MXML
+            ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+            XmlUtils.writeXml(XmlUtils.createIndentingTransformer(), byteArrayOutputStream, original);
+
+            // We need to write the file out (it's a new file, or the existing file has different contents)
+            this.generatedFileWriter.writeTextFile(mxmlFilename, byteArrayOutputStream.toString());
+            // Return and indicate we wrote out the file
+            return true;
         }
 
         // A file existed, but it contained the same content, so we return false
         return false;
     }
     
-    private MemberDetails getMemberDetails(JavaType entityType) {
-        PhysicalTypeMetadata entityPhysicalTypeMetadata = (PhysicalTypeMetadata) metadataService.get(PhysicalTypeIdentifier.createIdentifier(entityType, Path.SRC_MAIN_JAVA));
-        Assert.notNull(entityPhysicalTypeMetadata, "Unable to obtain physical type metdata for type " + entityType.getFullyQualifiedTypeName());
-        ClassOrInterfaceTypeDetails entityClassOrInterfaceDetails = (ClassOrInterfaceTypeDetails) entityPhysicalTypeMetadata.getMemberHoldingTypeDetails();
-        return scanForMemberDetails(entityClassOrInterfaceDetails);
-    }
-    
-    private MemberDetails scanForMemberDetails(ClassOrInterfaceTypeDetails entityClassOrInterfaceDetails) {
-        return memberDetailsScanner.getMemberDetails(getClass().getName(), entityClassOrInterfaceDetails);
+    private List<FieldMetadata> getAccessorFields(JavaType entityType) {
+        List<FieldMetadata> accessorFields = this.memberDetailsCache.getAccessorFields(entityType);
+        Assert.notNull(accessorFields, "Unable to obtain physical type metdata for type " + entityType.getFullyQualifiedTypeName());
+        return accessorFields;
     }
 
     protected static Map<String, String> buildValidationsForField(FieldMetadata field) {
@@ -538,15 +679,26 @@ public class FlexUIMetadataProvider implements MetadataProvider, MetadataNotific
         return validations.size() > 0 ? validations : null;
     }
 
+    /**
+     * A form field, with the kind of input it needs resolved up front so that rendering never maps types.
+     */
     public static final class FormFieldWrapper {
 
         private final FieldMetadata metadata;
 
         private final Map<String, String> validations;
 
+        private final ActionScriptType asType;
+
+        private final boolean singleEndedRelationship;
+
         public FormFieldWrapper(FieldMetadata metadata) {
             this.metadata = metadata;
             this.validations = buildValidationsForField(metadata);
+            this.asType = ActionScriptMappingUtils.toActionScriptType(metadata.getFieldType());
+            this.singleEndedRelationship = ActionScriptMappingUtils.isMappableType(this.asType)
+                && (null != MemberFindingUtils.getAnnotationOfType(metadata.getAnnotations(), new JavaType("javax.persistence.OneToOne"))
+                    || null != MemberFindingUtils.getAnnotationOfType(metadata.getAnnotations(), new JavaType("javax.persistence.ManyToOne")));
         }
 
         public FieldMetadata getMetadata() {
@@ -558,23 +710,72 @@ public class FlexUIMetadataProvider implements MetadataProvider, MetadataNotific
         }
 
         public Boolean isDate() {
-            return ActionScriptMappingUtils.toActionScriptType(this.metadata.getFieldType()).equals(ActionScriptType.DATE_TYPE);
+            return this.asType.equals(ActionScriptType.DATE_TYPE);
         }
 
         public Boolean isBoolean() {
-            return ActionScriptMappingUtils.toActionScriptType(this.metadata.getFieldType()).equals(ActionScriptType.BOOLEAN_TYPE);
+            return this.asType.equals(ActionScriptType.BOOLEAN_TYPE);
         }
 
         public Boolean isNumber() {
-            return ActionScriptMappingUtils.toActionScriptType(this.metadata.getFieldType()).isNumeric();
+            return this.asType.isNumeric();
         }
 
         public Boolean isSingleEndedRelationship() {
-            if (ActionScriptMappingUtils.isMappableType(ActionScriptMappingUtils.toActionScriptType(this.metadata.getFieldType()))) {
-                return null != MemberFindingUtils.getAnnotationOfType(this.metadata.getAnnotations(), new JavaType("javax.persistence.OneToOne"))
-                    || null != MemberFindingUtils.getAnnotationOfType(this.metadata.getAnnotations(), new JavaType("javax.persistence.ManyToOne"));
-            }
-            return false;
+            return this.singleEndedRelationship;
+        }
+    }
+
+    /**
+     * Everything needed to render the views of one entity, resolved before rendering starts.
+     */
+    private static final class ScaffoldModel {
+
+        private final FlexScaffoldMetadata flexScaffoldMetadata;
+
+        private final ActionScriptType entityType;
+
+        private final String entityPresentationPackage;
+
+        private final ActionScriptType entityEventType;
+
+        private final List<FieldMetadata> listFields;
+
+        private final List<FormFieldWrapper> formFields;
+
+        private final Set<RelatedTypeWrapper> relatedTypes;
+
+        private final Map<String, String> labelFields;
+
+        private ScaffoldModel(FlexScaffoldMetadata flexScaffoldMetadata, ActionScriptType entityType, String entityPresentationPackage,
+            ActionScriptType entityEventType, List<FieldMetadata> listFields, List<FormFieldWrapper> formFields,
+            Set<RelatedTypeWrapper> relatedTypes, Map<String, String> labelFields) {
+            this.flexScaffoldMetadata = flexScaffoldMetadata;
+            this.entityType = entityType;
+            this.entityPresentationPackage = entityPresentationPackage;
+            this.entityEventType = entityEventType;
+            this.listFields = listFields;
+            this.formFields = formFields;
+            this.relatedTypes = relatedTypes;
+            this.labelFields = labelFields;
+        }
+    }
+
+    private static final class RenderedScaffold {
+
+        private final ScaffoldModel model;
+
+        private final String entityEventSource;
+
+        private final String listViewSource;
+
+        private final String formSource;
+
+        private RenderedScaffold(ScaffoldModel model, String entityEventSource, String listViewSource, String formSource) {
+            this.model = model;
+            this.entityEventSource = entityEventSource;
+            this.listViewSource = listViewSource;
+            this.formSource = formSource;
         }
     }
 
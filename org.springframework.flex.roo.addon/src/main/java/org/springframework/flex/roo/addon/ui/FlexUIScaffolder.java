@@ -0,0 +1,53 @@
+/*
+ * Copyright 2002-2010 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.flex.roo.addon.ui;
+
+import java.util.List;
+
+import org.springframework.flex.roo.addon.StageTimings;
+import org.springframework.roo.model.JavaType;
+
+/**
+ * Generates the Flex user interface for many scaffolded remoting destinations at once.
+ *
+ * @author Jeremy Grelle
+ */
+public interface FlexUIScaffolder {
+
+    /**
+     * Generates the views of each given remoting destination. All metadata is resolved first, the per-entity views are
+     * then rendered in parallel, and finally all files are written together, with the shared scaffold application and
+     * compiler configuration each updated only once. Destinations whose scaffold metadata is not yet available are
+     * skipped, and are scaffolded as usual once their metadata appears.
+     *
+     * @param services the remoting destinations annotated with {@code @RooFlexScaffold} (required)
+     * @param timings records the time taken by each stage (required)
+     * @return the number of destinations whose views were generated
+     */
+    int scaffoldAll(List<JavaType> services, StageTimings timings);
+
+    /**
+     * Starts a bulk scaffold. Until {@link #endBulkScaffold()} is called, views requested through metadata notifications,
+     * such as those of newly created remoting destinations, are not rendered, so that {@link #scaffoldAll} renders each
+     * of them only once.
+     */
+    void beginBulkScaffold();
+
+    /**
+     * Ends a bulk scaffold, rendering any views requested in the meantime that {@link #scaffoldAll} did not generate.
+     */
+    void endBulkScaffold();
+}
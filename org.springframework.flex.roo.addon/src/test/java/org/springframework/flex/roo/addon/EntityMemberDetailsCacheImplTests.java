@@ -0,0 +1,144 @@
+/*
+ * Copyright 2002-2010 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.flex.roo.addon;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+import static org.mockito.MockitoAnnotations.*;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.springframework.roo.classpath.PhysicalTypeIdentifier;
+import org.springframework.roo.classpath.PhysicalTypeMetadata;
+import org.springframework.roo.classpath.details.ClassOrInterfaceTypeDetails;
+import org.springframework.roo.classpath.scanner.MemberDetails;
+import org.springframework.roo.classpath.scanner.MemberDetailsScanner;
+import org.springframework.roo.metadata.MetadataService;
+import org.springframework.roo.model.JavaType;
+import org.springframework.roo.project.Path;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class EntityMemberDetailsCacheImplTests {
+
+	private static final JavaType ENTITY = new JavaType("com.foo.domain.Album");
+
+	private static final String ENTITY_ID = PhysicalTypeIdentifier.createIdentifier(ENTITY, Path.SRC_MAIN_JAVA);
+
+	@Mock
+	private MetadataService metadataService;
+
+	@Mock
+	private MemberDetailsScanner memberDetailsScanner;
+
+	@Mock
+	private PhysicalTypeMetadata physicalTypeMetadata;
+
+	@Mock
+	private ClassOrInterfaceTypeDetails details;
+
+	@Mock
+	private MemberDetails memberDetails;
+
+	private EntityMemberDetailsCacheImpl cache;
+
+	@Before
+	public void setUp() {
+		initMocks(this);
+		when(metadataService.get(ENTITY_ID)).thenReturn(physicalTypeMetadata);
+		when(physicalTypeMetadata.getMemberHoldingTypeDetails()).thenReturn(details);
+		when(memberDetailsScanner.getMemberDetails(anyString(), any(ClassOrInterfaceTypeDetails.class))).thenReturn(memberDetails);
+		cache = new EntityMemberDetailsCacheImpl();
+		ReflectionTestUtils.setField(cache, "metadataService", metadataService);
+		ReflectionTestUtils.setField(cache, "memberDetailsScanner", memberDetailsScanner);
+	}
+
+	@Test
+	public void testEntityIsScannedOnce() {
+		assertSame(memberDetails, cache.getMemberDetails(ENTITY));
+		assertNotNull(cache.getAccessorFields(ENTITY));
+		assertNotNull(cache.getMutatorFields(ENTITY));
+		assertSame(memberDetails, cache.getMemberDetails(ENTITY));
+		
+		verify(memberDetailsScanner, times(1)).getMemberDetails(anyString(), same(details));
+		assertEquals(1, cache.getScanCount());
+	}
+	
+	@Test
+	public void testChangedTypeDetailsAreRescanned() {
+		cache.getMemberDetails(ENTITY);
+		
+		ClassOrInterfaceTypeDetails changedDetails = mock(ClassOrInterfaceTypeDetails.class);
+		when(physicalTypeMetadata.getMemberHoldingTypeDetails()).thenReturn(changedDetails);
+		cache.getMemberDetails(ENTITY);
+		
+		verify(memberDetailsScanner).getMemberDetails(anyString(), same(changedDetails));
+		assertEquals(2, cache.getScanCount());
+	}
+	
+	@Test
+	public void testNotificationAboutEntityEvicts() {
+		cache.getMemberDetails(ENTITY);
+		
+		cache.notify("MID:org.springframework.roo.addon.entity.EntityMetadata#SRC_MAIN_JAVA?com.foo.domain.Album", null);
+		cache.getMemberDetails(ENTITY);
+		
+		assertEquals(2, cache.getScanCount());
+	}
+	
+	@Test
+	public void testNotificationAboutOtherTypeDoesNotEvict() {
+		cache.getMemberDetails(ENTITY);
+		
+		cache.notify("MID:org.springframework.roo.addon.entity.EntityMetadata#SRC_MAIN_JAVA?com.foo.domain.Artist", null);
+		cache.notify("MID:org.springframework.roo.addon.entity.EntityMetadata", null);
+		cache.getMemberDetails(ENTITY);
+		
+		assertEquals(1, cache.getScanCount());
+	}
+	
+	@Test
+	public void testNotificationAboutSuperclassEvicts() {
+		ClassOrInterfaceTypeDetails superclass = mock(ClassOrInterfaceTypeDetails.class);
+		when(superclass.getDeclaredByMetadataId()).thenReturn(
+			PhysicalTypeIdentifier.createIdentifier(new JavaType("com.foo.domain.AbstractEntity"), Path.SRC_MAIN_JAVA));
+		when(details.getSuperclass()).thenReturn(superclass);
+		cache.getMemberDetails(ENTITY);
+		
+		cache.notify("MID:org.springframework.roo.addon.entity.EntityMetadata#SRC_MAIN_JAVA?com.foo.domain.AbstractEntity", null);
+		cache.getMemberDetails(ENTITY);
+		
+		assertEquals(2, cache.getScanCount());
+	}
+	
+	@Test
+	public void testEvict() {
+		cache.getMemberDetails(ENTITY);
+		cache.evict(ENTITY);
+		cache.getMemberDetails(ENTITY);
+		
+		assertEquals(2, cache.getScanCount());
+	}
+	
+	@Test
+	public void testMissingEntity() {
+		JavaType missing = new JavaType("com.foo.domain.Missing");
+		assertNull(cache.getMemberDetails(missing));
+		assertNull(cache.getAccessorFields(missing));
+		assertEquals(0, cache.getScanCount());
+	}
+}
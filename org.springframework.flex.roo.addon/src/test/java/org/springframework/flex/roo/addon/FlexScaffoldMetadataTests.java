@@ -0,0 +1,143 @@
+/*
+ * Copyright 2002-2010 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.flex.roo.addon;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.springframework.roo.classpath.details.FieldMetadata;
+import org.springframework.roo.classpath.details.FieldMetadataBuilder;
+import org.springframework.roo.classpath.itd.InvocableMemberBodyBuilder;
+import org.springframework.roo.model.DataType;
+import org.springframework.roo.model.ImportRegistrationResolver;
+import org.springframework.roo.model.JavaSymbolName;
+import org.springframework.roo.model.JavaType;
+
+public class FlexScaffoldMetadataTests {
+
+	private static final String ENTITY_ID = "MID:org.springframework.roo.classpath.PhysicalTypeIdentifier#SRC_MAIN_JAVA?com.foo.Person";
+	
+	private static final JavaType PERSON = new JavaType("com.foo.Person");
+	
+	private final FieldMetadata id = field("id", JavaType.LONG_OBJECT);
+	
+	private final FieldMetadata name = field("name", JavaType.STRING_OBJECT);
+
+	@Test
+	public void testCountQueryFromFinderQuery() {
+		assertEquals("SELECT COUNT(o) FROM Person AS o WHERE LOWER(o.name) LIKE LOWER(:name)",
+			FlexScaffoldMetadata.getCountQuery("SELECT o FROM Person AS o WHERE LOWER(o.name) LIKE LOWER(:name)"));
+	}
+	
+	@Test
+	public void testCountQueryDropsOrdering() {
+		assertEquals("SELECT COUNT(o) FROM Person AS o WHERE o.age > :age",
+			FlexScaffoldMetadata.getCountQuery("SELECT o FROM Person AS o WHERE o.age > :age ORDER BY o.name"));
+	}
+	
+	@Test
+	public void testCountQueryIgnoresCase() {
+		assertEquals("SELECT COUNT(p) FROM Person AS p WHERE p.age = :age",
+			FlexScaffoldMetadata.getCountQuery("select p from Person AS p WHERE p.age = :age"));
+	}
+	
+	@Test
+	public void testNoCountQueryForUnexpectedQuery() {
+		assertNull(FlexScaffoldMetadata.getCountQuery(null));
+		assertNull(FlexScaffoldMetadata.getCountQuery(""));
+		assertNull(FlexScaffoldMetadata.getCountQuery("SELECT DISTINCT o FROM Person AS o"));
+		assertNull(FlexScaffoldMetadata.getCountQuery("UPDATE Person o SET o.age = 0"));
+	}
+	
+	@Test
+	public void testListAfterByIdentifier() {
+		String body = getKeysetRestriction(id);
+		
+		assertTrue(body.contains("if (afterKey != null) {"));
+		assertTrue(body.contains("query.where(criteriaBuilder.greaterThan(root.<Long>get(\"id\"), afterKey));"));
+		assertTrue(body.contains("query.orderBy(criteriaBuilder.asc(root.<Long>get(\"id\")));"));
+		assertFalse(body.contains("afterId"));
+	}
+	
+	@Test
+	public void testListAfterByCustomKey() {
+		String body = getKeysetRestriction(name);
+		
+		assertTrue(body.contains("if (afterKey != null && afterId != null) {"));
+		assertTrue(body.contains("query.where(criteriaBuilder.or(criteriaBuilder.greaterThan(root.<String>get(\"name\"), afterKey),"));
+		assertTrue(body.contains("criteriaBuilder.and(criteriaBuilder.equal(root.<String>get(\"name\"), afterKey), criteriaBuilder.greaterThan(root.<Long>get(\"id\"), afterId))));"));
+		assertTrue(body.contains("} else if (afterKey != null) {"));
+		assertTrue(body.contains("query.where(criteriaBuilder.greaterThanOrEqualTo(root.<String>get(\"name\"), afterKey));"));
+		assertTrue(body.contains("query.orderBy(criteriaBuilder.asc(root.<String>get(\"name\")), criteriaBuilder.asc(root.<Long>get(\"id\")));"));
+	}
+	
+	@Test
+	public void testListAfterByPrimitiveKeyUsesObjectType() {
+		String body = getKeysetRestriction(field("age", JavaType.INT_PRIMITIVE));
+		
+		assertTrue(body.contains("criteriaBuilder.greaterThan(root.<Integer>get(\"age\"), afterKey)"));
+	}
+	
+	@Test
+	public void testKeysetFieldDefaultsToIdentifier() {
+		List<FieldMetadata> fields = Arrays.asList(id, name);
+		
+		assertSame(id, FlexScaffoldMetadata.getKeysetField(null, PERSON, fields, id));
+		assertSame(id, FlexScaffoldMetadata.getKeysetField("", PERSON, fields, id));
+		assertSame(name, FlexScaffoldMetadata.getKeysetField("name", PERSON, fields, id));
+		assertSame(id, FlexScaffoldMetadata.getKeysetField("missing", PERSON, fields, id));
+	}
+	
+	@Test
+	public void testRejectedKeysetFieldFallsBackToIdentifier() {
+		FieldMetadata address = field("address", new JavaType("com.foo.Address"));
+		
+		assertSame(id, FlexScaffoldMetadata.getKeysetField("address", PERSON, Arrays.asList(id, address), id));
+	}
+	
+	@Test
+	public void testKeysetTypes() {
+		assertTrue(FlexScaffoldMetadata.isKeysetType(JavaType.STRING_OBJECT));
+		assertTrue(FlexScaffoldMetadata.isKeysetType(JavaType.INT_PRIMITIVE));
+		assertTrue(FlexScaffoldMetadata.isKeysetType(new JavaType("java.util.Date")));
+		assertTrue(FlexScaffoldMetadata.isKeysetType(new JavaType("java.math.BigDecimal")));
+		
+		List<JavaType> params = new ArrayList<JavaType>();
+		params.add(JavaType.STRING_OBJECT);
+		assertFalse(FlexScaffoldMetadata.isKeysetType(new JavaType("java.util.List", 0, DataType.TYPE, null, params)));
+		assertFalse(FlexScaffoldMetadata.isKeysetType(new JavaType("java.lang.String", 1, DataType.TYPE, null, null)));
+		assertFalse(FlexScaffoldMetadata.isKeysetType(JavaType.BOOLEAN_OBJECT));
+		assertFalse(FlexScaffoldMetadata.isKeysetType(new JavaType("com.foo.Address")));
+	}
+	
+	private String getKeysetRestriction(FieldMetadata keysetField) {
+		ImportRegistrationResolver resolver = mock(ImportRegistrationResolver.class);
+		InvocableMemberBodyBuilder bodyBuilder = new InvocableMemberBodyBuilder();
+		FlexScaffoldMetadata.appendKeysetRestriction(bodyBuilder, keysetField, id, resolver);
+		return bodyBuilder.getOutput();
+	}
+	
+	private static FieldMetadata field(String fieldName, JavaType fieldType) {
+		return new FieldMetadataBuilder(ENTITY_ID, Modifier.PRIVATE, new JavaSymbolName(fieldName), fieldType, null).build();
+	}
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2002-2010 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.flex.roo.addon;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+import static org.mockito.MockitoAnnotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.springframework.roo.process.manager.FileManager;
+import org.springframework.roo.support.util.FileCopyUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class GeneratedFileWriterImplTests {
+
+	private static final String EXISTING = "/project/src/main/flex/Existing.mxml";
+
+	private static final String CREATED = "/project/src/main/flex/Created.mxml";
+
+	@Mock
+	private FileManager fileManager;
+
+	private GeneratedFileWriterImpl writer;
+
+	@Before
+	public void setUp() {
+		initMocks(this);
+		when(fileManager.exists(EXISTING)).thenReturn(true);
+		when(fileManager.getInputStream(EXISTING)).thenAnswer(new Answer<Object>() {
+			public Object answer(InvocationOnMock invocation) {
+				return new ByteArrayInputStream("original".getBytes());
+			}
+		});
+		writer = new GeneratedFileWriterImpl();
+		ReflectionTestUtils.setField(writer, "fileManager", fileManager);
+	}
+
+	@Test
+	public void testWritesImmediatelyOutsideBatch() {
+		writer.writeTextFile(CREATED, "created");
+
+		verify(fileManager).createOrUpdateTextFileIfRequired(CREATED, "created", true);
+	}
+
+	@Test
+	public void testBatchWritesOnceOnOutermostCommit() throws IOException {
+		writer.beginBatch();
+		writer.writeTextFile(EXISTING, "first");
+		writer.beginBatch();
+		writer.writeTextFile(EXISTING, "second");
+		writer.writeTextFile(CREATED, "created");
+
+		assertTrue(writer.exists(CREATED));
+		assertEquals("second", FileCopyUtils.copyToString(new InputStreamReader(writer.getInputStream(EXISTING))));
+
+		writer.commitBatch();
+		verify(fileManager, never()).createOrUpdateTextFileIfRequired(anyString(), anyString(), anyBoolean());
+
+		writer.commitBatch();
+		assertFalse(writer.isBatchActive());
+		verify(fileManager, times(1)).createOrUpdateTextFileIfRequired(EXISTING, "second", true);
+		verify(fileManager, times(1)).createOrUpdateTextFileIfRequired(CREATED, "created", true);
+		verify(fileManager, never()).createOrUpdateTextFileIfRequired(EXISTING, "first", true);
+	}
+
+	@Test
+	public void testUnchangedFilesAreNotWritten() {
+		writer.beginBatch();
+		writer.writeTextFile(EXISTING, "original");
+		writer.commitBatch();
+
+		verify(fileManager, never()).createOrUpdateTextFileIfRequired(anyString(), anyString(), anyBoolean());
+	}
+
+	@Test
+	public void testRollbackDiscardsStagedFiles() {
+		writer.beginBatch();
+		writer.writeTextFile(CREATED, "created");
+		writer.beginBatch();
+		writer.rollbackBatch();
+		writer.commitBatch();
+
+		assertFalse(writer.exists(CREATED));
+		verify(fileManager, never()).createOrUpdateTextFileIfRequired(anyString(), anyString(), anyBoolean());
+	}
+
+	@Test
+	public void testImmediateWriteBypassesBatch() {
+		writer.beginBatch();
+		writer.writeTextFile(CREATED, "staged");
+		writer.writeTextFile(CREATED, "created", true);
+
+		verify(fileManager).createOrUpdateTextFileIfRequired(CREATED, "created", true);
+
+		writer.commitBatch();
+		verify(fileManager, never()).createOrUpdateTextFileIfRequired(CREATED, "staged", true);
+	}
+
+	@Test
+	public void testRecognizesOwnWrites() {
+		assertFalse(writer.isUnchangedSinceWritten(EXISTING));
+
+		writer.writeTextFile(EXISTING, "original");
+		assertTrue(writer.isUnchangedSinceWritten(EXISTING));
+
+		// The file on disk no longer holds what was last written, as if it had been edited since
+		writer.writeTextFile(EXISTING, "generated");
+		assertFalse(writer.isUnchangedSinceWritten(EXISTING));
+
+		writer.recordWrite(EXISTING);
+		assertTrue(writer.isUnchangedSinceWritten(EXISTING));
+	}
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2002-2010 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.flex.roo.addon;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class StageTimingsTests {
+
+	@Test
+	public void testStagesAccumulate() {
+		StageTimings timings = new StageTimings();
+		long start = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(20);
+		timings.record("render", start);
+		timings.record("render", start);
+		
+		assertTrue(timings.getStageMillis("render") >= 40);
+		assertEquals(0, timings.getStageMillis("write"));
+	}
+	
+	@Test
+	public void testStagesAreReportedInOrder() {
+		StageTimings timings = new StageTimings();
+		long start = System.nanoTime();
+		timings.record("resolve", start);
+		timings.record("render", start);
+		timings.record("write", start);
+		
+		String report = timings.toString();
+		assertTrue(report.indexOf("resolve: ") < report.indexOf("render: "));
+		assertTrue(report.indexOf("render: ") < report.indexOf("write: "));
+	}
+}
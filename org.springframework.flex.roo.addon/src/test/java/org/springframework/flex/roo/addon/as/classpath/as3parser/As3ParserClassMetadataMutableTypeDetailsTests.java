@@ -258,6 +258,34 @@ public class As3ParserClassMetadataMutableTypeDetailsTests {
 		assertTrue(compUnit.getPackage().findImports().contains("com.foo.smothered.Covered"));
 	}
 	
+	@Test
+	public void testAddMethodWithMultiLineBody() throws UnsupportedEncodingException {
+		String body = "var total:Number = 0;\n"
+				+ "for (var i:int = 0; i < count; i++) {\n"
+				+ "    total += i;\n"
+				+ "}\n"
+				+ "trace(\"total\",\n"
+				+ "    total);\n"
+				+ "return total;\n";
+		
+		List<ActionScriptType> paramTypes = new ArrayList<ActionScriptType>();
+		paramTypes.add(new ActionScriptType("int"));
+		List<ActionScriptSymbolName> paramNames = new ArrayList<ActionScriptSymbolName>();
+		paramNames.add(new ActionScriptSymbolName("count"));
+		
+		ASMethodMetadata method = new DefaultASMethodMetadata(metadataId, new ActionScriptSymbolName("sum"), ActionScriptType.NUMBER_TYPE, 
+				ASTypeVisibility.PUBLIC, body, new ArrayList<ASMetaTagMetadata>(), paramTypes, paramNames);
+		
+		details.addMethod(method);
+		
+		readLastFile();
+		ASCompilationUnit compUnit = factory.newParser().parse(new StringReader(lastFile));
+		ASMethod result = ((ASClassType) compUnit.getType()).getMethod("sum");
+		assertNotNull(result);
+		assertEquals(4, result.getStatementList().size());
+		assertTrue(result.getStatementList().get(1).toString().contains("total += i"));
+	}
+	
 	@Test
 	public void testAddTypeMetaTag() throws UnsupportedEncodingException {
 		List <MetaTagAttributeValue<?>> attributes = new ArrayList<MetaTagAttributeValue<?>>();
@@ -285,6 +313,139 @@ public class As3ParserClassMetadataMutableTypeDetailsTests {
 		assertNull(compUnit.getType().getFirstMetatag("ClassLevelTag1"));
 	}
 	
+	@Test
+	public void testUnitOfWorkWritesOnceOnCommit() throws UnsupportedEncodingException {
+		
+		details.beginUnitOfWork();
+		details.addField(new DefaultASFieldMetadata(metadataId, new ActionScriptType("String"), 
+				new ActionScriptSymbolName("name"), ASTypeVisibility.PRIVATE, null, null));
+		details.addField(new DefaultASFieldMetadata(metadataId, ActionScriptType.NUMBER_TYPE, 
+				new ActionScriptSymbolName("id"), ASTypeVisibility.PRIVATE, "-1", null));
+		details.removeField(new ActionScriptSymbolName("field1"));
+		
+		verify(updateFile, never()).getOutputStream();
+		
+		details.commit();
+		
+		verify(updateFile, times(1)).getOutputStream();
+		readLastFile();
+		ASCompilationUnit compUnit = factory.newParser().parse(new StringReader(lastFile));
+		ASClassType clazz = (ASClassType) compUnit.getType();
+		assertNotNull(clazz.getField("name"));
+		assertNotNull(clazz.getField("id"));
+		assertNull(clazz.getField("field1"));
+	}
+	
+	@Test
+	public void testCommitSkipsUnchangedContents() {
+		
+		details.beginUnitOfWork();
+		ReflectionTestUtils.setField(details, "isDirty", true);
+		details.commit();
+		
+		verify(updateFile, never()).getOutputStream();
+	}
+	
+	@Test
+	public void testFailedCommitEndsUnitOfWork() throws UnsupportedEncodingException {
+		
+		details.beginUnitOfWork();
+		details.addField(new DefaultASFieldMetadata(metadataId, new ActionScriptType("String"), 
+				new ActionScriptSymbolName("name"), ASTypeVisibility.PRIVATE, null, null));
+		when(updateFile.getOutputStream()).thenThrow(new IllegalStateException("disk full"));
+		try {
+			details.commit();
+			fail("Expected the write to fail");
+		} catch (IllegalStateException expected) {
+		}
+		
+		reset(updateFile);
+		when(updateFile.getOutputStream()).thenReturn(outputStream);
+		details.addField(new DefaultASFieldMetadata(metadataId, ActionScriptType.NUMBER_TYPE, 
+				new ActionScriptSymbolName("id"), ASTypeVisibility.PRIVATE, "-1", null));
+		
+		verify(updateFile, times(1)).getOutputStream();
+		readLastFile();
+		ASClassType clazz = (ASClassType) factory.newParser().parse(new StringReader(lastFile)).getType();
+		assertNotNull(clazz.getField("name"));
+		assertNotNull(clazz.getField("id"));
+	}
+	
+	@Test
+	public void testRollbackDiscardsUnitOfWork() throws UnsupportedEncodingException {
+		
+		details.beginUnitOfWork();
+		details.addField(new DefaultASFieldMetadata(metadataId, new ActionScriptType("String"), 
+				new ActionScriptSymbolName("name"), ASTypeVisibility.PRIVATE, null, null));
+		details.rollback();
+		
+		verify(updateFile, never()).getOutputStream();
+		assertNull(details.getDeclaredFieldsByName().get(new ActionScriptSymbolName("name")));
+		
+		details.addField(new DefaultASFieldMetadata(metadataId, ActionScriptType.NUMBER_TYPE, 
+				new ActionScriptSymbolName("id"), ASTypeVisibility.PRIVATE, "-1", null));
+		
+		verify(updateFile, times(1)).getOutputStream();
+		readLastFile();
+		ASClassType clazz = (ASClassType) factory.newParser().parse(new StringReader(lastFile)).getType();
+		assertNull(clazz.getField("name"));
+		assertNotNull(clazz.getField("id"));
+	}
+	
+	@Test
+	public void testImplementsTypeAddedThenRemoved() throws UnsupportedEncodingException {
+		ActionScriptType externalizable = new ActionScriptType("flash.utils.IExternalizable");
+		List<ActionScriptType> paramTypes = new ArrayList<ActionScriptType>();
+		paramTypes.add(new ActionScriptType("flash.utils.IDataOutput"));
+		List<ActionScriptSymbolName> paramNames = new ArrayList<ActionScriptSymbolName>();
+		paramNames.add(new ActionScriptSymbolName("output"));
+		ASMethodMetadata method = new DefaultASMethodMetadata(metadataId, new ActionScriptSymbolName("writeExternal"), ActionScriptType.VOID_TYPE, 
+				ASTypeVisibility.PUBLIC, "", new ArrayList<ASMetaTagMetadata>(), paramTypes, paramNames);
+		
+		details.beginUnitOfWork();
+		details.addImplementsType(externalizable, false);
+		details.addMethod(method, false);
+		details.commit();
+		
+		readLastFile();
+		ASClassType clazz = (ASClassType) factory.newParser().parse(new StringReader(lastFile)).getType();
+		assertTrue(clazz.getImplementedInterfaces().contains("IExternalizable"));
+		assertNotNull(clazz.getMethod("writeExternal"));
+		
+		outputStream = new ByteArrayOutputStream();
+		when(updateFile.getOutputStream()).thenReturn(outputStream);
+		details.beginUnitOfWork();
+		details.removeMethod(new ActionScriptSymbolName("writeExternal"), false);
+		details.removeImplementsType(externalizable, false);
+		details.commit();
+		
+		assertFalse(details.getImplementsTypes().contains(externalizable));
+		readLastFile();
+		clazz = (ASClassType) factory.newParser().parse(new StringReader(lastFile)).getType();
+		assertFalse(clazz.getImplementedInterfaces().contains("IExternalizable"));
+		assertTrue(clazz.getImplementedInterfaces().contains("Foo"));
+		assertNull(clazz.getMethod("writeExternal"));
+	}
+	
+	@Test
+	public void testCachedCompilationUnitIsNotModified() throws Exception {
+		
+		File file = new ClassPathResource("com/foo/stuff/FooImpl.as").getFile();
+		CompilationUnitCache cache = new CompilationUnitCache();
+		ASCompilationUnit cached = cache.getCompilationUnit(file.getCanonicalPath(), file);
+		As3ParserMutableClassOrInterfaceTypeDetails cachedDetails = new As3ParserMutableClassOrInterfaceTypeDetails(cached, fileManager,
+				metadataId, file.getCanonicalPath(), new ActionScriptType("com.foo.stuff.FooImpl"), metadataService, provider, cache);
+		
+		cachedDetails.addField(new DefaultASFieldMetadata(metadataId, new ActionScriptType("String"), 
+				new ActionScriptSymbolName("name"), ASTypeVisibility.PRIVATE, null, null));
+		
+		assertNull(((ASClassType) cached.getType()).getField("name"));
+		assertEquals(0, cache.size());
+		readLastFile();
+		ASClassType clazz = (ASClassType) factory.newParser().parse(new StringReader(lastFile)).getType();
+		assertNotNull(clazz.getField("name"));
+	}
+	
 	private void readLastFile() throws UnsupportedEncodingException {
 		this.lastFile = this.outputStream.toString(Charset.defaultCharset().toString());
 	}
@@ -40,6 +40,7 @@ import org.springframework.roo.process.manager.ActiveProcessManager;
 import org.springframework.roo.process.manager.FileManager;
 import org.springframework.roo.process.manager.ProcessManager;
 import org.springframework.roo.process.manager.internal.DefaultFileManager;
+import org.springframework.test.util.ReflectionTestUtils;
 
 public class As3ParserClassMetadataValidParsingTests {
 
@@ -94,6 +95,24 @@ public class As3ParserClassMetadataValidParsingTests {
 		assertEquals("com.foo.Alpha", details.getExtendsTypes().get(0).getFullyQualifiedTypeName());
 	}
 	
+	@Test
+	public void testMembersAreResolvedOnFirstUse() {
+		assertEquals(2, details.getTypeMetaTags().size());
+		assertEquals(1, details.getExtendsTypes().size());
+		assertFalse((Boolean) ReflectionTestUtils.getField(details, "membersResolved"));
+		assertEquals(2, details.getDeclaredFields().size());
+		assertTrue((Boolean) ReflectionTestUtils.getField(details, "membersResolved"));
+	}
+	
+	@Test
+	public void testMembersByName() {
+		assertEquals(2, details.getDeclaredFieldsByName().size());
+		assertSame(details.getDeclaredFields().get(1), details.getDeclaredFieldsByName().get(new ActionScriptSymbolName("field2")));
+		assertNull(details.getDeclaredFieldsByName().get(new ActionScriptSymbolName("missing")));
+		assertEquals(3, details.getDeclaredMethodsByName().size());
+		assertSame(details.getDeclaredMethods().get(0), details.getDeclaredMethodsByName().get(new ActionScriptSymbolName("method1")).get(0));
+	}
+	
 	@Test
 	public void testImports() {
 		assertEquals(3, details.getImports().size());
@@ -33,6 +33,8 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mock;
+import org.osgi.framework.BundleContext;
+import org.osgi.service.component.ComponentContext;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.flex.roo.addon.as.classpath.ASPhysicalTypeCategory;
 import org.springframework.flex.roo.addon.as.classpath.ASPhysicalTypeDetails;
@@ -62,6 +64,7 @@ import org.springframework.roo.file.monitor.event.FileOperation;
 import org.springframework.roo.metadata.MetadataDependencyRegistry;
 import org.springframework.roo.metadata.MetadataService;
 import org.springframework.roo.process.manager.ActiveProcessManager;
+import org.springframework.roo.process.manager.FileManager;
 import org.springframework.roo.process.manager.ProcessManager;
 import org.springframework.roo.process.manager.internal.DefaultFileManager;
 import org.springframework.roo.project.PathInformation;
@@ -124,6 +127,19 @@ public class As3ParserMetadataProviderTests {
 		}
 	}
 	
+	@Test
+	public void testInvalidFileEventWindowFallsBackToDefault() {
+		ComponentContext context = mock(ComponentContext.class);
+		BundleContext bundleContext = mock(BundleContext.class);
+		when(context.getBundleContext()).thenReturn(bundleContext);
+		when(bundleContext.getProperty(As3ParserMetadataProvider.FILE_EVENT_WINDOW_PROPERTY)).thenReturn("1s");
+		
+		provider.activate(context);
+		
+		FileEventCoalescer coalescer = (FileEventCoalescer) ReflectionTestUtils.getField(provider, "eventCoalescer");
+		assertEquals(FileEventCoalescer.DEFAULT_WINDOW_MILLIS, coalescer.getWindowMillis());
+	}
+	
 	@Test
 	public void testGetWithValidIdentifier() {
 		As3ParserClassMetadata metadata = (As3ParserClassMetadata) provider.get(metadataId);
@@ -382,6 +398,77 @@ public class As3ParserMetadataProviderTests {
 		assertEquals(expectedId, id);
 	}
 	
+	@Test
+	public void testFindIdentifierUsesFileEvents() throws IOException {
+		
+		String expectedId = "MID:"+ASPhysicalTypeIdentifier.class.getName()+"#SRC_MAIN_FLEX?com.foo.stuff.FooImpl";
+		
+		FileDetails details = new FileDetails(new ClassPathResource("com/foo/stuff/FooImpl.as").getFile(), new Date().getTime());
+		provider.onFileEvent(new FileEvent(details, FileOperation.CREATED, null));
+		
+		FileManager noFiles = mock(FileManager.class);
+		ReflectionTestUtils.setField(provider, "fileManager", noFiles);
+		
+		assertEquals(expectedId, provider.findIdentifier(new ActionScriptType("com.foo.stuff.FooImpl")));
+		verify(noFiles, never()).exists(anyString());
+		
+		provider.onFileEvent(new FileEvent(details, FileOperation.DELETED, null));
+		
+		assertNull(provider.findIdentifier(new ActionScriptType("com.foo.stuff.FooImpl")));
+	}
+	
+	@Test
+	public void testFindIdentifierSkipsDiskOnceScanned() throws IOException {
+		assertFalse(provider.isSourceScanComplete());
+		
+		FileDetails root = new FileDetails(new ClassPathResource("").getFile(), new Date().getTime());
+		provider.onFileEvent(new FileEvent(root, FileOperation.MONITORING_FINISH, null));
+		assertTrue(provider.isSourceScanComplete());
+		
+		FileManager noFiles = mock(FileManager.class);
+		ReflectionTestUtils.setField(provider, "fileManager", noFiles);
+		
+		assertNull(provider.findIdentifier(new ActionScriptType("com.foo.stuff.Missing")));
+		verify(noFiles, never()).exists(anyString());
+	}
+	
+	@Test
+	public void testFindRemoteClassIdentifier() throws IOException {
+		String fileIdentifier = new ClassPathResource("").getFile().getCanonicalPath()+"com/foo/stuff/FooImpl.as";
+		
+		List <MetaTagAttributeValue<?>> attributes = new ArrayList<MetaTagAttributeValue<?>>();
+		attributes.add(new StringAttributeValue(new ActionScriptSymbolName("alias"), "com.foo.stuff.domain.FooImpl"));
+		List<ASMetaTagMetadata> typeMetaTags = new ArrayList<ASMetaTagMetadata>();
+		typeMetaTags.add(new DefaultASMetaTagMetadata("RemoteClass", attributes));
+		
+		ASPhysicalTypeDetails details = new DefaultASClassOrInterfaceTypeDetails(metadataId, new ActionScriptType("com.foo.stuff.FooImpl"), 
+				ASPhysicalTypeCategory.CLASS, typeMetaTags);
+		provider.createPhysicalType(new DefaultASPhysicalTypeMetadata(metadataId, fileIdentifier, details));
+		
+		assertEquals(metadataId, provider.findRemoteClassIdentifier("com.foo.stuff.domain.FooImpl"));
+		assertNull(provider.findRemoteClassIdentifier("com.foo.stuff.FooImpl"));
+		
+		// The file on disk declares no RemoteClass, so parsing it drops the alias
+		assertNotNull(provider.get(metadataId));
+		assertNull(provider.findRemoteClassIdentifier("com.foo.stuff.domain.FooImpl"));
+	}
+	
+	@Test
+	public void testSubclassIsNotifiedOnceWhenSuperclassAppears() throws IOException {
+		
+		assertNotNull(provider.get(metadataId));
+		verify(registry, never()).registerDependency(anyString(), eq(metadataId));
+		
+		File superclassFile = new File(new ClassPathResource("").getFile(), "com/foo/Alpha.as");
+		FileDetails details = new FileDetails(superclassFile, new Date().getTime());
+		
+		provider.onFileEvent(new FileEvent(details, FileOperation.CREATED, null));
+		provider.onFileEvent(new FileEvent(details, FileOperation.UPDATED, null));
+		
+		verify(metadataService, times(1)).evict(metadataId);
+		verify(registry, times(1)).notifyDownstream(metadataId);
+	}
+	
 	@Test
 	public void testOnFileEvent() throws IOException {
 		
@@ -395,6 +482,47 @@ public class As3ParserMetadataProviderTests {
 		verify(registry).notifyDownstream(expectedId);
 	}
 	
+	@Test
+	public void testRepeatedFileEventsAreCoalesced() throws IOException {
+		
+		String expectedId = "MID:"+ASPhysicalTypeIdentifier.class.getName()+"#SRC_MAIN_FLEX?com.foo.stuff.FooImpl";
+		
+		FileDetails details = new FileDetails(new ClassPathResource("com/foo/stuff/FooImpl.as").getFile(), new Date().getTime());
+		
+		provider.onFileEvent(new FileEvent(details, FileOperation.CREATED, null));
+		provider.onFileEvent(new FileEvent(details, FileOperation.UPDATED, null));
+		provider.onFileEvent(new FileEvent(details, FileOperation.UPDATED, null));
+		
+		verify(metadataService, times(1)).evict(expectedId);
+		verify(registry, times(1)).notifyDownstream(expectedId);
+		
+		provider.onFileEvent(new FileEvent(details, FileOperation.DELETED, null));
+		
+		verify(metadataService, times(2)).evict(expectedId);
+		verify(registry, times(2)).notifyDownstream(expectedId);
+	}
+	
+	@Test
+	public void testInitialScanParsesSourcePathUpFront() throws IOException {
+		
+		String expectedId = "MID:"+ASPhysicalTypeIdentifier.class.getName()+"#SRC_MAIN_FLEX?com.foo.stuff.FooImpl";
+		
+		FileDetails details = new FileDetails(new ClassPathResource("com/foo/stuff/FooImpl.as").getFile(), new Date().getTime());
+		
+		provider.onFileEvent(new FileEvent(details, FileOperation.MONITORING_START, null));
+		
+		verify(metadataService).evict(expectedId);
+		verify(registry).notifyDownstream(expectedId);
+		
+		CompilationUnitCache parseCache = (CompilationUnitCache) ReflectionTestUtils.getField(provider, "parseCache");
+		if (Runtime.getRuntime().availableProcessors() > 1) {
+			assertTrue(parseCache.size() > 0);
+			long misses = parseCache.getMissCount();
+			assertNotNull(provider.get(expectedId));
+			assertEquals(misses, parseCache.getMissCount());
+		}
+	}
+	
 	private static class TestPathResolver extends FlexMojosPathResolver {
 		
 		public TestPathResolver() throws IOException {
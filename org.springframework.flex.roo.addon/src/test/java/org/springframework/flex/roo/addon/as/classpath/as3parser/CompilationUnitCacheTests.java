@@ -0,0 +1,109 @@
+/*
+ * Copyright 2002-2010 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.flex.roo.addon.as.classpath.as3parser;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.util.FileCopyUtils;
+
+import uk.co.badgersinfoil.metaas.dom.ASCompilationUnit;
+
+public class CompilationUnitCacheTests {
+
+	private CompilationUnitCache cache;
+
+	private File source;
+
+	private File copy;
+
+	@Before
+	public void setUp() throws Exception {
+		cache = new CompilationUnitCache();
+		source = new ClassPathResource("com/foo/stuff/FooImpl.as").getFile();
+		copy = File.createTempFile("FooImpl", ".as");
+		FileCopyUtils.copy(source, copy);
+	}
+
+	@After
+	public void tearDown() {
+		copy.delete();
+	}
+
+	@Test
+	public void testUnchangedFileIsParsedOnce() throws Exception {
+		String fileIdentifier = copy.getCanonicalPath();
+		ASCompilationUnit first = cache.getCompilationUnit(fileIdentifier, copy);
+		ASCompilationUnit second = cache.getCompilationUnit(fileIdentifier, copy);
+
+		assertSame(first, second);
+		assertEquals(1, cache.getMissCount());
+		assertEquals(1, cache.getHitCount());
+	}
+
+	@Test
+	public void testInvalidatedFileWithSameContentsIsNotReparsed() throws Exception {
+		String fileIdentifier = copy.getCanonicalPath();
+		ASCompilationUnit first = cache.getCompilationUnit(fileIdentifier, copy);
+		cache.invalidate(fileIdentifier);
+		ASCompilationUnit second = cache.getCompilationUnit(fileIdentifier, copy);
+
+		assertSame(first, second);
+		assertEquals(1, cache.getMissCount());
+	}
+
+	@Test
+	public void testChangedFileIsReparsed() throws Exception {
+		String fileIdentifier = copy.getCanonicalPath();
+		ASCompilationUnit first = cache.getCompilationUnit(fileIdentifier, copy);
+		String contents = new String(FileCopyUtils.copyToByteArray(source));
+		FileCopyUtils.copy((contents + "\n// changed\n").getBytes(), copy);
+		cache.invalidate(fileIdentifier);
+		ASCompilationUnit second = cache.getCompilationUnit(fileIdentifier, copy);
+
+		assertNotSame(first, second);
+		assertEquals(2, cache.getMissCount());
+	}
+
+	@Test
+	public void testEvictedFileIsReparsed() throws Exception {
+		String fileIdentifier = copy.getCanonicalPath();
+		ASCompilationUnit first = cache.getCompilationUnit(fileIdentifier, copy);
+		cache.evict(fileIdentifier);
+		ASCompilationUnit second = cache.getCompilationUnit(fileIdentifier, copy);
+
+		assertNotSame(first, second);
+		assertEquals(1, cache.size());
+		assertEquals(2, cache.getMissCount());
+	}
+
+	@Test
+	public void testLeastRecentlyUsedEntryIsDiscarded() throws Exception {
+		cache = new CompilationUnitCache(1);
+		cache.getCompilationUnit(copy.getCanonicalPath(), copy);
+		cache.getCompilationUnit(source.getCanonicalPath(), source);
+
+		assertEquals(1, cache.size());
+		cache.getCompilationUnit(copy.getCanonicalPath(), copy);
+		assertEquals(3, cache.getMissCount());
+	}
+}
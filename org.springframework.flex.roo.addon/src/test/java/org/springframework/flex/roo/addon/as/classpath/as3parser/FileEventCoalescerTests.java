@@ -0,0 +1,82 @@
+/*
+ * Copyright 2002-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.flex.roo.addon.as.classpath.as3parser;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.roo.file.monitor.event.FileOperation;
+import org.springframework.util.FileCopyUtils;
+
+public class FileEventCoalescerTests {
+
+	private static final String ID = "MID:org.springframework.flex.roo.addon.as.classpath.ASPhysicalTypeIdentifier#SRC_MAIN_FLEX?com.foo.Foo";
+
+	private FileEventCoalescer coalescer;
+
+	private File file;
+
+	@Before
+	public void setUp() throws Exception {
+		coalescer = new FileEventCoalescer(60000);
+		file = File.createTempFile("Foo", ".as");
+		FileCopyUtils.copy("var count:int = 1;".getBytes(), file);
+	}
+
+	@After
+	public void tearDown() {
+		file.delete();
+	}
+
+	@Test
+	public void testRepeatedEventIsSuppressed() {
+		assertTrue(coalescer.shouldDeliver(ID, FileOperation.CREATED, file));
+		assertFalse(coalescer.shouldDeliver(ID, FileOperation.UPDATED, file));
+		assertEquals(1, coalescer.getSuppressedCount());
+	}
+
+	@Test
+	public void testSameLengthEditWithinSameSecondIsDelivered() throws Exception {
+		long lastModified = file.lastModified();
+		assertTrue(coalescer.shouldDeliver(ID, FileOperation.UPDATED, file));
+
+		FileCopyUtils.copy("var count:int = 2;".getBytes(), file);
+		file.setLastModified(lastModified);
+
+		assertTrue(coalescer.shouldDeliver(ID, FileOperation.UPDATED, file));
+		assertEquals(0, coalescer.getSuppressedCount());
+	}
+
+	@Test
+	public void testDeletionIsAlwaysDelivered() {
+		assertTrue(coalescer.shouldDeliver(ID, FileOperation.UPDATED, file));
+		assertTrue(coalescer.shouldDeliver(ID, FileOperation.DELETED, file));
+		assertTrue(coalescer.shouldDeliver(ID, FileOperation.UPDATED, file));
+	}
+
+	@Test
+	public void testEventAfterWindowIsDelivered() throws Exception {
+		coalescer = new FileEventCoalescer(0);
+		assertTrue(coalescer.shouldDeliver(ID, FileOperation.UPDATED, file));
+		Thread.sleep(5);
+		assertTrue(coalescer.shouldDeliver(ID, FileOperation.UPDATED, file));
+	}
+}
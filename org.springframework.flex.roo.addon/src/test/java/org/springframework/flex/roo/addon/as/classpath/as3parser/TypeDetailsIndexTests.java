@@ -0,0 +1,184 @@
+/*
+ * Copyright 2002-2010 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.flex.roo.addon.as.classpath.as3parser;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+import java.io.File;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.flex.roo.addon.as.classpath.ASPhysicalTypeCategory;
+import org.springframework.flex.roo.addon.as.classpath.ASPhysicalTypeIdentifier;
+import org.springframework.flex.roo.addon.as.classpath.ASPhysicalTypeMetadataProvider;
+import org.springframework.flex.roo.addon.as.classpath.details.ASFieldMetadata;
+import org.springframework.flex.roo.addon.as.classpath.details.ASMethodMetadata;
+import org.springframework.flex.roo.addon.as.model.ASTypeVisibility;
+import org.springframework.flex.roo.addon.as.model.ActionScriptSymbolName;
+import org.springframework.roo.metadata.MetadataService;
+import org.springframework.roo.process.manager.ActiveProcessManager;
+import org.springframework.roo.process.manager.FileManager;
+import org.springframework.roo.process.manager.ProcessManager;
+import org.springframework.roo.process.manager.internal.DefaultFileManager;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.FileCopyUtils;
+
+public class TypeDetailsIndexTests {
+
+	FileManager fileManager = new DefaultFileManager();
+
+	@Mock
+	MetadataService metadataService;
+
+	@Mock
+	ASPhysicalTypeMetadataProvider provider;
+
+	@Mock
+	ProcessManager processManager;
+
+	private String metadataId;
+
+	private File source;
+
+	private File indexFile;
+
+	@Before
+	public void setUp() throws Exception {
+		initMocks(this);
+		when(processManager.isDevelopmentMode()).thenReturn(true);
+		ActiveProcessManager.setActiveProcessManager(processManager);
+		metadataId = "MID:" + ASPhysicalTypeIdentifier.class.getName() + "#SRC_MAIN_FLEX?com.foo.stuff.FooImpl";
+		source = File.createTempFile("FooImpl", ".as");
+		FileCopyUtils.copy(new ClassPathResource("com/foo/stuff/FooImpl.as").getFile(), source);
+		indexFile = new File(source.getParentFile(), source.getName() + ".idx");
+	}
+
+	@After
+	public void tearDown() {
+		source.delete();
+		indexFile.delete();
+	}
+
+	@Test
+	public void testIndexSurvivesReload() throws Exception {
+		String fileIdentifier = source.getCanonicalPath();
+		TypeDetailsIndex index = new TypeDetailsIndex(indexFile);
+		new As3ParserClassMetadata(fileManager, fileIdentifier, metadataId, metadataService, provider, null, index);
+		assertEquals(1, index.size());
+		index.save();
+		assertTrue(indexFile.isFile());
+
+		TypeDetailsIndex reloaded = new TypeDetailsIndex(indexFile);
+		assertNotNull(reloaded.get(fileIdentifier, source));
+
+		As3ParserClassMetadata metadata = new As3ParserClassMetadata(fileManager, fileIdentifier, metadataId, metadataService, provider, null,
+			reloaded);
+		As3ParserMutableClassOrInterfaceTypeDetails details = (As3ParserMutableClassOrInterfaceTypeDetails) metadata.getPhysicalTypeDetails();
+		assertNotNull(details);
+		assertNull(details.clazz);
+
+		assertEquals("com.foo.stuff.FooImpl", details.getName().getFullyQualifiedTypeName());
+		assertEquals(ASPhysicalTypeCategory.CLASS, details.getPhysicalTypeCategory());
+		assertEquals(3, details.getImports().size());
+		assertEquals("com.foo.Alpha", details.getExtendsTypes().get(0).getFullyQualifiedTypeName());
+		assertEquals("com.foo.Foo", details.getImplementsTypes().get(0).getFullyQualifiedTypeName());
+		assertEquals(2, details.getTypeMetaTags().size());
+		assertEquals("bar", details.getTypeMetaTags().get(1).getAttribute(new ActionScriptSymbolName("foo")).getValue());
+		assertNotNull(details.getDeclaredConstructor());
+
+		assertEquals(2, details.getDeclaredFields().size());
+		ASFieldMetadata field = details.getDeclaredFields().get(1);
+		assertEquals(metadataId, field.getDeclaredByMetadataId());
+		assertEquals("field2", field.getFieldName().getSymbolName());
+		assertEquals(ASTypeVisibility.PRIVATE, field.getVisibility());
+		assertEquals("com.foo.Bar", field.getFieldType().getFullyQualifiedTypeName());
+
+		assertEquals(3, details.getDeclaredMethods().size());
+		ASMethodMetadata method = details.getDeclaredMethods().get(2);
+		assertEquals("calculateStuff", method.getMethodName().getSymbolName());
+		assertEquals("baz", method.getParameterNames().get(1).getSymbolName());
+		assertEquals("com.foo.Bar", method.getParameterTypes().get(1).getFullyQualifiedTypeName());
+		assertEquals("String", method.getReturnType().getFullyQualifiedTypeName());
+	}
+
+	@Test
+	public void testChangedFileIsNotReturned() throws Exception {
+		String fileIdentifier = source.getCanonicalPath();
+		TypeDetailsIndex index = new TypeDetailsIndex(indexFile);
+		new As3ParserClassMetadata(fileManager, fileIdentifier, metadataId, metadataService, provider, null, index);
+
+		String contents = new String(FileCopyUtils.copyToByteArray(source));
+		FileCopyUtils.copy((contents + "\n// changed\n").getBytes(), source);
+
+		assertNull(index.get(fileIdentifier, source));
+		assertEquals(0, index.size());
+	}
+
+	@Test
+	public void testMembersAreCopiedWhenResolved() throws Exception {
+		String fileIdentifier = source.getCanonicalPath();
+		TypeDetailsIndex index = new TypeDetailsIndex(indexFile);
+		As3ParserClassMetadata metadata = new As3ParserClassMetadata(fileManager, fileIdentifier, metadataId, metadataService, provider, null,
+			index);
+		As3ParserMutableClassOrInterfaceTypeDetails details = (As3ParserMutableClassOrInterfaceTypeDetails) metadata.getPhysicalTypeDetails();
+		assertFalse((Boolean) ReflectionTestUtils.getField(details, "membersResolved"));
+		assertNull(index.get(fileIdentifier, source));
+
+		details.getDeclaredFields().clear();
+
+		assertEquals(2, index.get(fileIdentifier, source).getDeclaredFields().size());
+	}
+
+	@Test
+	public void testUnresolvedMembersAreCopiedWhenSaved() throws Exception {
+		String fileIdentifier = source.getCanonicalPath();
+		TypeDetailsIndex index = new TypeDetailsIndex(indexFile);
+		As3ParserClassMetadata metadata = new As3ParserClassMetadata(fileManager, fileIdentifier, metadataId, metadataService, provider, null,
+			index);
+		index.save();
+
+		assertTrue((Boolean) ReflectionTestUtils.getField(metadata.getPhysicalTypeDetails(), "membersResolved"));
+		TypeDetailsIndex.IndexedType indexedType = new TypeDetailsIndex(indexFile).get(fileIdentifier, source);
+		assertEquals(2, indexedType.getDeclaredFields().size());
+		assertEquals(3, indexedType.getDeclaredMethods().size());
+	}
+
+	@Test
+	public void testDeletedFileIsNotSaved() throws Exception {
+		String fileIdentifier = source.getCanonicalPath();
+		TypeDetailsIndex index = new TypeDetailsIndex(indexFile);
+		new As3ParserClassMetadata(fileManager, fileIdentifier, metadataId, metadataService, provider, null, index);
+		assertTrue(source.delete());
+		index.save();
+
+		assertEquals(0, index.size());
+		assertEquals(0, new TypeDetailsIndex(indexFile).size());
+	}
+
+	@Test
+	public void testUnreadableIndexIsDiscarded() throws Exception {
+		FileCopyUtils.copy("not an index".getBytes(), indexFile);
+		TypeDetailsIndex index = new TypeDetailsIndex(indexFile);
+		assertEquals(0, index.size());
+		assertNull(index.get(source.getCanonicalPath(), source));
+	}
+}
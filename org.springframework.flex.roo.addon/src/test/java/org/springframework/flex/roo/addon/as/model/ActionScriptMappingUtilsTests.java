@@ -0,0 +1,60 @@
+/*
+ * Copyright 2002-2010 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.flex.roo.addon.as.model;
+
+import static org.junit.Assert.*;
+
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+
+import org.junit.Test;
+import org.springframework.flex.roo.addon.RooFlexTransient;
+import org.springframework.flex.roo.addon.as.classpath.details.ASFieldMetadata;
+import org.springframework.roo.classpath.details.FieldMetadata;
+import org.springframework.roo.classpath.details.FieldMetadataBuilder;
+import org.springframework.roo.classpath.details.annotations.AnnotationAttributeValue;
+import org.springframework.roo.classpath.details.annotations.AnnotationMetadataBuilder;
+import org.springframework.roo.model.JavaSymbolName;
+import org.springframework.roo.model.JavaType;
+
+public class ActionScriptMappingUtilsTests {
+
+	@Test
+	public void testTransientFieldIsMirroredWithTransientMetaTag() {
+		AnnotationMetadataBuilder annotation = new AnnotationMetadataBuilder(new JavaType(RooFlexTransient.class.getName()), new ArrayList<AnnotationAttributeValue<?>>()); 
+		FieldMetadata javaField = new FieldMetadataBuilder("MID:person#1", Modifier.PRIVATE, Collections.singletonList(annotation), new JavaSymbolName("notes"), JavaType.STRING_OBJECT).build();
+		
+		ASFieldMetadata asField = ActionScriptMappingUtils.toASFieldMetadata("MID:asperson#1", javaField, true);
+		
+		assertTrue(ActionScriptMappingUtils.isTransient(javaField));
+		assertTrue(ActionScriptMappingUtils.isTransient(asField));
+		assertEquals(ActionScriptMappingUtils.TRANSIENT_TAG, asField.getMetaTags().get(0).getName());
+		assertTrue(ActionScriptMappingUtils.isTransient(ActionScriptMappingUtils.toFieldMetadata("MID:person#1", asField, true)));
+	}
+	
+	@Test
+	public void testFieldIsNotTransientByDefault() {
+		FieldMetadata javaField = new FieldMetadataBuilder("MID:person#1", Modifier.PRIVATE, new JavaSymbolName("name"), JavaType.STRING_OBJECT, null).build();
+		
+		ASFieldMetadata asField = ActionScriptMappingUtils.toASFieldMetadata("MID:asperson#1", javaField, true);
+		
+		assertFalse(ActionScriptMappingUtils.isTransient(asField));
+		assertTrue(asField.getMetaTags().isEmpty());
+		assertFalse(ActionScriptMappingUtils.isTransient(ActionScriptMappingUtils.toFieldMetadata("MID:person#1", asField, true)));
+	}
+}
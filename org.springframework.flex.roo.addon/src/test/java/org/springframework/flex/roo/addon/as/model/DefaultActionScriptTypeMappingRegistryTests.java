@@ -0,0 +1,102 @@
+/*
+ * Copyright 2002-2010 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.flex.roo.addon.as.model;
+
+import static org.junit.Assert.*;
+
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.roo.model.DataType;
+import org.springframework.roo.model.JavaType;
+
+public class DefaultActionScriptTypeMappingRegistryTests {
+
+	private static final JavaType PERSON = new JavaType("org.example.Person");
+	
+	private DefaultActionScriptTypeMappingRegistry registry;
+	
+	@Before
+	public void setUp() {
+		registry = new DefaultActionScriptTypeMappingRegistry();
+	}
+	
+	@Test
+	public void testBuiltInMappings() {
+		assertEquals(ActionScriptType.INT_TYPE, registry.toActionScriptType(JavaType.SHORT_PRIMITIVE));
+		assertEquals(ActionScriptType.NUMBER_TYPE, registry.toActionScriptType(JavaType.LONG_OBJECT));
+		assertEquals(ActionScriptType.DATE_TYPE, registry.toActionScriptType(new JavaType(Date.class.getName())));
+		assertEquals(DefaultActionScriptTypeMappingRegistry.ARRAY_COLLECTION_TYPE, registry.toActionScriptType(new JavaType(List.class.getName(), 0, DataType.TYPE, null, null)));
+	}
+	
+	@Test
+	public void testByteArraysMapToByteArray() {
+		assertEquals(DefaultActionScriptTypeMappingRegistry.BYTE_ARRAY_TYPE, registry.toActionScriptType(new JavaType(Byte.class.getName(), 1, DataType.PRIMITIVE, null, null)));
+		assertEquals(DefaultActionScriptTypeMappingRegistry.BYTE_ARRAY_TYPE, registry.toActionScriptType(new JavaType(Byte.class.getName(), 1, DataType.TYPE, null, null)));
+		assertEquals(ActionScriptType.INT_TYPE, registry.toActionScriptType(new JavaType(Byte.class.getName(), 0, DataType.PRIMITIVE, null, null)));
+	}
+	
+	@Test
+	public void testLookupsAreInterned() {
+		ActionScriptType first = registry.toActionScriptType(PERSON);
+		assertEquals("org.example.Person", first.getFullyQualifiedTypeName());
+		assertSame(first, registry.toActionScriptType(new JavaType("org.example.Person")));
+		assertSame(registry.toJavaType(first), registry.toJavaType(new ActionScriptType("org.example.Person")));
+	}
+	
+	@Test
+	public void testRegisteredMappingReplacesCachedResult() {
+		registry.toActionScriptType(PERSON);
+		ActionScriptType personVO = new ActionScriptType("org.example.vo.PersonVO");
+		registry.registerMapping(PERSON, personVO);
+		
+		assertEquals(personVO, registry.toActionScriptType(PERSON));
+		assertEquals(PERSON, registry.toJavaType(personVO));
+	}
+	
+	@Test
+	public void testRegisteredMappingKeepsExistingReverseMapping() {
+		registry.registerMapping(new JavaType("org.joda.time.LocalDate"), ActionScriptType.DATE_TYPE);
+		
+		assertEquals(ActionScriptType.DATE_TYPE, registry.toActionScriptType(new JavaType("org.joda.time.LocalDate")));
+		assertEquals(new JavaType(Date.class.getName()), registry.toJavaType(ActionScriptType.DATE_TYPE));
+	}
+	
+	@Test
+	public void testResetRestoresBuiltInMappings() {
+		registry.registerMapping(JavaType.LONG_OBJECT, ActionScriptType.STRING_TYPE);
+		assertEquals(ActionScriptType.STRING_TYPE, registry.toActionScriptType(JavaType.LONG_OBJECT));
+		
+		registry.reset();
+		assertEquals(ActionScriptType.NUMBER_TYPE, registry.toActionScriptType(JavaType.LONG_OBJECT));
+	}
+	
+	@Test
+	public void testEnumerationsMapToString() {
+		registry = new DefaultActionScriptTypeMappingRegistry() {
+			@Override
+			protected boolean isEnumeration(JavaType javaType) {
+				return javaType.equals(PERSON);
+			}
+		};
+		
+		assertEquals(ActionScriptType.STRING_TYPE, registry.toActionScriptType(PERSON));
+		assertEquals("org.example.Address", registry.toActionScriptType(new JavaType("org.example.Address")).getFullyQualifiedTypeName());
+	}
+}
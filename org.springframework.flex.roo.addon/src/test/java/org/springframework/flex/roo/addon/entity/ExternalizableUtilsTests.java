@@ -0,0 +1,152 @@
+/*
+ * Copyright 2002-2010 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.flex.roo.addon.entity;
+
+import static org.junit.Assert.*;
+
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+import org.springframework.flex.roo.addon.RooFlexTransient;
+import org.springframework.flex.roo.addon.as.classpath.details.ASFieldMetadata;
+import org.springframework.flex.roo.addon.as.model.ActionScriptMappingUtils;
+import org.springframework.roo.classpath.details.FieldMetadata;
+import org.springframework.roo.classpath.details.FieldMetadataBuilder;
+import org.springframework.roo.classpath.details.annotations.AnnotationAttributeValue;
+import org.springframework.roo.classpath.details.annotations.AnnotationMetadataBuilder;
+import org.springframework.roo.model.DataType;
+import org.springframework.roo.model.JavaSymbolName;
+import org.springframework.roo.model.JavaType;
+
+public class ExternalizableUtilsTests {
+
+	private static final String ENTITY_ID = "MID:person#1";
+	
+	private static final String AS_ENTITY_ID = "MID:asperson#1";
+	
+	private final FieldMetadata id = field("id", JavaType.LONG_OBJECT);
+	
+	private final FieldMetadata version = field("version", JavaType.INT_OBJECT);
+	
+	private final FieldMetadata name = field("name", JavaType.STRING_OBJECT);
+	
+	private final FieldMetadata age = field("age", JavaType.INT_PRIMITIVE);
+	
+	private final FieldMetadata salary = field("salary", new JavaType(BigDecimal.class.getName()));
+	
+	private final FieldMetadata createdBy = field("createdBy", JavaType.STRING_OBJECT);
+	
+	@Test
+	public void testFieldsAreOrderedByName() {
+		List<FieldMetadata> fields = ExternalizableUtils.getExternalizedFields(Arrays.asList(version, name, id), Arrays.asList(id, name, version));
+		
+		assertEquals(Arrays.asList(id, name, version), fields);
+	}
+	
+	@Test
+	public void testReadOnlyPropertiesAreNotExternalized() {
+		List<FieldMetadata> fields = ExternalizableUtils.getExternalizedFields(Arrays.asList(createdBy, name), Arrays.asList(name));
+		
+		assertEquals(Arrays.asList(name), fields);
+	}
+	
+	@Test
+	public void testTransientPropertyRequiresExternalization() {
+		AnnotationMetadataBuilder annotation = new AnnotationMetadataBuilder(new JavaType(RooFlexTransient.class.getName()), new ArrayList<AnnotationAttributeValue<?>>()); 
+		FieldMetadata notes = new FieldMetadataBuilder(ENTITY_ID, Modifier.PRIVATE, Collections.singletonList(annotation), new JavaSymbolName("notes"), JavaType.STRING_OBJECT).build();
+		
+		assertTrue(ExternalizableUtils.hasTransientFields(Arrays.asList(name, notes)));
+		assertFalse(ExternalizableUtils.hasTransientFields(Arrays.asList(id, name)));
+	}
+	
+	@Test
+	public void testTransientPropertiesAreNotExternalized() {
+		AnnotationMetadataBuilder annotation = new AnnotationMetadataBuilder(new JavaType(RooFlexTransient.class.getName()), new ArrayList<AnnotationAttributeValue<?>>()); 
+		FieldMetadata notes = new FieldMetadataBuilder(ENTITY_ID, Modifier.PRIVATE, Collections.singletonList(annotation), new JavaSymbolName("notes"), JavaType.STRING_OBJECT).build();
+		
+		List<FieldMetadata> fields = ExternalizableUtils.getExternalizedFields(Arrays.asList(name, notes), Arrays.asList(name, notes));
+		
+		assertEquals(Arrays.asList(name), fields);
+	}
+	
+	@Test
+	public void testJavaAndActionScriptAgreeOnOrder() {
+		List<FieldMetadata> fields = ExternalizableUtils.getExternalizedFields(Arrays.asList(version, salary, name, age, id), 
+				Arrays.asList(id, age, name, salary, version));
+		List<String> expected = Arrays.asList("age", "id", "name", "salary", "version");
+		
+		assertEquals(expected, names(ExternalizableUtils.getJavaWriteStatements(fields), "writeObject\\((?:String\\.valueOf\\()?get(\\w+)\\("));
+		assertEquals(expected, names(ExternalizableUtils.getJavaReadStatements(fields, null), "^set(\\w+)\\("));
+		
+		List<ASFieldMetadata> asFields = new ArrayList<ASFieldMetadata>();
+		for (FieldMetadata field : fields) {
+			asFields.add(ActionScriptMappingUtils.toASFieldMetadata(AS_ENTITY_ID, field, true));
+		}
+		assertEquals(expected, names(Arrays.asList(ExternalizableUtils.getActionScriptWriteBody(asFields).split("\\n")), "writeObject\\((\\w+)\\)"));
+		assertEquals(expected, names(Arrays.asList(ExternalizableUtils.getActionScriptReadBody(asFields).split("\\n")), "^(\\w+) = input"));
+	}
+	
+	@Test
+	public void testEveryPropertyIsReadOnce() {
+		List<String> statements = ExternalizableUtils.getJavaReadStatements(Arrays.asList(id, name), null);
+		
+		assertEquals(5, statements.size());
+		assertEquals("Object value;", statements.get(0));
+		assertEquals("value = input.readObject();", statements.get(1));
+		assertEquals("setId(value == null ? null : Long.valueOf(((Number) value).longValue()));", statements.get(2));
+		assertEquals("value = input.readObject();", statements.get(3));
+		assertTrue(statements.get(4).matches("setName\\(\\((java\\.lang\\.)?String\\) value\\);"));
+	}
+	
+	@Test
+	public void testConversions() {
+		assertEquals("output.writeObject(getSalary() == null ? null : getSalary().toString());", 
+				ExternalizableUtils.getJavaWriteStatements(Arrays.asList(salary)).get(0));
+		assertTrue(ExternalizableUtils.getJavaReadStatements(Arrays.asList(salary), null).get(2).matches(
+				"setSalary\\(value == null \\? null : new (java\\.math\\.)?BigDecimal\\(\\(String\\) value\\)\\);"));
+		assertEquals("setAge(((Number) value).intValue());", ExternalizableUtils.getJavaReadStatements(Arrays.asList(age), null).get(2));
+		
+		FieldMetadata tags = field("tags", new JavaType("java.util.Set", 0, DataType.TYPE, null, Arrays.asList(JavaType.STRING_OBJECT)));
+		String readTags = ExternalizableUtils.getJavaReadStatements(Arrays.asList(tags), null).get(2);
+		assertTrue(readTags.startsWith("setTags(value == null ? null : new "));
+		assertTrue(readTags.contains("HashSet<"));
+		assertTrue(readTags.contains("Collection<"));
+	}
+	
+	private FieldMetadata field(String fieldName, JavaType fieldType) {
+		return new FieldMetadataBuilder(ENTITY_ID, Modifier.PRIVATE, new JavaSymbolName(fieldName), fieldType, null).build();
+	}
+	
+	private List<String> names(List<String> statements, String regex) {
+		Pattern pattern = Pattern.compile(regex);
+		List<String> names = new ArrayList<String>();
+		for (String statement : statements) {
+			Matcher matcher = pattern.matcher(statement);
+			if (matcher.find()) {
+				names.add(matcher.group(1).substring(0, 1).toLowerCase() + matcher.group(1).substring(1));
+			}
+		}
+		return names;
+	}
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2002-2010 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.flex.roo.addon.entity;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.flex.roo.addon.as.model.ActionScriptType;
+import org.springframework.roo.model.JavaType;
+
+public class MirrorGenerationPlanTests {
+
+	private MirrorGenerationPlan plan;
+
+	@Before
+	public void setUp() {
+		plan = new MirrorGenerationPlan();
+	}
+
+	@Test
+	public void testTypesArePlannedOnce() {
+		assertTrue(plan.addType(mapping("Album")));
+		assertFalse(plan.addType(mapping("Album")));
+		
+		assertEquals(1, plan.getPlannedCount());
+		assertEquals(1, plan.getTypes().size());
+	}
+	
+	@Test
+	public void testSkippedTypesAreNotPlanned() {
+		assertTrue(plan.skipType("Genre"));
+		assertFalse(plan.skipType("Genre"));
+		assertFalse(plan.addType(mapping("Genre")));
+		
+		assertTrue(plan.isKnown("Genre"));
+		assertEquals(0, plan.getPlannedCount());
+		assertEquals(1, plan.getSkippedCount());
+	}
+	
+	@Test
+	public void testDependenciesAreOrderedFirst() {
+		plan.addType(mapping("Track"));
+		plan.addType(mapping("Album"));
+		plan.addType(mapping("Artist"));
+		plan.addDependency("Track", "Album");
+		plan.addDependency("Album", "Artist");
+		
+		List<TypeMapping> ordered = plan.getOrderedTypes();
+		assertEquals(3, ordered.size());
+		assertEquals("Artist", ordered.get(0).getMetadataId());
+		assertEquals("Album", ordered.get(1).getMetadataId());
+		assertEquals("Track", ordered.get(2).getMetadataId());
+	}
+	
+	@Test
+	public void testCyclesAreBroken() {
+		plan.addType(mapping("Album"));
+		plan.addType(mapping("Artist"));
+		plan.addDependency("Album", "Artist");
+		plan.addDependency("Artist", "Album");
+		plan.addDependency("Album", "Album");
+		
+		List<TypeMapping> ordered = plan.getOrderedTypes();
+		assertEquals(2, ordered.size());
+		assertEquals("Artist", ordered.get(0).getMetadataId());
+		assertEquals("Album", ordered.get(1).getMetadataId());
+	}
+	
+	@Test
+	public void testDependenciesOnUnplannedTypesAreIgnored() {
+		plan.addType(mapping("Album"));
+		plan.skipType("Genre");
+		plan.addDependency("Album", "Genre");
+		plan.addDependency("Album", "Label");
+		
+		List<TypeMapping> ordered = plan.getOrderedTypes();
+		assertEquals(1, ordered.size());
+		assertEquals("Album", ordered.get(0).getMetadataId());
+	}
+	
+	private TypeMapping mapping(String name) {
+		return new TypeMapping(name, new ActionScriptType("com.foo." + name), new JavaType("com.foo." + name));
+	}
+}
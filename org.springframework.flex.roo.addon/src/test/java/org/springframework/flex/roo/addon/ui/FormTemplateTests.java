@@ -18,6 +18,8 @@ package org.springframework.flex.roo.addon.ui;
 
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
 import static org.mockito.MockitoAnnotations.initMocks;
 
@@ -34,11 +36,14 @@ import org.antlr.stringtemplate.StringTemplate;
 import org.antlr.stringtemplate.StringTemplateGroup;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mock;
 import org.springframework.flex.roo.addon.FlexScaffoldMetadata;
+import org.springframework.flex.roo.addon.as.model.ActionScriptMappingUtils;
 import org.springframework.flex.roo.addon.as.model.ActionScriptType;
+import org.springframework.flex.roo.addon.as.model.ActionScriptTypeMappingRegistry;
 import org.springframework.roo.classpath.details.FieldMetadata;
 import org.springframework.roo.classpath.details.FieldMetadataBuilder;
 import org.springframework.roo.classpath.details.annotations.AnnotationAttributeValue;
@@ -65,6 +70,40 @@ public class FormTemplateTests {
 		when(flexScaffoldMetadata.getEntityReference()).thenReturn("person");
 	}
 	
+	@After
+	public void tearDown() {
+		ActionScriptMappingUtils.setRegistry(null);
+	}
+	
+	@Test
+	public void testRenderingWrappedFieldsDoesNotMapTypes() throws SAXException, IOException {
+		ActionScriptType entityType = new ActionScriptType("com.foo.Person");
+		StringTemplate listViewTemplate = templateGroup.getInstanceOf("org/springframework/flex/roo/addon/ui/entity_form");
+		listViewTemplate.setAttribute("entityType", entityType);
+		listViewTemplate.setAttribute("flexScaffoldMetadata", flexScaffoldMetadata);
+		
+		List<FieldMetadata> elegibleFields = new ArrayList<FieldMetadata>();
+		elegibleFields.add(new FieldMetadataBuilder("MID:person#1", Modifier.PRIVATE, new JavaSymbolName("birthDate"), new JavaType("java.util.Date"), null).build());
+		elegibleFields.add(new FieldMetadataBuilder("MID:person#1", Modifier.PRIVATE, new JavaSymbolName("age"), JavaType.INT_OBJECT, null).build());
+		elegibleFields.add(new FieldMetadataBuilder("MID:person#1", Modifier.PRIVATE, new JavaSymbolName("active"), JavaType.BOOLEAN_OBJECT, null).build());
+		List<FlexUIMetadataProvider.FormFieldWrapper> wrappedFields = FlexUIMetadataProvider.wrapFields(elegibleFields);
+		
+		// Views are rendered off the shell thread, where the registry must not be consulted
+		ActionScriptTypeMappingRegistry registry = mock(ActionScriptTypeMappingRegistry.class);
+		ActionScriptMappingUtils.setRegistry(registry);
+		listViewTemplate.setAttribute("fields", wrappedFields);
+		
+		String result = listViewTemplate.toString();
+		log.debug(result);
+		
+		verifyZeroInteractions(registry);
+		assertTrue(result.contains("mx:DateField"));
+		assertTrue(result.contains("s:CheckBox"));
+		
+		ByteArrayInputStream stream = new ByteArrayInputStream(result.getBytes("UTF-8"));
+		XmlUtils.getDocumentBuilder().parse(stream);
+	}
+	
 	@Test
 	public void testFormWithTextFieldNoValidations() throws SAXException, IOException {
 		ActionScriptType entityType = new ActionScriptType("com.foo.Person");
@@ -282,6 +321,8 @@ public class FormTemplateTests {
 		
 		assertTrue(result.contains("import com.foo.Address;"));
 		assertTrue(result.contains("person.currentAddress = currentAddressInput.selectedItem;"));
+		assertTrue(result.contains("addressService.show(person.currentAddress.id)"));
+		assertTrue(result.contains("currentAddressInput.dataProvider.addItem(selected);"));
 		
 		ByteArrayInputStream stream = new ByteArrayInputStream(result.getBytes("UTF-8"));
 		XmlUtils.getDocumentBuilder().parse(stream);
@@ -0,0 +1,215 @@
+/*
+ * Copyright 2002-2010 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.flex.roo.addon.ui;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.antlr.stringtemplate.StringTemplate;
+import org.antlr.stringtemplate.StringTemplateGroup;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.springframework.flex.roo.addon.FlexScaffoldMetadata;
+import org.springframework.flex.roo.addon.as.model.ActionScriptType;
+import org.springframework.roo.classpath.details.FieldMetadata;
+import org.springframework.roo.classpath.details.FieldMetadataBuilder;
+import org.springframework.roo.classpath.details.annotations.AnnotationAttributeValue;
+import org.springframework.roo.classpath.details.annotations.AnnotationMetadataBuilder;
+import org.springframework.roo.model.JavaSymbolName;
+import org.springframework.roo.model.JavaType;
+import org.springframework.roo.support.util.XmlUtils;
+import org.xml.sax.SAXException;
+
+public class ListViewTemplateTests {
+
+	private static final Log log = LogFactory.getLog(ListViewTemplateTests.class);
+	
+	@Mock
+	private FlexScaffoldMetadata flexScaffoldMetadata;
+	
+	private StringTemplateGroup templateGroup = new StringTemplateGroup("viewTemplateTestsGroup");
+	
+	@Before
+	public void setUp() throws Exception {
+		initMocks(this);
+		when(flexScaffoldMetadata.getEntityReference()).thenReturn("person");
+	}
+	
+	@Test
+	public void testListViewLoadsFirstPage() throws SAXException, IOException {
+		String result = renderListView();
+		
+		assertTrue(result.contains("personService.listPage(page, pageSize, "));
+		assertTrue(result.contains("private var pageSize:int = " + FlexScaffoldMetadata.DEFAULT_PAGE_SIZE + ";"));
+		assertTrue(result.contains("<s:method name=\"listPage\" result=\"personService_listPageResultHandler(event)\"/>"));
+		assertTrue(result.contains("dataProvider=\"{items}\""));
+		assertFalse(result.contains("personService.list()"));
+		assertFalse(result.contains("list.lastResult"));
+		
+		ByteArrayInputStream stream = new ByteArrayInputStream(result.getBytes("UTF-8"));
+		XmlUtils.getDocumentBuilder().parse(stream);
+	}
+	
+	@Test
+	public void testListViewReadsPageObject() throws SAXException, IOException {
+		String result = renderListView();
+		
+		assertTrue(result.contains("event.result." + FlexScaffoldMetadata.PAGE_ITEMS + " as ArrayCollection"));
+		assertTrue(result.contains("event.result." + FlexScaffoldMetadata.PAGE_INDEX + ";"));
+		assertTrue(result.contains("event.result." + FlexScaffoldMetadata.PAGE_SIZE + ";"));
+		assertTrue(result.contains("event.result." + FlexScaffoldMetadata.PAGE_TOTAL_COUNT + ")"));
+	}
+	
+	@Test
+	public void testListViewSortsOnServer() {
+		String result = renderListView();
+		
+		assertTrue(result.contains("headerRelease=\"personGrid_headerReleaseHandler(event)\""));
+		assertTrue(result.contains("event.preventDefault();"));
+		assertTrue(result.contains("sortField + (sortDescending ? \" desc\" : \" asc\")"));
+	}
+	
+	@Test
+	public void testListViewOnlySortsByQueryableProperties() throws SAXException, IOException {
+		Map<String, Boolean> sortableFields = new HashMap<String, Boolean>();
+		sortableFields.put("name", Boolean.TRUE);
+		sortableFields.put("notes", Boolean.FALSE);
+		String result = renderListView(sortableFields, "name", "notes");
+		
+		assertTrue(result.contains("dataField=\"name\" headerText=\"Name\" />"));
+		assertTrue(result.contains("dataField=\"notes\" headerText=\"Notes\" sortable=\"false\" />"));
+		
+		ByteArrayInputStream stream = new ByteArrayInputStream(result.getBytes("UTF-8"));
+		XmlUtils.getDocumentBuilder().parse(stream);
+	}
+	
+	@Test
+	public void testSortableFieldsAreTheQueryableProperties() {
+		when(flexScaffoldMetadata.getQueryableProperties()).thenReturn(Arrays.asList("age", "name"));
+		List<FieldMetadata> fields = new ArrayList<FieldMetadata>();
+		fields.add(field("name"));
+		fields.add(field("notes"));
+		
+		Map<String, Boolean> sortableFields = FlexUIMetadataProvider.getSortableFields(flexScaffoldMetadata, fields);
+		
+		assertEquals(2, sortableFields.size());
+		assertEquals(Boolean.TRUE, sortableFields.get("name"));
+		assertEquals(Boolean.FALSE, sortableFields.get("notes"));
+	}
+	
+	@Test
+	public void testListViewRemovesSelectionInOneCall() {
+		String result = renderListView();
+		
+		assertTrue(result.contains("allowMultipleSelection=\"true\""));
+		assertTrue(result.contains("personService.removeAll(ids);"));
+		assertTrue(result.contains("<s:method name=\"removeAll\" result=\"personService_removeAllResultHandler(event)\"/>"));
+		assertTrue(result.contains("if (index > -1) {"));
+	}
+	
+	@Test
+	public void testListViewDuplicatesSelectionInOneCall() throws SAXException, IOException {
+		String result = renderListView();
+		
+		assertTrue(result.contains("copy.name = selectedPerson.name;"));
+		assertTrue(result.contains("personService.createAll(copies);"));
+		assertTrue(result.contains("<s:method name=\"createAll\" result=\"personService_createAllResultHandler(event)\"/>"));
+		assertTrue(result.contains("click=\"duplicatePersonBtn_clickHandler(event)\""));
+		
+		ByteArrayInputStream stream = new ByteArrayInputStream(result.getBytes("UTF-8"));
+		XmlUtils.getDocumentBuilder().parse(stream);
+	}
+	
+	@Test
+	public void testListViewUpdatesSelectionInOneCall() {
+		String result = renderListView();
+		
+		assertTrue(result.contains("editedValues.name = firstPerson.name;"));
+		assertTrue(result.contains("if (editedPerson.name != editedValues.name) otherPerson.name = editedPerson.name;"));
+		assertTrue(result.contains("personService.updateAll(editedItems);"));
+		assertTrue(result.contains("<s:method name=\"updateAll\" result=\"personService_updateAllResultHandler(event)\"/>"));
+	}
+	
+	@Test
+	public void testListViewComparesRelationshipsAndDatesByValue() throws SAXException, IOException {
+		AnnotationMetadataBuilder manyToOne = new AnnotationMetadataBuilder(new JavaType("javax.persistence.ManyToOne"), new ArrayList<AnnotationAttributeValue<?>>());
+		List<FieldMetadata> formFields = new ArrayList<FieldMetadata>();
+		formFields.add(field("name"));
+		formFields.add(new FieldMetadataBuilder("MID:person#1", Modifier.PRIVATE, new JavaSymbolName("birthDate"), new JavaType("java.util.Date"), null).build());
+		formFields.add(new FieldMetadataBuilder("MID:person#1", Modifier.PRIVATE, Collections.singletonList(manyToOne), new JavaSymbolName("address"),
+				new JavaType("com.foo.Address")).build());
+		String result = renderListView(Collections.<String, Boolean> emptyMap(), formFields, field("name"));
+		
+		assertTrue(result.contains("if (editedPerson.name != editedValues.name) otherPerson.name = editedPerson.name;"));
+		assertTrue(result.contains("if (!isSameDate(editedPerson.birthDate, editedValues.birthDate)) otherPerson.birthDate = editedPerson.birthDate;"));
+		assertTrue(result.contains("if (!isSameEntity(editedPerson.address, editedValues.address)) otherPerson.address = editedPerson.address;"));
+		assertTrue(result.contains("editedValues.address = firstPerson.address;"));
+		
+		ByteArrayInputStream stream = new ByteArrayInputStream(result.getBytes("UTF-8"));
+		XmlUtils.getDocumentBuilder().parse(stream);
+	}
+	
+	private String renderListView() {
+		Map<String, Boolean> sortableFields = new HashMap<String, Boolean>();
+		sortableFields.put("name", Boolean.TRUE);
+		return renderListView(sortableFields, "name");
+	}
+	
+	private String renderListView(Map<String, Boolean> sortableFields, String... fieldNames) {
+		List<FieldMetadata> elegibleFields = new ArrayList<FieldMetadata>();
+		for (String fieldName : fieldNames) {
+			elegibleFields.add(field(fieldName));
+		}
+		return renderListView(sortableFields, elegibleFields, elegibleFields.toArray(new FieldMetadata[elegibleFields.size()]));
+	}
+	
+	private String renderListView(Map<String, Boolean> sortableFields, List<FieldMetadata> formFields, FieldMetadata... fields) {
+		ActionScriptType entityType = new ActionScriptType("com.foo.Person");
+		StringTemplate listViewTemplate = templateGroup.getInstanceOf("org/springframework/flex/roo/addon/ui/entity_list_view");
+		listViewTemplate.setAttribute("entityType", entityType);
+		listViewTemplate.setAttribute("flexScaffoldMetadata", flexScaffoldMetadata);
+		listViewTemplate.setAttribute("pageSize", FlexScaffoldMetadata.DEFAULT_PAGE_SIZE);
+		
+		listViewTemplate.setAttribute("fields", Arrays.asList(fields));
+		listViewTemplate.setAttribute("sortableFields", sortableFields);
+		listViewTemplate.setAttribute("formFields", FlexUIMetadataProvider.wrapFields(formFields));
+		
+		String result = listViewTemplate.toString();
+		log.debug(result);
+		return result;
+	}
+	
+	private FieldMetadata field(String fieldName) {
+		return new FieldMetadataBuilder("MID:person#1", Modifier.PRIVATE, new JavaSymbolName(fieldName), JavaType.STRING_OBJECT, null).build();
+	}
+}